@@ -44,6 +44,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/payments/**").permitAll()
                         .requestMatchers( "/api/admin/**").permitAll()
                         .requestMatchers("/ws/**", "/topic/**", "/queue/**").permitAll()
+                        .requestMatchers("/internal/ws-bridge").permitAll() // kiểm tra token trong WsBridgeController
                         .requestMatchers("/api/favorites").permitAll()
                         .requestMatchers("/api/orders/**").permitAll()
                         .requestMatchers("/api/support/**").permitAll()
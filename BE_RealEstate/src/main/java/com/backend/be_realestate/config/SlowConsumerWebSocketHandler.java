@@ -0,0 +1,135 @@
+package com.backend.be_realestate.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SubProtocolWebSocketHandler kèm chính sách client chậm (ws.session.slow-consumer):
+ * - disconnect: như mặc định của Spring, buffer gửi vượt send-buffer-limit hoặc 1 lần gửi kéo dài quá
+ *   send-time-limit thì đóng session (client kết nối lại rồi refetch).
+ * - drop: đang có lần gửi dở mà buffer đầy thì bỏ frame MESSAGE mới; frame điều khiển (CONNECTED, RECEIPT, ERROR)
+ *   vẫn vào buffer. Gửi bị treo quá send-time-limit vẫn đóng session.
+ * Metric: ws.session.dropped, ws.session.terminated, ws.session.open, ws.session.buffer.bytes / buffer.max.bytes.
+ */
+@Slf4j
+public class SlowConsumerWebSocketHandler extends SubProtocolWebSocketHandler {
+
+    private static final byte[] MESSAGE_COMMAND = "MESSAGE".getBytes(StandardCharsets.US_ASCII);
+
+    public enum Policy {
+        DROP, DISCONNECT;
+
+        public static Policy parse(String policy) {
+            return valueOf(policy.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final Policy policy;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Counter dropped;
+    private final Counter terminated;
+
+    public SlowConsumerWebSocketHandler(MessageChannel clientInboundChannel, SubscribableChannel clientOutboundChannel,
+                                        Policy policy, MeterRegistry meterRegistry) {
+        super(clientInboundChannel, clientOutboundChannel);
+        this.policy = policy;
+        this.dropped = Counter.builder("ws.session.dropped")
+                .description("Frame MESSAGE bị bỏ do buffer gửi của session đầy (slow-consumer=drop)")
+                .register(meterRegistry);
+        this.terminated = Counter.builder("ws.session.terminated")
+                .description("Session bị đóng do vượt giới hạn buffer / thời gian gửi")
+                .register(meterRegistry);
+        Gauge.builder("ws.session.open", sessions, Map::size).register(meterRegistry);
+        Gauge.builder("ws.session.buffer.bytes", this, SlowConsumerWebSocketHandler::bufferedBytes)
+                .baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("ws.session.buffer.max.bytes", this, SlowConsumerWebSocketHandler::maxBufferedBytes)
+                .baseUnit("bytes").register(meterRegistry);
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /** Tổng số byte đang chờ gửi của mọi session. */
+    public long bufferedBytes() {
+        return sessions.values().stream().mapToLong(Session::getBufferSize).sum();
+    }
+
+    /** Buffer gửi lớn nhất trong các session đang mở. */
+    public long maxBufferedBytes() {
+        return sessions.values().stream().mapToLong(Session::getBufferSize).max().orElse(0);
+    }
+
+    @Override
+    protected WebSocketSession decorateSession(WebSocketSession session) {
+        Session decorated = new Session(session);
+        sessions.put(session.getId(), decorated);
+        return decorated;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        sessions.remove(session.getId());
+        super.afterConnectionClosed(session, closeStatus);
+    }
+
+    // Frame MESSAGE của STOMP, dạng text hoặc binary (client thương lượng binary / payload không phải UTF-8)
+    private static boolean isStompMessage(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) return text.getPayload().startsWith("MESSAGE");
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            if (payload.remaining() < MESSAGE_COMMAND.length) return false;
+            for (int i = 0; i < MESSAGE_COMMAND.length; i++) {
+                if (payload.get(payload.position() + i) != MESSAGE_COMMAND[i]) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private class Session extends ConcurrentWebSocketSessionDecorator {
+
+        Session(WebSocketSession delegate) {
+            super(delegate, SlowConsumerWebSocketHandler.this.getSendTimeLimit(),
+                    SlowConsumerWebSocketHandler.this.getSendBufferSizeLimit());
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            // Buffer còn frame chờ / đang có lần gửi dở => message này sẽ phải nằm chờ trong buffer
+            boolean backlogged = getBufferSize() > 0 || getTimeSinceSendStarted() > 0;
+            if (policy == Policy.DROP && backlogged && isStompMessage(message)
+                    && getBufferSize() + message.getPayloadLength() > getBufferSizeLimit()) {
+                dropped.increment();
+                log.debug("[WS] drop message for slow session {} (buffer={}B)", getId(), getBufferSize());
+                return;
+            }
+            try {
+                super.sendMessage(message);
+            } catch (SessionLimitExceededException e) {
+                terminated.increment();
+                log.warn("[WS] close slow session {}: {}", getId(), e.getMessage());
+                throw e;
+            }
+        }
+    }
+}
@@ -1,26 +1,83 @@
 package com.backend.be_realestate.config;
 
 import com.backend.be_realestate.security.JwtAuthChannelInterceptor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
-import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
-@EnableWebSocketMessageBroker
+import java.util.concurrent.RejectedExecutionException;
+
+// Broker STOMP bật qua WsBrokerConfiguration (thay @EnableWebSocketMessageBroker)
 @Configuration
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Autowired
     private JwtAuthChannelInterceptor jwtAuthChannelInterceptor;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Pool cho kênh inbound (client -> server, chạy JwtAuthChannelInterceptor) và outbound (server -> client).
+    // Hàng đợi có giới hạn: đầy thì từ chối (inbound: client nhận ERROR; outbound: bỏ message), đếm ws.channel.rejected
+    @Value("${ws.channel.inbound.core-pool-size:8}")
+    private int inboundCorePoolSize;
+    @Value("${ws.channel.inbound.max-pool-size:16}")
+    private int inboundMaxPoolSize;
+    @Value("${ws.channel.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+    @Value("${ws.channel.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+    @Value("${ws.channel.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+    @Value("${ws.channel.outbound.queue-capacity:5000}")
+    private int outboundQueueCapacity;
+    @Value("${ws.channel.keep-alive-seconds:60}")
+    private int channelKeepAliveSeconds;
+
+    // Giới hạn theo session, xem SlowConsumerWebSocketHandler
+    @Value("${ws.session.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+    @Value("${ws.session.send-buffer-limit-bytes:524288}")
+    private int sendBufferLimitBytes;
+    @Value("${ws.session.message-size-limit-bytes:65536}")
+    private int messageSizeLimitBytes;
+    @Value("${ws.session.time-to-first-message-ms:60000}")
+    private int timeToFirstMessageMs;
+
+    // simple | relay | bridge, xem WsBrokerSettings
+    @Value("${ws.broker.mode:simple}")
+    private String brokerMode;
+    @Value("${ws.broker.relay.host:localhost}")
+    private String relayHost;
+    @Value("${ws.broker.relay.port:61613}")
+    private int relayPort;
+    @Value("${ws.broker.relay.client-login:guest}")
+    private String relayClientLogin;
+    @Value("${ws.broker.relay.client-passcode:guest}")
+    private String relayClientPasscode;
+    @Value("${ws.broker.relay.system-login:guest}")
+    private String relaySystemLogin;
+    @Value("${ws.broker.relay.system-passcode:guest}")
+    private String relaySystemPasscode;
+    @Value("${ws.broker.relay.virtual-host:}")
+    private String relayVirtualHost;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
-        config.setApplicationDestinationPrefixes("/app");
-        config.setUserDestinationPrefix("/user");
+        new WsBrokerSettings(WsBrokerSettings.parseMode(brokerMode),
+                relayHost, relayPort,
+                relayClientLogin, relayClientPasscode,
+                relaySystemLogin, relaySystemPasscode,
+                relayVirtualHost
+        ).apply(config);
     }
 
     @Override
@@ -36,6 +93,44 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(jwtAuthChannelInterceptor);
+        registration.interceptors(jwtAuthChannelInterceptor)
+                .executor(channelExecutor("inbound", inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity));
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.executor(channelExecutor("outbound", outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity));
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferLimitBytes)
+                .setMessageSizeLimit(messageSizeLimitBytes)
+                .setTimeToFirstMessage(timeToFirstMessageMs);
+    }
+
+    // Spring khởi tạo / tắt executor (là bean clientInboundChannelExecutor / clientOutboundChannelExecutor)
+    private ThreadPoolTaskExecutor channelExecutor(String channel, int corePoolSize, int maxPoolSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("ws-" + channel + "-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(Math.max(corePoolSize, maxPoolSize));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setKeepAliveSeconds(channelKeepAliveSeconds);
+        executor.setAllowCoreThreadTimeOut(true);
+
+        Counter rejected = Counter.builder("ws.channel.rejected").tag("channel", channel)
+                .description("Message STOMP bị từ chối do hàng đợi của kênh đầy")
+                .register(meterRegistry);
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            throw new RejectedExecutionException("WebSocket " + channel + " channel queue full");
+        });
+        Gauge.builder("ws.channel.queue.depth", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .tag("channel", channel).register(meterRegistry);
+        Gauge.builder("ws.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", channel).register(meterRegistry);
+        return executor;
     }
 }
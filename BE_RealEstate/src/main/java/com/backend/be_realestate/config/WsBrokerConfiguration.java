@@ -0,0 +1,37 @@
+package com.backend.be_realestate.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.support.AbstractSubscribableChannel;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.config.annotation.DelegatingWebSocketMessageBrokerConfiguration;
+
+/**
+ * Thay cho @EnableWebSocketMessageBroker: giữ nguyên cấu hình từ các WebSocketMessageBrokerConfigurer
+ * (WebSocketConfig), chỉ đổi handler STOMP sang {@link SlowConsumerWebSocketHandler}.
+ */
+@Configuration
+public class WsBrokerConfiguration extends DelegatingWebSocketMessageBrokerConfiguration {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // drop | disconnect
+    @Value("${ws.session.slow-consumer:disconnect}")
+    private String slowConsumer;
+
+    @Bean
+    @Override
+    public WebSocketHandler subProtocolWebSocketHandler(
+            @Qualifier("clientInboundChannel") AbstractSubscribableChannel clientInboundChannel,
+            @Qualifier("clientOutboundChannel") AbstractSubscribableChannel clientOutboundChannel) {
+        SlowConsumerWebSocketHandler handler = new SlowConsumerWebSocketHandler(clientInboundChannel,
+                clientOutboundChannel, SlowConsumerWebSocketHandler.Policy.parse(slowConsumer), meterRegistry);
+        handler.setPhase(getPhase());
+        return handler;
+    }
+}
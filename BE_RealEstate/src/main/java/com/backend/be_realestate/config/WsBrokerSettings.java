@@ -0,0 +1,49 @@
+package com.backend.be_realestate.config;
+
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+
+import java.util.Locale;
+
+/**
+ * Chế độ broker STOMP (ws.broker.mode):
+ * - simple: broker trong RAM, chỉ chạy được 1 node.
+ * - relay: chuyển tiếp tới broker STOMP ngoài (RabbitMQ, ActiveMQ...). User destination không tìm thấy session
+ *   ở node này và user registry được broadcast qua broker => /user/queue/** tới được session ở node bất kỳ.
+ * - bridge: broker trong RAM ở mỗi node, WsBridge đẩy message sang các node peer qua HTTP.
+ */
+public record WsBrokerSettings(Mode mode,
+                               String relayHost, int relayPort,
+                               String clientLogin, String clientPasscode,
+                               String systemLogin, String systemPasscode,
+                               String virtualHost) {
+
+    public enum Mode { SIMPLE, RELAY, BRIDGE }
+
+    public static final String UNRESOLVED_USER_DESTINATION = "/topic/unresolved-user-destination";
+    public static final String USER_REGISTRY_DESTINATION = "/topic/simp-user-registry";
+
+    public static Mode parseMode(String mode) {
+        return Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public void apply(MessageBrokerRegistry config) {
+        if (mode == Mode.RELAY) {
+            var relay = config.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(clientLogin)
+                    .setClientPasscode(clientPasscode)
+                    .setSystemLogin(systemLogin)
+                    .setSystemPasscode(systemPasscode)
+                    .setUserDestinationBroadcast(UNRESOLVED_USER_DESTINATION)
+                    .setUserRegistryBroadcast(USER_REGISTRY_DESTINATION);
+            if (virtualHost != null && !virtualHost.isBlank()) relay.setVirtualHost(virtualHost);
+        } else {
+            config.enableSimpleBroker("/topic", "/queue");
+        }
+        // Giữ thứ tự message gửi tới cùng 1 session qua clientOutboundChannel (mặc định channel chạy song song)
+        config.setPreservePublishOrder(true);
+        config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
+    }
+}
@@ -109,6 +109,20 @@ public class AdminController {
         return adminPropertyService.search(page, size, q, categoryId, listingType, status);
     }
 
+    // Phân trang keyset (cursor), không đếm tổng
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/properties/scroll")
+    public SliceResponse<PropertyDTO> scrollProperties(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) String listingType,
+            @RequestParam(required = false) String status
+    ) {
+        return adminPropertyService.scroll(cursor, size, q, categoryId, listingType, status);
+    }
+
 
     // admin user management endpoints
     @PreAuthorize("hasRole('ADMIN')")
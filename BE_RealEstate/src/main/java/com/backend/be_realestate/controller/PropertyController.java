@@ -13,8 +13,10 @@ import com.backend.be_realestate.modals.request.PropertyActionRequest;
 import com.backend.be_realestate.modals.response.CreatePropertyResponse;
 import com.backend.be_realestate.modals.response.PageResponse;
 import com.backend.be_realestate.modals.response.PropertyActionResponse;
+import com.backend.be_realestate.modals.response.SliceResponse;
 import com.backend.be_realestate.service.IPropertyService;
 import com.backend.be_realestate.service.IPropertyTrackingService;
+import com.backend.be_realestate.service.reco.RecoFeedStore;
 import com.backend.be_realestate.utils.SecurityUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
@@ -45,6 +47,7 @@ public class PropertyController {
     private final IPropertyService propertyService;
     private final SecurityUtils securityUtils;
     private final IPropertyTrackingService trackingService;
+    private final RecoFeedStore recoFeedStore;
 
     @GetMapping
     public ResponseEntity<Page<PropertyCardDTO>> searchProperties(
@@ -54,6 +57,14 @@ public class PropertyController {
         return ResponseEntity.ok(propertyPage);
     }
 
+    // Phân trang keyset: ?cursor=<nextCursor trang trước>&size=..., cùng bộ lọc với searchProperties
+    @GetMapping("/scroll")
+    public ResponseEntity<SliceResponse<PropertyCardDTO>> scrollProperties(
+            @RequestParam Map<String, String> allParams
+    ) {
+        return ResponseEntity.ok(propertyService.scrollProperties(allParams));
+    }
+
 //    @GetMapping("/{id}")
 //    public ResponseEntity<PropertyDetailDTO> getPropertyById(@PathVariable Long id) {
 //        PropertyDetailDTO propertyDetail = propertyService.getPropertyDetailById(id);
@@ -119,6 +130,24 @@ public class PropertyController {
         return ResponseEntity.ok(PageResponse.from(pageDto));
     }
 
+    @GetMapping("/me/scroll")
+    public ResponseEntity<SliceResponse<PropertyDTO>> scrollMyProperties(
+            Authentication auth,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String status,
+            @RequestParam Map<String, String> filters
+    ) {
+        Long userId = securityUtils.currentUserId(auth);
+        if (userId == null) return ResponseEntity.status(401).build();
+
+        filters.remove("cursor");
+        filters.remove("size");
+        filters.remove("status");
+
+        return ResponseEntity.ok(propertyService.scrollPropertiesByUser(userId, status, cursor, size, filters));
+    }
+
 
     @PostMapping("create")
     public ResponseEntity<CreatePropertyResponse> create(
@@ -178,9 +207,14 @@ public class PropertyController {
                     .toList();
         }
 
-        RecoResult result = propertyService.getRecommendations(
-                userId, limit, anchorCityId, nearCityIds, minPrice, maxPrice, minArea, maxArea
-        );
+        // Không có bộ lọc từ FE => dùng feed tính sẵn (tính ngay nếu user chưa có feed)
+        boolean defaultQuery = anchorCityId == null && (nearCityIds == null || nearCityIds.isEmpty())
+                && minPrice == null && maxPrice == null && minArea == null && maxArea == null;
+        RecoResult result = defaultQuery
+                ? recoFeedStore.get(userId, limit)
+                : propertyService.getRecommendations(
+                        userId, limit, anchorCityId, nearCityIds, minPrice, maxPrice, minArea, maxArea
+                );
 
         return ResponseEntity.ok()
                 .header("x-reco-source", result.getSource() == null ? "" : result.getSource())
@@ -199,6 +233,14 @@ public class PropertyController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/{id}/similar")
+    public ResponseEntity<List<PropertyCardDTO>> getSimilarProperties(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "8") int limit
+    ) {
+        return ResponseEntity.ok(propertyService.getSimilarProperties(id, limit));
+    }
+
     @GetMapping("/banner-listings")
     public ResponseEntity<List<PropertyCardDTO>> getBannerListings() {
         List<PropertyCardDTO> dtos = propertyService.getBannerListings();
@@ -0,0 +1,33 @@
+package com.backend.be_realestate.controller;
+
+import com.backend.be_realestate.service.ws.WsBridge;
+import com.backend.be_realestate.service.ws.WsDispatcher;
+import com.backend.be_realestate.service.ws.WsMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/** Nhận message từ node peer (ws.broker.mode=bridge) và gửi cho session ở node này. */
+@RestController
+@RequestMapping(WsBridge.PATH)
+@ConditionalOnProperty(name = "ws.broker.mode", havingValue = "bridge")
+@RequiredArgsConstructor
+public class WsBridgeController {
+
+    private final WsBridge bridge;
+    private final WsDispatcher dispatcher;
+
+    @PostMapping
+    public ResponseEntity<Void> receive(@RequestHeader(value = WsBridge.TOKEN_HEADER, required = false) String token,
+                                        @RequestBody List<WsBridge.BridgedMessage> messages) {
+        if (!bridge.accepts(token)) return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        for (WsBridge.BridgedMessage m : messages) {
+            dispatcher.dispatch(new WsMessage(m.user(), m.destination(), m.payload(), true));
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.backend.be_realestate.controller.admin;
+
+import com.backend.be_realestate.service.reco.RecoTrace;
+import com.backend.be_realestate.service.reco.RecoTracer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/** Xem trace gợi ý đã lấy mẫu (ring buffer trong RAM) và chỉnh tỉ lệ lấy mẫu lúc chạy. */
+@RestController
+@RequestMapping("/api/admin/reco/traces")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+public class AdminRecoTraceController {
+
+    private final RecoTracer recoTracer;
+
+    @GetMapping
+    public ResponseEntity<List<RecoTrace>> recent(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(recoTracer.recent(userId, Math.max(1, Math.min(limit, 200))));
+    }
+
+    @GetMapping("/config")
+    public ResponseEntity<Map<String, Object>> config() {
+        return ResponseEntity.ok(Map.of(
+                "sampleRate", recoTracer.getSampleRate(),
+                "forceUserIds", recoTracer.getForcedUserIds()));
+    }
+
+    @PutMapping("/config")
+    public ResponseEntity<Map<String, Object>> updateConfig(
+            @RequestParam(required = false) Double sampleRate,
+            @RequestParam(required = false) List<Long> forceUserIds) {
+        if (sampleRate != null) recoTracer.setSampleRate(sampleRate);
+        if (forceUserIds != null) recoTracer.setForcedUserIds(forceUserIds);
+        return config();
+    }
+}
@@ -0,0 +1,100 @@
+package com.backend.be_realestate.converter;
+
+import com.backend.be_realestate.entity.PropertyEntity;
+import com.backend.be_realestate.entity.PropertyImageEntity;
+import com.backend.be_realestate.enums.ActivityType;
+import com.backend.be_realestate.modals.dto.PropertyCardDTO;
+import com.backend.be_realestate.modals.dto.PropertyDTO;
+import com.backend.be_realestate.repository.PotentialCustomerRepository;
+import com.backend.be_realestate.repository.PropertyActivityLogRepository;
+import com.backend.be_realestate.repository.PropertyImage;
+import com.backend.be_realestate.repository.PropertyRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Nạp dữ liệu cho 1 trang id theo lô: mỗi association đúng 1 query IN, số câu SQL không phụ thuộc kích thước trang.
+ * - Card: tin (+ agent, category, district, city fetch join) + ảnh PUBLIC => 2 query.
+ * - PropertyDTO: tin (+ ward, policy, cột favorite_count) + ảnh + ảnh công trình + tiện ích + audit
+ *   + 2 bộ đếm group by (tương tác, khách tiềm năng) => 7 query.
+ */
+@Component
+@RequiredArgsConstructor
+public class PropertyCardHydrator {
+
+    private static final List<ActivityType> INTERACTION_TYPES = List.of(ActivityType.SHARE, ActivityType.FAVORITE);
+
+    private final PropertyRepository propertyRepository;
+    private final PropertyImage propertyImageRepository;
+    private final PropertyActivityLogRepository activityLogRepository;
+    private final PotentialCustomerRepository potentialCustomerRepository;
+    private final PropertyMapper propertyMapper;
+    private final PropertyConverter propertyConverter;
+
+    public record HydratedCard(PropertyCardDTO card, Timestamp postedAt) {}
+
+    /** Card theo id (id không tồn tại thì không có trong map). */
+    public Map<Long, HydratedCard> hydrateCards(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return Map.of();
+
+        List<PropertyEntity> base = propertyRepository.findCardBaseByIdIn(ids);
+        Map<Long, List<PropertyImageEntity>> images = new HashMap<>();
+        for (PropertyImageEntity img : propertyImageRepository.findPublicByPropertyIdIn(ids)) {
+            images.computeIfAbsent(img.getProperty().getId(), k -> new ArrayList<>()).add(img);
+        }
+
+        Map<Long, HydratedCard> out = new HashMap<>(base.size() * 2);
+        for (PropertyEntity e : base) {
+            PropertyCardDTO card = propertyMapper.toPropertyCardDTO(e, images.getOrDefault(e.getId(), List.of()));
+            out.put(e.getId(), new HydratedCard(card, e.getPostedAt()));
+        }
+        return out;
+    }
+
+    /**
+     * PropertyDTO đầy đủ (như PropertyConverter.toDto) cho danh sách id, giữ thứ tự ids.
+     * Chạy trong 1 transaction để các fetch join khởi tạo collection trên cùng entity.
+     */
+    @Transactional(readOnly = true)
+    public List<PropertyDTO> hydrateDtos(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+
+        List<PropertyEntity> base = propertyRepository.findDetailBaseByIdIn(ids);
+        propertyRepository.fetchImagesByIdIn(ids);
+        propertyRepository.fetchConstructionImagesByIdIn(ids);
+        propertyRepository.fetchAmenitiesByIdIn(ids);
+
+        Map<Long, Long> interactions = toCountMap(
+                activityLogRepository.countGroupedByPropertyIdInAndActivityTypeIn(ids, INTERACTION_TYPES));
+        Map<Long, Long> leads = toCountMap(potentialCustomerRepository.countGroupedByPropertyIdIn(ids));
+
+        Map<Long, PropertyEntity> byId = new HashMap<>();
+        base.forEach(e -> byId.put(e.getId(), e));
+        List<PropertyEntity> ordered = ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+
+        List<PropertyDTO> dtos = propertyConverter.toDtosWithAudit(ordered); // audit: 1 query
+        for (int i = 0; i < dtos.size(); i++) {
+            PropertyDTO dto = dtos.get(i);
+            PropertyEntity e = ordered.get(i);
+            dto.setInteractionCount(interactions.getOrDefault(dto.getId(), 0L));
+            dto.setPotentialCustomerCount(leads.getOrDefault(dto.getId(), 0L));
+            dto.setLatestWarningMessage(e.getLatestWarningMessage());
+            dto.setConstructionImages(e.getConstructionImages().stream()
+                    .map(PropertyImageEntity::getImageUrl)
+                    .toList());
+        }
+        return dtos;
+    }
+
+    private static Map<Long, Long> toCountMap(List<Object[]> rows) {
+        Map<Long, Long> out = new HashMap<>();
+        for (Object[] r : rows) {
+            out.put((Long) r[0], ((Number) r[1]).longValue());
+        }
+        return out;
+    }
+}
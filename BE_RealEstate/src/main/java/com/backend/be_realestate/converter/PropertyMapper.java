@@ -39,6 +39,22 @@ public class PropertyMapper {
         if (entity == null) {
             return null;
         }
+        List<PropertyImageEntity> sortedImages = entity.getImages() == null
+                ? Collections.emptyList()
+                : entity.getImages().stream()
+                        .sorted(Comparator.comparing(PropertyImageEntity::getDisplayOrder))
+                        .collect(Collectors.toList());
+        return toPropertyCardDTO(entity, sortedImages);
+    }
+
+    /**
+     * Bản dùng cho batch hydration: ảnh (PUBLIC, đã sort theo displayOrder) được nạp sẵn bằng 1 query IN,
+     * user/category/district/city đã được fetch join => không lazy-load.
+     */
+    public PropertyCardDTO toPropertyCardDTO(PropertyEntity entity, List<PropertyImageEntity> sortedImages) {
+        if (entity == null) {
+            return null;
+        }
 
         PropertyCardDTO dto = new PropertyCardDTO();
 
@@ -65,11 +81,7 @@ public class PropertyMapper {
         }
 
         // --- Xử lý hình ảnh ---
-        if (entity.getImages() != null && !entity.getImages().isEmpty()) {
-            List<PropertyImageEntity> sortedImages = entity.getImages().stream()
-                    .sorted(Comparator.comparing(PropertyImageEntity::getDisplayOrder))
-                    .collect(Collectors.toList());
-
+        if (sortedImages != null && !sortedImages.isEmpty()) {
             dto.setImage(sortedImages.get(0).getImageUrl());
             dto.setPhotos(sortedImages.size());
             dto.setImages(sortedImages.stream()
@@ -376,7 +388,7 @@ public class PropertyMapper {
         return NumberFormat.getNumberInstance(new Locale("vi", "VN")).format(price) + " đ";
     }
 
-    private String formatRelativeTime(Timestamp timestamp) {
+    public String formatRelativeTime(Timestamp timestamp) {
         if (timestamp == null) return "";
         Duration duration = Duration.between(timestamp.toInstant(), Instant.now());
         long days = duration.toDays();
@@ -7,7 +7,6 @@ import com.backend.be_realestate.enums.PropertyType;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
-import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
@@ -94,11 +93,16 @@ import java.util.List;
             private String displayAddress;
 
 
-            @Column(name = "view_count")
+            // Chỉ tăng qua ViewCountBuffer (UPDATE cộng dồn), save entity không được ghi đè
+            @Column(name = "view_count", updatable = false)
             private Long viewCount = 0L;
 
-            @Formula("(SELECT COALESCE(COUNT(*), 0) FROM saved_properties sp WHERE sp.property_id = id)")
-            private Long favoriteCount;
+            // Cột đếm phi chuẩn hoá: chỉ được đổi bằng UPDATE nguyên tử (toggle lưu tin / job đối soát),
+            // không ghi khi save entity để tránh đè lên giá trị tăng/giảm đồng thời
+            @Column(name = "favorite_count", nullable = false, updatable = false,
+                    columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+            @Builder.Default
+            private Long favoriteCount = 0L;
 
             @Column(name = "landarea")
             private Double landArea; // Diện tích đất
@@ -0,0 +1,13 @@
+package com.backend.be_realestate.modals.ai;
+
+import lombok.Value;
+
+import java.util.List;
+
+/** 1 yêu cầu rerank của 1 user (dùng khi gom nhiều user vào 1 lần gọi provider). */
+@Value
+public class RerankJob {
+    UserPreference pref;
+    List<ScoredProperty> candidates;
+    int topK;
+}
@@ -0,0 +1,32 @@
+package com.backend.be_realestate.modals.dto.propertyEvent;
+
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra mỗi khi một hoặc nhiều tin đăng thay đổi (tạo, sửa, đổi trạng thái, xoá, hết hạn).
+ * Các bộ nhớ đệm / chỉ mục in-memory lắng nghe sự kiện này (AFTER_COMMIT) để tự làm mới.
+ * previous: city / category của tin TRƯỚC khi sửa hoặc xoá (rỗng nếu không đổi), để listener
+ * làm mới được cả nhóm cũ chứ không chỉ nhóm mới.
+ */
+@Value
+public class PropertyChangedEvent {
+    Collection<Long> ids;
+    Collection<Scope> previous;
+
+    public record Scope(Long cityId, String categorySlug) {}
+
+    public static PropertyChangedEvent of(Long id) {
+        return new PropertyChangedEvent(List.of(id), List.of());
+    }
+
+    public static PropertyChangedEvent of(Collection<Long> ids) {
+        return new PropertyChangedEvent(List.copyOf(ids), List.of());
+    }
+
+    public static PropertyChangedEvent of(Long id, Long previousCityId, String previousCategorySlug) {
+        return new PropertyChangedEvent(List.of(id), List.of(new Scope(previousCityId, previousCategorySlug)));
+    }
+}
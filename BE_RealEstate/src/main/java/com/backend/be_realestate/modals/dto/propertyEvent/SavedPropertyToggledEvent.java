@@ -0,0 +1,27 @@
+package com.backend.be_realestate.modals.dto.propertyEvent;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.enums.PropertyType;
+import lombok.Value;
+
+/**
+ * Phát ra khi user lưu / bỏ lưu 1 tin. Mang theo thông tin tin đăng lúc lưu
+ * để hồ sơ sở thích (UserPreferenceStore) cập nhật mà không cần query lại.
+ */
+@Value
+public class SavedPropertyToggledEvent {
+    Long userId;
+    Long propertyId;
+    boolean saved;
+
+    // Chỉ có khi saved = true
+    PropertyType propertyType;
+    Long cityId;
+    Double price;
+    Float area;
+    PropertyStatus status;
+
+    public static SavedPropertyToggledEvent removed(Long userId, Long propertyId) {
+        return new SavedPropertyToggledEvent(userId, propertyId, false, null, null, null, null, null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.backend.be_realestate.modals.dto.userEvent;
+
+import com.backend.be_realestate.entity.RoleEntity;
+import com.backend.be_realestate.entity.UserEntity;
+import lombok.Value;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Phát ra khi danh sách thành viên của role thay đổi: user mới / bị xoá, hoặc đổi email / phone
+ * (principal WS). RoleMemberCache nghe sự kiện này (AFTER_COMMIT) để bỏ cache của các role đó.
+ */
+@Value
+public class RoleMembersChangedEvent {
+    Collection<String> roleCodes;
+
+    public static RoleMembersChangedEvent of(String roleCode) {
+        return new RoleMembersChangedEvent(List.of(roleCode));
+    }
+
+    public static RoleMembersChangedEvent of(UserEntity user) {
+        List<RoleEntity> roles = user.getRoles() == null ? List.of() : user.getRoles();
+        return new RoleMembersChangedEvent(roles.stream().map(RoleEntity::getCode).distinct().toList());
+    }
+}
@@ -0,0 +1,57 @@
+package com.backend.be_realestate.modals.request;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor cho phân trang keyset (seek): vị trí = phần tử cuối của trang trước.
+ * Thứ tự: (score desc,) postedAt desc, id desc. score chỉ có khi xếp theo độ liên quan của keyword.
+ * postedAt = null => tin chưa đăng (DRAFT), nằm cuối danh sách giống NULLS LAST của MySQL khi DESC.
+ * Chuỗi gửi cho FE là base64url, FE chỉ việc gửi lại nguyên văn.
+ */
+@Value
+public class PageCursor {
+    Integer score;
+    Long postedAt;
+    long id;
+
+    public static PageCursor of(Integer score, Long postedAt, long id) {
+        return new PageCursor(score, postedAt, id);
+    }
+
+    public String encode() {
+        String raw = (score == null ? "" : score) + ":" + (postedAt == null ? "" : postedAt) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** null/blank => trang đầu. Cursor hỏng => IllegalArgumentException (400). */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor.trim()), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", -1);
+            if (parts.length != 3) throw new IllegalArgumentException("Invalid cursor");
+            Integer score = parts[0].isEmpty() ? null : Integer.valueOf(parts[0]);
+            Long postedAt = parts[1].isEmpty() ? null : Long.valueOf(parts[1]);
+            return new PageCursor(score, postedAt, Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /** true nếu (score, postedAt, id) nằm SAU cursor theo thứ tự giảm dần. */
+    public boolean isBefore(Integer otherScore, Long otherPostedAt, long otherId) {
+        if (score != null) {
+            int s = otherScore == null ? 0 : otherScore;
+            if (s != score) return s < score;
+        }
+        if (postedAt == null) {
+            return otherPostedAt == null && otherId < id;
+        }
+        if (otherPostedAt == null) return true;
+        if (!otherPostedAt.equals(postedAt)) return otherPostedAt < postedAt;
+        return otherId < id;
+    }
+}
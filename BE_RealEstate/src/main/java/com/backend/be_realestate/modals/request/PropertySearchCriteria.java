@@ -0,0 +1,97 @@
+package com.backend.be_realestate.modals.request;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bộ lọc tìm kiếm tin đăng công khai (trang chủ), parse từ query params của /api/properties.
+ */
+@Getter
+@Builder(toBuilder = true)
+@EqualsAndHashCode
+public class PropertySearchCriteria {
+    private String keyword;
+    private boolean matchAll;
+    private String propertyType;
+    private String categorySlug;
+    private Double priceFrom;
+    private Double priceTo;
+    private Float areaFrom;
+    private Float areaTo;
+    private Long cityId;
+    private Integer bedroomsFrom;
+    private Integer bathroomsFrom;
+    private String legalType;
+    private List<Long> amenityIds;
+
+    public static PropertySearchCriteria fromParams(Map<String, String> params) {
+        List<Long> amenityIds = null;
+        String amenitiesRaw = params.get("amenities"); // VD: "1,3,5"
+        if (amenitiesRaw != null && !amenitiesRaw.isBlank()) {
+            amenityIds = Arrays.stream(amenitiesRaw.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .map(Long::parseLong)
+                    .toList();
+        }
+
+        return PropertySearchCriteria.builder()
+                .keyword(params.get("keyword"))
+                .matchAll(!"any".equalsIgnoreCase(params.getOrDefault("kwMode", "all")))
+                .propertyType(params.get("type"))
+                .categorySlug(params.get("category"))
+                .priceFrom(params.get("priceFrom") != null ? Double.parseDouble(params.get("priceFrom")) : null)
+                .priceTo(params.get("priceTo") != null ? Double.parseDouble(params.get("priceTo")) : null)
+                .areaFrom(params.get("areaFrom") != null ? Float.parseFloat(params.get("areaFrom")) : null)
+                .areaTo(params.get("areaTo") != null ? Float.parseFloat(params.get("areaTo")) : null)
+                .cityId(params.get("cityId") != null ? Long.parseLong(params.get("cityId")) : null)
+                .bedroomsFrom(params.get("bedroomsFrom") != null ? Integer.parseInt(params.get("bedroomsFrom")) : null)
+                .bathroomsFrom(params.get("bathroomsFrom") != null ? Integer.parseInt(params.get("bathroomsFrom")) : null)
+                .legalType(params.get("legalType")) // "Sổ hồng" / "Sổ đỏ" ...
+                .amenityIds(amenityIds)
+                .build();
+    }
+
+    /**
+     * Dạng chuẩn hoá dùng làm key cache đếm: 2 bộ lọc cho cùng tập kết quả => cùng key.
+     * - keyword: lowercase, token >= 2 ký tự, bỏ trùng, sắp xếp (số lượng không phụ thuộc thứ tự từ).
+     * - có cityId thì bỏ keyword (giống PropertySpecification.forSearch).
+     * - chuỗi rỗng => null, amenityIds sắp xếp + bỏ trùng.
+     */
+    public PropertySearchCriteria normalized() {
+        String kw = null;
+        if (hasKeyword()) {
+            kw = Arrays.stream(keyword.trim().toLowerCase(Locale.ROOT).split("\\s+"))
+                    .filter(t -> t.length() >= 2)
+                    .distinct()
+                    .sorted()
+                    .reduce((a, b) -> a + " " + b)
+                    .orElse(null);
+        }
+        return toBuilder()
+                .keyword(kw)
+                .matchAll(kw != null && matchAll)
+                .propertyType(blankToNull(propertyType))
+                .categorySlug(blankToNull(categorySlug != null && categorySlug.startsWith("/") ? categorySlug.substring(1) : categorySlug))
+                .bedroomsFrom(bedroomsFrom != null && bedroomsFrom > 0 ? bedroomsFrom : null)
+                .bathroomsFrom(bathroomsFrom != null && bathroomsFrom > 0 ? bathroomsFrom : null)
+                .legalType(blankToNull(legalType))
+                .amenityIds(amenityIds == null || amenityIds.isEmpty() ? null : amenityIds.stream().distinct().sorted().toList())
+                .build();
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.trim().isEmpty() ? null : s.trim();
+    }
+
+    /** Có từ khoá thật sự (khi có cityId thì bỏ qua keyword, giống logic cũ). */
+    public boolean hasKeyword() {
+        return cityId == null && keyword != null && !keyword.isBlank();
+    }
+}
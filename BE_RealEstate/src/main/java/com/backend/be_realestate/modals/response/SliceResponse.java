@@ -0,0 +1,21 @@
+package com.backend.be_realestate.modals.response;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Trang dạng "slice" cho phân trang keyset: không có totalElements/totalPages (không chạy COUNT(*)).
+ * nextCursor = null khi đã hết dữ liệu.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SliceResponse<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    private String nextCursor;
+}
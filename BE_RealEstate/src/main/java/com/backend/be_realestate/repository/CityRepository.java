@@ -32,4 +32,8 @@ public interface CityRepository extends JpaRepository<CityEntity,Long> {
       where c.id in :ids and c.lat is not null and c.lng is not null
     """)
     List<CityEntity> findAllWithLatLngByIdIn(@Param("ids") List<Long> ids);
+
+    // [id, lat, lng] cho GeoNeighbourIndex
+    @Query("select c.id, c.lat, c.lng from CityEntity c where c.lat is not null and c.lng is not null")
+    List<Object[]> findAllLatLng();
 }
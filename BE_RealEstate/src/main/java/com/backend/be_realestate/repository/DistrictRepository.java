@@ -3,10 +3,14 @@ package com.backend.be_realestate.repository;
 import com.backend.be_realestate.entity.CityEntity;
 import com.backend.be_realestate.entity.DistrictEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface DistrictRepository extends JpaRepository<DistrictEntity,Long> {
     List<DistrictEntity> findByCity_IdOrderByNameAsc(Long cityId);
 
+    // [id, lat, lng] cho GeoNeighbourIndex
+    @Query("select d.id, d.lat, d.lng from DistrictEntity d where d.lat is not null and d.lng is not null")
+    List<Object[]> findAllLatLng();
 }
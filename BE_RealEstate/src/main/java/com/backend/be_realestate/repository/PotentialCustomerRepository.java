@@ -26,6 +26,10 @@ public interface PotentialCustomerRepository extends JpaRepository<PotentialCust
             Long propertyId, String ipAddress, CustomerLeadType leadType, Timestamp afterTime
     );
     Long countByPropertyId(Long propertyId);
+
+    // Bản batch của countByPropertyId: [propertyId, count]
+    @Query("SELECT pc.property.id, COUNT(pc.id) FROM PotentialCustomer pc WHERE pc.property.id IN :ids GROUP BY pc.property.id")
+    java.util.List<Object[]> countGroupedByPropertyIdIn(@Param("ids") java.util.Collection<Long> ids);
     @Query("SELECT pc FROM PotentialCustomer pc " +
             "JOIN FETCH pc.property p " +
             "LEFT JOIN FETCH pc.leadUser lu " +
@@ -3,10 +3,13 @@ package com.backend.be_realestate.repository;
 import com.backend.be_realestate.entity.PropertyActivityLog;
 import com.backend.be_realestate.enums.ActivityType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface PropertyActivityLogRepository extends JpaRepository<PropertyActivityLog, Long> {
@@ -22,4 +25,14 @@ public interface PropertyActivityLogRepository extends JpaRepository<PropertyAct
     );
 
     Long countByPropertyIdAndActivityTypeIn(Long propertyId, Collection<ActivityType> types);
+
+    // Bản batch của countByPropertyIdAndActivityTypeIn: [propertyId, count]
+    @Query("""
+           select l.property.id, count(l.id)
+           from PropertyActivityLog l
+           where l.property.id in :ids and l.activityType in :types
+           group by l.property.id
+           """)
+    List<Object[]> countGroupedByPropertyIdInAndActivityTypeIn(@Param("ids") Collection<Long> ids,
+                                                               @Param("types") Collection<ActivityType> types);
 }
\ No newline at end of file
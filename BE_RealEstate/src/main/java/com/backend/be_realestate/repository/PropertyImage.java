@@ -6,9 +6,19 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PropertyImage extends JpaRepository<PropertyImageEntity,Long> {
     @Query("select i from PropertyImageEntity i where i.property.id in :ids order by coalesce(i.displayOrder, 0) asc")
     List<PropertyImageEntity> findAllByPropertyIdIn(@Param("ids") List<Long> ids);
+
+    // Chỉ ảnh PUBLIC (giống @Where của PropertyEntity.images), theo displayOrder
+    @Query("""
+           select i from PropertyImageEntity i
+           where i.property.id in :ids
+             and i.imageType = com.backend.be_realestate.entity.PropertyImageEntity.ImageType.PUBLIC
+           order by i.property.id, coalesce(i.displayOrder, 0) asc
+           """)
+    List<PropertyImageEntity> findPublicByPropertyIdIn(@Param("ids") Collection<Long> ids);
 }
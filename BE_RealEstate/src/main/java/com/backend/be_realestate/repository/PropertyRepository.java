@@ -90,6 +90,34 @@ public interface PropertyRepository extends JpaRepository<PropertyEntity,Long>,
         """, nativeQuery = true)
     long countPending(@Param("pendingStatus") String pendingStatus);
 
+    // Tăng/giảm lượt lưu nguyên tử, không để âm
+    @Modifying
+    @Query("UPDATE PropertyEntity p SET p.favoriteCount = CASE WHEN p.favoriteCount + :delta < 0 THEN 0 ELSE p.favoriteCount + :delta END WHERE p.id = :id")
+    int addFavoriteCount(@Param("id") Long id, @Param("delta") long delta);
+
+    @Query("SELECT COALESCE(MAX(p.id), 0) FROM PropertyEntity p")
+    long findMaxId();
+
+    // Đối soát favorite_count với saved_properties cho 1 khoảng id; trả về số dòng đã sửa
+    @Modifying
+    @Transactional
+    @Query(value = """
+        UPDATE properties p
+        LEFT JOIN (
+            SELECT sp.property_id, COUNT(*) AS c
+            FROM saved_properties sp
+            WHERE sp.property_id BETWEEN :fromId AND :toId
+            GROUP BY sp.property_id
+        ) s ON s.property_id = p.id
+        SET p.favorite_count = COALESCE(s.c, 0)
+        WHERE p.id BETWEEN :fromId AND :toId
+          AND p.favorite_count <> COALESCE(s.c, 0)
+        """, nativeQuery = true)
+    int reconcileFavoriteCounts(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("SELECT p.user.userId FROM PropertyEntity p WHERE p.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
     @Query("SELECT p.viewCount FROM PropertyEntity p WHERE p.id = :id")
     Optional<Long> findViewCountById(@Param("id") Long id);
 
@@ -124,6 +152,146 @@ public interface PropertyRepository extends JpaRepository<PropertyEntity,Long>,
     );
 
 
+    // Dòng "phẳng" dùng để nạp chỉ mục tìm kiếm in-memory (không hydrate entity)
+    interface SearchIndexRow {
+        Long getId();
+        String getTitle();
+        String getDisplayAddress();
+        PropertyStatus getStatus();
+        Timestamp getPostedAt();
+        Timestamp getExpiresAt();
+        Double getPrice();
+        Float getArea();
+        Integer getBedrooms();
+        Integer getBathrooms();
+        Long getCityId();
+        PropertyType getPropertyType();
+        String getCategorySlug();
+        String getLegalStatus();
+    }
+
+    @Query("""
+        SELECT p.id AS id, p.title AS title, p.displayAddress AS displayAddress,
+               p.status AS status, p.postedAt AS postedAt, p.expiresAt AS expiresAt,
+               p.price AS price, p.area AS area, p.bedrooms AS bedrooms, p.bathrooms AS bathrooms,
+               c.id AS cityId, p.propertyType AS propertyType, cat.slug AS categorySlug,
+               p.legalStatus AS legalStatus
+        FROM PropertyEntity p
+        LEFT JOIN p.city c
+        LEFT JOIN p.category cat
+        WHERE p.status = :status
+    """)
+    List<SearchIndexRow> findSearchRowsByStatus(@Param("status") PropertyStatus status);
+
+    @Query("""
+        SELECT p.id AS id, p.title AS title, p.displayAddress AS displayAddress,
+               p.status AS status, p.postedAt AS postedAt, p.expiresAt AS expiresAt,
+               p.price AS price, p.area AS area, p.bedrooms AS bedrooms, p.bathrooms AS bathrooms,
+               c.id AS cityId, p.propertyType AS propertyType, cat.slug AS categorySlug,
+               p.legalStatus AS legalStatus
+        FROM PropertyEntity p
+        LEFT JOIN p.city c
+        LEFT JOIN p.category cat
+        WHERE p.id IN :ids
+    """)
+    List<SearchIndexRow> findSearchRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Văn bản để vector hoá (PropertyEmbeddingStore)
+    interface EmbeddingTextRow {
+        Long getId();
+        String getTitle();
+        String getDescription();
+        PropertyStatus getStatus();
+    }
+
+    @Query("SELECT p.id AS id, p.title AS title, p.description AS description, p.status AS status FROM PropertyEntity p WHERE p.status = :status")
+    List<EmbeddingTextRow> findEmbeddingTextByStatus(@Param("status") PropertyStatus status);
+
+    @Query("SELECT p.id AS id, p.title AS title, p.description AS description, p.status AS status FROM PropertyEntity p WHERE p.id IN :ids")
+    List<EmbeddingTextRow> findEmbeddingTextByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Đặc trưng cho chỉ mục "tin tương tự" (SimilarPropertyIndex)
+    interface SimilarFeatureRow {
+        Long getId();
+        Double getPrice();
+        Float getArea();
+        Integer getBedrooms();
+        Integer getBathrooms();
+        PropertyType getPropertyType();
+        Long getCategoryId();
+        Long getCityId();
+        PropertyStatus getStatus();
+    }
+
+    @Query("""
+        SELECT p.id AS id, p.price AS price, p.area AS area, p.bedrooms AS bedrooms, p.bathrooms AS bathrooms,
+               p.propertyType AS propertyType, cat.id AS categoryId, c.id AS cityId, p.status AS status
+        FROM PropertyEntity p
+        LEFT JOIN p.city c
+        LEFT JOIN p.category cat
+        WHERE p.status = :status
+    """)
+    List<SimilarFeatureRow> findSimilarFeaturesByStatus(@Param("status") PropertyStatus status);
+
+    @Query("""
+        SELECT p.id AS id, p.price AS price, p.area AS area, p.bedrooms AS bedrooms, p.bathrooms AS bathrooms,
+               p.propertyType AS propertyType, cat.id AS categoryId, c.id AS cityId, p.status AS status
+        FROM PropertyEntity p
+        LEFT JOIN p.city c
+        LEFT JOIN p.category cat
+        WHERE p.id IN :ids
+    """)
+    List<SimilarFeatureRow> findSimilarFeaturesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Cặp (propertyId, amenityId)
+    @Query("SELECT p.id, a.id FROM PropertyEntity p JOIN p.amenities a WHERE p.status = :status")
+    List<Object[]> findAmenityPairsByStatus(@Param("status") PropertyStatus status);
+
+    @Query("SELECT p.id, a.id FROM PropertyEntity p JOIN p.amenities a WHERE p.id IN :ids")
+    List<Object[]> findAmenityPairsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /* ===== Batch hydration: mỗi association 1 query IN, không lazy-load từng dòng ===== */
+
+    // Card: tin + agent + category + district + city.
+    // authProvider / userProfile là phía mappedBy của @OneToOne, không lazy được: không fetch kèm thì
+    // Hibernate chạy thêm 1 SELECT cho mỗi dòng
+    @Query("""
+        SELECT p FROM PropertyEntity p
+        LEFT JOIN FETCH p.user u
+        LEFT JOIN FETCH u.authProvider
+        LEFT JOIN FETCH u.userProfile
+        LEFT JOIN FETCH p.category
+        LEFT JOIN FETCH p.district
+        LEFT JOIN FETCH p.city
+        WHERE p.id IN :ids
+    """)
+    List<PropertyEntity> findCardBaseByIdIn(@Param("ids") Collection<Long> ids);
+
+    // PropertyDTO: thêm ward + listingTypePolicy
+    @Query("""
+        SELECT p FROM PropertyEntity p
+        LEFT JOIN FETCH p.user u
+        LEFT JOIN FETCH u.authProvider
+        LEFT JOIN FETCH u.userProfile
+        LEFT JOIN FETCH p.category
+        LEFT JOIN FETCH p.ward
+        LEFT JOIN FETCH p.district
+        LEFT JOIN FETCH p.city
+        LEFT JOIN FETCH p.listingTypePolicy
+        WHERE p.id IN :ids
+    """)
+    List<PropertyEntity> findDetailBaseByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Khởi tạo các collection trong cùng persistence context (gọi trong transaction)
+    @Query("SELECT DISTINCT p FROM PropertyEntity p LEFT JOIN FETCH p.images WHERE p.id IN :ids")
+    List<PropertyEntity> fetchImagesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p FROM PropertyEntity p LEFT JOIN FETCH p.constructionImages WHERE p.id IN :ids")
+    List<PropertyEntity> fetchConstructionImagesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT p FROM PropertyEntity p LEFT JOIN FETCH p.amenities WHERE p.id IN :ids")
+    List<PropertyEntity> fetchAmenitiesByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("select p from PropertyEntity p where p.id = :id")
     Optional<PropertyEntity> findDetailForEdit(@Param("id") Long id);
 
@@ -139,6 +307,9 @@ public interface PropertyRepository extends JpaRepository<PropertyEntity,Long>,
             @Param("status") PropertyStatus status,
             Pageable pageable
     );
+    @Query("SELECT p.id FROM PropertyEntity p WHERE p.status = 'PUBLISHED' AND p.expiresAt < :now")
+    List<Long> findIdsForExpiredPosts(@Param("now") Timestamp now);
+
     @Modifying
     @Transactional
     @Query("UPDATE PropertyEntity p SET p.status = 'EXPIRED' " +
@@ -161,6 +332,16 @@ public interface PropertyRepository extends JpaRepository<PropertyEntity,Long>,
 
     long countAllByStatus(PropertyStatus status);
 
+    @Query("""
+    SELECT p.id
+    FROM PropertyEntity p
+    WHERE p.status = 'PUBLISHED'
+      AND p.expiresAt >= :now
+      AND p.expiresAt < :soon
+""")
+    List<Long> findIdsForExpiringSoon(@Param("now") Timestamp now,
+                                      @Param("soon") Timestamp soon);
+
     @Modifying
     @Transactional
     @Query("""
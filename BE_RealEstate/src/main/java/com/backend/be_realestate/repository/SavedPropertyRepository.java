@@ -11,7 +11,7 @@ public interface SavedPropertyRepository extends JpaRepository<SavedPropertyEnti
 
     boolean existsByUserUserIdAndPropertyId(Long userId, Long propertyId);
 
-    void deleteByUserUserIdAndPropertyId(Long userId, Long propertyId);
+    long deleteByUserUserIdAndPropertyId(Long userId, Long propertyId);
 
     @Query("""
            select sp.property.id
@@ -21,6 +21,25 @@ public interface SavedPropertyRepository extends JpaRepository<SavedPropertyEnti
            """)
     List<Long> findPropertyIdsByUser(@Param("uid") Long userId);
 
+    // Hồ sơ sở thích cho gợi ý, 1 query: [propertyId, propertyType, cityId, price, area, status], mới nhất trước
+    @Query("""
+           select p.id, p.propertyType, c.id, p.price, p.area, p.status
+           from SavedPropertyEntity sp
+           join sp.property p
+           left join p.city c
+           where sp.user.userId = :uid
+           order by sp.createdAt desc
+           """)
+    List<Object[]> findPreferenceRowsByUser(@Param("uid") Long userId);
+
+    // User có lưu tin gần đây => được tính sẵn feed gợi ý
+    @Query("""
+           select distinct sp.user.userId
+           from SavedPropertyEntity sp
+           where sp.createdAt >= :since
+           """)
+    List<Long> findActiveUserIdsSince(@Param("since") java.util.Date since);
+
     // Spring Data cho phép dùng dấu '_' để truy cập thuộc tính lồng: property.id
     List<SavedPropertyEntity> findByProperty_Id(Long propertyId);
 
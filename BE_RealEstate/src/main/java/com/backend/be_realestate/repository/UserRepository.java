@@ -27,6 +27,16 @@ public interface UserRepository extends JpaRepository<UserEntity, Long> {
 
     List<UserEntity> findAllByRoles_Code(String code);
 
+    // Người nhận thông báo theo role (chỉ cột cần cho INSERT + principal WS), xem RoleMemberCache
+    interface RoleMemberRow {
+        Long getUserId();
+        String getEmail();
+        String getPhone();
+    }
+
+    @Query("SELECT u.userId AS userId, u.email AS email, u.phone AS phone FROM UserEntity u JOIN u.roles r WHERE r.code = :code")
+    List<RoleMemberRow> findRoleMembers(@Param("code") String code);
+
     @Query("""
       SELECT DISTINCT u FROM UserEntity u
       LEFT JOIN u.roles r
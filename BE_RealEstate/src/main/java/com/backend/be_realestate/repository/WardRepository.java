@@ -3,10 +3,14 @@ package com.backend.be_realestate.repository;
 import com.backend.be_realestate.entity.CityEntity;
 import com.backend.be_realestate.entity.WardEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.util.List;
 
 public interface WardRepository extends JpaRepository<WardEntity,Long> {
     List<WardEntity> findByDistrict_IdOrderByNameAsc(Long districtId);
 
+    // [id, lat, lng] cho GeoNeighbourIndex
+    @Query("select w.id, w.lat, w.lng from WardEntity w where w.lat is not null and w.lng is not null")
+    List<Object[]> findAllLatLng();
 }
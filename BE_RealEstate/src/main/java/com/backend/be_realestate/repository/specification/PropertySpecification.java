@@ -4,6 +4,8 @@ package com.backend.be_realestate.repository.specification;
 import com.backend.be_realestate.entity.PropertyEntity;
 import com.backend.be_realestate.enums.PropertyStatus;
 import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.modals.request.PageCursor;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
 import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
@@ -67,6 +69,30 @@ public class PropertySpecification {
         };
     }
 
+    // Toàn bộ bộ lọc của trang tìm kiếm công khai (/api/properties)
+    public static Specification<PropertyEntity> forSearch(PropertySearchCriteria criteria) {
+        Specification<PropertyEntity> spec = Specification
+                .where(isPublished())
+                .and(notExpired()); // optional: lọc tin hết hạn
+
+        if (criteria.getCityId() != null) {
+            spec = spec.and(hasCity(criteria.getCityId()));
+        } else {
+            spec = spec.and(hasKeyword(criteria.getKeyword(), criteria.isMatchAll()));
+        }
+
+        return spec
+                .and(hasPropertyType(criteria.getPropertyType()))
+                .and(hasCategorySlug(criteria.getCategorySlug()))
+                .and(priceBetween(criteria.getPriceFrom(), criteria.getPriceTo()))
+                .and(areaBetween(criteria.getAreaFrom(), criteria.getAreaTo()))
+                // 🔹 phòng ngủ, phòng tắm, pháp lý, tiện ích
+                .and(hasMinBedrooms(criteria.getBedroomsFrom()))
+                .and(hasMinBathrooms(criteria.getBathroomsFrom()))
+                .and(hasLegalStatus(criteria.getLegalType()))
+                .and(hasAnyAmenities(criteria.getAmenityIds()));
+    }
+
     public static Specification<PropertyEntity> isPublished() {
         return (root, query, cb) -> cb.equal(root.get("status"), PropertyStatus.PUBLISHED);
     }
@@ -174,4 +200,20 @@ public class PropertySpecification {
             return amenityJoin.get("id").in(amenityIds);
         };
     }
+
+    // Keyset: chỉ lấy các dòng nằm SAU cursor theo postedAt desc (NULL cuối), id desc
+    public static Specification<PropertyEntity> seekAfter(PageCursor cursor) {
+        return (root, query, cb) -> {
+            if (cursor == null) return cb.conjunction();
+            if (cursor.getPostedAt() == null) {
+                return cb.and(cb.isNull(root.get("postedAt")), cb.lessThan(root.get("id"), cursor.getId()));
+            }
+            java.sql.Timestamp ts = new java.sql.Timestamp(cursor.getPostedAt());
+            return cb.or(
+                    cb.lessThan(root.get("postedAt"), ts),
+                    cb.and(cb.equal(root.get("postedAt"), ts), cb.lessThan(root.get("id"), cursor.getId())),
+                    cb.isNull(root.get("postedAt"))
+            );
+        };
+    }
 }
@@ -5,6 +5,7 @@ import com.backend.be_realestate.modals.property.ApprovePropertyRequest;
 import com.backend.be_realestate.modals.property.RejectPropertyRequest;
 import com.backend.be_realestate.modals.request.AdminPropertyBulkReq;
 import com.backend.be_realestate.modals.response.PropertyShortResponse;
+import com.backend.be_realestate.modals.response.SliceResponse;
 import com.backend.be_realestate.modals.response.admin.AdminPropertyStatsResponse;
 import org.springframework.data.domain.Page;
 
@@ -17,6 +18,7 @@ public interface AdminPropertyService {
     PropertyShortResponse unhide(Long propertyId, Long adminId);
     void hardDelete(Long propertyId);
     Page<PropertyDTO> search(int page, int size, String q, Long categoryId, String listingType, String status);
+    SliceResponse<PropertyDTO> scroll(String cursor, int size, String q, Long categoryId, String listingType, String status);
     AdminPropertyStatsResponse getAdminGlobalStats();
     List<PropertyShortResponse> bulkApprove(AdminPropertyBulkReq req, Long adminId);
     List<PropertyShortResponse> bulkReject(AdminPropertyBulkReq req, Long adminId);
@@ -1,11 +1,28 @@
 package com.backend.be_realestate.service;
 
+import com.backend.be_realestate.modals.ai.RerankJob;
 import com.backend.be_realestate.modals.ai.ScoredProperty;
 import com.backend.be_realestate.modals.ai.UserPreference;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface IAIService {
     List<ScoredProperty> rerank(UserPreference pref, List<ScoredProperty> candidates, int topK);
 
+    // Không chặn thread gọi; future lỗi khi provider lỗi / quá timeout / trả về không parse được.
+    // Trả về MỌI ứng viên đã gửi cho model (đã chấm, sort theo finalScore), phía gọi tự cắt topK
+    // (RerankCache cần điểm của cả các tin ngoài topK)
+    CompletableFuture<List<ScoredProperty>> rerankAsync(UserPreference pref, List<ScoredProperty> candidates, int topK);
+
+    // Tên provider, dùng làm key giới hạn số request đồng thời (ai.rerank.dispatch.concurrency.<provider>)
+    String providerName();
+
+    // Rerank nhiều user 1 lượt; 1 future / job, cùng thứ tự. Mặc định: gọi song song từng job
+    default List<CompletableFuture<List<ScoredProperty>>> rerankBatchAsync(List<RerankJob> jobs) {
+        return jobs.stream()
+                .map(j -> rerankAsync(j.getPref(), j.getCandidates(), j.getTopK()))
+                .toList();
+    }
+
 }
@@ -12,6 +12,7 @@ import com.backend.be_realestate.modals.request.CreatePropertyRequest;
 import com.backend.be_realestate.modals.response.CreatePropertyResponse;
 import com.backend.be_realestate.modals.response.PageResponse;
 import com.backend.be_realestate.modals.response.PropertyActionResponse;
+import com.backend.be_realestate.modals.response.SliceResponse;
 import com.backend.be_realestate.modals.response.admin.PropertyKpiResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -34,6 +35,9 @@ public interface IPropertyService {
 
     Page<PropertyCardDTO> searchProperties(Map<String, String> params);
 
+    // Phân trang keyset: params giống searchProperties + cursor (bỏ page/sort)
+    SliceResponse<PropertyCardDTO> scrollProperties(Map<String, String> params);
+
 //    Page<PropertyDTO> getPropertiesByUser(Long userId, Pageable pageable);
     PropertyDTO create1(Long currentUserId, CreatePropertyRequest req, List<MultipartFile> images);
     CreatePropertyResponse create(Long userId, CreatePropertyRequest req, SubmitMode mode);
@@ -44,6 +48,12 @@ public interface IPropertyService {
                                           Pageable pageable,
                                           Map<String, String> filters);
 
+    SliceResponse<PropertyDTO> scrollPropertiesByUser(Long userId,
+                                                      String status,
+                                                      String cursor,
+                                                      int size,
+                                                      Map<String, String> filters);
+
     Map<String, Long> getPropertyCountsByStatus(Long userId);
 
     List<UserFavoriteDTO> getUsersWhoFavorited(Long propertyId, Long currentUserId);
@@ -59,6 +69,8 @@ public interface IPropertyService {
 
     PropertyDTO getDetailForEdit(Long propertyId, Long requesterUserId);
     List<PropertyCardDTO> getBannerListings();
+
+    List<PropertyCardDTO> getSimilarProperties(Long propertyId, int limit);
     PropertyActionResponse performAction(Long userId, Long propertyId, PropertyAction action, String note);
 
     void toggleAutoRenew(Long userId, Long propertyId, boolean enable);
@@ -11,6 +11,14 @@ public interface NotificationService {
 
     void createNotification(UserEntity userId, NotificationType type, String message, String link);
 
+    /**
+     * Gửi cùng một thông báo cho mọi user có role (vd. ADMIN): 1 câu INSERT nhiều dòng, WS đẩy sau commit.
+     *
+     * @param roleCode Mã role (RoleEntity.code)
+     * @return Số thông báo đã tạo
+     */
+    int notifyRole(String roleCode, NotificationType type, String message, String link);
+
     /**
      * Lấy danh sách thông báo của một người dùng.
      *
@@ -0,0 +1,178 @@
+package com.backend.be_realestate.service.cache;
+
+import com.backend.be_realestate.converter.PropertyCardHydrator;
+import com.backend.be_realestate.converter.PropertyMapper;
+import com.backend.be_realestate.modals.dto.AgentDTO;
+import com.backend.be_realestate.modals.dto.PropertyCardDTO;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache PropertyCardDTO đã map sẵn (ảnh đã sort, giá đã format, agent/category/district/city đã load).
+ * - Key = (id, version). version tăng mỗi khi tin thay đổi, nên bản map dở dang từ dữ liệu cũ
+ *   (đọc trước commit, ghi sau) chỉ nằm ở key cũ và không bao giờ được đọc lại.
+ * - Version chỉ giữ version-retention-minutes sau lần đổi cuối rồi trở về 0: lúc đó mọi bản ghi ở key cũ
+ *   (card ở đây, kết quả rerank theo versionOf) đã hết TTL nên không thể đọc nhầm. Retention phải lớn hơn
+ *   cache.card.ttl-minutes và ai.rerank.cache.ttl-minutes.
+ * - Giới hạn theo dung lượng ước tính (byte), không theo số phần tử.
+ * - postedAt ("3 ngày trước") tính lúc đọc, không cache.
+ */
+@Component
+@Slf4j
+public class PropertyCardCache {
+
+    private final PropertyMapper propertyMapper;
+    private final PropertyCardHydrator hydrator;
+    private final Cache<CardKey, CachedCard> cards;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Cache<Long, Long> versions;
+
+    public PropertyCardCache(PropertyMapper propertyMapper,
+                             PropertyCardHydrator hydrator,
+                             @Value("${cache.card.max-bytes:67108864}") long maxBytes,
+                             @Value("${cache.card.ttl-minutes:30}") long ttlMinutes,
+                             @Value("${cache.card.version-retention-minutes:60}") long versionRetentionMinutes) {
+        this.propertyMapper = propertyMapper;
+        this.hydrator = hydrator;
+        this.cards = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((CardKey k, CachedCard v) -> v.weight())
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes)) // chặn độ cũ của viewCount / thông tin agent
+                .recordStats()
+                .build();
+        // Chỉ hết hạn theo thời gian, không theo kích thước: bỏ sớm 1 version đang dùng sẽ đọc lại bản cũ
+        this.versions = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(Math.max(versionRetentionMinutes, ttlMinutes)))
+                .build();
+    }
+
+    /**
+     * Card theo danh sách id, giữ nguyên thứ tự; chỉ nạp các id chưa có trong cache (batch hydration, 2 query).
+     */
+    public List<PropertyCardDTO> getCards(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        Map<Long, CardKey> keys = new LinkedHashMap<>();
+        for (Long id : ids) keys.put(id, keyOf(id));
+
+        Map<CardKey, CachedCard> hits = cards.getAllPresent(keys.values());
+        List<Long> missing = new ArrayList<>();
+        keys.forEach((id, key) -> {
+            if (!hits.containsKey(key)) missing.add(id);
+        });
+
+        Map<Long, CachedCard> loaded = new HashMap<>();
+        if (!missing.isEmpty()) {
+            hydrator.hydrateCards(missing).forEach((id, h) -> {
+                CachedCard c = CachedCard.of(h.card(), h.postedAt());
+                cards.put(keys.get(id), c);
+                loaded.put(id, c);
+            });
+        }
+
+        List<PropertyCardDTO> out = new ArrayList<>(ids.size());
+        keys.forEach((id, key) -> {
+            CachedCard c = hits.containsKey(key) ? hits.get(key) : loaded.get(id);
+            if (c != null) out.add(c.render(propertyMapper));
+        });
+        log.debug("[CardCache] ids={} hits={} loaded={}", ids.size(), hits.size(), loaded.size());
+        return out;
+    }
+
+    public void evict(Collection<Long> ids) {
+        for (Long id : ids) {
+            Long old = versions.asMap().put(id, clock.incrementAndGet());
+            cards.invalidate(new CardKey(id, old == null ? 0L : old));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (event.getIds() != null) evict(event.getIds());
+    }
+
+    /** Version hiện tại của tin (0 nếu chưa từng đổi từ lúc khởi động); dùng làm khoá cho các cache phụ thuộc nội dung tin. */
+    public long versionOf(Long id) {
+        Long v = versions.getIfPresent(id);
+        return v == null ? 0L : v;
+    }
+
+    private CardKey keyOf(Long id) {
+        return new CardKey(id, versionOf(id));
+    }
+
+    record CardKey(long id, long version) {}
+
+    /**
+     * Bản mẫu bất biến; mỗi lần đọc trả bản sao để caller sửa thoải mái.
+     */
+    record CachedCard(PropertyCardDTO template, Timestamp postedAt, int weight) {
+
+        static CachedCard of(PropertyCardDTO dto, Timestamp postedAt) {
+            return new CachedCard(dto, postedAt, estimateBytes(dto));
+        }
+
+        PropertyCardDTO render(PropertyMapper mapper) {
+            PropertyCardDTO t = template;
+            PropertyCardDTO d = new PropertyCardDTO();
+            d.setId(t.getId());
+            d.setImage(t.getImage());
+            d.setTitle(t.getTitle());
+            d.setPrice(t.getPrice());
+            d.setPricePerM2(t.getPricePerM2());
+            d.setPostedAt(mapper.formatRelativeTime(postedAt));
+            d.setPhotos(t.getPhotos());
+            d.setAddressShort(t.getAddressShort());
+            d.setAddressFull(t.getAddressFull());
+            d.setArea(t.getArea());
+            d.setBed(t.getBed());
+            d.setBath(t.getBath());
+            if (t.getAgent() != null) {
+                AgentDTO a = new AgentDTO();
+                a.setName(t.getAgent().getName());
+                a.setAvatar(t.getAgent().getAvatar());
+                a.setPhone(t.getAgent().getPhone());
+                a.setZaloUrl(t.getAgent().getZaloUrl());
+                d.setAgent(a);
+            }
+            d.setType(t.getType());
+            d.setCategory(t.getCategory());
+            d.setDescription(t.getDescription());
+            d.setImages(t.getImages() != null ? List.copyOf(t.getImages()) : null);
+            d.setListing_type(t.getListing_type());
+            d.setViewCount(t.getViewCount());
+            d.setStatus(t.getStatus());
+            return d;
+        }
+
+        // Ước lượng thô: 2 byte/ký tự + overhead object cố định
+        private static int estimateBytes(PropertyCardDTO d) {
+            long chars = len(d.getImage()) + len(d.getTitle()) + len(d.getPrice()) + len(d.getPricePerM2())
+                    + len(d.getAddressShort()) + len(d.getAddressFull()) + len(d.getType()) + len(d.getCategory())
+                    + len(d.getDescription()) + len(d.getListing_type());
+            if (d.getAgent() != null) {
+                chars += len(d.getAgent().getName()) + len(d.getAgent().getAvatar())
+                        + len(d.getAgent().getPhone()) + len(d.getAgent().getZaloUrl());
+            }
+            if (d.getImages() != null) {
+                for (String url : d.getImages()) chars += len(url) + 24;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, 256 + chars * 2);
+        }
+
+        private static int len(String s) {
+            return s == null ? 0 : s.length() + 40;
+        }
+    }
+}
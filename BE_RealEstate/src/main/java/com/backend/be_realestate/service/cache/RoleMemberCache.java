@@ -0,0 +1,55 @@
+package com.backend.be_realestate.service.cache;
+
+import com.backend.be_realestate.modals.dto.userEvent.RoleMembersChangedEvent;
+import com.backend.be_realestate.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Danh sách thành viên theo role code (vd. ADMIN) cho fan-out thông báo, cache theo TTL.
+ * Bỏ cache ngay khi có {@link RoleMembersChangedEvent} (user mới / bị xoá / đổi email, phone).
+ */
+@Component
+public class RoleMemberCache {
+
+    /** Người nhận: id + principal WS (phải khớp Username lúc CONNECT: email, rồi phone, rồi id). */
+    public record Member(Long userId, String principalKey) {}
+
+    private final UserRepository userRepository;
+    private final Cache<String, List<Member>> members;
+
+    public RoleMemberCache(UserRepository userRepository,
+                           @Value("${notify.role-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userRepository = userRepository;
+        this.members = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(64)
+                .build();
+    }
+
+    public List<Member> get(String roleCode) {
+        return members.get(roleCode, code -> userRepository.findRoleMembers(code).stream()
+                .map(r -> new Member(r.getUserId(), principalKeyOf(r.getEmail(), r.getPhone(), r.getUserId())))
+                .toList());
+    }
+
+    public void invalidate(String roleCode) {
+        members.invalidate(roleCode);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onRoleMembersChanged(RoleMembersChangedEvent e) {
+        e.getRoleCodes().forEach(this::invalidate);
+    }
+
+    public static String principalKeyOf(String email, String phone, Long userId) {
+        return email != null ? email : phone != null ? phone : String.valueOf(userId);
+    }
+}
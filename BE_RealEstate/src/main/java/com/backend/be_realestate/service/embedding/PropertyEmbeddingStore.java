@@ -0,0 +1,181 @@
+package com.backend.be_realestate.service.embedding;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.repository.PropertyRepository;
+import com.backend.be_realestate.repository.PropertyRepository.EmbeddingTextRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Vector văn bản (tiêu đề + mô tả) của các tin PUBLISHED, lưu off-heap trong 1 vùng direct buffer
+ * (dim float / tin) => không làm phình heap / GC khi số tin lớn. Build lúc khởi động,
+ * tính lại các tin thay đổi khi có PropertyChangedEvent (tin không còn PUBLISHED thì bỏ).
+ */
+@Slf4j
+@Component
+public class PropertyEmbeddingStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final PropertyRepository propertyRepository;
+    private final TextEmbedder embedder;
+    private final int dim;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> slots = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private FloatBuffer vectors;
+    private int capacity;
+    private int used;
+
+    public PropertyEmbeddingStore(PropertyRepository propertyRepository, TextEmbedder embedder, MeterRegistry meterRegistry) {
+        this.propertyRepository = propertyRepository;
+        this.embedder = embedder;
+        this.dim = embedder.dim();
+        this.capacity = INITIAL_CAPACITY;
+        this.vectors = allocate(capacity);
+        Gauge.builder("ai.embedding.store.size", this, PropertyEmbeddingStore::size).register(meterRegistry);
+    }
+
+    // @Order(0): chạy trước các chỉ mục dùng vector văn bản (SimilarPropertyIndex)
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            long t0 = System.currentTimeMillis();
+            List<EmbeddingTextRow> rows = propertyRepository.findEmbeddingTextByStatus(PropertyStatus.PUBLISHED);
+            for (EmbeddingTextRow r : rows) put(r.getId(), embedder.embed(r.getTitle(), r.getDescription()));
+            log.info("[Embedding] built {} vectors (dim={}) in {}ms", rows.size(), dim, System.currentTimeMillis() - t0);
+        } catch (Exception e) {
+            log.error("[Embedding] build failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @Order(0)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPropertyChanged(PropertyChangedEvent e) {
+        if (e.getIds() == null || e.getIds().isEmpty()) return;
+        Set<Long> gone = new HashSet<>(e.getIds());
+        for (EmbeddingTextRow r : propertyRepository.findEmbeddingTextByIdIn(e.getIds())) {
+            if (r.getStatus() == PropertyStatus.PUBLISHED) {
+                put(r.getId(), embedder.embed(r.getTitle(), r.getDescription()));
+                gone.remove(r.getId());
+            }
+        }
+        gone.forEach(this::remove);
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Bản sao vector của tin, null nếu chưa có. */
+    public float[] get(Long id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) return null;
+            float[] out = new float[dim];
+            vectors.get(slot * dim, out);
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Cosine (= tích vô hướng, vector đã chuẩn hoá) giữa tin và q; NaN nếu chưa có vector. */
+    public double dot(Long id, float[] q) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) return Double.NaN;
+            int base = slot * dim;
+            double s = 0;
+            for (int i = 0; i < dim; i++) s += vectors.get(base + i) * q[i];
+            return s;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Vector cho các id; id chưa có (vd. tin đã lưu nhưng không còn PUBLISHED) thì đọc văn bản từ DB
+     * và tính tại chỗ, không lưu vào store.
+     */
+    public Map<Long, float[]> getOrCompute(Collection<Long> ids) {
+        Map<Long, float[]> out = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            if (id == null) continue;
+            float[] v = get(id);
+            if (v != null) out.put(id, v); else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            for (EmbeddingTextRow r : propertyRepository.findEmbeddingTextByIdIn(missing)) {
+                out.put(r.getId(), embedder.embed(r.getTitle(), r.getDescription()));
+            }
+        }
+        return out;
+    }
+
+    public void put(Long id, float[] v) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = freeSlots.isEmpty() ? used++ : freeSlots.pop();
+                if (slot >= capacity) grow();
+                slots.put(id, slot);
+            }
+            vectors.put(slot * dim, v, 0, dim);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot != null) freeSlots.push(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Gấp đôi vùng off-heap và chép dữ liệu cũ sang (gọi trong write lock)
+    private void grow() {
+        int newCapacity = capacity * 2;
+        FloatBuffer bigger = allocate(newCapacity);
+        bigger.put(0, vectors, 0, capacity * dim);
+        vectors = bigger;
+        capacity = newCapacity;
+    }
+
+    private FloatBuffer allocate(int slotsCount) {
+        return ByteBuffer.allocateDirect(slotsCount * dim * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+}
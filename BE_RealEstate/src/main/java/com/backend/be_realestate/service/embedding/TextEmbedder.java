@@ -0,0 +1,73 @@
+package com.backend.be_realestate.service.embedding;
+
+import com.backend.be_realestate.utils.VietnameseTextUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Vector hoá văn bản bằng hashed n-gram (không cần model / mạng, kết quả cố định giữa các lần chạy):
+ * bỏ dấu + tách từ giống chỉ mục tìm kiếm (VietnameseTextUtils), mỗi từ + các 3-gram ký tự của nó
+ * được băm vào 1 trong dim chiều.
+ * Vector trả về đã chuẩn hoá L2 => cosine = tích vô hướng.
+ */
+@Component
+public class TextEmbedder {
+
+    private static final int MAX_CHARS = 2000;
+    private static final float TITLE_WEIGHT = 2f;
+
+    private final int dim;
+
+    public TextEmbedder(@Value("${ai.embedding.dim:256}") int dim) {
+        this.dim = Math.max(16, dim);
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    /** Vector cho 1 tin: tiêu đề nặng gấp đôi mô tả. */
+    public float[] embed(String title, String description) {
+        float[] v = new float[dim];
+        accumulate(v, title, TITLE_WEIGHT);
+        accumulate(v, description, 1f);
+        return normalize(v);
+    }
+
+    public float[] embed(String text) {
+        float[] v = new float[dim];
+        accumulate(v, text, 1f);
+        return normalize(v);
+    }
+
+    private void accumulate(float[] v, String text, float weight) {
+        if (text == null || text.isBlank()) return;
+        if (text.length() > MAX_CHARS) text = text.substring(0, MAX_CHARS);
+        for (String word : VietnameseTextUtils.tokenize(VietnameseTextUtils.fold(text))) {
+            v[bucket(word.hashCode())] += weight;
+            String padded = "#" + word + "#";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                v[bucket(padded.substring(i, i + 3).hashCode() * 31 + 7)] += weight * 0.5f;
+            }
+        }
+    }
+
+    // fmix32 của murmur3 để rải đều String.hashCode trên các chiều
+    private int bucket(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, dim);
+    }
+
+    static float[] normalize(float[] v) {
+        double sum = 0;
+        for (float x : v) sum += x * x;
+        if (sum == 0) return v;
+        float inv = (float) (1 / Math.sqrt(sum));
+        for (int i = 0; i < v.length; i++) v[i] *= inv;
+        return v;
+    }
+}
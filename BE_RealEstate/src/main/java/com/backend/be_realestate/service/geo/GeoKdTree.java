@@ -0,0 +1,121 @@
+package com.backend.be_realestate.service.geo;
+
+import java.util.*;
+
+/**
+ * KD-tree 3 chiều trên toạ độ (lat, lng) đã đổi sang vector đơn vị trên mặt cầu.
+ * Khoảng cách dây cung (chord) đồng biến với khoảng cách haversine nên thứ tự k-NN giống hệt truy vấn SQL cũ.
+ * Bất biến sau khi build; cây lưu ngầm trong mảng (nút giữa của mỗi đoạn là gốc đoạn đó).
+ */
+final class GeoKdTree {
+
+    private final long[] ids;
+    private final double[] x, y, z;
+    private final Map<Long, Integer> slotOf;
+
+    private GeoKdTree(long[] ids, double[] x, double[] y, double[] z) {
+        this.ids = ids;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.slotOf = new HashMap<>(ids.length * 2);
+        for (int i = 0; i < ids.length; i++) slotOf.put(ids[i], i);
+    }
+
+    static GeoKdTree build(List<Object[]> rows) {
+        // rows: [id, lat, lng]
+        int n = rows.size();
+        long[] ids = new long[n];
+        double[][] pts = new double[n][];
+        for (int i = 0; i < n; i++) {
+            Object[] r = rows.get(i);
+            ids[i] = ((Number) r[0]).longValue();
+            pts[i] = toUnit(((Number) r[1]).doubleValue(), ((Number) r[2]).doubleValue());
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        arrange(order, pts, 0, n, 0);
+
+        long[] sIds = new long[n];
+        double[] sx = new double[n], sy = new double[n], sz = new double[n];
+        for (int i = 0; i < n; i++) {
+            int o = order[i];
+            sIds[i] = ids[o];
+            sx[i] = pts[o][0];
+            sy[i] = pts[o][1];
+            sz[i] = pts[o][2];
+        }
+        return new GeoKdTree(sIds, sx, sy, sz);
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    boolean contains(Long id) {
+        return slotOf.containsKey(id);
+    }
+
+    /** k điểm gần id nhất (không gồm chính nó), gần trước; rỗng nếu id không có toạ độ. */
+    List<Long> nearest(Long id, int k) {
+        Integer slot = slotOf.get(id);
+        if (slot == null || k <= 0) return List.of();
+        double qx = x[slot], qy = y[slot], qz = z[slot];
+
+        // Max-heap theo khoảng cách: giữ k điểm tốt nhất
+        PriorityQueue<double[]> best = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(b[0], a[0]));
+        search(0, ids.length, 0, qx, qy, qz, slot, k, best);
+
+        double[][] sorted = best.toArray(new double[0][]);
+        Arrays.sort(sorted, Comparator.comparingDouble(a -> a[0]));
+        List<Long> out = new ArrayList<>(sorted.length);
+        for (double[] e : sorted) out.add(ids[(int) e[1]]);
+        return out;
+    }
+
+    private void search(int from, int to, int axis, double qx, double qy, double qz,
+                        int self, int k, PriorityQueue<double[]> best) {
+        if (from >= to) return;
+        int mid = (from + to) >>> 1;
+        if (mid != self) {
+            double dx = x[mid] - qx, dy = y[mid] - qy, dz = z[mid] - qz;
+            double d2 = dx * dx + dy * dy + dz * dz;
+            if (best.size() < k) {
+                best.add(new double[]{d2, mid});
+            } else if (d2 < best.peek()[0]) {
+                best.poll();
+                best.add(new double[]{d2, mid});
+            }
+        }
+        double diff = coord(mid, axis) - (axis == 0 ? qx : axis == 1 ? qy : qz);
+        int next = (axis + 1) % 3;
+        // Nhánh chứa điểm truy vấn trước, nhánh kia chỉ khi mặt phẳng cắt còn gần hơn điểm xa nhất đang giữ
+        if (diff > 0) {
+            search(from, mid, next, qx, qy, qz, self, k, best);
+            if (best.size() < k || diff * diff < best.peek()[0]) search(mid + 1, to, next, qx, qy, qz, self, k, best);
+        } else {
+            search(mid + 1, to, next, qx, qy, qz, self, k, best);
+            if (best.size() < k || diff * diff < best.peek()[0]) search(from, mid, next, qx, qy, qz, self, k, best);
+        }
+    }
+
+    private double coord(int i, int axis) {
+        return axis == 0 ? x[i] : axis == 1 ? y[i] : z[i];
+    }
+
+    // Sắp đoạn [from, to) sao cho phần tử giữa là median theo trục, rồi đệ quy 2 nửa
+    private static void arrange(Integer[] order, double[][] pts, int from, int to, int axis) {
+        if (to - from <= 1) return;
+        Arrays.sort(order, from, to, Comparator.comparingDouble(i -> pts[i][axis]));
+        int mid = (from + to) >>> 1;
+        int next = (axis + 1) % 3;
+        arrange(order, pts, from, mid, next);
+        arrange(order, pts, mid + 1, to, next);
+    }
+
+    private static double[] toUnit(double lat, double lng) {
+        double la = Math.toRadians(lat), lo = Math.toRadians(lng);
+        double c = Math.cos(la);
+        return new double[]{c * Math.cos(lo), c * Math.sin(lo), Math.sin(la)};
+    }
+}
@@ -0,0 +1,72 @@
+package com.backend.be_realestate.service.geo;
+
+import com.backend.be_realestate.entity.CityEntity;
+import com.backend.be_realestate.repository.CityRepository;
+import com.backend.be_realestate.repository.DistrictRepository;
+import com.backend.be_realestate.repository.WardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Chỉ mục láng giềng địa lý cho tỉnh/thành, quận/huyện, phường/xã (KD-tree trên lat/lng),
+ * build lúc khởi động và làm mới định kỳ (dữ liệu địa giới gần như không đổi).
+ * Thay cho truy vấn haversine self-join + ORDER BY trên DB; chưa build xong thì city fallback về query cũ.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class GeoNeighbourIndex {
+
+    public enum Level { CITY, DISTRICT, WARD }
+
+    private final CityRepository cityRepository;
+    private final DistrictRepository districtRepository;
+    private final WardRepository wardRepository;
+
+    private volatile GeoKdTree cities;
+    private volatile GeoKdTree districts;
+    private volatile GeoKdTree wards;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("[GeoIndex] build failed, nearest cities fall back to DB: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${geo.index.refresh-ms:21600000}", fixedDelayString = "${geo.index.refresh-ms:21600000}")
+    public synchronized void rebuild() {
+        long t0 = System.currentTimeMillis();
+        GeoKdTree c = GeoKdTree.build(cityRepository.findAllLatLng());
+        GeoKdTree d = GeoKdTree.build(districtRepository.findAllLatLng());
+        GeoKdTree w = GeoKdTree.build(wardRepository.findAllLatLng());
+        this.cities = c;
+        this.districts = d;
+        this.wards = w;
+        log.info("[GeoIndex] built cities={} districts={} wards={} in {}ms",
+                c.size(), d.size(), w.size(), System.currentTimeMillis() - t0);
+    }
+
+    /** Id k tỉnh/thành gần cityId nhất (không gồm chính nó), gần trước. */
+    public List<Long> nearest(Long cityId, int k) {
+        GeoKdTree tree = cities;
+        if (tree == null || !tree.contains(cityId)) {
+            return cityRepository.findNearestCities(cityId, k).stream().map(CityEntity::getId).toList();
+        }
+        return tree.nearest(cityId, k);
+    }
+
+    public List<Long> nearest(Level level, Long id, int k) {
+        if (level == Level.CITY) return nearest(id, k);
+        GeoKdTree tree = level == Level.DISTRICT ? districts : wards;
+        return tree == null ? List.of() : tree.nearest(id, k);
+    }
+}
@@ -0,0 +1,137 @@
+package com.backend.be_realestate.service.impl;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import com.backend.be_realestate.service.IAIService;
+import com.backend.be_realestate.service.embedding.PropertyEmbeddingStore;
+import com.backend.be_realestate.service.embedding.TextEmbedder;
+import com.backend.be_realestate.service.reco.RerankScoring;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rerank không cần LLM (ai.rerank.provider=local): vector sở thích = trung bình vector các tin user đã lưu
+ * (+ keywords nếu có), aiScore = cosine với vector tiêu đề + mô tả của từng ứng viên.
+ * Chạy trong vài ms, không cần mạng; finalScore trộn với baseScore như provider OpenRouter.
+ * rerankAsync chấm trên pool riêng (ai.rerank.dispatch.concurrency.local luồng, hàng đợi có giới hạn)
+ * để không chạy đồng bộ trên luồng của RerankDispatcher; pool đầy thì future lỗi RejectedExecutionException.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "ai.rerank.provider", havingValue = "local")
+public class AIServiceLocalEmbeddingImpl implements IAIService {
+
+    private final PropertyEmbeddingStore store;
+    private final TextEmbedder embedder;
+    private final ThreadPoolExecutor executor;
+
+    public AIServiceLocalEmbeddingImpl(PropertyEmbeddingStore store,
+                                       TextEmbedder embedder,
+                                       @Value("${ai.rerank.dispatch.concurrency.local:8}") int threads,
+                                       @Value("${ai.rerank.dispatch.queue-capacity:1000}") int capacity) {
+        this.store = store;
+        this.embedder = embedder;
+        int n = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(n, n, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacity)), r -> {
+                    Thread t = new Thread(r, "rerank-local");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String providerName() {
+        return "local";
+    }
+
+    @Override
+    public List<ScoredProperty> rerank(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        if (candidates == null || candidates.isEmpty()) return List.of();
+
+        float[] q = preferenceVector(pref);
+        if (q == null) return RerankScoring.fallbackByBase(candidates, topK);
+        return score(q, candidates).stream().limit(topK).toList();
+    }
+
+    @Override
+    public CompletableFuture<List<ScoredProperty>> rerankAsync(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        if (candidates == null || candidates.isEmpty()) return CompletableFuture.completedFuture(List.of());
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                float[] q = preferenceVector(pref);
+                if (q == null) {
+                    return RerankScoring.fallbackByBase(candidates, candidates.size());
+                }
+                return score(q, candidates);
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Mọi ứng viên kèm aiScore / finalScore, sort theo finalScore
+    private List<ScoredProperty> score(float[] q, List<ScoredProperty> candidates) {
+
+        List<ScoredProperty> out = new ArrayList<>(candidates.size());
+        for (ScoredProperty sp : candidates) {
+            double cos = store.dot(sp.getId(), q);
+            if (Double.isNaN(cos)) cos = dot(embedder.embed(sp.getTitle(), sp.getDescription()), q);
+            double ai = Math.max(0, Math.min(1, cos));
+            out.add(sp.toBuilder()
+                    .aiScore(ai)
+                    .finalScore(RerankScoring.blend(sp.getBaseScore(), ai))
+                    .build());
+        }
+        return out.stream()
+                .sorted(Comparator.comparing(ScoredProperty::getFinalScore).reversed())
+                .toList();
+    }
+
+    // null nếu user chưa lưu tin nào và không có keyword
+    private float[] preferenceVector(UserPreference pref) {
+        int dim = embedder.dim();
+        float[] q = new float[dim];
+        int parts = 0;
+        if (pref.getSavedIds() != null && !pref.getSavedIds().isEmpty()) {
+            for (float[] v : store.getOrCompute(pref.getSavedIds()).values()) {
+                for (int i = 0; i < dim; i++) q[i] += v[i];
+                parts++;
+            }
+        }
+        if (pref.getKeywords() != null && !pref.getKeywords().isEmpty()) {
+            float[] kw = embedder.embed(String.join(" ", pref.getKeywords()));
+            for (int i = 0; i < dim; i++) q[i] += kw[i];
+            parts++;
+        }
+        if (parts == 0) return null;
+
+        double norm = 0;
+        for (float x : q) norm += x * x;
+        if (norm == 0) return null;
+        float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dim; i++) q[i] *= inv;
+        return q;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double s = 0;
+        for (int i = 0; i < a.length; i++) s += a[i] * b[i];
+        return s;
+    }
+}
@@ -1,28 +1,37 @@
 package com.backend.be_realestate.service.impl;
 
+import com.backend.be_realestate.modals.ai.RerankJob;
 import com.backend.be_realestate.modals.ai.ScoredProperty;
 import com.backend.be_realestate.modals.ai.UserPreference;
 import com.backend.be_realestate.service.IAIService;
+import com.backend.be_realestate.service.reco.RerankScoring;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
+// Provider mặc định; ai.rerank.provider=local thì dùng AIServiceLocalEmbeddingImpl
+@ConditionalOnExpression("!'${ai.rerank.provider:openrouter}'.equalsIgnoreCase('local')")
 public class AIServiceOpenRouterImpl implements IAIService {
 
-    private final RestTemplate restTemplate;
+    private final WebClient webClient = WebClient.builder().build();
     private final ObjectMapper mapper = new ObjectMapper();
 
     @Value("${ai.rerank.url}")
@@ -38,61 +47,145 @@ public class AIServiceOpenRouterImpl implements IAIService {
     @Value("${ai.rerank.timeoutMs:12000}")
     private int timeoutMs;
 
-    private static final double W_BASE = 0.35;
-    private static final double W_AI   = 0.65;
-
     @Override
     public List<ScoredProperty> rerank(UserPreference pref, List<ScoredProperty> candidates, int topK) {
-        if (candidates == null || candidates.isEmpty()) return candidates;
+        try {
+            return rerankAsync(pref, candidates, topK).join().stream().limit(topK).toList();
+        } catch (Exception e) {
+            log.warn("[AI-RERANK] Exception: {}", e.getMessage());
+            return RerankScoring.fallbackByBase(candidates, topK);
+        }
+    }
+
+    @Override
+    public String providerName() {
+        return "openrouter";
+    }
 
-        // Tiết kiệm token: chỉ gửi top theo baseScore
+    @Override
+    public CompletableFuture<List<ScoredProperty>> rerankAsync(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        if (candidates == null || candidates.isEmpty()) return CompletableFuture.completedFuture(candidates);
+
+        List<ScoredProperty> send = selectSend(candidates, topK);
+        String prompt = buildPrompt(pref, send, topK);
+
+        // Không chặn thread gọi: lỗi HTTP / timeout / parse => future lỗi, phía gọi tự fallback
+        return post(prompt)
+                .map(raw -> applyScores(send, parseScores(raw)))
+                .toFuture();
+    }
+
+    /**
+     * Gom nhiều user vào 1 chat completion: prompt chứa mảng requests (mỗi phần tử có job, user_pref,
+     * candidates), model trả {"results":[{"job":i,"scores":[...]}]} rồi tách lại cho từng job.
+     * Job không có trong kết quả => future của job đó lỗi (phía gọi fallback), các job khác không ảnh hưởng.
+     */
+    @Override
+    public List<CompletableFuture<List<ScoredProperty>>> rerankBatchAsync(List<RerankJob> jobs) {
+        if (jobs.size() <= 1) return IAIService.super.rerankBatchAsync(jobs);
+
+        List<List<ScoredProperty>> sends = new ArrayList<>(jobs.size());
+        List<Map<String, Object>> requests = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            RerankJob job = jobs.get(i);
+            List<ScoredProperty> send = job.getCandidates() == null ? List.of() : selectSend(job.getCandidates(), job.getTopK());
+            sends.add(send);
+            Map<String, Object> req = new LinkedHashMap<>();
+            req.put("job", i);
+            req.put("user_pref", prefContext(job.getPref(), job.getTopK()));
+            req.put("candidates", candidateRows(send));
+            requests.add(req);
+        }
+        log.debug("[AI-RERANK] batch jobs={} send={} model={}", jobs.size(),
+                sends.stream().mapToInt(List::size).sum(), model);
+
+        CompletableFuture<Map<Integer, List<AiRankItem>>> shared;
+        try {
+            String prompt = buildBatchPrompt(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(requests));
+            shared = post(prompt).map(this::parseBatchScores).toFuture();
+        } catch (JsonProcessingException e) {
+            shared = CompletableFuture.failedFuture(e);
+        }
+
+        List<CompletableFuture<List<ScoredProperty>>> out = new ArrayList<>(jobs.size());
+        for (int i = 0; i < jobs.size(); i++) {
+            final int idx = i;
+            RerankJob job = jobs.get(i);
+            out.add(shared.thenApply(byJob -> {
+                if (sends.get(idx).isEmpty()) return sends.get(idx);
+                List<AiRankItem> ranked = byJob.get(idx);
+                if (ranked == null || ranked.isEmpty()) throw new IllegalStateException("missing_job_result");
+                return applyScores(sends.get(idx), ranked);
+            }));
+        }
+        return out;
+    }
+
+    // Tiết kiệm token: chỉ gửi top theo baseScore
+    private static List<ScoredProperty> selectSend(List<ScoredProperty> candidates, int topK) {
         int maxSend = Math.min(Math.max(topK * 4, 32), Math.max(candidates.size(), topK));
-        List<ScoredProperty> send = candidates.stream()
+        return candidates.stream()
                 .sorted(Comparator.comparingDouble(ScoredProperty::getBaseScore).reversed())
                 .limit(maxSend)
                 .toList();
+    }
 
-        String prompt = buildPrompt(pref, send, topK);
-        log.info("[AI-RERANK] send={} topK={} model={}", send.size(), topK, model);
-        log.debug("[AI-RERANK] prompt:\n{}", prompt);
+    private Mono<String> post(String prompt) {
+        Map<String, Object> body = Map.of(
+                "model", model,
+                "temperature", 0.2,
+                "messages", List.of(
+                        Map.of("role", "system", "content",
+                                "Bạn là mô hình RERANK BĐS. Luôn trả về JSON hợp lệ, không thêm giải thích."),
+                        Map.of("role", "user", "content", prompt)
+                )
+        );
+        return webClient.post()
+                .uri(apiUrl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Authorization", "Bearer " + apiKey)
+                .header("HTTP-Referer", "https://your-domain.com")
+                .header("X-Title", "RealEstateX")
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(Duration.ofMillis(timeoutMs));
+    }
 
+    private String extractContent(String raw) throws JsonProcessingException {
+        OpenRouterResp parsed = mapper.readValue(raw, OpenRouterResp.class);
+        String content = Optional.ofNullable(parsed)
+                .filter(p -> p.getChoices()!=null && !p.getChoices().isEmpty())
+                .map(p -> p.getChoices().get(0))
+                .map(OpenRouterChoice::getMessage)
+                .map(OpenRouterMessage::getContent)
+                .orElse(null);
+
+        if (content == null || content.isBlank()) {
+            throw new IllegalStateException("empty_content");
+        }
+        return content;
+    }
+
+    private Map<Integer, List<AiRankItem>> parseBatchScores(String raw) {
         try {
-            Map<String, Object> body = Map.of(
-                    "model", model,
-                    "temperature", 0.2,
-                    "messages", List.of(
-                            Map.of("role", "system", "content",
-                                    "Bạn là mô hình RERANK BĐS. Luôn trả về JSON hợp lệ, không thêm giải thích."),
-                            Map.of("role", "user", "content", prompt)
-                    )
-            );
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-            headers.set("HTTP-Referer", "https://your-domain.com");
-            headers.set("X-Title", "RealEstateX");
-
-            ResponseEntity<String> res = restTemplate.exchange(
-                    apiUrl, HttpMethod.POST, new HttpEntity<>(body, headers), String.class);
-
-            if (!res.getStatusCode().is2xxSuccessful() || res.getBody() == null) {
-                log.warn("[AI-RERANK] HTTP {}: {}", res.getStatusCodeValue(), res.getBody());
-                return fallbackByBase(send, topK, "http_error");
+            BatchResp resp = mapper.readValue(extractContent(raw).trim(), BatchResp.class);
+            if (resp.getResults() == null || resp.getResults().isEmpty()) {
+                throw new IllegalStateException("empty_results");
             }
-
-            OpenRouterResp parsed = mapper.readValue(res.getBody(), OpenRouterResp.class);
-            String content = Optional.ofNullable(parsed)
-                    .filter(p -> p.getChoices()!=null && !p.getChoices().isEmpty())
-                    .map(p -> p.getChoices().get(0))
-                    .map(OpenRouterChoice::getMessage)
-                    .map(OpenRouterMessage::getContent)
-                    .orElse(null);
-
-            if (content == null || content.isBlank()) {
-                log.warn("[AI-RERANK] empty content");
-                return fallbackByBase(send, topK, "empty_content");
+            Map<Integer, List<AiRankItem>> byJob = new HashMap<>();
+            for (BatchResult r : resp.getResults()) {
+                if (r.getJob() != null && r.getScores() != null) byJob.put(r.getJob(), r.getScores());
             }
+            return byJob;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("parse_error: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private List<AiRankItem> parseScores(String raw) {
+        try {
+            String content = extractContent(raw);
 
             // Chấp nhận 2 format:
             //  (A) {"scores":[{"id":1,"score":0.9}, ...]}
@@ -113,55 +206,46 @@ public class AIServiceOpenRouterImpl implements IAIService {
             }
 
             if (ranked == null || ranked.isEmpty()) {
-                log.warn("[AI-RERANK] parsed scores empty");
-                return fallbackByBase(send, topK, "empty_scores");
-            }
-
-            log.info("[AI-RERANK] ai-order={}", ranked.stream().map(AiRankItem::getId).toList());
-
-            Map<Long, ScoredProperty> byId = send.stream()
-                    .collect(Collectors.toMap(ScoredProperty::getId, it -> it, (a,b)->a, LinkedHashMap::new));
-
-            // Gán aiScore + finalScore
-            for (AiRankItem it : ranked) {
-                ScoredProperty sp = byId.get(it.getId());
-                if (sp == null) continue;
-                double ai = clamp01(it.getScore());
-                sp.setAiScore(ai);
-                sp.setFinalScore(W_BASE * sp.getBaseScore() + W_AI * ai);
-            }
-            // Những item không có trong trả lời AI
-            for (ScoredProperty sp : byId.values()) {
-                if (sp.getFinalScore() == null) {
-                    sp.setAiScore(0.0);
-                    sp.setFinalScore(W_BASE * sp.getBaseScore());
-                }
+                throw new IllegalStateException("empty_scores");
             }
+            return ranked;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("parse_error: " + e.getOriginalMessage(), e);
+        }
+    }
 
-            List<ScoredProperty> out = byId.values().stream()
-                    .sorted(Comparator.comparing(ScoredProperty::getFinalScore).reversed())
-                    .limit(topK)
-                    .toList();
-
-            // Log bảng điểm
-            log.info("[AI-RERANK] topK results (id | base | ai | final)");
-            for (ScoredProperty sp : out) {
-                log.info("  {} | {} | {} | {}",
-                        sp.getId(),
-                        String.format("%.3f", sp.getBaseScore()),
-                        String.format("%.3f", sp.getAiScore()),
-                        String.format("%.3f", sp.getFinalScore())
-                );
+    // Chấm trên bản sao: hàm này chạy trên thread WebClient, có thể sau khi phía gọi đã quá budget
+    // và đang dùng chính các object ứng viên cho thứ tự fallback
+    // Trả về tất cả tin đã gửi (không cắt topK)
+    private List<ScoredProperty> applyScores(List<ScoredProperty> send, List<AiRankItem> ranked) {
+        Map<Long, ScoredProperty> byId = send.stream()
+                .collect(Collectors.toMap(ScoredProperty::getId,
+                        it -> it.toBuilder().aiScore(null).finalScore(null).build(),
+                        (a,b)->a, LinkedHashMap::new));
+
+        // Gán aiScore + finalScore
+        for (AiRankItem it : ranked) {
+            ScoredProperty sp = byId.get(it.getId());
+            if (sp == null) continue;
+            double ai = clamp01(it.getScore());
+            sp.setAiScore(ai);
+            sp.setFinalScore(RerankScoring.blend(sp.getBaseScore(), ai));
+        }
+        // Những item không có trong trả lời AI
+        for (ScoredProperty sp : byId.values()) {
+            if (sp.getFinalScore() == null) {
+                sp.setAiScore(0.0);
+                sp.setFinalScore(RerankScoring.blend(sp.getBaseScore(), 0.0));
             }
-            return out;
-
-        } catch (Exception e) {
-            log.warn("[AI-RERANK] Exception: {}", e.getMessage(), e);
-            return fallbackByBase(send, topK, "exception");
         }
+
+        // Bảng điểm base / ai / final: xem trace gợi ý (RecoTracer), không log mỗi request
+        return byId.values().stream()
+                .sorted(Comparator.comparing(ScoredProperty::getFinalScore).reversed())
+                .toList();
     }
 
-    private String buildPrompt(UserPreference pref, List<ScoredProperty> items, int limit) {
+    private static Map<String, Object> prefContext(UserPreference pref, int limit) {
         Map<String, Object> ctx = new LinkedHashMap<>();
         ctx.put("user_id", pref.getUserId());
         ctx.put("limit", limit);
@@ -184,7 +268,10 @@ public class AIServiceOpenRouterImpl implements IAIService {
         // History / text signals
         ctx.put("saved_ids", pref.getSavedIds());
         ctx.put("keywords", pref.getKeywords());
+        return ctx;
+    }
 
+    private static List<Map<String, Object>> candidateRows(List<ScoredProperty> items) {
         List<Map<String, Object>> cands = new ArrayList<>();
         for (ScoredProperty p : items) {
             Map<String, Object> m = new LinkedHashMap<>();
@@ -198,6 +285,37 @@ public class AIServiceOpenRouterImpl implements IAIService {
             m.put("base_score", p.getBaseScore());
             cands.add(m);
         }
+        return cands;
+    }
+
+    // Cùng luật xếp hạng như buildPrompt nhưng cho nhiều request độc lập trong 1 lần gọi
+    private static String buildBatchPrompt(String requestsJson) {
+        return """
+        You are a reranking model for real-estate listings.
+
+        You receive an array "requests". Each request is independent and has:
+        - job: an integer id of the request.
+        - user_pref: JSON with that user's preferences and constraints (limit = how many items matter).
+        - candidates: an array of listing objects for that user only.
+
+        For EACH request, score its candidates in [0, 1] (higher = more relevant) using ONLY its own user_pref:
+        1) City: city_id == anchor_city_id first, then near_city_ids, then preferred_city_ids / fav_city_ids.
+        2) Type: prefer type in fav_types.
+        3) Price / area: prefer values inside [price_min, price_max] and [area_min, area_max] when given.
+        4) Text: prefer title/desc matching keywords; favor listings similar to saved_ids.
+        5) base_score is a weak prior; you MAY override it.
+
+        Output ONLY valid JSON, no explanation, exactly in this format, with one entry per job:
+        {"results":[{"job":<int>,"scores":[{"id":<Long>,"score":<0..1>}, ...]}, ...]}
+
+        requests:
+        %s
+        """.formatted(requestsJson);
+    }
+
+    private String buildPrompt(UserPreference pref, List<ScoredProperty> items, int limit) {
+        Map<String, Object> ctx = prefContext(pref, limit);
+        List<Map<String, Object>> cands = candidateRows(items);
 
         try {
             String ctxJson   = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(ctx);
@@ -260,15 +378,6 @@ public class AIServiceOpenRouterImpl implements IAIService {
         }
     }
 
-
-    private List<ScoredProperty> fallbackByBase(List<ScoredProperty> items, int k, String reason) {
-        log.info("[AI-RERANK] fallback by base (reason={})", reason);
-        return items.stream()
-                .sorted(Comparator.comparing(ScoredProperty::getBaseScore).reversed())
-                .limit(k)
-                .toList();
-    }
-
     private static double clamp01(Double v) {
         if (v == null) return 0.0;
         if (v.isNaN() || v.isInfinite()) return 0.0;
@@ -285,4 +394,9 @@ public class AIServiceOpenRouterImpl implements IAIService {
 
     @Data
     public static class AiRankItem { private Long id; private Double score; }
+
+    @Data @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BatchResp { private List<BatchResult> results; }
+    @Data @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BatchResult { private Integer job; private List<AiRankItem> scores; }
 }
@@ -9,19 +9,25 @@ import com.backend.be_realestate.exceptions.OutOfStockException;
 import com.backend.be_realestate.exceptions.ResourceNotFoundException;
 import com.backend.be_realestate.modals.dto.PropertyAuditDTO;
 import com.backend.be_realestate.modals.dto.PropertyDTO;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
 import com.backend.be_realestate.modals.property.ApprovePropertyRequest;
 import com.backend.be_realestate.modals.property.RejectPropertyRequest;
 import com.backend.be_realestate.modals.request.AdminPropertyBulkReq;
+import com.backend.be_realestate.modals.request.PageCursor;
 import com.backend.be_realestate.modals.response.PropertyShortResponse;
+import com.backend.be_realestate.modals.response.SliceResponse;
 import com.backend.be_realestate.modals.response.admin.AdminPropertyStatsResponse;
 import com.backend.be_realestate.repository.*;
+import com.backend.be_realestate.repository.specification.PropertySpecification;
 import com.backend.be_realestate.service.AdminPropertyService;
 import com.backend.be_realestate.service.NotificationService;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -47,6 +53,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
     private final PropertyImage propertyImageRepository;
     private final NotificationServiceImpl notificationService;
     private final ReportRepository reportRepository;
+    private final ApplicationEventPublisher publisher;
 
     @Override
     @Transactional
@@ -101,6 +108,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
              reportRepository.deleteAll(oldReports);
          }
         PropertyEntity savedProperty = propertyRepository.save(p);
+        publisher.publishEvent(PropertyChangedEvent.of(savedProperty.getId()));
 
         try {
             log.info("[PropertyService] Tin đăng {} đã được DUYỆT, đang gửi thông báo...", savedProperty.getId());
@@ -148,6 +156,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
 
         p.setStatus(PropertyStatus.REJECTED);
         propertyRepository.save(p);
+        publisher.publishEvent(PropertyChangedEvent.of(p.getId()));
 
         saveAudit(p, adminId, "REJECTED", req.getReason());
         return toShort(p);
@@ -161,6 +170,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
         if (p.getStatus() != PropertyStatus.HIDDEN) {
             p.setStatus(PropertyStatus.HIDDEN);
             propertyRepository.save(p);
+            publisher.publishEvent(PropertyChangedEvent.of(p.getId()));
             saveAudit(p, adminId, "HIDDEN", "Hidden by admin");
         }
         return toShort(p);
@@ -178,6 +188,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
 
         p.setStatus(PropertyStatus.PUBLISHED);
         propertyRepository.save(p);
+        publisher.publishEvent(PropertyChangedEvent.of(p.getId()));
         saveAudit(p, adminId, "UNHIDDEN", "Unhidden by admin");
         return toShort(p);
     }
@@ -185,9 +196,14 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
     @Override
     @Transactional
     public void hardDelete(Long propertyId) {
+        // city / category trước khi xoá: sau commit không còn dòng để tra
+        var before = propertyRepository.findSearchRowsByIdIn(List.of(propertyId));
         auditRepo.deleteByPropertyId(propertyId);
 
         propertyRepository.deleteById(propertyId);
+        publisher.publishEvent(before.isEmpty()
+                ? PropertyChangedEvent.of(propertyId)
+                : PropertyChangedEvent.of(propertyId, before.get(0).getCityId(), before.get(0).getCategorySlug()));
     }
 
     @Override
@@ -254,6 +270,47 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
     @Override
     public Page<PropertyDTO> search(int page, int size, String q, Long categoryId, String listingType, String status) {
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "postedAt"));
+        // Admin KHÔNG được xem DRAFT
+        if (isDraftStatus(status)) return Page.empty(pageable);
+
+        // ====== QUERY DB ======
+        Page<PropertyEntity> pageData = propertyRepository.findAll(buildSearchSpec(q, categoryId, listingType, status), pageable);
+        return new PageImpl<>(toAdminDtos(pageData.getContent()), pageable, pageData.getTotalElements());
+    }
+
+    @Override
+    public SliceResponse<PropertyDTO> scroll(String cursor, int size, String q, Long categoryId, String listingType, String status) {
+        if (isDraftStatus(status)) {
+            return SliceResponse.<PropertyDTO>builder().content(List.of()).size(size).hasNext(false).build();
+        }
+
+        // Keyset (postedAt desc, id desc): lấy size+1 dòng để biết còn trang sau, không COUNT(*)
+        Specification<PropertyEntity> spec = buildSearchSpec(q, categoryId, listingType, status)
+                .and(PropertySpecification.seekAfter(PageCursor.decode(cursor)));
+        Sort sort = Sort.by(Sort.Direction.DESC, "postedAt").and(Sort.by(Sort.Direction.DESC, "id"));
+        List<PropertyEntity> rows = propertyRepository.findBy(spec, fq -> fq.sortBy(sort).limit(size + 1).all());
+
+        boolean hasNext = rows.size() > size;
+        List<PropertyEntity> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            PropertyEntity last = page.get(page.size() - 1);
+            Long postedAt = last.getPostedAt() != null ? last.getPostedAt().getTime() : null;
+            nextCursor = PageCursor.of(null, postedAt, last.getId()).encode();
+        }
+        return SliceResponse.<PropertyDTO>builder()
+                .content(toAdminDtos(page))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static boolean isDraftStatus(String status) {
+        return status != null && !status.isBlank() && PropertyStatus.DRAFT.name().equals(status);
+    }
+
+    private Specification<PropertyEntity> buildSearchSpec(String q, Long categoryId, String listingType, String status) {
         Specification<PropertyEntity> spec = (root, query, cb) -> cb.conjunction();
 
         // ====== KEYWORD (tokenized) ======
@@ -321,10 +378,6 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
         if (status != null && !status.isBlank()) {
             try {
                 PropertyStatus statusEnum = PropertyStatus.valueOf(status);
-                          // Admin KHÔNG được xem DRAFT:
-                                  if (statusEnum == PropertyStatus.DRAFT) {
-                                        return Page.empty(pageable);
-                                  }
                 spec = spec.and((root, cq, cb) -> cb.equal(root.get("status"), statusEnum));
             } catch (IllegalArgumentException ex) {
                 throw new IllegalArgumentException("Invalid status: " + status);
@@ -334,11 +387,13 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
                            spec = spec.and((root, cq, cb) -> cb.notEqual(root.get("status"), PropertyStatus.DRAFT));
         }
 
-        // ====== QUERY DB ======
-        Page<PropertyEntity> pageData = propertyRepository.findAll(spec, pageable);
+        return spec;
+    }
 
+    // Batch load ảnh + audit cho cả trang rồi map sang DTO
+    private List<PropertyDTO> toAdminDtos(List<PropertyEntity> rows) {
         // ====== BATCH LOAD IMAGES ======
-        List<Long> ids = pageData.getContent().stream().map(PropertyEntity::getId).toList();
+        List<Long> ids = rows.stream().map(PropertyEntity::getId).toList();
         Map<Long, List<String>> imageMap = new HashMap<>();
         if (!ids.isEmpty()) {
             List<PropertyImageEntity> allImages = propertyImageRepository.findAllByPropertyIdIn(ids);
@@ -362,7 +417,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
             }
         }
 
-        return pageData.map(e -> {
+        return rows.stream().map(e -> {
             PropertyDTO dto = propertyConverter.toDto(e);
             dto.setImageUrls(imageMap.getOrDefault(e.getId(), List.of()));
             // Map audits -> DTO
@@ -383,7 +438,7 @@ public class AdminPropertyServiceImpl implements AdminPropertyService {
             dto.setRejectReason(latestRejectReason.get(e.getId()));
 
             return dto;
-        });
+        }).toList();
     }
 
     @Override
@@ -4,12 +4,14 @@ import com.backend.be_realestate.converter.UserConverter;
 import com.backend.be_realestate.entity.UserEntity;
 import com.backend.be_realestate.enums.NotificationType;
 import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.modals.dto.userEvent.RoleMembersChangedEvent;
 import com.backend.be_realestate.modals.response.AdminUserResponse;
 import com.backend.be_realestate.repository.PropertyRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.EmailService;
 import com.backend.be_realestate.service.IAdminUserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -29,6 +31,7 @@ public class AdminUserServiceImpl implements IAdminUserService {
     private final NotificationServiceImpl notificationService;
     private final EmailService emailService;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher publisher;
     @Override
     @Transactional(readOnly = true)
     public Page<AdminUserResponse> search(String q,
@@ -127,9 +130,11 @@ public class AdminUserServiceImpl implements IAdminUserService {
     @Override
     @Transactional
     public void deleteHard(Long id) {
-        if (!userRepo.existsById(id))
-            throw new IllegalArgumentException("Người dùng không tồn tại");
+        UserEntity u = userRepo.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Người dùng không tồn tại"));
+        RoleMembersChangedEvent changed = RoleMembersChangedEvent.of(u);
         userRepo.deleteById(id);
+        publisher.publishEvent(changed);
     }
 
     @Override
@@ -7,13 +7,25 @@ import com.backend.be_realestate.enums.NotificationType;
 import com.backend.be_realestate.modals.dto.NotificationDTO;
 import com.backend.be_realestate.repository.NotificationRepository;
 import com.backend.be_realestate.service.NotificationService;
+import com.backend.be_realestate.service.cache.RoleMemberCache;
+import com.backend.be_realestate.service.ws.WsMessage;
+import com.backend.be_realestate.service.ws.WsOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -22,8 +34,15 @@ import java.util.List;
 public class NotificationServiceImpl implements NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final WsOutbox wsOutbox;
     private final NotificationConverter notificationConverter;
+    private final RoleMemberCache roleMemberCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Số dòng tối đa trong 1 câu INSERT nhiều VALUES
+    private static final int INSERT_CHUNK = 500;
+    private static final String INSERT_PREFIX =
+            "INSERT INTO notifications (user_id, message, link, is_read, type, created_at) VALUES ";
 
     @Override
     public void createNotification(UserEntity user, NotificationType type, String message, String link) {
@@ -47,18 +66,66 @@ public class NotificationServiceImpl implements NotificationService {
             return;
         }
 
-        // 3) Đổi sang DTO (có receiverId) và gửi đúng channel user
-        try {
-            NotificationDTO dto = notificationConverter.toDTO(saved);
-            messagingTemplate.convertAndSendToUser(
-                    principalKey,
-                    "/queue/notifications",
-                    dto
-            );
-            log.info("[Notify] WS -> userKey={} dtoId={}", principalKey, dto.getId());
-        } catch (Exception e) {
-            log.error("[Notify] Lỗi gửi WS (userId={}): {}", user.getUserId(), e.getMessage(), e);
+        // 3) Đổi sang DTO (có receiverId) và gửi đúng channel user (qua outbox: chỉ gửi sau commit)
+        wsOutbox.toUser(principalKey, "/queue/notifications", notificationConverter.toDTO(saved));
+    }
+
+    /**
+     * Fan-out cho mọi user có role: người nhận lấy từ RoleMemberCache, INSERT nhiều dòng trong 1 câu,
+     * WS gửi sau commit (WsOutbox) => transaction nghiệp vụ không phụ thuộc số admin.
+     */
+    @Override
+    public int notifyRole(String roleCode, NotificationType type, String message, String link) {
+        List<RoleMemberCache.Member> members = roleMemberCache.get(roleCode);
+        if (members.isEmpty()) {
+            log.warn("[Notify] Không có user nào với role '{}' để gửi thông báo", roleCode);
+            return 0;
+        }
+        Instant now = Instant.now();
+        List<WsMessage> messages = new ArrayList<>(members.size());
+        for (int from = 0; from < members.size(); from += INSERT_CHUNK) {
+            List<RoleMemberCache.Member> chunk = members.subList(from, Math.min(from + INSERT_CHUNK, members.size()));
+            List<Long> ids = insertChunk(chunk, type, message, link, Timestamp.from(now));
+            for (int i = 0; i < chunk.size(); i++) {
+                messages.add(WsMessage.toUser(chunk.get(i).principalKey(), "/queue/notifications", NotificationDTO.builder()
+                        .id(i < ids.size() ? ids.get(i) : null)
+                        .receiverId(chunk.get(i).userId())
+                        .type(type.name())
+                        .message(message)
+                        .link(link)
+                        .isRead(false)
+                        .createdAt(now)
+                        .build()));
+            }
+        }
+        wsOutbox.send(messages);
+        return messages.size();
+    }
+
+    // id sinh ra theo đúng thứ tự các dòng VALUES
+    private List<Long> insertChunk(List<RoleMemberCache.Member> chunk, NotificationType type,
+                                   String message, String link, Timestamp createdAt) {
+        String sql = INSERT_PREFIX + String.join(",", Collections.nCopies(chunk.size(), "(?, ?, ?, ?, ?, ?)"));
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            int p = 1;
+            for (RoleMemberCache.Member m : chunk) {
+                ps.setLong(p++, m.userId());
+                ps.setString(p++, message);
+                ps.setString(p++, link);
+                ps.setBoolean(p++, false);
+                ps.setString(p++, type.name());
+                ps.setTimestamp(p++, createdAt);
+            }
+            return ps;
+        }, keys);
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Map<String, Object> row : keys.getKeyList()) {
+            Object id = row.values().iterator().next();
+            ids.add(id instanceof Number n ? n.longValue() : null);
         }
+        return ids;
     }
 
     @Override
@@ -724,20 +724,12 @@ public class OrderServiceImpl implements OrderService {
                             "/dashboard/transactions?order_id=" + order.getId()
                     );
 
-                    List<UserEntity> admins = userRepository.findByRoleName("ADMIN");
                     String messageToAdmin = "Đơn hàng #" + order.getId() +
                             " vừa được thanh toán thành công bởi " + user.getEmail() +
                             " với tổng tiền " + order.getTotal() + " VND.";
                     String linkToAdmin = "/admin/orders/" + order.getId();
 
-                    for (UserEntity admin : admins) {
-                        notificationService.createNotification(
-                                admin,
-                                NotificationType.NEW_ORDER_PAID,
-                                messageToAdmin,
-                                linkToAdmin
-                        );
-                    }
+                    notificationService.notifyRole("ADMIN", NotificationType.NEW_ORDER_PAID, messageToAdmin, linkToAdmin);
                     log.info("Đã gửi thông báo thanh toán (PACKAGE) thành công cho user và admin.");
 
                 } catch (Exception e) {
@@ -14,19 +14,35 @@ import com.backend.be_realestate.modals.dto.PropertyCardDTO;
 import com.backend.be_realestate.modals.dto.PropertyDTO;
 import com.backend.be_realestate.modals.dto.PropertyDetailDTO;
 import com.backend.be_realestate.modals.dto.UserFavoriteDTO;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
 import com.backend.be_realestate.modals.dto.propertyEvent.PropertyEvent;
 import com.backend.be_realestate.modals.dto.propertydashboard.PendingPropertyDTO;
 import com.backend.be_realestate.modals.request.CreatePropertyRequest;
+import com.backend.be_realestate.modals.request.PageCursor;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
 import com.backend.be_realestate.modals.response.CreatePropertyResponse;
 import com.backend.be_realestate.modals.response.PageResponse;
 import com.backend.be_realestate.modals.response.PropertyActionResponse;
+import com.backend.be_realestate.modals.response.SliceResponse;
 import com.backend.be_realestate.modals.response.admin.PropertyKpiResponse;
 import com.backend.be_realestate.repository.*;
 import com.backend.be_realestate.repository.specification.PropertySpecification;
-import com.backend.be_realestate.service.IAIService;
 import com.backend.be_realestate.service.IPropertyService;
 import com.backend.be_realestate.service.IPropertyTrackingService;
+import com.backend.be_realestate.service.cache.PropertyCardCache;
+import com.backend.be_realestate.service.geo.GeoNeighbourIndex;
+import com.backend.be_realestate.service.reco.CandidateBatch;
+import com.backend.be_realestate.service.reco.CandidateScorer;
+import com.backend.be_realestate.service.reco.RecoTrace;
+import com.backend.be_realestate.service.reco.RecoTracer;
+import com.backend.be_realestate.service.reco.RerankPipeline;
+import com.backend.be_realestate.service.reco.UserPreferenceStore;
+import com.backend.be_realestate.service.search.PropertySearchIndex;
+import com.backend.be_realestate.service.search.SearchCountCache;
+import com.backend.be_realestate.service.similar.SimilarPropertyIndex;
 import com.backend.be_realestate.utils.RecommendationSpec;
+import com.backend.be_realestate.service.ws.BroadcastCoalescer;
+import com.backend.be_realestate.service.ws.WsOutbox;
 import io.micrometer.common.lang.Nullable;
 import jakarta.persistence.EntityNotFoundException;
 import jakarta.persistence.criteria.From;
@@ -41,7 +57,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
@@ -76,12 +91,20 @@ public class PropertyServiceImpl implements IPropertyService {
     private final NotificationServiceImpl notificationService;
     private final SavedPropertyRepository savedPropertyRepository;
     private final UserConverter userConverter;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final IAIService aiService;
+    private final WsOutbox wsOutbox;
+    private final RerankPipeline rerankPipeline;
+    private final GeoNeighbourIndex geoIndex;
+    private final CandidateScorer candidateScorer;
+    private final RecoTracer recoTracer;
+    private final SimilarPropertyIndex similarIndex;
     private static final ZoneId ZONE_VN = ZoneId.of("Asia/Ho_Chi_Minh");
     private static final String TZ_OFFSET = "+07:00";
     private final IPropertyTrackingService trackingService;
     private final HttpServletRequest request;
+    private final PropertySearchIndex searchIndex;
+    private final SearchCountCache searchCountCache;
+    private final PropertyCardCache cardCache;
+    private final UserPreferenceStore preferenceStore;
 
     /* =========================================================
      * PUBLIC LIST / SEARCH (HOME)
@@ -96,56 +119,83 @@ public class PropertyServiceImpl implements IPropertyService {
     @Override
     public Page<PropertyCardDTO> searchProperties(Map<String, String> params) {
         Pageable pageable = createPageableFromParams(params);
+        PropertySearchCriteria criteria = PropertySearchCriteria.fromParams(params);
+
+        // Lọc + xếp hạng hoàn toàn in-memory, DB chỉ dùng để hydrate đúng 1 trang id
+        if (searchIndex.isReady() && searchIndex.supportsSort(pageable.getSort())) {
+            // Có keyword mà không truyền sort -> xếp theo điểm liên quan (addrStarts/titleStarts/addr/title)
+            Sort sort = (criteria.hasKeyword() && !params.containsKey("sort")) ? Sort.unsorted() : pageable.getSort();
+            int offset = (int) Math.min(pageable.getOffset(), Integer.MAX_VALUE);
+            var result = searchIndex.search(criteria, sort, offset, pageable.getPageSize());
+            return new PageImpl<>(hydrateCards(result.ids()), pageable, result.total());
+        }
 
-        String keyword      = params.get("keyword");
-        String propertyType = params.get("type");
-        String categorySlug = params.get("category");
-        Double priceFrom    = params.get("priceFrom") != null ? Double.parseDouble(params.get("priceFrom")) : null;
-        Double priceTo      = params.get("priceTo")   != null ? Double.parseDouble(params.get("priceTo"))   : null;
-        Float areaFrom      = params.get("areaFrom")  != null ? Float.parseFloat(params.get("areaFrom"))    : null;
-        Float areaTo        = params.get("areaTo")    != null ? Float.parseFloat(params.get("areaTo"))      : null;
-        Long cityId         = params.get("cityId")    != null ? Long.parseLong(params.get("cityId"))        : null;
-
-        // 🔹 MỚI: phòng ngủ, phòng tắm, pháp lý, tiện ích
-        Integer bedroomsFrom  = params.get("bedroomsFrom")  != null ? Integer.parseInt(params.get("bedroomsFrom"))  : null;
-        Integer bathroomsFrom = params.get("bathroomsFrom") != null ? Integer.parseInt(params.get("bathroomsFrom")) : null;
-        String legalType      = params.get("legalType"); // "Sổ hồng" / "Sổ đỏ" ...
-
-        List<Long> amenityIds = null;
-        String amenitiesRaw = params.get("amenities"); // VD: "1,3,5"
-        if (amenitiesRaw != null && !amenitiesRaw.isBlank()) {
-            amenityIds = Arrays.stream(amenitiesRaw.split(","))
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .map(Long::parseLong)
-                    .toList();
+        // Fallback DB: chỉ lấy trang dữ liệu (slice, không COUNT(*)), tổng số lấy từ cache đếm
+        Slice<PropertyEntity> slice = propertyRepository.findBy(
+                PropertySpecification.forSearch(criteria), q -> q.sortBy(pageable.getSort()).slice(pageable));
+        PropertySearchCriteria countKey = criteria.normalized();
+        long seen = pageable.getOffset() + slice.getNumberOfElements();
+        long total;
+        if (!slice.hasNext() && (slice.getNumberOfElements() > 0 || pageable.getOffset() == 0)) {
+            total = seen; // trang cuối => tổng chính xác
+            searchCountCache.putExact(countKey, total);
+        } else {
+            total = searchCountCache.estimate(countKey, seen + (slice.hasNext() ? 1 : 0));
         }
+        List<Long> ids = slice.getContent().stream().map(PropertyEntity::getId).toList();
+        return new PageImpl<>(cardCache.getCards(ids), pageable, total);
+    }
+
+    /* =========================================================
+     * SEARCH (KEYSET / CURSOR) – không chạy COUNT(*), không OFFSET
+     * ========================================================= */
+    private static final Sort SEEK_SORT = Sort.by(DESC, "postedAt").and(Sort.by(DESC, "id"));
 
-        boolean matchAll = !"any".equalsIgnoreCase(params.getOrDefault("kwMode", "all"));
+    @Override
+    public SliceResponse<PropertyCardDTO> scrollProperties(Map<String, String> params) {
+        int size = Integer.parseInt(params.getOrDefault("size", "10"));
+        PageCursor after = PageCursor.decode(params.get("cursor"));
+        PropertySearchCriteria criteria = PropertySearchCriteria.fromParams(params);
+
+        if (searchIndex.isReady()) {
+            var result = searchIndex.scroll(criteria, after, size);
+            return SliceResponse.<PropertyCardDTO>builder()
+                    .content(hydrateCards(result.ids()))
+                    .size(size)
+                    .hasNext(result.nextCursor() != null)
+                    .nextCursor(result.nextCursor() != null ? result.nextCursor().encode() : null)
+                    .build();
+        }
 
-        Specification<PropertyEntity> spec = Specification
-                .where(PropertySpecification.isPublished())
-                .and(PropertySpecification.notExpired()); // optional: lọc tin hết hạn
+        // Fallback DB: sort tường minh (postedAt, id) ghi đè thứ tự theo điểm của hasKeyword
+        Specification<PropertyEntity> spec = PropertySpecification.forSearch(criteria).and(PropertySpecification.seekAfter(after));
+        List<PropertyEntity> rows = propertyRepository.findBy(spec, q -> q.sortBy(SEEK_SORT).limit(size + 1).all());
+        return toSlice(rows, size, page -> cardCache.getCards(page.stream().map(PropertyEntity::getId).toList()));
+    }
 
-        if (cityId != null) {
-            spec = spec.and(PropertySpecification.hasCity(cityId));
-        } else {
-            spec = spec.and(PropertySpecification.hasKeyword(keyword, matchAll));
+    // Lấy size+1 dòng: có dòng thừa => còn trang sau, cursor = dòng cuối của trang hiện tại
+    private static <T> SliceResponse<T> toSlice(List<PropertyEntity> rows, int size,
+                                                java.util.function.Function<List<PropertyEntity>, List<T>> pageMapper) {
+        boolean hasNext = rows.size() > size;
+        List<PropertyEntity> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasNext) {
+            PropertyEntity last = page.get(page.size() - 1);
+            Long postedAt = last.getPostedAt() != null ? last.getPostedAt().getTime() : null;
+            nextCursor = PageCursor.of(null, postedAt, last.getId()).encode();
         }
+        return SliceResponse.<T>builder()
+                .content(pageMapper.apply(page))
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
 
-        spec = spec
-                .and(PropertySpecification.hasPropertyType(propertyType))
-                .and(PropertySpecification.hasCategorySlug(categorySlug))
-                .and(PropertySpecification.priceBetween(priceFrom, priceTo))
-                .and(PropertySpecification.areaBetween(areaFrom, areaTo))
-                // 🔹 các điều kiện mới
-                .and(PropertySpecification.hasMinBedrooms(bedroomsFrom))
-                .and(PropertySpecification.hasMinBathrooms(bathroomsFrom))
-                .and(PropertySpecification.hasLegalStatus(legalType))
-                .and(PropertySpecification.hasAnyAmenities(amenityIds));
-
-        Page<PropertyEntity> resultPage = propertyRepository.findAll(spec, pageable);
-        return resultPage.map(propertyMapper::toPropertyCardDTO);
+    // Card cho 1 trang id, giữ nguyên thứ tự đã xếp hạng (chỉ nạp DB các id chưa có trong cache)
+    private List<PropertyCardDTO> hydrateCards(List<Long> ids) {
+        return cardCache.getCards(ids);
     }
 
 
@@ -238,22 +288,16 @@ public class PropertyServiceImpl implements IPropertyService {
         }
 
         var saved = propertyRepository.save(property);
+        publisher.publishEvent(PropertyChangedEvent.of(saved.getId()));
 
         // notify CHỈ khi publish → PENDING_REVIEW
         if (mode == SubmitMode.PUBLISHED && saved.getStatus() == PropertyStatus.PENDING_REVIEW) {
             try {
                 String title = (saved.getTitle() != null) ? saved.getTitle() : "không có tiêu đề";
 
-                var admins = userRepository.findAllByRoles_Code("ADMIN");
-                if (!admins.isEmpty()) {
-                    String adminMessage = String.format("Tin đăng mới '%s' (ID: %d) đang chờ duyệt.", title, saved.getId());
-                    String adminLink = String.format("/admin/posts?tab=pending&reviewPostId=%d", saved.getId());
-                    for (UserEntity admin : admins) {
-                        notificationService.createNotification(
-                                admin, NotificationType.NEW_LISTING_PENDING, adminMessage, adminLink
-                        );
-                    }
-                }
+                String adminMessage = String.format("Tin đăng mới '%s' (ID: %d) đang chờ duyệt.", title, saved.getId());
+                String adminLink = String.format("/admin/posts?tab=pending&reviewPostId=%d", saved.getId());
+                notificationService.notifyRole("ADMIN", NotificationType.NEW_LISTING_PENDING, adminMessage, adminLink);
 
                 String userMessage = String.format("Tin đăng '%s' của bạn đã được gửi và đang chờ duyệt.", title);
                 String userLink = "/dashboard/posts?tab=pending";
@@ -280,6 +324,9 @@ public class PropertyServiceImpl implements IPropertyService {
 
         // Lưu lại trạng thái gốc để kiểm tra xem có phải là Đăng lại (Repost) không
         final PropertyStatus originalStatus = property.getStatus();
+        // city / category cũ để cache đếm kết quả làm mới cả nhóm cũ khi tin bị chuyển nhóm
+        final Long originalCityId = property.getCity() != null ? property.getCity().getId() : null;
+        final String originalCategorySlug = property.getCategory() != null ? property.getCategory().getSlug() : null;
 
         // 2. KIỂM TRA QUYỀN SỞ HỮU
         if (property.getUser() == null || !Objects.equals(property.getUser().getUserId(), userId)) {
@@ -340,39 +387,31 @@ public class PropertyServiceImpl implements IPropertyService {
                 String title = (property.getTitle() != null) ? property.getTitle() : "không có tiêu đề";
 
                 // 5.1 Gửi thông báo cho Admin
-                var admins = userRepository.findAllByRoles_Code("ADMIN");
-                if (!admins.isEmpty()) {
-
-                    String adminMessage;
-                    NotificationType adminNotificationType;
-
-                    if (originalStatus == PropertyStatus.WARNED || originalStatus == PropertyStatus.REJECTED) {
-                        // Sửa từ bài bị Cảnh cáo/Từ chối
-                        adminMessage = String.format("Tin '%s' (ID: %d) vừa được sửa (từ %s) và đang chờ duyệt lại.",
-                                title, property.getId(), originalStatus.name());
-                        adminNotificationType = NotificationType.LISTING_EDITED_PENDING;
-                    }
-                    // 🔥 [THÊM MỚI] Thông báo cho trường hợp Đăng lại
-                    else if (originalStatus == PropertyStatus.EXPIRED) {
-                        adminMessage = String.format("Tin '%s' (ID: %d) vừa được ĐĂNG LẠI và đang chờ duyệt.",
-                                title, property.getId());
-                        // Có thể dùng NEW_LISTING_PENDING hoặc tạo enum mới REPOST_PENDING
-                        adminNotificationType = NotificationType.NEW_LISTING_PENDING;
-                    }
-                    else {
-                        // Mặc định (từ Draft hoặc sửa tin đang Active)
-                        adminMessage = String.format("Tin đăng '%s' (ID: %d) đang chờ duyệt.",
-                                title, property.getId());
-                        adminNotificationType = NotificationType.NEW_LISTING_PENDING;
-                    }
-
-                    String adminLink = String.format("/admin/posts?reviewPostId=%d", property.getId());
-                    for (UserEntity admin : admins) {
-                        notificationService.createNotification(
-                                admin, adminNotificationType, adminMessage, adminLink
-                        );
-                    }
+                String adminMessage;
+                NotificationType adminNotificationType;
+
+                if (originalStatus == PropertyStatus.WARNED || originalStatus == PropertyStatus.REJECTED) {
+                    // Sửa từ bài bị Cảnh cáo/Từ chối
+                    adminMessage = String.format("Tin '%s' (ID: %d) vừa được sửa (từ %s) và đang chờ duyệt lại.",
+                            title, property.getId(), originalStatus.name());
+                    adminNotificationType = NotificationType.LISTING_EDITED_PENDING;
                 }
+                // 🔥 [THÊM MỚI] Thông báo cho trường hợp Đăng lại
+                else if (originalStatus == PropertyStatus.EXPIRED) {
+                    adminMessage = String.format("Tin '%s' (ID: %d) vừa được ĐĂNG LẠI và đang chờ duyệt.",
+                            title, property.getId());
+                    // Có thể dùng NEW_LISTING_PENDING hoặc tạo enum mới REPOST_PENDING
+                    adminNotificationType = NotificationType.NEW_LISTING_PENDING;
+                }
+                else {
+                    // Mặc định (từ Draft hoặc sửa tin đang Active)
+                    adminMessage = String.format("Tin đăng '%s' (ID: %d) đang chờ duyệt.",
+                            title, property.getId());
+                    adminNotificationType = NotificationType.NEW_LISTING_PENDING;
+                }
+
+                String adminLink = String.format("/admin/posts?reviewPostId=%d", property.getId());
+                notificationService.notifyRole("ADMIN", adminNotificationType, adminMessage, adminLink);
 
                 // 5.2 Gửi thông báo cho User (Luôn giống nhau)
                 String userMessage = String.format("Tin đăng '%s' của bạn đã được cập nhật và đang chờ duyệt lại.", title);
@@ -391,10 +430,11 @@ public class PropertyServiceImpl implements IPropertyService {
 
         // 6. LƯU VÀO DB
         var saved = propertyRepository.save(property);
+        publisher.publishEvent(PropertyChangedEvent.of(saved.getId(), originalCityId, originalCategorySlug));
 
         try {
             log.info("Đang gửi tín hiệu WS refresh đến /topic/admin/properties (do user update)");
-            messagingTemplate.convertAndSend("/topic/admin/properties", "user_update");
+            wsOutbox.toTopic("/topic/admin/properties", new BroadcastCoalescer.Change("user_update", saved.getId()));
         } catch (Exception e) {
             log.error("Lỗi khi gửi tín hiệu WS refresh admin: {}", e.getMessage());
         }
@@ -502,7 +542,25 @@ public class PropertyServiceImpl implements IPropertyService {
                                                  String status,
                                                  Pageable pageable,
                                                  Map<String,String> filters) {
+        return propertyRepository.findAll(buildUserPropertiesSpec(userId, status, filters), pageable)
+                .map(propertyConverter::toDto);
+    }
+
+    @Override
+    public SliceResponse<PropertyDTO> scrollPropertiesByUser(Long userId,
+                                                             String status,
+                                                             String cursor,
+                                                             int size,
+                                                             Map<String,String> filters) {
+        Specification<PropertyEntity> spec = buildUserPropertiesSpec(userId, status, filters)
+                .and(PropertySpecification.seekAfter(PageCursor.decode(cursor)));
+        List<PropertyEntity> rows = propertyRepository.findBy(spec, q -> q.sortBy(SEEK_SORT).limit(size + 1).all());
+        return toSlice(rows, size, page -> page.stream().map(propertyConverter::toDto).toList());
+    }
 
+    private Specification<PropertyEntity> buildUserPropertiesSpec(Long userId,
+                                                                  String status,
+                                                                  Map<String,String> filters) {
         Specification<PropertyEntity> spec = (root, query, cb) ->
                 cb.equal(root.get("user").get("userId"), userId);
 
@@ -607,7 +665,7 @@ public class PropertyServiceImpl implements IPropertyService {
             }
         }
 
-        return propertyRepository.findAll(spec, pageable).map(propertyConverter::toDto);
+        return spec;
     }
 
     @Override
@@ -649,7 +707,7 @@ public class PropertyServiceImpl implements IPropertyService {
     }
 
 
-    @Transactional(readOnly = true)
+    // Không @Transactional: rerank AI chạy ngoài transaction để trả connection DB trước khi chờ LLM
     @Override
     public List<PropertyCardDTO> getRecommendations(Long userId, int limit, Long anchorCityId) {
 
@@ -660,93 +718,55 @@ public class PropertyServiceImpl implements IPropertyService {
         ).getItems();
     }
 
-    @Transactional(readOnly = true)
     @Override
     public RecoResult getRecommendations(
             Long userId, int limit, Long anchorCityId, List<Long> nearCityIds,
             Double minPriceIn, Double maxPriceIn,
             Float  minAreaIn,  Float  maxAreaIn
     ) {
-        log.info("[Reco] userId={}, limit={}, anchor={}, near={}, priceIn[{},{}], areaIn[{},{}]",
-                userId, limit, anchorCityId, nearCityIds, minPriceIn, maxPriceIn, minAreaIn, maxAreaIn);
-
-        // ===== 1) Hành vi người dùng =====
-        List<Long> savedIds = savedPropertyRepository.findPropertyIdsByUser(userId);
-        log.info("[Reco][Behavior] savedIds size={} sample={}",
-                savedIds.size(),
-                savedIds.stream().limit(10).toList()
-        );
-
-        List<PropertyType> favTypes = savedPropertyRepository.topPropertyTypes(userId).stream()
-                .map(r -> (PropertyType) r[0])
-                .limit(3)
-                .toList();
-        if (favTypes == null || favTypes.isEmpty()) {
+        // Trace có cấu trúc, chỉ cho request được lấy mẫu (reco.trace.sample-rate); còn lại là NOOP
+        RecoTrace trace = recoTracer.start(userId)
+                .input("limit", limit).input("anchorCityId", anchorCityId).input("nearCityIds", nearCityIds)
+                .input("minPriceIn", minPriceIn).input("maxPriceIn", maxPriceIn)
+                .input("minAreaIn", minAreaIn).input("maxAreaIn", maxAreaIn);
+
+        // ===== 1) Hành vi người dùng (hồ sơ cache theo user, cập nhật theo toggle lưu tin) =====
+        UserPreferenceStore.Profile profile = preferenceStore.get(userId);
+        List<Long> savedIds = profile.savedIds();
+
+        List<PropertyType> favTypes = profile.topTypes(3);
+        if (favTypes.isEmpty()) {
             favTypes = List.of(PropertyType.sell, PropertyType.rent);
-            log.info("[Reco][Behavior] no favTypes from history -> fallback [sell, rent]");
         } else {
-            log.info("[Reco][Behavior] raw favTypes from history={}", favTypes);
             Set<PropertyType> all = new HashSet<>(favTypes);
             all.add(PropertyType.sell);
             all.add(PropertyType.rent);
             favTypes = new ArrayList<>(all);
-            log.info("[Reco][Behavior] merged favTypes (with defaults)={}", favTypes);
         }
         final List<PropertyType> finalFavTypes = List.copyOf(favTypes);
 
-        List<Long> favCityIds = savedPropertyRepository.topCityIds(userId).stream()
-                .map(r -> (Long) r[0])
-                .filter(Objects::nonNull)
-                .distinct()
-                .limit(3)
-                .toList();
+        List<Long> favCityIds = profile.topCityIds(3);
         final Set<Long> favCitySet = new HashSet<>(favCityIds);
-        log.info("[Reco][Behavior] favCityIds={} (set={})", favCityIds, favCitySet);
+        trace.input("savedCount", savedIds.size()).input("favTypes", finalFavTypes).input("favCityIds", favCityIds);
 
         // ===== 2) Range: ưu tiên FE, rỗng thì lấy thống kê từ saved =====
         Double minPrice = minPriceIn, maxPrice = maxPriceIn;
         Float  minArea  = minAreaIn,  maxArea  = maxAreaIn;
 
         if (minPrice == null && maxPrice == null && minArea == null && maxArea == null) {
-            List<Object[]> rows = savedPropertyRepository.priceAreaMinMax(userId);
-            log.info("[Reco][Behavior] FE range empty -> lookup priceAreaMinMax rows.size={}",
-                    rows == null ? 0 : rows.size());
-
-//            if (rows != null && !rows.isEmpty()) {
-//                Object[] r = rows.get(0);
-//                if (r != null && r.length == 4) {
-//                    minPrice = toD(r[0]);
-//                    maxPrice = toD(r[1]);
-//                    Double minAreaD = toD(r[2]);
-//                    Double maxAreaD = toD(r[3]);
-//                    minArea = minAreaD == null ? null : minAreaD.floatValue();
-//                    maxArea = maxAreaD == null ? null : maxAreaD.floatValue();
-//                }
-//            }
-            if (rows != null && !rows.isEmpty()) {
-                Object[] r = rows.get(0);
-                if (r != null && r.length == 4) {
-                    Double maxPriceD = toD(r[1]);   // max price từ history
-                    Double maxAreaD  = toD(r[3]);   // max area từ history
-                    if (maxPriceD != null && maxPriceD > 0) {
-                        minPrice = 0d;
-                        maxPrice = maxPriceD;
-                    }
-
-                    if (maxAreaD != null && maxAreaD > 0) {
-                        minArea = 0f;
-                        maxArea = maxAreaD.floatValue();
-                    }
-                }
+            Double maxPriceD = profile.maxPrice();   // max price từ history
+            Float  maxAreaD  = profile.maxArea();    // max area từ history
+            if (maxPriceD != null && maxPriceD > 0) {
+                minPrice = 0d;
+                maxPrice = maxPriceD;
             }
-            log.info("[Reco][Behavior] range from history (0→max) -> price[{},{}], area[{},{}]",
-                    minPrice, maxPrice, minArea, maxArea);
-
-            log.info("[Reco][Behavior] range from history -> price[{},{}], area[{},{}]",
-                    minPrice, maxPrice, minArea, maxArea);
+            if (maxAreaD != null && maxAreaD > 0) {
+                minArea = 0f;
+                maxArea = maxAreaD;
+            }
+            trace.input("rangeFrom", "history");
         } else {
-            log.info("[Reco][Behavior] range from FE -> price[{},{}], area[{},{}]",
-                    minPrice, maxPrice, minArea, maxArea);
+            trace.input("rangeFrom", "request");
         }
 
         if (minPrice != null && maxPrice != null && minPrice.equals(maxPrice)) minPrice = 0d;
@@ -763,11 +783,12 @@ public class PropertyServiceImpl implements IPropertyService {
 
         boolean hasAnyRangeSignal = priceOk || areaOk;
 
-        log.info("[Reco][Behavior] hasAnyCitySignal={}, hasAnyRangeSignal={}, priceOk={}, areaOk={}",
-                hasAnyCitySignal, hasAnyRangeSignal, priceOk, areaOk);
+        trace.input("minPrice", minPrice).input("maxPrice", maxPrice)
+                .input("minArea", minArea).input("maxArea", maxArea)
+                .stage("profile", savedIds.size());
 
         if (!hasAnyCitySignal && !hasAnyRangeSignal) {
-            log.info("[Reco] no-signal guard -> return empty to avoid dumping all posts");
+            recoTracer.finish(trace, "no-signal"); // tránh trả toàn bộ tin khi không có tín hiệu
             return RecoResult.builder()
                     .items(Collections.emptyList())
                     .source("empty") // hoặc "no-signal"
@@ -805,7 +826,6 @@ public class PropertyServiceImpl implements IPropertyService {
                 }
             }
         }
-        log.info("[Reco][Behavior] preferredCityIds (from FE + near)={}", preferredCityIds);
 
         Specification<PropertyEntity> spec = RecommendationSpec.andSafe(baseSpec, rangeSpec);
         if (!preferredCityIds.isEmpty()) {
@@ -827,28 +847,8 @@ public class PropertyServiceImpl implements IPropertyService {
                 .map(e -> e.getCity() != null ? e.getCity().getId() : null)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
-        log.info("[Reco] hitCityIds from initial candidates: {} (candidates={})",
-                hitCityIds, candidates.size());
-
-        // ========== LOG DANH SÁCH CANDIDATES TRƯỚC KHI RERANK ==========
-        log.info("\n=========================== CANDIDATES BEFORE AI ===========================");
-        log.info("[Reco][Candidates] total candidates = {}", candidates.size());
-        log.info("[Reco][Candidates] show up to first 20 items:");
-        int idx = 1;
-        for (PropertyEntity e : candidates.stream().limit(20).toList()) {
-            Long cid = e.getCity() != null ? e.getCity().getId() : null;
-            log.info(String.format(
-                    " #%02d | id=%d | city=%s | type=%s | price=%.0f | area=%.0f | postedAt=%s",
-                    idx++,
-                    e.getId(),
-                    cid,
-                    e.getPropertyType(),
-                    e.getPrice(),
-                    e.getArea(),
-                    e.getPostedAt()
-            ));
-        }
-        log.info("============================================================================\n");
+        trace.input("preferredCityIds", preferredCityIds).input("hitCityIds", hitCityIds)
+                .stage("candidates", candidates.size());
 
         String source = preferredCityIds.isEmpty() ? "personalized" : "personalized";
         List<Long> usedNearIds = new ArrayList<>();
@@ -876,14 +876,9 @@ public class PropertyServiceImpl implements IPropertyService {
             LinkedHashSet<Long> unionNear = new LinkedHashSet<>();
 
             for (Long anc : fallbackAnchors) {
-                List<CityEntity> near = cityRepository.findNearestCities(anc, k);
-                List<Long> nearIds = near.stream()
-                        .map(CityEntity::getId)
-                        .toList();
-                log.info("[Reco] nearby cities for anchor {} (fallback only) -> {}", anc, nearIds);
-
-                for (CityEntity c : near) {
-                    Long cid = c.getId();
+                List<Long> nearIds = geoIndex.nearest(anc, k); // chỉ mục KD-tree trong RAM
+
+                for (Long cid : nearIds) {
                     if (cid != null && !Objects.equals(cid, anc)) {
                         unionNear.add(cid);
                     }
@@ -919,16 +914,14 @@ public class PropertyServiceImpl implements IPropertyService {
                         usedAnchor = anchors.get(0);
                     }
 
-                    log.info(
-                            "[Reco] multi-anchor nearby fallback anchors={}, fallbackAnchors={}, unionNear={}, gotCandidates={}",
-                            anchors, fallbackAnchors, usedNearIds, candidates.size()
-                    );
                 }
             }
+            trace.input("fallbackAnchors", fallbackAnchors).input("nearCityIdsUsed", usedNearIds)
+                    .stage("nearby", candidates.size());
         }
 
         if (candidates.isEmpty()) {
-            log.info("[Reco] empty even after multi-anchor nearby fallback");
+            recoTracer.finish(trace, "empty");
             return RecoResult.builder()
                     .items(Collections.emptyList())
                     .source("empty")
@@ -941,13 +934,16 @@ public class PropertyServiceImpl implements IPropertyService {
         final Double priceCenter = priceOk ? (minPrice + maxPrice) / 2.0 : null;
         final Float  areaCenter  = areaOk  ? (minArea + maxArea) / 2.0f     : null;
 
-        List<ScoredProperty> scored = candidates.stream().map(e -> {
-            double baseScore = scoreRangeAware(
-                    e, finalFavTypes, favCitySet,
-                    priceCenter == null ? 0d : priceCenter,
-                    areaCenter  == null ? 0d : areaCenter.doubleValue()
-            );
-            return ScoredProperty.builder()
+        double[] baseScores = candidateScorer.score(
+                CandidateBatch.of(candidates), finalFavTypes, favCitySet,
+                priceCenter == null ? 0d : priceCenter,
+                areaCenter  == null ? 0d : areaCenter.doubleValue(),
+                System.currentTimeMillis()
+        );
+        List<ScoredProperty> scored = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            PropertyEntity e = candidates.get(i);
+            scored.add(ScoredProperty.builder()
                     .id(e.getId())
                     .title(e.getTitle())
                     .description(e.getDescription())
@@ -955,26 +951,11 @@ public class PropertyServiceImpl implements IPropertyService {
                     .area(e.getArea())
                     .cityId(e.getCity() != null ? e.getCity().getId() : null)
                     .type(e.getPropertyType())
-                    .baseScore(baseScore)
-                    .build();
-        }).toList();
-
-        // ========== LOG BẢNG BASE SCORE ==========
-        log.info("=========================== BASE SCORE TABLE ===========================");
-        idx = 1;
-        for (ScoredProperty sp : scored.stream().limit(20).toList()) {
-            log.info(String.format(
-                    " #%02d | id=%d | baseScore=%.4f | city=%s | price=%.0f | area=%.0f | type=%s",
-                    idx++,
-                    sp.getId(),
-                    sp.getBaseScore(),
-                    sp.getCityId(),
-                    sp.getPrice(),
-                    sp.getArea(),
-                    sp.getType()
-            ));
+                    .baseScore(baseScores[i])
+                    .build());
         }
-        log.info("=========================================================================\n");
+
+        trace.candidates(scored).stage("score", scored.size());
 
         if (anchorCityId != null) preferredCityIds.add(anchorCityId);
         if (nearCityIds != null) preferredCityIds.addAll(nearCityIds);
@@ -1005,32 +986,15 @@ public class PropertyServiceImpl implements IPropertyService {
                 .limit(limit)
                 .build();
 
-        log.info("[Reco][Behavior] final UserPreference: {}", pref);
-
-        // ========== LOG TRƯỚC KHI GỬI AI ==========
-        log.info("=========================== SEND TO AI ==========================");
-        log.info("[AI] sending {} items for rerank (limit={})", scored.size(), limit);
-        for (ScoredProperty sp : scored.stream().limit(20).toList()) {
-            log.info(" [AI] cand id={} | baseScore={}", sp.getId(),
-                    String.format("%.4f", sp.getBaseScore()));
-        }
-        log.info("=================================================================\n");
-
-        List<ScoredProperty> aiRanked = aiService.rerank(pref, scored, limit);
+        // Budget thời gian cố định; quá hạn / provider lỗi => thứ tự theo baseScore
+        List<ScoredProperty> aiRanked = rerankPipeline.rerank(pref, scored, limit);
+        trace.ranked(aiRanked).stage("rerank", aiRanked.size());
 
-        Map<Long, PropertyEntity> byId = candidates.stream()
-                .collect(Collectors.toMap(PropertyEntity::getId, it -> it));
+        // Card theo đúng thứ tự AI xếp hạng, nạp theo lô (cache + batch hydration)
+        List<PropertyCardDTO> result = cardCache.getCards(aiRanked.stream().map(ScoredProperty::getId).toList());
 
-        List<PropertyCardDTO> result = new ArrayList<>();
-        for (ScoredProperty sp : aiRanked) {
-            PropertyEntity e = byId.get(sp.getId());
-            if (e != null) {
-                result.add(propertyMapper.toPropertyCardDTO(e));
-            }
-        }
-
-        log.info("[Reco] done -> resultSize={}, source={}, usedAnchor={}, usedNear={}",
-                result.size(), source, usedAnchor, usedNearIds);
+        trace.stage("cards", result.size());
+        recoTracer.finish(trace, source);
 
         return RecoResult.builder()
                 .items(result)
@@ -1050,59 +1014,6 @@ public class PropertyServiceImpl implements IPropertyService {
 
 
 
-    private double scoreRangeAware(PropertyEntity p,
-                                   List<PropertyType> favTypes,
-                                   Set<Long> favCityIds,
-                                   double priceCenter,
-                                   double areaCenter) {
-        double s = 0.0;
-
-        // (1) GIÁ — ưu tiên gần median
-        if (priceCenter > 0 && p.getPrice() != null && p.getPrice() > 0) {
-            double denom = Math.max(1d, priceCenter * 0.25);
-            double close = Math.max(0, 1 - Math.abs(p.getPrice() - priceCenter) / denom);
-            s += close * 2.4;
-        }
-
-        // (2) DIỆN TÍCH — ưu tiên gần median
-        if (areaCenter > 0 && p.getArea() > 0) {
-            double denom = Math.max(1d, areaCenter * 0.25);
-            double close = Math.max(0, 1 - Math.abs(p.getArea() - areaCenter) / denom);
-            s += close * 1.2;
-        }
-
-        // (3) Loại BĐS ưa thích
-        if (p.getPropertyType() != null && favTypes != null && favTypes.contains(p.getPropertyType())) {
-            s += 0.6;
-        }
-
-        // (4) Listing Type
-        if (p.getListingType() != null) {
-            switch (p.getListingType()) {
-                case VIP     -> s += 0.8;
-                case PREMIUM -> s += 1.0;
-                default -> {}
-            }
-        }
-
-        // (5) Độ mới
-        if (p.getPostedAt() != null) {
-            long days = Math.max(0, Duration.between(p.getPostedAt().toInstant(), Instant.now()).toDays());
-            double recency = Math.max(0, 1 - (days / 30.0));
-            s += recency * 0.2;
-        }
-
-        // (6) City ưa thích → BOOST
-        try {
-            Long cId = (p.getCity() != null) ? p.getCity().getId() : null;
-            if (cId != null && favCityIds != null && favCityIds.contains(cId)) {
-                s += 1.1;  // hệ số boost city
-            }
-        } catch (Exception ignore) {}
-
-        return s;
-    }
-
     private static double median(Double a, Double b) {
         if (a == null && b == null) return 0d;
         if (a == null) return b;
@@ -1239,6 +1150,7 @@ public class PropertyServiceImpl implements IPropertyService {
 
         property.setStatus(target);
         propertyRepository.save(property);
+        publisher.publishEvent(PropertyChangedEvent.of(property.getId()));
 
         // 3) Gửi notification cho chủ tin
         try {
@@ -1277,7 +1189,7 @@ public class PropertyServiceImpl implements IPropertyService {
 
         // 4) Đẩy WS để FE refresh list/KPI
         try {
-            messagingTemplate.convertAndSend("/topic/admin/properties", "user_update_action");
+            wsOutbox.toTopic("/topic/admin/properties", new BroadcastCoalescer.Change("user_update_action", propertyId));
         } catch (Exception e) {
             log.error("WS push error: {}", e.getMessage());
         }
@@ -1329,59 +1241,8 @@ public class PropertyServiceImpl implements IPropertyService {
     private static Specification<PropertyEntity> and(Specification<PropertyEntity> base, Specification<PropertyEntity> next) {
         return next == null ? base : base.and(next);
     }
-    private static Double toD(Object v) {
-        if (v == null) return null;
-        if (v instanceof Number n) return n.doubleValue();
-        try { return Double.parseDouble(String.valueOf(v)); } catch (Exception e) { return null; }
-    }
     private static double n0(Double d) { return d == null ? 0d : d; }
 
-    private double score(PropertyEntity p,
-                         List<PropertyType> favTypes,
-                         double avgPrice,
-                         double avgArea) {
-        double s = 0.0;
-
-        // (1) GIÁ — ƯU TIÊN CAO NHẤT
-        if (avgPrice > 0 && p.getPrice() != null && p.getPrice() > 0) {
-            double denom = avgPrice * 0.3; // siết còn 30% để ưu tiên sát giá hơn
-            double close = Math.max(0, 1 - Math.abs(p.getPrice() - avgPrice) / denom);
-            s += close * 3.0;              // tăng weight giá (trước đây là *2.0)
-        }
-
-        // (2) DIỆN TÍCH — ƯU TIÊN THỨ HAI
-        // (2) DIỆN TÍCH — ƯU TIÊN THỨ HAI
-        if (avgArea > 0 && p.getArea() > 0) {
-            double denom = avgArea * 0.3;  // tương tự 30% cho area
-            double close = Math.max(0, 1 - Math.abs(p.getArea() - avgArea) / denom);
-            s += close * 1.2;              // giảm nhẹ so với giá
-        }
-
-        // (3) LOẠI BĐS ƯA THÍCH — CỘNG NHẸ
-        if (p.getPropertyType() != null && favTypes != null && favTypes.contains(p.getPropertyType())) {
-            s += 0.6;
-        }
-
-        // (4) ƯU TIÊN LISTING TYPE — giữ nguyên logic cũ
-        if (p.getListingType() != null) {
-            switch (p.getListingType()) {
-                case VIP     -> s += 0.8;
-                case PREMIUM -> s += 1.0;
-                default -> {}
-            }
-        }
-
-        // (5) ĐỘ MỚI — bonus nhẹ
-        if (p.getPostedAt() != null) {
-            long days = Math.max(0, Duration.between(p.getPostedAt().toInstant(), Instant.now()).toDays());
-            double recency = Math.max(0, 1 - (days / 30.0)); // ≤ 30 ngày gần nhất
-            s += recency * 0.2;
-        }
-
-        return s;
-    }
-
-
     private String mapBackendStatusToFrontendKey(PropertyStatus beStatus) {
         if (beStatus == null) return null;
         switch (beStatus) {
@@ -1509,9 +1370,16 @@ public class PropertyServiceImpl implements IPropertyService {
         );
 
         // Phần còn lại giữ nguyên
-        return entities.stream()
-                .map(propertyMapper::toPropertyCardDTO) // Chuyển sang DTO
-                .toList();
+        return cardCache.getCards(entities.stream().map(PropertyEntity::getId).toList());
+    }
+
+    @Override
+    public List<PropertyCardDTO> getSimilarProperties(Long propertyId, int limit) {
+        if (!propertyRepository.existsById(propertyId)) {
+            throw new ResourceNotFoundException("Property not found with id: " + propertyId);
+        }
+        int k = Math.max(1, Math.min(limit, 50));
+        return cardCache.getCards(similarIndex.similar(propertyId, k));
     }
 
     @Scheduled(cron = "0 0 * * * ?") // Chạy vào đầu mỗi giờ (0 phút 0 giây)
@@ -1522,8 +1390,12 @@ public class PropertyServiceImpl implements IPropertyService {
         // Lấy thời gian hiện tại
         Timestamp now = Timestamp.from(Instant.now());
 
-        // Gọi hàm repository bạn vừa tạo ở Bước 1
+        // Lấy trước id sắp bị chuyển EXPIRED để báo cho các chỉ mục in-memory
+        List<Long> expiredIds = propertyRepository.findIdsForExpiredPosts(now);
         int count = propertyRepository.updateStatusForExpiredPosts(now);
+        if (!expiredIds.isEmpty()) {
+            publisher.publishEvent(PropertyChangedEvent.of(expiredIds));
+        }
 
         if (count > 0) {
             log.info("[ScheduledJob] Updated {} listings from PUBLISHED to EXPIRED.", count);
@@ -1,7 +1,6 @@
 package com.backend.be_realestate.service.impl;
 
 import com.backend.be_realestate.entity.PotentialCustomer;
-import com.backend.be_realestate.entity.PropertyActivityLog;
 import com.backend.be_realestate.entity.PropertyEntity;
 import com.backend.be_realestate.entity.UserEntity;
 import com.backend.be_realestate.enums.ActivityType;
@@ -15,6 +14,9 @@ import com.backend.be_realestate.repository.PropertyActivityLogRepository;
 import com.backend.be_realestate.repository.PropertyRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.IPropertyTrackingService;
+import com.backend.be_realestate.service.tracking.ActivityLogIngestor;
+import com.backend.be_realestate.service.tracking.TrackingDedupWindow;
+import com.backend.be_realestate.service.tracking.ViewCountBuffer;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
@@ -28,8 +30,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 
 @Service
 @RequiredArgsConstructor
@@ -40,50 +42,39 @@ public class PropertyTrackingServiceImpl implements IPropertyTrackingService {
     private final PropertyActivityLogRepository activityLogRepository;
     private final PotentialCustomerRepository potentialCustomerRepository;
     private final UserRepository userRepository;
+    private final ViewCountBuffer viewCountBuffer;
+    private final TrackingDedupWindow dedupWindow;
+    private final ActivityLogIngestor activityLogIngestor;
 
     // Định nghĩa thời gian lọc trùng lặp
-    private static final int VIEW_DEDUPLICATION_HOURS = 1;
-    private static final int INTERACTION_DEDUPLICATION_MINUTES = 30;
-    private static final int LEAD_DEDUPLICATION_HOURS = 24;
+    private static final Duration VIEW_DEDUPLICATION = Duration.ofHours(1);
+    private static final Duration INTERACTION_DEDUPLICATION = Duration.ofMinutes(30);
+    private static final Duration LEAD_DEDUPLICATION = Duration.ofHours(24);
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public void logView(Long propertyId, Long currentUserId, String ipAddress, String userAgent) {
-        PropertyEntity property = propertyRepository.findById(propertyId)
+        Long ownerId = propertyRepository.findOwnerIdById(propertyId)
                 .orElseThrow(() -> new NotFoundException("Property not found"));
 
         // Không tính lượt xem của chính chủ
-        if (currentUserId != null && property.getUser().getUserId().equals(currentUserId)) {
+        if (currentUserId != null && currentUserId.equals(ownerId)) {
             return;
         }
 
-        Timestamp threshold = Timestamp.from(Instant.now().minus(VIEW_DEDUPLICATION_HOURS, ChronoUnit.HOURS));
-        boolean hasViewed;
-
-        if (currentUserId != null) {
-            hasViewed = activityLogRepository.existsByPropertyIdAndUserUserIdAndActivityTypeAndCreatedAtAfter(
-                    propertyId, currentUserId, ActivityType.VIEW, threshold);
-        } else {
-            hasViewed = activityLogRepository.existsByPropertyIdAndIpAddressAndActivityTypeAndCreatedAtAfter(
-                    propertyId, ipAddress, ActivityType.VIEW, threshold);
-        }
-
-        if (!hasViewed) {
-            // 1. Ghi log
-            UserEntity user = (currentUserId != null) ? userRepository.getReferenceById(currentUserId) : null;
-            PropertyActivityLog log = PropertyActivityLog.builder()
-                    .property(property)
-                    .user(user)
-                    .activityType(ActivityType.VIEW)
-                    .ipAddress(ipAddress)
-                    .userAgent(userAgent)
-                    .build();
-            activityLogRepository.save(log);
-
-            // 2. Cập nhật cache count trên tin đăng
-            property.setViewCount(property.getViewCount() + 1);
-            propertyRepository.save(property);
-        }
+        // Lọc trùng trong RAM; DB chỉ được hỏi khi cửa sổ chưa đủ dữ liệu (vừa restart)
+        dedupWindow.recordIfFirst(propertyId, currentUserId, ipAddress, ActivityType.VIEW,
+                VIEW_DEDUPLICATION,
+                () -> hasActivity(propertyId, currentUserId, ipAddress, ActivityType.VIEW, VIEW_DEDUPLICATION),
+                () -> {
+                    // 1. Ghi log: đẩy vào hàng đợi, worker INSERT theo lô (hàng đợi đầy => không tính lượt xem)
+                    if (!activityLogIngestor.submit(propertyId, currentUserId, ActivityType.VIEW, ipAddress, userAgent)) {
+                        return false;
+                    }
+                    // 2. Cộng lượt xem vào buffer, job flush sẽ ghi view_count theo lô (không khoá dòng properties)
+                    viewCountBuffer.increment(propertyId);
+                    return true;
+                });
     }
 
     @Override
@@ -99,31 +90,14 @@ public class PropertyTrackingServiceImpl implements IPropertyTrackingService {
         } else if (type == ActivityType.SHARE || type == ActivityType.FAVORITE) {
             // SHARE và FAVORITE được coi là INTERACTION (sự kiện)
 
-            PropertyEntity property = propertyRepository.findById(propertyId)
-                    .orElseThrow(() -> new NotFoundException("Property not found"));
-
-            Timestamp threshold = Timestamp.from(Instant.now().minus(INTERACTION_DEDUPLICATION_MINUTES, ChronoUnit.MINUTES));
-            boolean hasInteracted;
-
-            if (currentUserId != null) {
-                hasInteracted = activityLogRepository.existsByPropertyIdAndUserUserIdAndActivityTypeAndCreatedAtAfter(
-                        propertyId, currentUserId, type, threshold);
-            } else {
-                hasInteracted = activityLogRepository.existsByPropertyIdAndIpAddressAndActivityTypeAndCreatedAtAfter(
-                        propertyId, ipAddress, type, threshold);
+            if (!propertyRepository.existsById(propertyId)) {
+                throw new NotFoundException("Property not found");
             }
 
-            if (!hasInteracted) {
-                UserEntity user = (currentUserId != null) ? userRepository.getReferenceById(currentUserId) : null;
-                PropertyActivityLog log = PropertyActivityLog.builder()
-                        .property(property)
-                        .user(user)
-                        .activityType(type) // Sẽ là SHARE hoặc FAVORITE
-                        .ipAddress(ipAddress)
-                        .userAgent(userAgent)
-                        .build();
-                activityLogRepository.save(log);
-            }
+            dedupWindow.recordIfFirst(propertyId, currentUserId, ipAddress, type,
+                    INTERACTION_DEDUPLICATION,
+                    () -> hasActivity(propertyId, currentUserId, ipAddress, type, INTERACTION_DEDUPLICATION),
+                    () -> activityLogIngestor.submit(propertyId, currentUserId, type, ipAddress, userAgent)); // SHARE hoặc FAVORITE
         }
     }
 
@@ -211,38 +185,56 @@ public class PropertyTrackingServiceImpl implements IPropertyTrackingService {
             return;
         }
 
-        Timestamp threshold = Timestamp.from(Instant.now().minus(LEAD_DEDUPLICATION_HOURS, ChronoUnit.HOURS));
-        boolean hasCreatedLead;
+        dedupWindow.recordIfFirst(propertyId, currentUserId, ipAddress, leadType,
+                LEAD_DEDUPLICATION,
+                () -> hasLead(propertyId, currentUserId, ipAddress, leadType),
+                () -> {
+                    saveLead(property, currentUserId, ipAddress, leadType);
+                    return true;
+                });
+    }
 
-        if (currentUserId != null) {
-            hasCreatedLead = potentialCustomerRepository.existsByPropertyIdAndLeadUserUserIdAndLeadTypeAndCreatedAtAfter(
-                    propertyId, currentUserId, leadType, threshold);
-        } else {
-            hasCreatedLead = potentialCustomerRepository.existsByPropertyIdAndIpAddressAndLeadTypeAndCreatedAtAfter(
-                    propertyId, ipAddress, leadType, threshold);
+    private void saveLead(PropertyEntity property, Long currentUserId, String ipAddress, CustomerLeadType leadType) {
+        // SỬA: Dùng findById thay vì getReferenceById để lấy đầy đủ thông tin User
+        UserEntity leadUser = (currentUserId != null) ? userRepository.findById(currentUserId).orElse(null) : null;
+
+        // Dùng Builder để dễ đọc hơn
+        PotentialCustomer.PotentialCustomerBuilder leadBuilder = PotentialCustomer.builder()
+                .property(property)
+                .propertyOwner(property.getUser())
+                .leadUser(leadUser)
+                .leadType(leadType)
+                .ipAddress(ipAddress);
+
+        // === LOGIC MỚI: SAO CHÉP THÔNG TIN NẾU USER TỒN TẠI ===
+        if (leadUser != null) {
+            leadBuilder.leadName((leadUser.getFirstName() + " " + leadUser.getLastName()).trim());
+            leadBuilder.leadPhone(leadUser.getPhone());
+            leadBuilder.leadEmail(leadUser.getEmail());
         }
+        // === KẾT THÚC SỬA ĐỔI ===
 
-        if (!hasCreatedLead) {
-            // SỬA: Dùng findById thay vì getReferenceById để lấy đầy đủ thông tin User
-            UserEntity leadUser = (currentUserId != null) ? userRepository.findById(currentUserId).orElse(null) : null;
-
-            // Dùng Builder để dễ đọc hơn
-            PotentialCustomer.PotentialCustomerBuilder leadBuilder = PotentialCustomer.builder()
-                    .property(property)
-                    .propertyOwner(property.getUser())
-                    .leadUser(leadUser)
-                    .leadType(leadType)
-                    .ipAddress(ipAddress);
-
-            // === LOGIC MỚI: SAO CHÉP THÔNG TIN NẾU USER TỒN TẠI ===
-            if (leadUser != null) {
-                leadBuilder.leadName((leadUser.getFirstName() + " " + leadUser.getLastName()).trim());
-                leadBuilder.leadPhone(leadUser.getPhone());
-                leadBuilder.leadEmail(leadUser.getEmail());
-            }
-            // === KẾT THÚC SỬA ĐỔI ===
+        potentialCustomerRepository.save(leadBuilder.build());
+    }
 
-            potentialCustomerRepository.save(leadBuilder.build());
+    // Truy vấn lọc trùng cũ, giờ chỉ dùng làm fallback cho TrackingDedupWindow
+    private boolean hasActivity(Long propertyId, Long currentUserId, String ipAddress, ActivityType type, Duration window) {
+        Timestamp threshold = Timestamp.from(Instant.now().minus(window));
+        if (currentUserId != null) {
+            return activityLogRepository.existsByPropertyIdAndUserUserIdAndActivityTypeAndCreatedAtAfter(
+                    propertyId, currentUserId, type, threshold);
+        }
+        return activityLogRepository.existsByPropertyIdAndIpAddressAndActivityTypeAndCreatedAtAfter(
+                propertyId, ipAddress, type, threshold);
+    }
+
+    private boolean hasLead(Long propertyId, Long currentUserId, String ipAddress, CustomerLeadType leadType) {
+        Timestamp threshold = Timestamp.from(Instant.now().minus(LEAD_DEDUPLICATION));
+        if (currentUserId != null) {
+            return potentialCustomerRepository.existsByPropertyIdAndLeadUserUserIdAndLeadTypeAndCreatedAtAfter(
+                    propertyId, currentUserId, leadType, threshold);
         }
+        return potentialCustomerRepository.existsByPropertyIdAndIpAddressAndLeadTypeAndCreatedAtAfter(
+                propertyId, ipAddress, leadType, threshold);
     }
-}
\ No newline at end of file
+}
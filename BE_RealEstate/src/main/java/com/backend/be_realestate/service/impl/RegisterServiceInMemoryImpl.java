@@ -4,6 +4,7 @@ import com.backend.be_realestate.converter.UserConverter;
 import com.backend.be_realestate.entity.RoleEntity;
 import com.backend.be_realestate.entity.UserEntity;
 import com.backend.be_realestate.modals.dto.UserDTO;
+import com.backend.be_realestate.modals.dto.userEvent.RoleMembersChangedEvent;
 import com.backend.be_realestate.modals.request.CreatePasswordRequest;
 import com.backend.be_realestate.modals.request.RegisterComplete;
 import com.backend.be_realestate.modals.response.StartOtpResponse;
@@ -16,6 +17,7 @@ import com.backend.be_realestate.service.EmailService;
 import com.backend.be_realestate.service.RegisterService;
 import com.github.benmanes.caffeine.cache.Cache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -45,6 +47,7 @@ public class RegisterServiceInMemoryImpl implements RegisterService {
     private final PasswordEncoder encoder;
     private final UserConverter userConverter;
     private final RoleRepository roleRepo;
+    private final ApplicationEventPublisher publisher;
     private final SecureRandom random = new SecureRandom();
 
     private String genOtp() {
@@ -162,6 +165,7 @@ public class RegisterServiceInMemoryImpl implements RegisterService {
                 .build();
 
         user = userRepo.save(user);
+        publisher.publishEvent(RoleMembersChangedEvent.of(userRole.getCode()));
 
         // Đánh dấu ticket đã dùng
         ticket.setUsed(true);
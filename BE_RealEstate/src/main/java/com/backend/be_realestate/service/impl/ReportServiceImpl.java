@@ -5,16 +5,19 @@ import com.backend.be_realestate.modals.dto.ReportDetailDTO;
 import com.backend.be_realestate.modals.request.CreateReportRequest;
 import com.backend.be_realestate.enums.NotificationType;
 import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
 import com.backend.be_realestate.repository.PropertyAuditRepository;
 import com.backend.be_realestate.repository.PropertyRepository;
 import com.backend.be_realestate.repository.ReportRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.NotificationService;
 import com.backend.be_realestate.service.ReportService;
+import com.backend.be_realestate.service.ws.BroadcastCoalescer;
+import com.backend.be_realestate.service.ws.WsOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -36,7 +39,8 @@ public class ReportServiceImpl implements ReportService {
     private final NotificationService notificationService;
     private final UserRepository userRepository;
     private final PropertyAuditRepository propertyAuditRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final WsOutbox wsOutbox;
+    private final ApplicationEventPublisher publisher;
 
     /**
      * Lấy tên của role Admin từ file application.properties
@@ -99,6 +103,9 @@ public class ReportServiceImpl implements ReportService {
 
         // 7. LƯU LẠI BÀI ĐĂNG (ĐỂ CẬP NHẬT reportCount và status)
         propertyRepository.save(property);
+        if (newCount == 10) {
+            publisher.publishEvent(PropertyChangedEvent.of(property.getId()));
+        }
 
         // 8. GỬI THÔNG BÁO CHO ADMIN (LOGIC CỦA BẠN)
         // Gửi thông báo ngay cả khi đây mới là báo cáo đầu tiên
@@ -106,7 +113,7 @@ public class ReportServiceImpl implements ReportService {
 
         try {
             log.info("Đang gửi tín hiệu WS refresh đến /topic/admin/properties");
-            messagingTemplate.convertAndSend("/topic/admin/properties", "new_report");
+            wsOutbox.toTopic("/topic/admin/properties", new BroadcastCoalescer.Change("new_report", property.getId()));
         } catch (Exception e) {
             log.error("Lỗi khi gửi tín hiệu WS refresh admin: {}", e.getMessage());
         }
@@ -119,29 +126,18 @@ public class ReportServiceImpl implements ReportService {
      */
     private void notifyAdminsOfNewReport(PropertyEntity property, UserEntity reporter, Report report) {
 
-        // 1. Tìm tất cả tài khoản Admin
-        List<UserEntity> allAdmins = userRepository.findAllByRoles_Code(ADMIN_ROLE_NAME);
-
-        if (allAdmins.isEmpty()) {
-            log.warn("Không tìm thấy Admin nào (với role '{}') để gửi thông báo.", ADMIN_ROLE_NAME);
-            return;
-        }
-
         String message = String.format("Bài đăng '%s' vừa nhận được 1 báo cáo mới.", property.getTitle());
 
         String adminLink = String.format("/admin/posts?reportPostId=%d", property.getId());
 
-        log.info("Chuẩn bị gửi thông báo báo cáo mới cho {} admin...", allAdmins.size());
-
-        // 3. Gửi thông báo cho từng Admin
-        for (UserEntity adminUser : allAdmins) {
-            notificationService.createNotification(
-                    adminUser, // Người nhận là Admin
-                    NotificationType.SYSTEM_ANNOUNCEMENT, // (Hoặc bạn tạo type: NEW_REPORT)
-                    message,
-                    adminLink
-            );
-        }
+        // Gửi cho tất cả Admin (1 INSERT nhiều dòng, WS sau commit)
+        int sent = notificationService.notifyRole(
+                ADMIN_ROLE_NAME,
+                NotificationType.SYSTEM_ANNOUNCEMENT, // (Hoặc bạn tạo type: NEW_REPORT)
+                message,
+                adminLink
+        );
+        log.info("Đã gửi thông báo báo cáo mới cho {} admin", sent);
     }
 
     @Override
@@ -223,10 +219,11 @@ public class ReportServiceImpl implements ReportService {
         propertyAuditRepository.save(auditLog);
 
         propertyRepository.save(property);
+        publisher.publishEvent(PropertyChangedEvent.of(property.getId()));
 
         try {
             log.info("Đang gửi tín hiệu WS refresh đến /topic/admin/properties (sau khi gửi cảnh báo)");
-            messagingTemplate.convertAndSend("/topic/admin/properties", "warning_sent");
+            wsOutbox.toTopic("/topic/admin/properties", new BroadcastCoalescer.Change("warning_sent", property.getId()));
         } catch (Exception e) {
             log.error("Lỗi khi gửi tín hiệu WS refresh admin: {}", e.getMessage());
         }
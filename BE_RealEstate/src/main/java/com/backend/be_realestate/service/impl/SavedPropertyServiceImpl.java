@@ -1,11 +1,11 @@
 package com.backend.be_realestate.service.impl;
 
-import com.backend.be_realestate.converter.PropertyConverter;
-import com.backend.be_realestate.entity.PropertyEntity;
+import com.backend.be_realestate.converter.PropertyCardHydrator;
 import com.backend.be_realestate.entity.SavedPropertyEntity;
 import com.backend.be_realestate.entity.UserEntity;
 import com.backend.be_realestate.enums.NotificationType;
 import com.backend.be_realestate.modals.dto.PropertyDTO;
+import com.backend.be_realestate.modals.dto.propertyEvent.SavedPropertyToggledEvent;
 import com.backend.be_realestate.repository.PropertyRepository;
 import com.backend.be_realestate.repository.SavedPropertyRepository;
 import com.backend.be_realestate.repository.UserRepository;
@@ -13,11 +13,11 @@ import com.backend.be_realestate.service.NotificationService;
 import com.backend.be_realestate.service.savedPost.SavedPropertyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -27,14 +27,19 @@ public class SavedPropertyServiceImpl implements SavedPropertyService {
     private final PropertyRepository propertyRepo;
     private final UserRepository userRepo;
     private final NotificationServiceImpl notificationService;
-    private final PropertyConverter propertyConverter;
+    private final PropertyCardHydrator hydrator;
+    private final ApplicationEventPublisher publisher;
 
     @Override
     @Transactional
     public boolean toggle(Long userId, Long propertyId) {
         // Nếu đã lưu → xóa, chưa lưu → thêm mới
         if (savedRepo.existsByUserUserIdAndPropertyId(userId, propertyId)) {
-            savedRepo.deleteByUserUserIdAndPropertyId(userId, propertyId);
+            long removed = savedRepo.deleteByUserUserIdAndPropertyId(userId, propertyId);
+            if (removed > 0) {
+                propertyRepo.addFavoriteCount(propertyId, -removed);
+                publisher.publishEvent(SavedPropertyToggledEvent.removed(userId, propertyId));
+            }
             return false; // sau toggle là bỏ lưu
         }
 
@@ -47,6 +52,10 @@ public class SavedPropertyServiceImpl implements SavedPropertyService {
                 .user(user)
                 .property(prop)
                 .build());
+        propertyRepo.addFavoriteCount(propertyId, 1);
+        publisher.publishEvent(new SavedPropertyToggledEvent(userId, propertyId, true,
+                prop.getPropertyType(), prop.getCity() != null ? prop.getCity().getId() : null,
+                prop.getPrice(), prop.getArea(), prop.getStatus()));
 
         try {
             UserEntity owner = prop.getUser(); // Lấy chủ sở hữu của tin đăng
@@ -117,11 +126,7 @@ public class SavedPropertyServiceImpl implements SavedPropertyService {
 
     @Override
     public List<PropertyDTO> listDetails(Long userId, List<Long> propertyIds) {
-        List<PropertyEntity> properties = propertyRepo.findAllById(propertyIds);
-
-        return properties.stream()
-                // Sử dụng converter/mapper đã được inject
-                .map(propertyConverter::toDto)
-                .collect(Collectors.toList());
+        // Batch hydration: số query cố định cho cả danh sách (không lazy-load / đếm từng tin)
+        return hydrator.hydrateDtos(propertyIds);
     }
 }
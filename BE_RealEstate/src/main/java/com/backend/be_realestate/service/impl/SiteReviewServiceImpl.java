@@ -14,6 +14,7 @@ import com.backend.be_realestate.repository.SiteReviewRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.ISiteReviewService;
 import com.backend.be_realestate.utils.SecurityUtils;
+import com.backend.be_realestate.service.ws.WsOutbox;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -21,7 +22,6 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -42,7 +42,7 @@ public class SiteReviewServiceImpl implements ISiteReviewService {
     private final UserRepository userRepository;
     private final SecurityUtils securityUtils;
     private final NotificationServiceImpl notificationService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final WsOutbox wsOutbox;
     @Override
     @Transactional
     public SiteReviewResponse createReviewForCurrentUser(SiteReviewCreateRequest request, String source) {
@@ -67,7 +67,7 @@ public class SiteReviewServiceImpl implements ISiteReviewService {
         try {
             notifyAdminsNewReview(saved);
             // Optional: bắn WS cho admin FE
-            messagingTemplate.convertAndSend("/topic/admin/site-reviews", "new_review");
+            wsOutbox.toTopic("/topic/admin/site-reviews", "new_review");
         } catch (Exception e) {
             log.error("[SiteReview] Error while sending admin notification: {}", e.getMessage(), e);
         }
@@ -191,9 +191,6 @@ public class SiteReviewServiceImpl implements ISiteReviewService {
 
     // Helpers for notification
     private void notifyAdminsNewReview(SiteReview review) {
-        List<UserEntity> admins = userRepository.findAllByRoles_Code("ADMIN");
-        if (admins == null || admins.isEmpty()) return;
-
         String userName = (review.getUser() != null)
                 ? (review.getUser().getFirstName() + " " + review.getUser().getLastName()).trim()
                 : "Người dùng";
@@ -207,14 +204,7 @@ public class SiteReviewServiceImpl implements ISiteReviewService {
 
         String link = "/admin/site-reviews";
 
-        for (UserEntity admin : admins) {
-            notificationService.createNotification(
-                    admin,
-                    NotificationType.SITE_REVIEW_NEW_ADMIN,
-                    msg,
-                    link
-            );
-        }
+        notificationService.notifyRole("ADMIN", NotificationType.SITE_REVIEW_NEW_ADMIN, msg, link);
     }
 
 }
@@ -6,11 +6,13 @@ import com.backend.be_realestate.entity.RoleEntity;
 import com.backend.be_realestate.entity.UserEntity;
 import com.backend.be_realestate.modals.GoogleProfile;
 import com.backend.be_realestate.modals.dto.UserDTO;
+import com.backend.be_realestate.modals.dto.userEvent.RoleMembersChangedEvent;
 import com.backend.be_realestate.repository.AuthProviderRepository;
 import com.backend.be_realestate.repository.RoleRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.SocialAuthService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -28,6 +30,7 @@ public class SocialAuthServiceImpl implements SocialAuthService {
     private final PasswordEncoder passwordEncoder;
     private final UserConverter userConverter;
     private final RoleRepository roleRepo;
+    private final ApplicationEventPublisher publisher;
     @Override
     @Transactional
     public UserDTO upsertGoogleUser(GoogleProfile p) {
@@ -47,7 +50,9 @@ public class SocialAuthServiceImpl implements SocialAuthService {
                     .orElseThrow(() -> new IllegalStateException("Role USER không tồn tại"));
             u.setRoles(Collections.singletonList(userRole));
 
-            return userRepo.save(u);
+            UserEntity saved = userRepo.save(u);
+            publisher.publishEvent(RoleMembersChangedEvent.of(userRole.getCode()));
+            return saved;
         });
 
         // (optional) cập nhật tên/avatar khi Google có thông tin mới
@@ -8,8 +8,8 @@ import com.backend.be_realestate.repository.SupportMessageRepository;
 import com.backend.be_realestate.repository.SupportReactionRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.ISupportReactionService;
+import com.backend.be_realestate.service.ws.WsOutbox;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,7 +23,7 @@ import java.util.Objects;
 public class SupportReactionServiceImpl implements ISupportReactionService {
     private final SupportReactionRepository reactionRepo;
     private final SupportMessageRepository msgRepo;
-    private final SimpMessagingTemplate ws;
+    private final WsOutbox wsOutbox;
     private final UserRepository userRepo;
     @Override
     public List<ReactionDto> toggle(Long userId, Long messageId, String emoji) {
@@ -53,7 +53,7 @@ public class SupportReactionServiceImpl implements ISupportReactionService {
                         .build())
                 .toList();
 
-        ws.convertAndSend("/topic/support.conversation." + msg.getConversation().getConversationId(),
+        wsOutbox.toTopic("/topic/support.conversation." + msg.getConversation().getConversationId(),
                 new WsEvent("reaction.updated", Map.of(
                         "messageId", messageId,
                         "conversationId", msg.getConversation().getConversationId(),
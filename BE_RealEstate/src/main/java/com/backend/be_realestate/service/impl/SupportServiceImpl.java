@@ -17,13 +17,13 @@ import com.backend.be_realestate.repository.SupportMessageRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.ISupportService;
 import com.backend.be_realestate.service.NotificationService;
+import com.backend.be_realestate.service.ws.WsOutbox;
 import jakarta.persistence.criteria.JoinType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -40,7 +40,7 @@ public class SupportServiceImpl implements ISupportService {
     private final SupportConversationRepository convRepo;
     private final SupportMessageRepository msgRepo;
     private final UserRepository userRepo;
-    private final SimpMessagingTemplate ws;
+    private final WsOutbox wsOutbox;
     private final NotificationService notificationService;
 
     /* ================== Helpers ================== */
@@ -151,18 +151,14 @@ public class SupportServiceImpl implements ISupportService {
             String msg  = "Có cuộc trò chuyện hỗ trợ mới từ khách hàng.";
             String link = "/admin/support";
 
-            // Tùy repo của bạn, ví dụ:
-            List<UserEntity> agents = userRepo.findAllByRoles_Code("ADMIN");
-            for (UserEntity a : agents) {
-                sendNotiSafe(a, NotificationType.SUPPORT_CONVERSATION_CREATED, msg, link);
-            }
+            notificationService.notifyRole("ADMIN", NotificationType.SUPPORT_CONVERSATION_CREATED, msg, link);
         } catch (Exception e) {
             log.error("[SupportService] Lỗi notify admin khi createConversation: {}", e.getMessage(), e);
         }
         ConversationSummaryResponse res = toSummary(cv);
 
         // WS broadcast
-        ws.convertAndSend("/topic/support", new WsEvent("conversation.created", res));
+        wsOutbox.toTopic("/topic/support", new WsEvent("conversation.created", res));
 
         // (Optional) Notify customer đã mở cuộc trò chuyện (nếu có khách đã đăng nhập)
         if (customer != null) {
@@ -255,13 +251,13 @@ public class SupportServiceImpl implements ISupportService {
         res.setClientMsgId(clientId); // để FE replace optimistic
 
         // ===== WS push =====
-        ws.convertAndSend("/topic/support.conversation." + cv.getConversationId(),
+        wsOutbox.toTopic("/topic/support.conversation." + cv.getConversationId(),
                 new WsEvent("message.created", res));
-        ws.convertAndSend("/topic/support",
+        wsOutbox.toTopic("/topic/support",
                 new WsEvent("conversation.updated", toSummary(cv)));
 
         if (cv.getAssignee() != null && cv.getAssignee().getEmail() != null) {
-            ws.convertAndSendToUser(
+            wsOutbox.toUser(
                     cv.getAssignee().getEmail(),
                     "/queue/support",
                     new WsEvent("message.created", res)
@@ -298,7 +294,7 @@ public class SupportServiceImpl implements ISupportService {
             convRepo.save(cv);
 
             ConversationSummaryResponse res = toSummary(cv);
-            ws.convertAndSend("/topic/support", new WsEvent("conversation.assigned", res));
+            wsOutbox.toTopic("/topic/support", new WsEvent("conversation.assigned", res));
 
             // Notify assignee chính mình (optional nhưng hữu ích trên hệ noti chung)
             String msgForAgent = "Bạn đã nhận xử lý một cuộc trò chuyện hỗ trợ.";
@@ -334,7 +330,7 @@ public class SupportServiceImpl implements ISupportService {
         convRepo.delete(cv);
 
         // WS broadcast
-        ws.convertAndSend("/topic/support",
+        wsOutbox.toTopic("/topic/support",
                 new WsEvent("conversation.deleted",
                         Map.of("conversationId", conversationId)));
 
@@ -4,12 +4,15 @@ import com.backend.be_realestate.entity.UserEntity;
 import com.backend.be_realestate.entity.UserProfile;
 import com.backend.be_realestate.exceptions.ResourceNotFoundException;
 import com.backend.be_realestate.converter.UserProfileConverter;
+import com.backend.be_realestate.modals.dto.userEvent.RoleMembersChangedEvent;
 import com.backend.be_realestate.modals.request.UpdateUserProfileRequest;
 import com.backend.be_realestate.modals.response.UserProfileResponse;
 import com.backend.be_realestate.repository.UserProfileRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.UserProfileService;
+import com.backend.be_realestate.service.cache.RoleMemberCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +23,7 @@ public class UserProfileServiceImpl implements UserProfileService {
     private final UserRepository userRepository;
     private final UserProfileRepository userProfileRepository;
     private final UserProfileConverter userConverter;
+    private final ApplicationEventPublisher publisher;
 
     @Override
     @Transactional(readOnly = true)
@@ -37,8 +41,13 @@ public class UserProfileServiceImpl implements UserProfileService {
         UserEntity user = findUserById(userId);
         UserProfile profile = getOrCreateUserProfile(user);
 
+        String principalBefore = RoleMemberCache.principalKeyOf(user.getEmail(), user.getPhone(), user.getUserId());
         userConverter.updateProfileFromRequest(request, user, profile);
         userRepository.save(user);
+        // Đổi email / phone => principal WS trong RoleMemberCache đổi theo
+        if (!principalBefore.equals(RoleMemberCache.principalKeyOf(user.getEmail(), user.getPhone(), user.getUserId()))) {
+            publisher.publishEvent(RoleMembersChangedEvent.of(user));
+        }
         return userConverter.toUserProfileResponse(user, profile);
     }
 
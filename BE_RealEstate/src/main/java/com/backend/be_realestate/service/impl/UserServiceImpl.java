@@ -16,9 +16,11 @@ import com.backend.be_realestate.modals.response.admin.NewUsersKpiResponse;
 import com.backend.be_realestate.repository.PropertyRepository;
 import com.backend.be_realestate.repository.UserRepository;
 import com.backend.be_realestate.service.UserService;
+import com.backend.be_realestate.service.cache.PropertyCardCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
@@ -43,7 +45,7 @@ public class UserServiceImpl implements UserService {
     private final UserConverter userConverter;
     private final PasswordEncoder passwordEncoder;
     private final PropertyRepository propertyRepository;
-    private final com.backend.be_realestate.converter.PropertyMapper propertyMapper;
+    private final PropertyCardCache cardCache;
     private final NotificationServiceImpl notificationService;
     private static final DateTimeFormatter MONTH_YEAR = DateTimeFormatter.ofPattern("MM/yyyy");
 
@@ -280,7 +282,8 @@ public class UserServiceImpl implements UserService {
             );
         }
 
-        return page.map(propertyMapper::toPropertyCardDTO);
+        List<Long> ids = page.getContent().stream().map(PropertyEntity::getId).toList();
+        return new PageImpl<>(cardCache.getCards(ids), pageable, page.getTotalElements());
     }
 
     @Override
@@ -359,12 +362,7 @@ public class UserServiceImpl implements UserService {
                                              String message,
                                              String link) {
         try {
-            var admins = userRepo.findAllByRoles_Code("ADMIN");
-            if (admins == null || admins.isEmpty()) return;
-
-            for (UserEntity admin : admins) {
-                notificationService.createNotification(admin, type, message, link);
-            }
+            notificationService.notifyRole("ADMIN", type, message, link);
         } catch (Exception e) {
             log.error("Notify admins about user action failed: {}", e.getMessage(), e);
         }
@@ -0,0 +1,61 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.entity.PropertyEntity;
+
+import java.util.List;
+
+/**
+ * Lô ứng viên gợi ý dạng cột (struct-of-arrays): mỗi đặc trưng là 1 mảng nguyên thuỷ,
+ * vòng chấm điểm chỉ đọc tuần tự các mảng thay vì đi qua từng PropertyEntity.
+ * Giá trị thiếu: price = NaN, area = 0, ordinal = -1, cityId = -1, postedAt = {@link #NO_TIME}.
+ */
+public final class CandidateBatch {
+
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    final int size;
+    final double[] prices;
+    final float[] areas;
+    final byte[] typeOrdinals;
+    final byte[] listingOrdinals;
+    final long[] cityIds;
+    final long[] postedAtMillis;
+
+    public CandidateBatch(int size) {
+        this.size = size;
+        this.prices = new double[size];
+        this.areas = new float[size];
+        this.typeOrdinals = new byte[size];
+        this.listingOrdinals = new byte[size];
+        this.cityIds = new long[size];
+        this.postedAtMillis = new long[size];
+    }
+
+    public static CandidateBatch of(List<PropertyEntity> candidates) {
+        CandidateBatch b = new CandidateBatch(candidates.size());
+        for (int i = 0; i < b.size; i++) {
+            PropertyEntity p = candidates.get(i);
+            b.set(i,
+                    p.getPrice() == null ? Double.NaN : p.getPrice(),
+                    p.getArea(),
+                    p.getPropertyType() == null ? -1 : p.getPropertyType().ordinal(),
+                    p.getListingType() == null ? -1 : p.getListingType().ordinal(),
+                    p.getCity() == null ? -1 : p.getCity().getId(),
+                    p.getPostedAt() == null ? NO_TIME : p.getPostedAt().getTime());
+        }
+        return b;
+    }
+
+    public void set(int i, double price, float area, int typeOrdinal, int listingOrdinal, long cityId, long postedAtMillis) {
+        this.prices[i] = price;
+        this.areas[i] = area;
+        this.typeOrdinals[i] = (byte) typeOrdinal;
+        this.listingOrdinals[i] = (byte) listingOrdinal;
+        this.cityIds[i] = cityId;
+        this.postedAtMillis[i] = postedAtMillis;
+    }
+
+    public int size() {
+        return size;
+    }
+}
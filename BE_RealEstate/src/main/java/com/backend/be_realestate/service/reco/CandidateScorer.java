@@ -0,0 +1,132 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.enums.ListingType;
+import com.backend.be_realestate.enums.PropertyType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Điểm base cho ứng viên gợi ý, chấm trên {@link CandidateBatch}.
+ * Trọng số đọc từ reco.score.* và tính sẵn thành bảng theo ordinal lúc khởi tạo;
+ * sở thích của user (loại BĐS, city) được đổi thành bitmask / mảng long 1 lần mỗi lô.
+ * Công thức giữ nguyên như scoreRangeAware cũ: giá, diện tích gần tâm khoảng; loại ưa thích;
+ * listing VIP/PREMIUM; độ mới trong recency-days ngày; city ưa thích.
+ */
+@Component
+public class CandidateScorer {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private final double wPrice;
+    private final double wArea;
+    private final double wType;
+    private final double wRecency;
+    private final double wCity;
+    private final double band;
+    private final int recencyDays;
+    /** Trọng số theo ListingType.ordinal() */
+    private final double[] listingWeights;
+
+    public CandidateScorer(@Value("${reco.score.w-price:2.4}") double wPrice,
+                           @Value("${reco.score.w-area:1.2}") double wArea,
+                           @Value("${reco.score.w-type:0.6}") double wType,
+                           @Value("${reco.score.w-vip:0.8}") double wVip,
+                           @Value("${reco.score.w-premium:1.0}") double wPremium,
+                           @Value("${reco.score.w-recency:0.2}") double wRecency,
+                           @Value("${reco.score.w-city:1.1}") double wCity,
+                           @Value("${reco.score.recency-days:30}") int recencyDays,
+                           @Value("${reco.score.band:0.25}") double band) {
+        this.wPrice = wPrice;
+        this.wArea = wArea;
+        this.wType = wType;
+        this.wRecency = wRecency;
+        this.wCity = wCity;
+        this.band = band;
+        this.recencyDays = Math.max(1, recencyDays);
+        this.listingWeights = new double[ListingType.values().length];
+        this.listingWeights[ListingType.VIP.ordinal()] = wVip;
+        this.listingWeights[ListingType.PREMIUM.ordinal()] = wPremium;
+    }
+
+    /**
+     * @param priceCenter tâm khoảng giá (<= 0: bỏ qua đặc trưng giá)
+     * @param areaCenter  tâm khoảng diện tích (<= 0: bỏ qua)
+     * @return điểm base, cùng thứ tự với lô
+     */
+    public double[] score(CandidateBatch b,
+                          Collection<PropertyType> favTypes,
+                          Collection<Long> favCityIds,
+                          double priceCenter,
+                          double areaCenter,
+                          long nowMillis) {
+        final int n = b.size;
+        final double[] out = new double[n];
+
+        // Bitmask loại ưa thích theo ordinal
+        int typeMask = 0;
+        if (favTypes != null) {
+            for (PropertyType t : favTypes) if (t != null) typeMask |= 1 << t.ordinal();
+        }
+        // City ưa thích thường chỉ vài id => duyệt mảng nhanh hơn HashSet<Long>
+        long[] favCities = favCityIds == null ? new long[0]
+                : favCityIds.stream().filter(Objects::nonNull).mapToLong(Long::longValue).distinct().toArray();
+
+        // (1) GIÁ — gần tâm khoảng
+        if (priceCenter > 0) {
+            final double inv = 1d / Math.max(1d, priceCenter * band);
+            final double[] prices = b.prices;
+            for (int i = 0; i < n; i++) {
+                double p = prices[i];
+                if (p > 0) out[i] += Math.max(0, 1 - Math.abs(p - priceCenter) * inv) * wPrice;
+            }
+        }
+
+        // (2) DIỆN TÍCH — gần tâm khoảng
+        if (areaCenter > 0) {
+            final double inv = 1d / Math.max(1d, areaCenter * band);
+            final float[] areas = b.areas;
+            for (int i = 0; i < n; i++) {
+                double a = areas[i];
+                if (a > 0) out[i] += Math.max(0, 1 - Math.abs(a - areaCenter) * inv) * wArea;
+            }
+        }
+
+        // (3) Loại BĐS ưa thích + (4) Listing type
+        final byte[] types = b.typeOrdinals;
+        final byte[] listings = b.listingOrdinals;
+        for (int i = 0; i < n; i++) {
+            int t = types[i];
+            if (t >= 0 && (typeMask & (1 << t)) != 0) out[i] += wType;
+            int l = listings[i];
+            if (l >= 0) out[i] += listingWeights[l];
+        }
+
+        // (5) Độ mới — số ngày làm tròn xuống như Duration.toDays()
+        final long[] posted = b.postedAtMillis;
+        final double invDays = 1d / recencyDays;
+        for (int i = 0; i < n; i++) {
+            long at = posted[i];
+            if (at == CandidateBatch.NO_TIME) continue;
+            long days = Math.max(0, (nowMillis - at) / DAY_MS);
+            out[i] += Math.max(0, 1 - days * invDays) * wRecency;
+        }
+
+        // (6) City ưa thích
+        if (favCities.length > 0) {
+            final long[] cities = b.cityIds;
+            for (int i = 0; i < n; i++) {
+                long c = cities[i];
+                for (long f : favCities) {
+                    if (c == f) {
+                        out[i] += wCity;
+                        break;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+}
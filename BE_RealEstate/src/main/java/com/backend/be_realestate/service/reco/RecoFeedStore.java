@@ -0,0 +1,230 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.RecoResult;
+import com.backend.be_realestate.modals.dto.PropertyCardDTO;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.modals.dto.propertyEvent.SavedPropertyToggledEvent;
+import com.backend.be_realestate.repository.SavedPropertyRepository;
+import com.backend.be_realestate.service.IPropertyService;
+import com.backend.be_realestate.service.cache.PropertyCardCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Feed gợi ý tính sẵn cho user đang hoạt động (có lưu tin trong active-days ngày gần đây).
+ * - Job nền tính lại toàn bộ theo lô song song có giới hạn (threads, batch-size).
+ * - Lưu gọn: chỉ id theo thứ tự + metadata; card lấy từ PropertyCardCache lúc trả về.
+ * - Tính lại 1 user khi họ lưu / bỏ lưu tin, hoặc khi tin trong feed thay đổi (hết hạn, ẩn, sửa...);
+ *   tìm user theo chỉ mục ngược tin -> user, không duyệt mọi feed. Yêu cầu tính lại tới khi đang tính
+ *   thì đánh dấu dirty, tính thêm 1 lượt sau khi lượt hiện tại xong.
+ * - Giữ tối đa max-users feed (userId đến từ endpoint công khai), feed quá max-age tự bỏ.
+ * Chỉ dùng cho request gợi ý mặc định (không có bộ lọc city / giá / diện tích từ FE).
+ */
+@Slf4j
+@Component
+public class RecoFeedStore {
+
+    record Feed(List<Long> ids, String source, Long anchorCityId, List<Long> nearCityIds, Instant computedAt) {}
+
+    private final IPropertyService propertyService;
+    private final PropertyCardCache cardCache;
+    private final SavedPropertyRepository savedPropertyRepository;
+    private final int feedSize;
+    private final int batchSize;
+    private final int activeDays;
+    private final Duration maxAge;
+    private final ExecutorService executor;
+
+    private final Cache<Long, Feed> feeds;
+    // tin -> các user có tin đó trong feed
+    private final Map<Long, Set<Long>> usersByListing = new ConcurrentHashMap<>();
+    // user đang được tính lại; TRUE = có yêu cầu mới trong lúc tính (dirty)
+    private final Map<Long, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    public RecoFeedStore(IPropertyService propertyService,
+                         PropertyCardCache cardCache,
+                         SavedPropertyRepository savedPropertyRepository,
+                         @Value("${reco.feed.size:24}") int feedSize,
+                         @Value("${reco.feed.batch-size:50}") int batchSize,
+                         @Value("${reco.feed.threads:2}") int threads,
+                         @Value("${reco.feed.active-days:30}") int activeDays,
+                         @Value("${reco.feed.max-age-minutes:120}") long maxAgeMinutes,
+                         @Value("${reco.feed.max-users:50000}") long maxUsers) {
+        this.propertyService = propertyService;
+        this.cardCache = cardCache;
+        this.savedPropertyRepository = savedPropertyRepository;
+        this.feedSize = feedSize;
+        this.batchSize = Math.max(1, batchSize);
+        this.activeDays = activeDays;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.feeds = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(maxAge)
+                // chạy đồng bộ trong lúc gỡ entry => chỉ mục ngược luôn khớp với feeds
+                .evictionListener((Long uid, Feed feed, RemovalCause cause) -> {
+                    if (uid != null && feed != null) unindex(uid, feed);
+                })
+                .build();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "reco-feed");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Feed đã tính sẵn (cắt theo limit); user "lạnh" (chưa có / quá cũ / limit lớn hơn feed) thì tính ngay và lưu lại.
+     */
+    public RecoResult get(Long userId, int limit) {
+        Feed feed = userId == null ? null : feeds.getIfPresent(userId);
+        if (feed != null && limit <= feedSize
+                && Duration.between(feed.computedAt(), Instant.now()).compareTo(maxAge) < 0) {
+            List<PropertyCardDTO> items = cardCache.getCards(feed.ids().subList(0, Math.min(limit, feed.ids().size())));
+            return RecoResult.builder()
+                    .items(items)
+                    .source(feed.source())
+                    .anchorCityId(feed.anchorCityId())
+                    .nearCityIds(feed.nearCityIds())
+                    .build();
+        }
+
+        RecoResult result = propertyService.getRecommendations(userId, Math.max(limit, feedSize), null, null,
+                null, null, null, null);
+        store(userId, result);
+        List<PropertyCardDTO> items = result.getItems();
+        if (items.size() > limit) result.setItems(items.subList(0, limit));
+        return result;
+    }
+
+    @Scheduled(initialDelayString = "${reco.feed.initial-delay-ms:60000}",
+               fixedDelayString = "${reco.feed.refresh-interval-ms:1800000}")
+    public void refreshAll() {
+        Date since = Date.from(Instant.now().minus(Duration.ofDays(activeDays)));
+        List<Long> userIds = savedPropertyRepository.findActiveUserIdsSince(since);
+        long t0 = System.currentTimeMillis();
+
+        // Từng lô song song, chờ xong lô trước mới sang lô sau để không dồn tải lên DB / provider AI
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<Callable<Void>> batch = new ArrayList<>();
+            for (Long uid : userIds.subList(from, Math.min(userIds.size(), from + batchSize))) {
+                batch.add(() -> {
+                    recompute(uid);
+                    return null;
+                });
+            }
+            try {
+                executor.invokeAll(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        // Bỏ feed của user không còn hoạt động
+        Set<Long> active = new HashSet<>(userIds);
+        for (Long uid : List.copyOf(feeds.asMap().keySet())) {
+            if (!active.contains(uid)) {
+                feeds.asMap().computeIfPresent(uid, (k, old) -> {
+                    unindex(k, old);
+                    return null;
+                });
+            }
+        }
+        log.info("[RecoFeed] refreshed {} users in {}ms", userIds.size(), System.currentTimeMillis() - t0);
+    }
+
+    // Sau UserPreferenceStore.onToggled: lượt tính lại phải thấy profile đã cập nhật
+    @Order(UserPreferenceStore.TOGGLE_ORDER + 1)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onSavedToggled(SavedPropertyToggledEvent e) {
+        refreshAsync(e.getUserId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPropertyChanged(PropertyChangedEvent e) {
+        if (e.getIds() == null || e.getIds().isEmpty()) return;
+        Set<Long> users = new HashSet<>();
+        for (Long id : e.getIds()) {
+            Set<Long> holders = usersByListing.get(id);
+            if (holders != null) users.addAll(holders);
+        }
+        users.forEach(this::refreshAsync);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void refreshAsync(Long userId) {
+        if (userId == null) return;
+        // Đang tính => chỉ đánh dấu dirty, lượt đang chạy sẽ tính lại khi xong
+        if (Boolean.TRUE.equals(inFlight.merge(userId, Boolean.FALSE, (running, ignored) -> Boolean.TRUE))) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    do {
+                        recompute(userId);
+                        // không dirty => xong; dirty => xoá cờ rồi tính thêm lượt nữa
+                    } while (!inFlight.remove(userId, Boolean.FALSE) && inFlight.replace(userId, Boolean.TRUE, Boolean.FALSE));
+                } catch (RuntimeException ex) {
+                    inFlight.remove(userId);
+                    throw ex;
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(userId);
+        }
+    }
+
+    private void recompute(Long userId) {
+        try {
+            RecoResult result = propertyService.getRecommendations(userId, feedSize, null, null,
+                    null, null, null, null);
+            store(userId, result);
+        } catch (Exception ex) {
+            log.warn("[RecoFeed] recompute failed userId={}: {}", userId, ex.getMessage());
+        }
+    }
+
+    private void store(Long userId, RecoResult result) {
+        if (userId == null) return;
+        List<Long> ids = result.getItems() == null ? List.of()
+                : result.getItems().stream().map(PropertyCardDTO::getId).toList();
+        Feed feed = new Feed(ids, result.getSource(), result.getAnchorCityId(),
+                result.getNearCityIds() == null ? List.of() : List.copyOf(result.getNearCityIds()), Instant.now());
+        feeds.asMap().compute(userId, (uid, old) -> {
+            if (old != null) unindex(uid, old);
+            for (Long id : ids) {
+                usersByListing.compute(id, (k, holders) -> {
+                    if (holders == null) holders = ConcurrentHashMap.newKeySet();
+                    holders.add(uid);
+                    return holders;
+                });
+            }
+            return feed;
+        });
+    }
+
+    private void unindex(Long userId, Feed feed) {
+        for (Long id : feed.ids()) {
+            usersByListing.computeIfPresent(id, (k, holders) -> {
+                holders.remove(userId);
+                return holders.isEmpty() ? null : holders;
+            });
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Bản ghi 1 lần tính gợi ý (chỉ cho request được lấy mẫu, xem {@link RecoTracer}): tham số đầu vào,
+ * số ứng viên + thời gian từng bước, id / điểm base của ứng viên, id / điểm AI / điểm cuối sau rerank.
+ * Request không được lấy mẫu dùng {@link #NOOP}: mọi hàm ghi trả về ngay, không cấp phát gì.
+ */
+@Getter
+public class RecoTrace {
+
+    public record Stage(String name, int count, double ms) {}
+
+    static final RecoTrace NOOP = new RecoTrace(null, false);
+
+    @JsonIgnore
+    private final boolean sampled;
+    private final Long userId;
+    private final Instant startedAt;
+    private final Map<String, Object> inputs;
+    private final List<Stage> stages;
+    private long[] candidateIds;
+    private double[] baseScores;
+    private long[] rankedIds;
+    private double[] aiScores;
+    private double[] finalScores;
+    private String source;
+    private double totalMs;
+
+    @JsonIgnore
+    private final long t0;
+    @JsonIgnore
+    private long last;
+
+    RecoTrace(Long userId, boolean sampled) {
+        this.sampled = sampled;
+        this.userId = userId;
+        this.startedAt = sampled ? Instant.now() : null;
+        this.inputs = sampled ? new LinkedHashMap<>() : Map.of();
+        this.stages = sampled ? new ArrayList<>() : List.of();
+        this.t0 = sampled ? System.nanoTime() : 0;
+        this.last = t0;
+    }
+
+    /** Ghi 1 tham số; collection được chép lại vì phía gọi có thể sửa tiếp. */
+    public RecoTrace input(String key, Object value) {
+        if (!sampled) return this;
+        inputs.put(key, value instanceof Collection<?> c ? new ArrayList<>(c) : value);
+        return this;
+    }
+
+    /** Kết thúc 1 bước: số phần tử sau bước + thời gian kể từ bước trước. */
+    public RecoTrace stage(String name, int count) {
+        if (!sampled) return this;
+        long now = System.nanoTime();
+        stages.add(new Stage(name, count, (now - last) / 1e6));
+        last = now;
+        return this;
+    }
+
+    public RecoTrace candidates(List<ScoredProperty> scored) {
+        if (!sampled) return this;
+        int n = scored.size();
+        candidateIds = new long[n];
+        baseScores = new double[n];
+        for (int i = 0; i < n; i++) {
+            candidateIds[i] = scored.get(i).getId();
+            baseScores[i] = scored.get(i).getBaseScore();
+        }
+        return this;
+    }
+
+    public RecoTrace ranked(List<ScoredProperty> ranked) {
+        if (!sampled) return this;
+        int n = ranked.size();
+        rankedIds = new long[n];
+        aiScores = new double[n];
+        finalScores = new double[n];
+        for (int i = 0; i < n; i++) {
+            ScoredProperty sp = ranked.get(i);
+            rankedIds[i] = sp.getId();
+            aiScores[i] = sp.getAiScore() == null ? Double.NaN : sp.getAiScore();
+            finalScores[i] = sp.getFinalScore() == null ? Double.NaN : sp.getFinalScore();
+        }
+        return this;
+    }
+
+    void finish(String source) {
+        this.source = source;
+        this.totalMs = (System.nanoTime() - t0) / 1e6;
+    }
+}
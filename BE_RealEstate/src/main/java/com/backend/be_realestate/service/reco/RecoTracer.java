@@ -0,0 +1,87 @@
+package com.backend.be_realestate.service.reco;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lấy mẫu trace gợi ý thay cho log bảng ứng viên / điểm mỗi request.
+ * - reco.trace.sample-rate: tỉ lệ request được ghi (0 = tắt); reco.trace.force-user-ids: luôn ghi cho các user này.
+ * - Trace xong đưa vào ring buffer capacity phần tử (ghi đè bản cũ nhất), xem qua /api/admin/reco/traces.
+ */
+@Component
+public class RecoTracer {
+
+    private final AtomicReferenceArray<RecoTrace> ring;
+    private final AtomicLong seq = new AtomicLong();
+    private final Counter sampledCounter;
+    private volatile double sampleRate;
+    private volatile Set<Long> forcedUserIds;
+
+    public RecoTracer(MeterRegistry meterRegistry,
+                      @Value("${reco.trace.sample-rate:0.01}") double sampleRate,
+                      @Value("${reco.trace.capacity:256}") int capacity,
+                      @Value("${reco.trace.force-user-ids:}") String forceUserIds) {
+        this.ring = new AtomicReferenceArray<>(Math.max(1, capacity));
+        this.sampleRate = sampleRate;
+        this.forcedUserIds = parseIds(forceUserIds);
+        this.sampledCounter = Counter.builder("reco.trace.sampled").register(meterRegistry);
+    }
+
+    /** Trace cho request này: bản ghi thật nếu được lấy mẫu, ngược lại {@link RecoTrace#NOOP}. */
+    public RecoTrace start(Long userId) {
+        // Set.of().contains(null) ném NPE: khách chưa đăng nhập chỉ đi theo sample-rate
+        boolean sample = (userId != null && forcedUserIds.contains(userId))
+                || (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate);
+        return sample ? new RecoTrace(userId, true) : RecoTrace.NOOP;
+    }
+
+    public void finish(RecoTrace trace, String source) {
+        if (!trace.isSampled()) return;
+        trace.finish(source);
+        ring.set((int) (seq.getAndIncrement() % ring.length()), trace);
+        sampledCounter.increment();
+    }
+
+    /** Trace gần nhất trước (lọc theo userId nếu có). */
+    public List<RecoTrace> recent(Long userId, int limit) {
+        List<RecoTrace> out = new ArrayList<>();
+        long end = seq.get();
+        for (long i = end - 1; i >= Math.max(0, end - ring.length()) && out.size() < limit; i--) {
+            RecoTrace t = ring.get((int) (i % ring.length()));
+            if (t != null && (userId == null || userId.equals(t.getUserId()))) out.add(t);
+        }
+        return out;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+    }
+
+    public Set<Long> getForcedUserIds() {
+        return forcedUserIds;
+    }
+
+    public void setForcedUserIds(Collection<Long> userIds) {
+        this.forcedUserIds = userIds == null ? Set.of() : Set.copyOf(userIds);
+    }
+
+    private static Set<Long> parseIds(String csv) {
+        if (csv == null || csv.isBlank()) return Set.of();
+        Set<Long> ids = new HashSet<>();
+        for (String s : csv.split(",")) {
+            if (!s.isBlank()) ids.add(Long.parseLong(s.trim()));
+        }
+        return Set.copyOf(ids);
+    }
+}
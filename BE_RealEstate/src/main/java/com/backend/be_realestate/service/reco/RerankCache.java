@@ -0,0 +1,175 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import com.backend.be_realestate.service.cache.PropertyCardCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Cache kết quả rerank AI. Key chính = SHA-256 của (các trường UserPreference, id ứng viên đã sort kèm version,
+ * topK, model) => refresh trang chủ với cùng dữ liệu không gọi lại LLM.
+ * Ngoài ra giữ bản gần nhất theo (preference, topK, model): nếu tập ứng viên chỉ đổi vài tin
+ * thì dùng lại điểm AI của các tin không đổi (xem {@link #getPartial}).
+ */
+@Component
+public class RerankCache {
+
+    /** Điểm AI theo id + version của từng tin lúc chấm (mọi tin đã gửi cho model). order = thứ tự AI trả về. */
+    record Entry(Map<Long, Long> versions, Map<Long, Double> aiScores, List<Long> order) {}
+
+    private final PropertyCardCache cardCache;
+    private final String model;
+    private final int partialMaxChanged;
+    private final Cache<String, Entry> exact;
+    private final Cache<String, Entry> byPreference;
+    private final MeterRegistry meterRegistry;
+
+    public RerankCache(PropertyCardCache cardCache,
+                       MeterRegistry meterRegistry,
+                       @Value("${ai.rerank.model:openai/gpt-3.5-turbo}") String model,
+                       @Value("${ai.rerank.cache.max-size:20000}") long maxSize,
+                       @Value("${ai.rerank.cache.ttl-minutes:30}") long ttlMinutes,
+                       @Value("${ai.rerank.cache.partial-max-changed:3}") int partialMaxChanged) {
+        this.cardCache = cardCache;
+        this.meterRegistry = meterRegistry;
+        this.model = model;
+        this.partialMaxChanged = partialMaxChanged;
+        this.exact = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        this.byPreference = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, exact, "reco.rerank.cache");
+    }
+
+    /** Kết quả đã cache cho đúng tập ứng viên (cùng version), null nếu chưa có. */
+    public List<ScoredProperty> getExact(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        Entry e = exact.getIfPresent(exactKey(pref, candidates, topK));
+        if (e == null) return null;
+        return ordered(e.order(), candidates, topK);
+    }
+
+    /**
+     * Dùng lại điểm AI của lần chấm gần nhất cùng preference khi chỉ có tối đa partial-max-changed tin
+     * mới / đã sửa. Tin mới nhận điểm AI trung bình của lần chấm cũ trên toàn bộ tin đã chấm, không chỉ topK
+     * (trung tính), rồi xếp theo finalScore như rerank thật. null nếu đổi quá nhiều.
+     */
+    public List<ScoredProperty> getPartial(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        Entry e = byPreference.getIfPresent(preferenceKey(pref, topK));
+        if (e == null) return null;
+
+        int changed = 0;
+        for (ScoredProperty sp : candidates) {
+            Long v = e.versions().get(sp.getId());
+            if (v == null || v != cardCache.versionOf(sp.getId())) changed++;
+        }
+        if (changed == 0 || changed > partialMaxChanged) return null;
+
+        double neutral = e.aiScores().values().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        List<ScoredProperty> out = new ArrayList<>(candidates.size());
+        for (ScoredProperty sp : candidates) {
+            Long v = e.versions().get(sp.getId());
+            boolean fresh = v != null && v == cardCache.versionOf(sp.getId());
+            double ai = fresh ? e.aiScores().getOrDefault(sp.getId(), 0.0) : neutral;
+            out.add(sp.toBuilder()
+                    .aiScore(ai)
+                    .finalScore(RerankScoring.blend(sp.getBaseScore(), ai))
+                    .build());
+        }
+        meterRegistry.counter("reco.rerank.cache.partial").increment();
+        return out.stream()
+                .sorted(Comparator.comparing(ScoredProperty::getFinalScore).reversed())
+                .limit(topK)
+                .toList();
+    }
+
+    /** ranked = kết quả đầy đủ của provider (mọi tin đã chấm, chưa cắt topK). */
+    public void put(UserPreference pref, List<ScoredProperty> candidates, int topK, List<ScoredProperty> ranked) {
+        Map<Long, Long> versions = new HashMap<>();
+        for (ScoredProperty sp : candidates) versions.put(sp.getId(), cardCache.versionOf(sp.getId()));
+        Map<Long, Double> scores = new HashMap<>();
+        for (ScoredProperty sp : ranked) {
+            if (sp.getAiScore() != null) scores.put(sp.getId(), sp.getAiScore());
+        }
+        Entry e = new Entry(versions, scores, ranked.stream().map(ScoredProperty::getId).toList());
+        exact.put(exactKey(pref, candidates, topK), e);
+        byPreference.put(preferenceKey(pref, topK), e);
+    }
+
+    // Thứ tự đã cache cho các id còn trong tập ứng viên, phần thiếu bù theo baseScore
+    static List<ScoredProperty> ordered(List<Long> order, List<ScoredProperty> candidates, int topK) {
+        Map<Long, ScoredProperty> byId = new LinkedHashMap<>();
+        for (ScoredProperty sp : candidates) byId.putIfAbsent(sp.getId(), sp);
+
+        List<ScoredProperty> out = new ArrayList<>(topK);
+        for (Long id : order) {
+            ScoredProperty sp = byId.remove(id);
+            if (sp != null && out.size() < topK) out.add(sp);
+        }
+        if (out.size() < topK) {
+            out.addAll(RerankScoring.fallbackByBase(new ArrayList<>(byId.values()), topK - out.size()));
+        }
+        return out;
+    }
+
+    private String exactKey(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        StringBuilder sb = new StringBuilder(preferenceFingerprint(pref)).append("|k=").append(topK).append("|m=").append(model);
+        candidates.stream().map(ScoredProperty::getId).sorted().forEach(id ->
+                sb.append('|').append(id).append(':').append(cardCache.versionOf(id)));
+        return sha256(sb.toString());
+    }
+
+    /** Khoá feed của 1 user (dedupe lượt chấm nền). */
+    public String feedKey(UserPreference pref, int topK) {
+        return pref.getUserId() + "|" + preferenceKey(pref, topK);
+    }
+
+    private String preferenceKey(UserPreference pref, int topK) {
+        return sha256(preferenceFingerprint(pref) + "|k=" + topK + "|m=" + model);
+    }
+
+    // Các trường ảnh hưởng tới prompt (trừ userId: cùng sở thích thì dùng chung kết quả); list đã sort cho ổn định
+    private static String preferenceFingerprint(UserPreference p) {
+        return String.join("|",
+                "anchor=" + p.getAnchorCityId(),
+                "near=" + sorted(p.getNearCityIds()),
+                "preferred=" + sorted(p.getPreferredCityIds()),
+                "favCity=" + sorted(p.getFavCityIds()),
+                "types=" + sorted(p.getFavTypes()),
+                "price=" + p.getPriceMin() + "-" + p.getPriceMax(),
+                "area=" + p.getAreaMin() + "-" + p.getAreaMax(),
+                "saved=" + sorted(p.getSavedIds()),
+                "kw=" + sorted(p.getKeywords()));
+    }
+
+    private static <T extends Comparable<? super T>> List<T> sorted(Collection<T> values) {
+        if (values == null) return List.of();
+        List<T> out = new ArrayList<>(values);
+        out.removeIf(Objects::isNull);
+        Collections.sort(out);
+        return out;
+    }
+
+    private static String sha256(String s) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(s.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.backend.be_realestate.service.reco;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker tối giản cho provider rerank: mở sau N lỗi liên tiếp, giữ mở open-ms,
+ * sau đó cho đúng 1 request thử (half-open); thành công thì đóng lại, lỗi thì mở tiếp.
+ */
+class RerankCircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openMs;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    RerankCircuitBreaker(int failureThreshold, long openMs) {
+        this(failureThreshold, openMs, System::currentTimeMillis);
+    }
+
+    RerankCircuitBreaker(int failureThreshold, long openMs, LongSupplier clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMs = openMs;
+        this.clock = clock;
+    }
+
+    /** true nếu được phép gọi provider. */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (clock.getAsLong() - openedAt < openMs) return false;
+                state = State.HALF_OPEN; // cho 1 request thử
+                return true;
+            default:
+                return false; // đang có request thử
+        }
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+        }
+    }
+
+    /** Request thử không tới được provider (vd. hàng đợi đầy): trả lại lượt thử, không tính là lỗi. */
+    synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) state = State.OPEN; // openedAt giữ nguyên => request sau được thử lại ngay
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
@@ -0,0 +1,172 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.RerankJob;
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import com.backend.be_realestate.service.IAIService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Gom các job rerank của nhiều user trong window-ms (hoặc đủ max-batch job) thành 1 lượt gọi
+ * provider ({@link IAIService#rerankBatchAsync}), rồi trả kết quả về đúng future của từng người gọi.
+ * Số lượt gọi provider đồng thời bị giới hạn theo provider
+ * (ai.rerank.dispatch.concurrency.&lt;provider&gt;, mặc định ai.rerank.dispatch.max-concurrency);
+ * hết slot thì job chờ trong hàng đợi có giới hạn, đầy thì từ chối ngay để phía gọi fallback.
+ * Kết quả mỗi lượt gọi provider (không phải mỗi job) báo cho call listener, vd. circuit breaker.
+ */
+@Slf4j
+@Component
+public class RerankDispatcher {
+
+    private record Pending(RerankJob job, CompletableFuture<List<ScoredProperty>> future) {}
+
+    private final IAIService aiService;
+    private final BlockingQueue<Pending> queue;
+    private final long windowMs;
+    private final int maxBatch;
+    private final Semaphore permits;
+    private final DistributionSummary batchSize;
+    private final List<Consumer<Throwable>> callListeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public RerankDispatcher(IAIService aiService,
+                            MeterRegistry meterRegistry,
+                            Environment env,
+                            @Value("${ai.rerank.dispatch.window-ms:50}") long windowMs,
+                            @Value("${ai.rerank.dispatch.max-batch:4}") int maxBatch,
+                            @Value("${ai.rerank.dispatch.queue-capacity:1000}") int capacity,
+                            @Value("${ai.rerank.dispatch.max-concurrency:4}") int defaultConcurrency) {
+        this.aiService = aiService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.windowMs = windowMs;
+        this.maxBatch = Math.max(1, maxBatch);
+
+        String provider = aiService.providerName();
+        int concurrency = env.getProperty("ai.rerank.dispatch.concurrency." + provider, Integer.class, defaultConcurrency);
+        this.permits = new Semaphore(Math.max(1, concurrency));
+
+        Gauge.builder("reco.rerank.dispatch.queue.depth", queue, BlockingQueue::size)
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("reco.rerank.dispatch.in-flight", permits, p -> Math.max(1, concurrency) - p.availablePermits())
+                .tag("provider", provider)
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("reco.rerank.dispatch.batch.size")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        log.info("[AI-RERANK] dispatcher provider={} concurrency={} window={}ms maxBatch={}",
+                provider, concurrency, windowMs, this.maxBatch);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "rerank-dispatch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Không chặn; future lỗi RejectedExecutionException nếu hàng đợi đầy. */
+    public CompletableFuture<List<ScoredProperty>> submit(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        CompletableFuture<List<ScoredProperty>> f = new CompletableFuture<>();
+        if (!queue.offer(new Pending(new RerankJob(pref, candidates, topK), f))) {
+            f.completeExceptionally(new RejectedExecutionException("rerank_queue_full"));
+        }
+        return f;
+    }
+
+    /** Gọi 1 lần / lượt gọi provider: null nếu mọi job thành công, ngược lại là lỗi đầu tiên. */
+    void addCallListener(Consumer<Throwable> listener) {
+        callListeners.add(listener);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        worker.interrupt();
+        List<Pending> left = new ArrayList<>();
+        queue.drainTo(left);
+        left.forEach(p -> p.future().completeExceptionally(new CancellationException("shutdown")));
+    }
+
+    private void runLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running) {
+            try {
+                Pending first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Chờ thêm tối đa window-ms để gom job của user khác
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatch - batch.size());
+                }
+                // Hết slot provider => worker đứng chờ, job mới dồn trong hàng đợi (thấy qua queue.depth)
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(p -> p.future().completeExceptionally(new CancellationException("shutdown")));
+                return;
+            }
+            dispatch(List.copyOf(batch));
+            batch.clear();
+        }
+    }
+
+    private void dispatch(List<Pending> batch) {
+        batchSize.record(batch.size());
+        List<CompletableFuture<List<ScoredProperty>>> results;
+        try {
+            results = aiService.rerankBatchAsync(batch.stream().map(Pending::job).toList());
+        } catch (Exception ex) {
+            permits.release();
+            onCallCompleted(ex);
+            batch.forEach(p -> p.future().completeExceptionally(ex));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            CompletableFuture<List<ScoredProperty>> target = batch.get(i).future();
+            results.get(i).whenComplete((ranked, err) -> {
+                if (err != null) target.completeExceptionally(err);
+                else target.complete(ranked);
+            });
+        }
+        // Trả slot khi cả lượt gọi xong (thành công hay lỗi)
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .whenComplete((v, err) -> {
+                    permits.release();
+                    onCallCompleted(err instanceof CompletionException && err.getCause() != null ? err.getCause() : err);
+                });
+    }
+
+    private void onCallCompleted(Throwable err) {
+        for (Consumer<Throwable> l : callListeners) {
+            try {
+                l.accept(err);
+            } catch (RuntimeException ex) {
+                log.warn("[AI-RERANK] call listener failed: {}", ex.getMessage());
+            }
+        }
+    }
+}
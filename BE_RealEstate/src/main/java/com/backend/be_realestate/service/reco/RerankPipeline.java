@@ -0,0 +1,145 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Rerank gợi ý bằng AI trong giới hạn thời gian cố định (ai.rerank.budget-ms):
+ * - Có trong RerankCache (khớp hẳn, hoặc chỉ vài tin đổi) thì trả luôn, không gọi LLM.
+ * - Gọi provider bất đồng bộ qua RerankDispatcher (gom nhiều user / lượt gọi); quá budget thì trả ngay thứ tự theo baseScore,
+ *   kết quả AI về muộn vẫn được ghi vào cache cho request sau.
+ * - Provider lỗi liên tục => circuit breaker mở, bỏ qua AI trong open-ms. Breaker tính theo lượt gọi provider
+ *   (1 batch lỗi = 1 lỗi), không theo số job trong batch.
+ * - Cache partial hit chấm lại ở nền, mỗi (user, feed) tối đa 1 lượt chấm nền cùng lúc.
+ * Gọi ngoài transaction để không giữ connection DB trong lúc chờ LLM.
+ */
+@Slf4j
+@Component
+public class RerankPipeline {
+
+    private final RerankDispatcher dispatcher;
+    private final long budgetMs;
+    private final RerankCircuitBreaker breaker;
+    private final MeterRegistry meterRegistry;
+    private final RerankCache cache;
+    // Lượt chấm nền đang chạy sau partial hit, key = RerankCache.feedKey
+    private final Map<String, Boolean> refreshing = new ConcurrentHashMap<>();
+
+    public RerankPipeline(RerankDispatcher dispatcher,
+                          RerankCache cache,
+                          MeterRegistry meterRegistry,
+                          @Value("${ai.rerank.budget-ms:1500}") long budgetMs,
+                          @Value("${ai.rerank.breaker.failure-threshold:5}") int failureThreshold,
+                          @Value("${ai.rerank.breaker.open-ms:30000}") long openMs) {
+        this.dispatcher = dispatcher;
+        this.cache = cache;
+        this.meterRegistry = meterRegistry;
+        this.budgetMs = budgetMs;
+        this.breaker = new RerankCircuitBreaker(failureThreshold, openMs);
+        Gauge.builder("reco.rerank.breaker.open", breaker,
+                        b -> b.state() == RerankCircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+        dispatcher.addCallListener(err -> {
+            if (err == null) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+                log.warn("[AI-RERANK] provider failed: {}", err.getMessage());
+            }
+        });
+    }
+
+    public List<ScoredProperty> rerank(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        if (candidates == null || candidates.isEmpty()) return List.of();
+
+        List<ScoredProperty> cached = cache.getExact(pref, candidates, topK);
+        if (cached != null) {
+            count("cache_hit");
+            return cached;
+        }
+
+        List<ScoredProperty> partial = cache.getPartial(pref, candidates, topK);
+        if (partial != null) {
+            // Trả ngay bản dùng lại điểm cũ, chấm lại đầy đủ ở nền cho lần sau
+            count("cache_partial");
+            refreshInBackground(pref, candidates, topK);
+            return partial;
+        }
+
+        if (!breaker.tryAcquire()) {
+            count("breaker_open");
+            return RerankScoring.fallbackByBase(candidates, topK);
+        }
+
+        CompletableFuture<List<ScoredProperty>> call = call(pref, candidates, topK)
+                .thenApply(all -> all.stream().limit(topK).toList());
+
+        try {
+            List<ScoredProperty> ranked = call.get(budgetMs, TimeUnit.MILLISECONDS);
+            count("ai");
+            return ranked;
+        } catch (TimeoutException e) {
+            count("budget_exceeded");
+            return RerankScoring.fallbackByBase(candidates, topK);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RerankScoring.fallbackByBase(candidates, topK);
+        } catch (ExecutionException e) {
+            // Bị từ chối / huỷ đã được đếm là queue_full trong call()
+            if (!isAbandoned(e.getCause())) count("error");
+            return RerankScoring.fallbackByBase(candidates, topK);
+        }
+    }
+
+    private void refreshInBackground(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        String key = cache.feedKey(pref, topK);
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            count("refresh_skipped"); // đã có lượt chấm nền cho feed này
+            return;
+        }
+        if (!breaker.tryAcquire()) {
+            refreshing.remove(key);
+            return;
+        }
+        call(pref, candidates, topK).whenComplete((ranked, err) -> refreshing.remove(key));
+    }
+
+    // Gọi provider; kết quả đầy đủ (mọi tin đã chấm, kể cả về sau khi đã quá budget) được ghi vào cache.
+    // Thành công / lỗi của provider cập nhật breaker qua call listener của dispatcher
+    private CompletableFuture<List<ScoredProperty>> call(UserPreference pref, List<ScoredProperty> candidates, int topK) {
+        CompletableFuture<List<ScoredProperty>> call = dispatcher.submit(pref, candidates, topK);
+        call.whenComplete((ranked, err) -> {
+            if (isAbandoned(err)) {
+                // Hàng đợi dispatcher đầy / đang tắt: không phải lỗi provider
+                breaker.onAbandoned();
+                count("queue_full");
+            } else if (err == null) {
+                cache.put(pref, candidates, topK, ranked);
+            }
+        });
+        return call;
+    }
+
+    private static boolean isAbandoned(Throwable err) {
+        return err instanceof RejectedExecutionException || err instanceof CancellationException;
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("reco.rerank.requests", "outcome", outcome).increment();
+    }
+}
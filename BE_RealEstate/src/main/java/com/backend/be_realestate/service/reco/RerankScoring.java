@@ -0,0 +1,30 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cách ghép điểm dùng chung cho mọi provider rerank (OpenRouter, local embedding) và cache:
+ * finalScore = W_BASE * baseScore + W_AI * aiScore; không chấm được thì xếp theo baseScore.
+ */
+public final class RerankScoring {
+    private RerankScoring() {}
+
+    public static final double W_BASE = 0.35;
+    public static final double W_AI   = 0.65;
+
+    public static double blend(double baseScore, double aiScore) {
+        return W_BASE * baseScore + W_AI * aiScore;
+    }
+
+    // Lý do fallback đã được đếm ở metric reco.rerank.requests{outcome} (RerankPipeline), không log mỗi request
+    public static List<ScoredProperty> fallbackByBase(List<ScoredProperty> items, int k) {
+        if (items == null) return List.of();
+        return items.stream()
+                .sorted(Comparator.comparing(ScoredProperty::getBaseScore).reversed())
+                .limit(k)
+                .toList();
+    }
+}
@@ -0,0 +1,142 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.modals.dto.propertyEvent.SavedPropertyToggledEvent;
+import com.backend.be_realestate.repository.SavedPropertyRepository;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Hồ sơ hành vi "tin đã lưu" của từng user cho gợi ý: danh sách id đã lưu, đếm theo loại / city,
+ * min-max giá & diện tích. Nạp 1 query khi chưa có trong cache, sau đó cập nhật dần theo toggle lưu tin
+ * (AFTER_COMMIT) thay vì 4 query group by mỗi lần gọi gợi ý.
+ */
+@Component
+public class UserPreferenceStore {
+
+    /** Thứ tự listener SavedPropertyToggledEvent: profile cập nhật trước, feed (RecoFeedStore) tính lại sau. */
+    public static final int TOGGLE_ORDER = 0;
+
+    /** Tin đã lưu, đủ thông tin để tính lại thống kê khi bỏ lưu. */
+    record SavedItem(PropertyType type, Long cityId, Double price, Float area, PropertyStatus status) {}
+
+    private final SavedPropertyRepository savedPropertyRepository;
+    private final LoadingCache<Long, Profile> profiles;
+
+    public UserPreferenceStore(SavedPropertyRepository savedPropertyRepository,
+                               @Value("${reco.profile.max-size:50000}") long maxSize,
+                               @Value("${reco.profile.ttl-minutes:30}") long ttlMinutes) {
+        this.savedPropertyRepository = savedPropertyRepository;
+        this.profiles = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes)) // chặn độ cũ của giá / trạng thái tin đã lưu
+                .build(this::load);
+    }
+
+    public Profile get(Long userId) {
+        return userId == null ? new Profile() : profiles.get(userId);
+    }
+
+    @Order(TOGGLE_ORDER)
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onToggled(SavedPropertyToggledEvent e) {
+        // Chưa có trong cache thì lần gọi gợi ý sau sẽ tự nạp từ DB
+        profiles.asMap().computeIfPresent(e.getUserId(), (uid, p) -> {
+            if (e.isSaved()) {
+                p.add(e.getPropertyId(), new SavedItem(e.getPropertyType(), e.getCityId(),
+                        e.getPrice(), e.getArea(), e.getStatus()));
+            } else {
+                p.remove(e.getPropertyId());
+            }
+            return p;
+        });
+    }
+
+    private Profile load(Long userId) {
+        Profile p = new Profile();
+        // Query sắp mới nhất trước, Profile giữ theo thứ tự lưu => duyệt ngược
+        List<Object[]> rows = savedPropertyRepository.findPreferenceRowsByUser(userId);
+        for (int i = rows.size() - 1; i >= 0; i--) {
+            Object[] r = rows.get(i);
+            Number area = (Number) r[4];
+            p.add((Long) r[0], new SavedItem((PropertyType) r[1], (Long) r[2], (Double) r[3],
+                    area == null ? null : area.floatValue(), (PropertyStatus) r[5]));
+        }
+        return p;
+    }
+
+    /** Hồ sơ của 1 user; mọi thao tác đồng bộ trên chính đối tượng. */
+    public static final class Profile {
+        // id tin đã lưu -> thông tin, theo thứ tự lưu (cũ -> mới)
+        private final LinkedHashMap<Long, SavedItem> items = new LinkedHashMap<>();
+        private final Map<PropertyType, Integer> typeCounts = new EnumMap<>(PropertyType.class);
+        private final Map<Long, Integer> cityCounts = new HashMap<>();
+
+        synchronized void add(Long propertyId, SavedItem item) {
+            if (items.putIfAbsent(propertyId, item) != null) return;
+            if (item.type() != null) typeCounts.merge(item.type(), 1, Integer::sum);
+            if (item.cityId() != null) cityCounts.merge(item.cityId(), 1, Integer::sum);
+        }
+
+        synchronized void remove(Long propertyId) {
+            SavedItem item = items.remove(propertyId);
+            if (item == null) return;
+            if (item.type() != null) typeCounts.computeIfPresent(item.type(), (k, c) -> c > 1 ? c - 1 : null);
+            if (item.cityId() != null) cityCounts.computeIfPresent(item.cityId(), (k, c) -> c > 1 ? c - 1 : null);
+        }
+
+        /** Id tin đã lưu, mới nhất trước (như findPropertyIdsByUser). */
+        public synchronized List<Long> savedIds() {
+            List<Long> ids = new ArrayList<>(items.keySet());
+            Collections.reverse(ids);
+            return ids;
+        }
+
+        public synchronized List<PropertyType> topTypes(int limit) {
+            return topKeys(typeCounts, limit);
+        }
+
+        public synchronized List<Long> topCityIds(int limit) {
+            return topKeys(cityCounts, limit);
+        }
+
+        /** Giá lớn nhất trong các tin đã lưu còn PUBLISHED; null nếu không có. */
+        public synchronized Double maxPrice() {
+            return items.values().stream()
+                    .filter(Profile::countsForRange)
+                    .map(SavedItem::price)
+                    .max(Double::compare)
+                    .orElse(null);
+        }
+
+        public synchronized Float maxArea() {
+            return items.values().stream()
+                    .filter(Profile::countsForRange)
+                    .map(SavedItem::area)
+                    .max(Float::compare)
+                    .orElse(null);
+        }
+
+        // Cùng điều kiện với truy vấn priceAreaMinMax cũ
+        private static boolean countsForRange(SavedItem i) {
+            return i.status() == PropertyStatus.PUBLISHED && i.price() != null && i.area() != null;
+        }
+
+        private static <K> List<K> topKeys(Map<K, Integer> counts, int limit) {
+            return counts.entrySet().stream()
+                    .sorted(Map.Entry.<K, Integer>comparingByValue().reversed())
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        }
+    }
+}
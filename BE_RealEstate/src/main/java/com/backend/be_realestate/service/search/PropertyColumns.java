@@ -0,0 +1,540 @@
+package com.backend.be_realestate.service.search;
+
+import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.modals.request.PageCursor;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
+import com.backend.be_realestate.repository.PropertyRepository;
+import com.backend.be_realestate.utils.VietnameseTextUtils;
+import org.springframework.data.domain.Sort;
+
+import java.util.*;
+
+/**
+ * Snapshot bất biến (cột nguyên thuỷ + văn bản + chỉ mục đảo) của các tin PUBLISHED, dùng để lọc /api/properties không cần DB.
+ * - Mỗi tin chiếm 1 "slot" cố định; slot chia thành segment SEGMENT_SIZE slot, mỗi segment có cột, bitset
+ *   (type, category, legal, amenity) và postings (term -> bitset) riêng.
+ * - Cập nhật = copy-on-write đúng các segment bị đụng tới rồi publish 1 snapshot mới; reader giữ snapshot cũ
+ *   không cần khoá và không bao giờ thấy trạng thái trộn.
+ * - Phân slot (id -> slot) do writer giữ ({@link Slots}), reader không dùng.
+ * NULL trong DB được lưu là NaN / 0 để so sánh cho kết quả giống SQL (NULL không thoả điều kiện range).
+ * postedAt NULL lưu là {@link #NO_POSTED_AT} và ra cursor là null, giống nhánh seek trên DB.
+ */
+final class PropertyColumns {
+
+    static final int SEGMENT_SHIFT = 12;
+    static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    /** postedAt NULL: nhỏ nhất => cuối khi DESC, đầu khi ASC (như MySQL). */
+    static final long NO_POSTED_AT = Long.MIN_VALUE;
+
+    private final Segment[] segments;
+    private final int count;
+
+    private PropertyColumns(Segment[] segments, int count) {
+        this.segments = segments;
+        this.count = count;
+    }
+
+    static PropertyColumns empty() {
+        return new PropertyColumns(new Segment[0], 0);
+    }
+
+    static PropertyColumns build(List<PropertyRepository.SearchIndexRow> rows, Map<Long, Set<Long>> amenities, Slots slots) {
+        return empty().withChanges(List.of(), rows, amenities, slots);
+    }
+
+    /**
+     * Tạo snapshot mới: gỡ toàn bộ removedIds rồi thêm lại rows (rows đã được lọc PUBLISHED).
+     * Chỉ các segment chứa slot bị đổi được sao chép; slots cập nhật tại chỗ (writer giữ khoá).
+     */
+    PropertyColumns withChanges(Collection<Long> removedIds,
+                                List<PropertyRepository.SearchIndexRow> rows,
+                                Map<Long, Set<Long>> amenities,
+                                Slots slots) {
+        Segment[] next = segments.clone();
+        boolean[] copied = new boolean[next.length];
+        int n = count;
+
+        for (Long id : removedIds) {
+            Integer slot = slots.release(id);
+            if (slot == null) continue;
+            writable(next, copied, slot).remove(slot & SEGMENT_MASK);
+            n--;
+        }
+        for (var row : rows) {
+            Integer old = slots.release(row.getId());
+            if (old != null) {
+                writable(next, copied, old).remove(old & SEGMENT_MASK);
+                n--;
+            }
+            int slot = slots.assign(row.getId());
+            int seg = slot >>> SEGMENT_SHIFT;
+            if (seg >= next.length) {
+                next = Arrays.copyOf(next, seg + 1);
+                copied = Arrays.copyOf(copied, seg + 1);
+            }
+            writable(next, copied, slot).put(slot & SEGMENT_MASK, row, amenities.getOrDefault(row.getId(), Set.of()));
+            n++;
+        }
+        for (int s = 0; s < next.length; s++) {
+            if (copied[s]) next[s].seal();
+        }
+        return new PropertyColumns(next, n);
+    }
+
+    private static Segment writable(Segment[] segs, boolean[] copied, int slot) {
+        int seg = slot >>> SEGMENT_SHIFT;
+        if (!copied[seg]) {
+            segs[seg] = segs[seg] == null ? new Segment() : new Segment(segs[seg]);
+            copied[seg] = true;
+        }
+        return segs[seg];
+    }
+
+    int count() {
+        return count;
+    }
+
+    long idAt(int slot) {
+        return segments[slot >>> SEGMENT_SHIFT].ids[slot & SEGMENT_MASK];
+    }
+
+    long postedAtAt(int slot) {
+        return segments[slot >>> SEGMENT_SHIFT].postedAt[slot & SEGMENT_MASK];
+    }
+
+    /** postedAt theo quy ước của PageCursor: null nếu tin không có postedAt. */
+    Long postedAtOrNull(int slot) {
+        long v = postedAtAt(slot);
+        return v == NO_POSTED_AT ? null : v;
+    }
+
+    /* =========================================================
+     * QUERY
+     * ========================================================= */
+
+    /** Từ khoá đã bỏ dấu: phrase để chấm điểm, tokens để tra postings theo tiền tố. */
+    record Keyword(String phrase, List<String> tokens, boolean matchAll) {}
+
+    /** Các slot khớp theo từng segment (null = segment không có slot nào) + điểm keyword (null nếu không có keyword). */
+    static final class Match {
+        private final BitSet[] bits;
+        private final int[][] scores;
+        private final int total;
+
+        private Match(BitSet[] bits, int[][] scores, int total) {
+            this.bits = bits;
+            this.scores = scores;
+            this.total = total;
+        }
+
+        int total() {
+            return total;
+        }
+
+        boolean hasScores() {
+            return scores != null;
+        }
+
+        int scoreAt(int slot) {
+            return scores == null ? 0 : scores[slot >>> SEGMENT_SHIFT][slot & SEGMENT_MASK];
+        }
+    }
+
+    /**
+     * Các slot thoả bộ lọc (đồng bộ ngữ nghĩa với PropertySpecification); keyword != null => chỉ xét tin khớp keyword
+     * và tính điểm liên quan giống PropertySpecification.hasKeyword.
+     */
+    Match filter(PropertySearchCriteria c, Keyword keyword, long now) {
+        BitSet[] out = new BitSet[segments.length];
+        int[][] scores = keyword != null ? new int[segments.length][] : null;
+        int total = 0;
+        for (int s = 0; s < segments.length; s++) {
+            BitSet acc = segments[s].filter(c, keyword, now);
+            if (acc.isEmpty()) continue;
+            out[s] = acc;
+            total += acc.cardinality();
+            if (keyword != null) scores[s] = segments[s].scores(acc, keyword.phrase());
+        }
+        return new Match(out, scores, total);
+    }
+
+    /**
+     * Tối đa k slot đầu tiên theo thứ tự sort (unsorted => điểm keyword desc rồi postedAt desc), tie-break id desc.
+     * Chọn bằng heap k phần tử trên mảng int, không sắp xếp toàn bộ tập khớp.
+     * after != null => chỉ xét slot nằm sau cursor (thứ tự (score desc,) postedAt desc, id desc).
+     */
+    int[] top(Match m, Sort sort, PageCursor after, int k) {
+        SlotOrder order = order(sort, m);
+        TopK heap = new TopK(Math.max(0, k), order);
+        for (int s = 0; s < m.bits.length; s++) {
+            BitSet b = m.bits[s];
+            if (b == null) continue;
+            int base = s << SEGMENT_SHIFT;
+            for (int i = b.nextSetBit(0); i >= 0; i = b.nextSetBit(i + 1)) {
+                int slot = base | i;
+                if (after != null && !after.isBefore(m.hasScores() ? m.scoreAt(slot) : null, postedAtOrNull(slot), idAt(slot))) {
+                    continue;
+                }
+                heap.offer(slot);
+            }
+        }
+        return heap.sorted();
+    }
+
+    @FunctionalInterface
+    interface SlotOrder {
+        /** < 0 nếu slot a đứng trước b. */
+        int compare(int a, int b);
+    }
+
+    private SlotOrder order(Sort sort, Match m) {
+        SlotOrder byId = (a, b) -> Long.compare(idAt(b), idAt(a));
+        if (sort == null || sort.isUnsorted()) {
+            SlotOrder byPosted = (a, b) -> Long.compare(postedAtAt(b), postedAtAt(a));
+            SlotOrder base = m.hasScores()
+                    ? (a, b) -> {
+                        int r = Integer.compare(m.scoreAt(b), m.scoreAt(a));
+                        return r != 0 ? r : byPosted.compare(a, b);
+                    }
+                    : byPosted;
+            return then(base, byId);
+        }
+        SlotOrder cmp = null;
+        for (Sort.Order o : sort) {
+            SlotOrder next = switch (o.getProperty()) {
+                case "price" -> (a, b) -> Double.compare(col(a).price[a & SEGMENT_MASK], col(b).price[b & SEGMENT_MASK]);
+                case "area"  -> (a, b) -> Float.compare(col(a).area[a & SEGMENT_MASK], col(b).area[b & SEGMENT_MASK]);
+                default      -> (a, b) -> Long.compare(postedAtAt(a), postedAtAt(b));
+            };
+            if (o.isDescending()) {
+                SlotOrder asc = next;
+                next = (a, b) -> asc.compare(b, a);
+            }
+            cmp = (cmp == null) ? next : then(cmp, next);
+        }
+        return then(cmp, byId);
+    }
+
+    private static SlotOrder then(SlotOrder first, SlotOrder second) {
+        return (a, b) -> {
+            int r = first.compare(a, b);
+            return r != 0 ? r : second.compare(a, b);
+        };
+    }
+
+    private Segment col(int slot) {
+        return segments[slot >>> SEGMENT_SHIFT];
+    }
+
+    /** Heap k phần tử (gốc = phần tử đứng cuối) trên int[]; sorted() trả về theo thứ tự tăng dần của order. */
+    static final class TopK {
+        private final int[] heap;
+        private final SlotOrder order;
+        private int size;
+
+        TopK(int k, SlotOrder order) {
+            this.heap = new int[k];
+            this.order = order;
+        }
+
+        void offer(int slot) {
+            if (size < heap.length) {
+                heap[size] = slot;
+                siftUp(size++);
+            } else if (size > 0 && order.compare(slot, heap[0]) < 0) {
+                heap[0] = slot;
+                siftDown(0);
+            }
+        }
+
+        int[] sorted() {
+            int[] out = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                out[i] = heap[0];
+                heap[0] = heap[--size];
+                siftDown(0);
+            }
+            return out;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (order.compare(heap[i], heap[parent]) <= 0) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, r = l + 1, worst = i;
+                if (l < size && order.compare(heap[l], heap[worst]) > 0) worst = l;
+                if (r < size && order.compare(heap[r], heap[worst]) > 0) worst = r;
+                if (worst == i) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+
+    /* =========================================================
+     * SLOT ALLOCATION (writer)
+     * ========================================================= */
+
+    /** id -> slot và slot trống để tái sử dụng; chỉ writer (PropertySearchIndex, synchronized) dùng. */
+    static final class Slots {
+        private final Map<Long, Integer> slotOf = new HashMap<>();
+        private final BitSet used = new BitSet();
+
+        Integer release(Long id) {
+            Integer slot = slotOf.remove(id);
+            if (slot != null) used.clear(slot);
+            return slot;
+        }
+
+        int assign(Long id) {
+            int slot = used.nextClearBit(0);
+            used.set(slot);
+            slotOf.put(id, slot);
+            return slot;
+        }
+    }
+
+    /* =========================================================
+     * SEGMENT
+     * ========================================================= */
+
+    record TextDoc(String title, String addr, Set<String> terms) {
+
+        static TextDoc from(PropertyRepository.SearchIndexRow r) {
+            String title = VietnameseTextUtils.fold(r.getTitle());
+            String addr = VietnameseTextUtils.fold(r.getDisplayAddress());
+            Set<String> terms = new HashSet<>(VietnameseTextUtils.tokenize(title));
+            terms.addAll(VietnameseTextUtils.tokenize(addr));
+            return new TextDoc(title, addr, terms);
+        }
+
+        // Giống CASE WHEN trong hasKeyword (so trên chuỗi đã bỏ dấu)
+        int score(String phrase) {
+            int s = 0;
+            if (addr.startsWith(phrase))  s += 8;
+            if (title.startsWith(phrase)) s += 5;
+            if (addr.contains(phrase))    s += 4;
+            if (title.contains(phrase))   s += 2;
+            return s;
+        }
+    }
+
+    /**
+     * SEGMENT_SIZE slot liên tiếp. Sau khi publish thì không đổi nữa; bản sao dùng chung các BitSet với bản gốc
+     * và chỉ clone BitSet nào nó thực sự sửa (owned).
+     */
+    private static final class Segment {
+        final long[] ids;
+        final long[] postedAt;
+        final long[] expiresAt;    // Long.MAX_VALUE = không hết hạn
+        final double[] price;      // NaN = NULL
+        final float[] area;        // NaN = NULL
+        final int[] bedrooms;      // 0 = NULL
+        final int[] bathrooms;     // 0 = NULL
+        final long[] cityId;       // 0 = NULL
+        final TextDoc[] docs;
+
+        final BitSet live;
+        final Map<PropertyType, BitSet> byType;
+        final Map<String, BitSet> byCategory;
+        final Map<String, BitSet> byLegal;
+        final Map<Long, BitSet> byAmenity;
+        final NavigableMap<String, BitSet> postings;
+        private final Set<BitSet> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Segment() {
+            ids = new long[SEGMENT_SIZE];
+            postedAt = new long[SEGMENT_SIZE];
+            expiresAt = new long[SEGMENT_SIZE];
+            price = new double[SEGMENT_SIZE];
+            area = new float[SEGMENT_SIZE];
+            bedrooms = new int[SEGMENT_SIZE];
+            bathrooms = new int[SEGMENT_SIZE];
+            cityId = new long[SEGMENT_SIZE];
+            docs = new TextDoc[SEGMENT_SIZE];
+            live = new BitSet(SEGMENT_SIZE);
+            owned.add(live);
+            byType = new EnumMap<>(PropertyType.class);
+            byCategory = new HashMap<>();
+            byLegal = new HashMap<>();
+            byAmenity = new HashMap<>();
+            postings = new TreeMap<>();
+        }
+
+        Segment(Segment src) {
+            ids = src.ids.clone();
+            postedAt = src.postedAt.clone();
+            expiresAt = src.expiresAt.clone();
+            price = src.price.clone();
+            area = src.area.clone();
+            bedrooms = src.bedrooms.clone();
+            bathrooms = src.bathrooms.clone();
+            cityId = src.cityId.clone();
+            docs = src.docs.clone();
+            live = (BitSet) src.live.clone();
+            owned.add(live);
+            byType = new EnumMap<>(src.byType);
+            byCategory = new HashMap<>(src.byCategory);
+            byLegal = new HashMap<>(src.byLegal);
+            byAmenity = new HashMap<>(src.byAmenity);
+            postings = new TreeMap<>(src.postings);
+        }
+
+        // Hết sửa: bản sao sau sẽ tự clone BitSet nào nó đụng tới
+        void seal() {
+            owned.clear();
+        }
+
+        void put(int i, PropertyRepository.SearchIndexRow r, Set<Long> amenityIds) {
+            ids[i] = r.getId();
+            postedAt[i] = r.getPostedAt() != null ? r.getPostedAt().getTime() : NO_POSTED_AT;
+            expiresAt[i] = r.getExpiresAt() != null ? r.getExpiresAt().getTime() : Long.MAX_VALUE;
+            price[i] = r.getPrice() != null ? r.getPrice() : Double.NaN;
+            area[i] = r.getArea() != null ? r.getArea() : Float.NaN;
+            bedrooms[i] = r.getBedrooms() != null ? r.getBedrooms() : 0;
+            bathrooms[i] = r.getBathrooms() != null ? r.getBathrooms() : 0;
+            cityId[i] = r.getCityId() != null ? r.getCityId() : 0L;
+            docs[i] = TextDoc.from(r);
+
+            live.set(i);
+            if (r.getPropertyType() != null) writable(byType, r.getPropertyType()).set(i);
+            if (r.getCategorySlug() != null) writable(byCategory, r.getCategorySlug()).set(i);
+            if (r.getLegalStatus() != null) writable(byLegal, r.getLegalStatus()).set(i);
+            for (Long a : amenityIds) writable(byAmenity, a).set(i);
+            for (String t : docs[i].terms()) writable(postings, t).set(i);
+        }
+
+        void remove(int i) {
+            live.clear(i);
+            clearIn(byType, i);
+            clearIn(byCategory, i);
+            clearIn(byLegal, i);
+            clearIn(byAmenity, i);
+            TextDoc doc = docs[i];
+            if (doc != null) {
+                for (String t : doc.terms()) {
+                    BitSet b = postings.get(t);
+                    if (b != null && b.get(i)) clear(postings, t, i);
+                }
+            }
+            docs[i] = null;
+        }
+
+        private <K> void clearIn(Map<K, BitSet> map, int i) {
+            List<K> hit = new ArrayList<>();
+            map.forEach((k, b) -> { if (b.get(i)) hit.add(k); });
+            for (K k : hit) clear(map, k, i);
+        }
+
+        private <K> void clear(Map<K, BitSet> map, K key, int i) {
+            BitSet b = writable(map, key);
+            b.clear(i);
+            if (b.isEmpty()) map.remove(key);
+        }
+
+        // BitSet dùng chung với snapshot cũ => clone trước khi sửa
+        private <K> BitSet writable(Map<K, BitSet> map, K key) {
+            BitSet b = map.get(key);
+            if (b == null) {
+                b = new BitSet();
+            } else if (owned.contains(b)) {
+                return b;
+            } else {
+                b = (BitSet) b.clone();
+            }
+            owned.add(b);
+            map.put(key, b);
+            return b;
+        }
+
+        BitSet filter(PropertySearchCriteria c, Keyword keyword, long now) {
+            BitSet acc = keyword != null ? keywordBits(keyword) : (BitSet) live.clone();
+            if (acc.isEmpty()) return acc;
+
+            if (c.getPropertyType() != null && !c.getPropertyType().trim().isEmpty()) {
+                try {
+                    andWith(acc, byType.get(PropertyType.valueOf(c.getPropertyType())));
+                } catch (IllegalArgumentException e) {
+                    acc.clear();
+                }
+            }
+            if (c.getCategorySlug() != null && !c.getCategorySlug().trim().isEmpty()) {
+                String slug = c.getCategorySlug().startsWith("/") ? c.getCategorySlug().substring(1) : c.getCategorySlug();
+                andWith(acc, byCategory.get(slug));
+            }
+            if (c.getLegalType() != null && !c.getLegalType().trim().isEmpty()) {
+                andWith(acc, byLegal.get(c.getLegalType().trim()));
+            }
+            if (c.getAmenityIds() != null && !c.getAmenityIds().isEmpty()) {
+                BitSet any = new BitSet(SEGMENT_SIZE);
+                for (Long a : c.getAmenityIds()) {
+                    BitSet b = byAmenity.get(a);
+                    if (b != null) any.or(b);
+                }
+                acc.and(any);
+            }
+            if (acc.isEmpty()) return acc;
+
+            // Các điều kiện range: quét cột nguyên thuỷ trên tập slot còn lại
+            boolean hasPriceFrom = c.getPriceFrom() != null, hasPriceTo = c.getPriceTo() != null;
+            boolean hasAreaFrom = c.getAreaFrom() != null, hasAreaTo = c.getAreaTo() != null;
+            double priceFrom = hasPriceFrom ? c.getPriceFrom() : 0, priceTo = hasPriceTo ? c.getPriceTo() : 0;
+            float areaFrom = hasAreaFrom ? c.getAreaFrom() : 0, areaTo = hasAreaTo ? c.getAreaTo() : 0;
+            int minBed = c.getBedroomsFrom() != null ? c.getBedroomsFrom() : 0;
+            int minBath = c.getBathroomsFrom() != null ? c.getBathroomsFrom() : 0;
+            long city = c.getCityId() != null ? c.getCityId() : 0L;
+
+            for (int i = acc.nextSetBit(0); i >= 0; i = acc.nextSetBit(i + 1)) {
+                boolean ok = expiresAt[i] > now
+                        && (city == 0L || cityId[i] == city)
+                        && (!hasPriceFrom || price[i] >= priceFrom)
+                        && (!hasPriceTo || price[i] <= priceTo)
+                        && (!hasAreaFrom || area[i] >= areaFrom)
+                        && (!hasAreaTo || area[i] <= areaTo)
+                        && (minBed <= 0 || bedrooms[i] >= minBed)
+                        && (minBath <= 0 || bathrooms[i] >= minBath);
+                if (!ok) acc.clear(i);
+            }
+            return acc;
+        }
+
+        // Khớp theo tiền tố từ: mọi term trong [t, t + Character.MAX_VALUE]; matchAll => giao, ngược lại hợp
+        private BitSet keywordBits(Keyword keyword) {
+            BitSet acc = null;
+            for (String t : keyword.tokens()) {
+                BitSet hits = new BitSet(SEGMENT_SIZE);
+                for (BitSet b : postings.subMap(t, true, t + Character.MAX_VALUE, true).values()) hits.or(b);
+                if (acc == null) acc = hits;
+                else if (keyword.matchAll()) acc.and(hits);
+                else acc.or(hits);
+                if (keyword.matchAll() && acc.isEmpty()) break;
+            }
+            return acc == null ? new BitSet() : acc;
+        }
+
+        int[] scores(BitSet acc, String phrase) {
+            int[] out = new int[SEGMENT_SIZE];
+            for (int i = acc.nextSetBit(0); i >= 0; i = acc.nextSetBit(i + 1)) out[i] = docs[i].score(phrase);
+            return out;
+        }
+
+        private static void andWith(BitSet acc, BitSet other) {
+            if (other == null) acc.clear();
+            else acc.and(other);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.backend.be_realestate.service.search;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.modals.request.PageCursor;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
+import com.backend.be_realestate.repository.PropertyRepository;
+import com.backend.be_realestate.utils.VietnameseTextUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+
+/**
+ * Chỉ mục tìm kiếm in-memory cho /api/properties trên các tin PUBLISHED:
+ * - Chỉ mục đảo (inverted index) trên title + displayAddress: bỏ dấu tiếng Việt, so khớp theo tiền tố từ
+ *   ("ha no" ~ "Hà Nội"), xếp hạng giống PropertySpecification.hasKeyword (addrStarts=8, titleStarts=5, addr=4, title=2).
+ * - Cột nguyên thuỷ + bitset cho các bộ lọc range / equality / tiện ích.
+ * Cả hai nằm trong 1 snapshot bất biến {@link PropertyColumns}, publish qua 1 biến volatile.
+ * Nạp toàn bộ khi app khởi động, cập nhật từng tin qua PropertyChangedEvent (sau commit).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PropertySearchIndex {
+
+    private static final Set<String> SORTABLE = Set.of("postedAt", "price", "area");
+    private static final int MIN_TOKEN_LENGTH = 2; // giống hasKeyword: bỏ token < 2 ký tự
+
+    private final PropertyRepository propertyRepository;
+
+    private volatile PropertyColumns columns = PropertyColumns.empty();
+    private PropertyColumns.Slots slots = new PropertyColumns.Slots(); // chỉ dùng trong các hàm synchronized
+    private volatile boolean ready = false;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean supportsSort(Sort sort) {
+        return sort.stream().allMatch(o -> SORTABLE.contains(o.getProperty()));
+    }
+
+    /* =========================================================
+     * BUILD / REFRESH
+     * ========================================================= */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            // Không chặn app khởi động: search sẽ tự fallback về DB
+            log.error("[SearchIndex] build failed, search falls back to DB: {}", e.getMessage(), e);
+        }
+    }
+
+    public synchronized void rebuild() {
+        long t0 = System.currentTimeMillis();
+        var rows = propertyRepository.findSearchRowsByStatus(PropertyStatus.PUBLISHED);
+        Map<Long, Set<Long>> amenities = groupAmenities(propertyRepository.findAmenityPairsByStatus(PropertyStatus.PUBLISHED));
+
+        PropertyColumns.Slots newSlots = new PropertyColumns.Slots();
+        this.columns = PropertyColumns.build(rows, amenities, newSlots);
+        this.slots = newSlots;
+        this.ready = true;
+        log.info("[SearchIndex] built docs={} in {}ms", columns.count(), System.currentTimeMillis() - t0);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (!ready || event.getIds() == null || event.getIds().isEmpty()) return;
+        try {
+            refresh(event.getIds());
+        } catch (Exception e) {
+            log.error("[SearchIndex] refresh {} failed: {}", event.getIds(), e.getMessage(), e);
+        }
+    }
+
+    public synchronized void refresh(Collection<Long> ids) {
+        Set<Long> idSet = new HashSet<>(ids);
+        var published = propertyRepository.findSearchRowsByIdIn(idSet).stream()
+                .filter(r -> r.getStatus() == PropertyStatus.PUBLISHED)
+                .toList();
+        Map<Long, Set<Long>> amenities = published.isEmpty()
+                ? Map.of()
+                : groupAmenities(propertyRepository.findAmenityPairsByIdIn(idSet));
+
+        // Gỡ bản cũ (kể cả tin đã bị xoá / đổi trạng thái) rồi thêm lại, copy-on-write theo segment, publish 1 lần
+        this.columns = columns.withChanges(idSet, published, amenities, slots);
+        log.debug("[SearchIndex] refreshed ids={} docs={}", idSet, columns.count());
+    }
+
+    /* =========================================================
+     * SEARCH
+     * ========================================================= */
+
+    /**
+     * 1 trang id khớp bộ lọc, đã sắp xếp, kèm tổng số tin khớp.
+     * Có keyword và sort unsorted => xếp theo điểm liên quan của keyword.
+     */
+    public PageResult search(PropertySearchCriteria c, Sort sort, int offset, int limit) {
+        PropertyColumns cols = this.columns;
+        PropertyColumns.Match m = cols.filter(c, keyword(c), System.currentTimeMillis());
+        int[] top = cols.top(m, sort, null, (int) Math.min((long) offset + limit, m.total()));
+
+        List<Long> ids = new ArrayList<>(Math.max(0, top.length - offset));
+        for (int i = offset; i < top.length; i++) ids.add(cols.idAt(top[i]));
+        return new PageResult(ids, m.total());
+    }
+
+    /**
+     * Phân trang keyset: tối đa limit id nằm sau cursor, theo (score desc,) postedAt desc, id desc.
+     * Slot trước cursor bị bỏ ngay khi quét, phần còn lại chỉ giữ limit + 1 slot đầu (heap), không sắp xếp toàn bộ.
+     */
+    public SeekResult scroll(PropertySearchCriteria c, PageCursor after, int limit) {
+        PropertyColumns cols = this.columns;
+        PropertyColumns.Match m = cols.filter(c, keyword(c), System.currentTimeMillis());
+        int[] ordered = cols.top(m, Sort.unsorted(), after, limit + 1);
+
+        boolean hasNext = ordered.length > limit;
+        int n = Math.min(limit, ordered.length);
+        List<Long> page = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) page.add(cols.idAt(ordered[i]));
+        PageCursor next = null;
+        if (hasNext) {
+            int last = ordered[n - 1];
+            next = PageCursor.of(m.hasScores() ? m.scoreAt(last) : null, cols.postedAtOrNull(last), cols.idAt(last));
+        }
+        return new SeekResult(List.copyOf(page), next);
+    }
+
+    // null nếu không có keyword hợp lệ (không giới hạn theo keyword)
+    private static PropertyColumns.Keyword keyword(PropertySearchCriteria c) {
+        if (!c.hasKeyword()) return null;
+        String phrase = VietnameseTextUtils.fold(c.getKeyword());
+        List<String> tokens = VietnameseTextUtils.tokenize(phrase).stream()
+                .filter(t -> t.length() >= MIN_TOKEN_LENGTH)
+                .toList();
+        if (tokens.isEmpty()) return null;
+        return new PropertyColumns.Keyword(phrase, tokens, c.isMatchAll());
+    }
+
+    /* =========================================================
+     * HELPERS
+     * ========================================================= */
+    private static Map<Long, Set<Long>> groupAmenities(List<Object[]> pairs) {
+        Map<Long, Set<Long>> out = new HashMap<>();
+        for (Object[] r : pairs) {
+            out.computeIfAbsent((Long) r[0], k -> new HashSet<>()).add((Long) r[1]);
+        }
+        return out;
+    }
+
+    public record PageResult(List<Long> ids, int total) {}
+
+    public record SeekResult(List<Long> ids, PageCursor nextCursor) {}
+}
@@ -0,0 +1,171 @@
+package com.backend.be_realestate.service.search;
+
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
+import com.backend.be_realestate.repository.PropertyRepository;
+import com.backend.be_realestate.repository.specification.PropertySpecification;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Cache tổng số kết quả (totalElements) của trang tìm kiếm, key = bộ lọc đã chuẩn hoá.
+ * - Trả về ngay giá trị đang có (có thể cũ tối đa fresh-ms), COUNT(*) chạy nền để làm mới.
+ * - Chưa có trong cache => trả về ước lượng (cận dưới từ trang hiện tại) và đếm nền.
+ * - Tin thay đổi (publish / hết hạn / ẩn...) => chỉ đánh dấu cũ các key cùng city / category (cả nhóm cũ
+ *   trong event.previous khi tin bị chuyển nhóm hoặc xoá); key được đếm lại ở lần đọc kế tiếp, không đếm ngay.
+ * - Mỗi key tối đa 1 lượt đếm đang chờ; hàng đợi đếm có giới hạn, đầy thì bỏ lượt (lần đọc sau thử lại).
+ * Chỉ dùng cho nhánh fallback truy vấn DB; chỉ mục in-memory tự tính tổng chính xác.
+ */
+@Component
+@Slf4j
+public class SearchCountCache {
+
+    /** countedAt / staleSince theo System.nanoTime(); countedAt là lúc BẮT ĐẦU đếm. */
+    private record Count(long total, long countedAt, long staleSince) {
+        boolean stale() {
+            return staleSince != NEVER && staleSince - countedAt >= 0;
+        }
+    }
+
+    private static final long NEVER = Long.MIN_VALUE;
+
+    private final PropertyRepository propertyRepository;
+    private final long freshNanos;
+    private final ThreadPoolExecutor executor;
+    private final Cache<PropertySearchCriteria, Count> counts;
+    private final Set<PropertySearchCriteria> pending = ConcurrentHashMap.newKeySet();
+
+    public SearchCountCache(PropertyRepository propertyRepository,
+                            @Value("${search.count.fresh-ms:60000}") long freshMs,
+                            @Value("${search.count.max-age-ms:1800000}") long maxAgeMs,
+                            @Value("${search.count.max-size:10000}") long maxSize,
+                            @Value("${search.count.threads:2}") int threads,
+                            @Value("${search.count.queue-capacity:1000}") int queueCapacity) {
+        this.propertyRepository = propertyRepository;
+        this.freshNanos = TimeUnit.MILLISECONDS.toNanos(freshMs);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread t = new Thread(r, "search-count");
+            t.setDaemon(true);
+            return t;
+        });
+        long maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMs);
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<PropertySearchCriteria, Count>() {   // quá cũ thì bỏ hẳn
+                    @Override
+                    public long expireAfterCreate(PropertySearchCriteria key, Count value, long currentTime) {
+                        return maxAgeNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(PropertySearchCriteria key, Count value,
+                                                  long currentTime, long currentDuration) {
+                        // chỉ đánh dấu cũ thì không gia hạn
+                        return value.stale() ? currentDuration : maxAgeNanos;
+                    }
+
+                    @Override
+                    public long expireAfterRead(PropertySearchCriteria key, Count value,
+                                                long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Tổng số kết quả cho bộ lọc (đã normalized). Không bao giờ chặn request bởi COUNT(*).
+     * lowerBound = offset + số phần tử trang hiện tại (+1 nếu còn trang sau).
+     */
+    public long estimate(PropertySearchCriteria key, long lowerBound) {
+        Count cached = counts.getIfPresent(key);
+        if (cached == null || cached.stale() || System.nanoTime() - cached.countedAt() >= freshNanos) {
+            scheduleCount(key); // đếm nền, request sau sẽ có số
+        }
+        return cached == null ? lowerBound : Math.max(cached.total(), lowerBound);
+    }
+
+    /** Trang cuối (không còn dữ liệu sau) => biết chính xác tổng, ghi luôn vào cache. */
+    public void putExact(PropertySearchCriteria key, long total) {
+        counts.put(key, new Count(total, System.nanoTime(), NEVER));
+    }
+
+    private void scheduleCount(PropertySearchCriteria key) {
+        if (!pending.add(key)) return; // đã có lượt đếm đang chờ cho key này
+        try {
+            executor.execute(() -> {
+                try {
+                    long startedAt = System.nanoTime();
+                    long total = countNow(key);
+                    // bị đánh dấu cũ trong lúc đang đếm => giữ cờ để lần đọc sau đếm lại
+                    counts.asMap().compute(key, (k, old) ->
+                            new Count(total, startedAt, old == null ? NEVER : old.staleSince()));
+                } catch (Exception e) {
+                    log.warn("[SearchCount] count {} failed: {}", key, e.getMessage());
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            log.debug("[SearchCount] queue full, skip count for {}", key);
+        }
+    }
+
+    private long countNow(PropertySearchCriteria key) {
+        long t0 = System.currentTimeMillis();
+        long total = propertyRepository.count(PropertySpecification.forSearch(key));
+        log.debug("[SearchCount] key={} total={} in {}ms", key, total, System.currentTimeMillis() - t0);
+        return total;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (event.getIds() == null || event.getIds().isEmpty() || counts.estimatedSize() == 0) return;
+        try {
+            var rows = propertyRepository.findSearchRowsByIdIn(event.getIds());
+            Set<Long> cities = new HashSet<>();
+            Set<String> categories = new HashSet<>();
+            rows.forEach(r -> {
+                cities.add(r.getCityId());
+                categories.add(r.getCategorySlug());
+            });
+            // nhóm cũ: tin chuyển city/category thì số đếm của nhóm cũ cũng đổi
+            event.getPrevious().forEach(p -> {
+                cities.add(p.cityId());
+                categories.add(p.categorySlug());
+            });
+            // tin bị xoá cứng mà không kèm city/category cũ => đánh dấu cũ tất cả
+            boolean unknown = rows.size() + event.getPrevious().size() < event.getIds().size();
+
+            long now = System.nanoTime();
+            for (PropertySearchCriteria key : counts.asMap().keySet()) {
+                boolean cityHit = key.getCityId() == null || cities.contains(key.getCityId());
+                boolean categoryHit = key.getCategorySlug() == null || categories.contains(key.getCategorySlug());
+                if (unknown || (cityHit && categoryHit)) {
+                    counts.asMap().computeIfPresent(key, (k, c) -> new Count(c.total(), c.countedAt(), now));
+                }
+            }
+        } catch (Exception e) {
+            log.error("[SearchCount] invalidate {} failed: {}", event.getIds(), e.getMessage(), e);
+            counts.invalidateAll();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,386 @@
+package com.backend.be_realestate.service.similar;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * HNSW (Hierarchical Navigable Small World) cho vector đã chuẩn hoá L2, khoảng cách = 1 - cosine.
+ * - Thêm từng vector (thêm lại cùng id = thay thế), xoá mềm: node bị xoá vẫn dùng để đi qua đồ thị
+ *   nhưng không trả về; khi tỉ lệ xoá lớn thì build lại ({@link #deletedRatio()}).
+ * - Chọn láng giềng bằng heuristic của bài báo gốc (giữ cạnh đa hướng) => recall tốt cả khi dữ liệu
+ *   có nhiều cụm trùng nhau (one-hot city / loại).
+ * Đọc song song, ghi tuần tự (read-write lock).
+ */
+public final class HnswIndex {
+
+    private final int dim;
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final double levelMult;
+    private final Random random;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Visited> visitedLocal = ThreadLocal.withInitial(Visited::new);
+
+    // Vector nằm liền nhau trong 1 mảng (node * dim): đỡ cache miss hơn float[][] khi duyệt đồ thị
+    private float[] vectors;
+    private long[] externalIds;
+    // links[node][level] = {count, n1, n2, ...}
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> nodeOf = new HashMap<>();
+    private int nodeCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dim, int m, int efConstruction, int expectedSize, long seed) {
+        this.dim = dim;
+        this.m = Math.max(2, m);
+        this.m0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMult = 1 / Math.log(this.m);
+        this.random = new Random(seed);
+        int cap = Math.max(16, expectedSize);
+        this.vectors = new float[cap * dim];
+        this.externalIds = new long[cap];
+        this.links = new int[cap][][];
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    /** Số vector còn hiệu lực. */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return nodeCount == 0 ? 0 : (double) deleted.cardinality() / nodeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public float[] vectorOf(long id) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeOf.get(id);
+            return node == null ? null : Arrays.copyOfRange(vectors, node * dim, node * dim + dim);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(long id, float[] vector) {
+        if (vector.length != dim) throw new IllegalArgumentException("dim " + vector.length + " != " + dim);
+        lock.writeLock().lock();
+        try {
+            Integer old = nodeOf.remove(id);
+            if (old != null) deleted.set(old);
+
+            ensureCapacity(nodeCount + 1);
+            int node = nodeCount++;
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMult);
+            System.arraycopy(vector, 0, vectors, node * dim, dim);
+            externalIds[node] = id;
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) links[node][l] = new int[(l == 0 ? m0 : m) + 1];
+            nodeOf.put(id, node);
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            float[] q = vector;
+            int ep = entryPoint;
+            float epDist = distance(q, ep);
+            for (int l = maxLevel; l > level; l--) {
+                ep = greedy(q, ep, l);
+                epDist = distance(q, ep);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                Heap found = searchLayer(q, ep, epDist, efConstruction, l);
+                float[] dists = new float[found.size()];
+                int[] sorted = found.drainAscending(dists);
+                int[] selected = selectNeighbours(sorted, dists, m);
+                int[] own = links[node][l];
+                own[0] = selected.length;
+                System.arraycopy(selected, 0, own, 1, selected.length);
+                for (int n : selected) connect(n, node, l);
+                ep = sorted[0];
+                epDist = distance(q, ep);
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeOf.remove(id);
+            if (node != null) deleted.set(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tối đa k id gần q nhất (cosine giảm dần), bỏ excludeId. ef lớn hơn => recall cao hơn, chậm hơn.
+     */
+    public List<Long> search(float[] q, int k, int ef, long excludeId) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) return List.of();
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) ep = greedy(q, ep, l);
+            int[] sorted = searchLayer(q, ep, distance(q, ep), Math.max(ef, k + 1), 0).drainAscending(null);
+
+            List<Long> out = new ArrayList<>(k);
+            for (int node : sorted) {
+                if (deleted.get(node) || externalIds[node] == excludeId) continue;
+                out.add(externalIds[node]);
+                if (out.size() == k) break;
+            }
+            return out;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* ===== Đồ thị ===== */
+
+    private int greedy(float[] q, int ep, int level) {
+        float best = distance(q, ep);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] nb = links[ep][level];
+            for (int i = 1; i <= nb[0]; i++) {
+                float d = distance(q, nb[i]);
+                if (d < best) {
+                    best = d;
+                    ep = nb[i];
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    // Trả về max-heap tối đa ef node gần q nhất ở tầng level
+    private Heap searchLayer(float[] q, int ep, float epDist, int ef, int level) {
+        Visited visited = visitedLocal.get();
+        visited.reset(nodeCount);
+        Heap candidates = new Heap(ef * 2, false);
+        Heap results = new Heap(ef + 1, true);
+        visited.mark(ep);
+        candidates.push(epDist, ep);
+        results.push(epDist, ep);
+
+        while (candidates.size() > 0) {
+            float cd = candidates.peekKey();
+            if (results.size() >= ef && cd > results.peekKey()) break;
+            int c = candidates.pop();
+            int[] nb = links[c][level];
+            for (int i = 1; i <= nb[0]; i++) {
+                int e = nb[i];
+                if (!visited.mark(e)) continue;
+                float d = distance(q, e);
+                if (results.size() < ef || d < results.peekKey()) {
+                    candidates.push(d, e);
+                    results.push(d, e);
+                    if (results.size() > ef) results.pop();
+                }
+            }
+        }
+        return results;
+    }
+
+    // Heuristic: giữ ứng viên c nếu c gần q hơn mọi láng giềng đã chọn; thiếu thì bù bằng các ứng viên bị loại.
+    // sortedAsc / distToQ: ứng viên và khoảng cách tới q, tăng dần
+    private int[] selectNeighbours(int[] sortedAsc, float[] distToQ, int max) {
+        if (sortedAsc.length <= max) return sortedAsc;
+        int[] chosen = new int[max];
+        int count = 0;
+        int[] pruned = new int[sortedAsc.length];
+        int prunedCount = 0;
+        for (int i = 0; i < sortedAsc.length && count < max; i++) {
+            int c = sortedAsc[i];
+            int vc = c * dim;
+            boolean good = true;
+            for (int j = 0; j < count; j++) {
+                if (distanceBetween(vc, chosen[j] * dim) < distToQ[i]) {
+                    good = false;
+                    break;
+                }
+            }
+            if (good) chosen[count++] = c; else pruned[prunedCount++] = c;
+        }
+        for (int i = 0; i < prunedCount && count < max; i++) chosen[count++] = pruned[i];
+        return count == max ? chosen : Arrays.copyOf(chosen, count);
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] nb = links[from][level];
+        int cap = nb.length - 1;
+        if (nb[0] < cap) {
+            nb[++nb[0]] = to;
+            return;
+        }
+        // Đầy: chọn lại cap láng giềng tốt nhất trong (cũ + mới), sắp theo khoảng cách tới from
+        int base = from * dim;
+        int n = cap + 1;
+        int[] nodes = new int[n];
+        float[] dist = new float[n];
+        for (int i = 0; i < n; i++) {
+            int node = i < cap ? nb[i + 1] : to;
+            float d = distanceBetween(base, node * dim);
+            int j = i;
+            while (j > 0 && dist[j - 1] > d) {
+                dist[j] = dist[j - 1];
+                nodes[j] = nodes[j - 1];
+                j--;
+            }
+            dist[j] = d;
+            nodes[j] = node;
+        }
+        int[] selected = selectNeighbours(nodes, dist, cap);
+        nb[0] = selected.length;
+        System.arraycopy(selected, 0, nb, 1, selected.length);
+    }
+
+    private float distance(float[] q, int node) {
+        float[] v = vectors;
+        int off = node * dim;
+        float dot = 0;
+        for (int i = 0; i < dim; i++) dot += q[i] * v[off + i];
+        return 1 - dot;
+    }
+
+    private float distanceBetween(int offA, int offB) {
+        float[] v = vectors;
+        float dot = 0;
+        for (int i = 0; i < dim; i++) dot += v[offA + i] * v[offB + i];
+        return 1 - dot;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= externalIds.length) return;
+        int cap = Math.max(needed, externalIds.length + (externalIds.length >> 1));
+        vectors = Arrays.copyOf(vectors, cap * dim);
+        externalIds = Arrays.copyOf(externalIds, cap);
+        links = Arrays.copyOf(links, cap);
+    }
+
+    /* ===== Cấu trúc phụ ===== */
+
+    // Đánh dấu đã thăm theo "lượt" để không phải xoá mảng mỗi lần tìm
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int stamp;
+
+        void reset(int size) {
+            if (marks.length < size) marks = new int[Math.max(size, marks.length * 2)];
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+        }
+
+        /** true nếu lần đầu thăm. */
+        boolean mark(int node) {
+            if (marks[node] == stamp) return false;
+            marks[node] = stamp;
+            return true;
+        }
+    }
+
+    // Binary heap (khoá float, giá trị int); max = true => đỉnh là khoá lớn nhất
+    private static final class Heap {
+        private float[] keys;
+        private int[] vals;
+        private int size;
+        private final boolean max;
+
+        Heap(int capacity, boolean max) {
+            this.keys = new float[Math.max(4, capacity)];
+            this.vals = new int[keys.length];
+            this.max = max;
+        }
+
+        int size() {
+            return size;
+        }
+
+        float peekKey() {
+            return keys[0];
+        }
+
+        void push(float key, int val) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                vals = Arrays.copyOf(vals, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (!before(key, keys[p])) break;
+                keys[i] = keys[p];
+                vals[i] = vals[p];
+                i = p;
+            }
+            keys[i] = key;
+            vals[i] = val;
+        }
+
+        int pop() {
+            int top = vals[0];
+            size--;
+            float key = keys[size];
+            int val = vals[size];
+            int i = 0;
+            while (true) {
+                int l = 2 * i + 1;
+                if (l >= size) break;
+                int r = l + 1;
+                int c = (r < size && before(keys[r], keys[l])) ? r : l;
+                if (!before(keys[c], key)) break;
+                keys[i] = keys[c];
+                vals[i] = vals[c];
+                i = c;
+            }
+            keys[i] = key;
+            vals[i] = val;
+            return top;
+        }
+
+        /** Lấy hết phần tử theo khoảng cách tăng dần (heap phải là max-heap); keys != null thì ghi kèm khoảng cách. */
+        int[] drainAscending(float[] keysOut) {
+            int[] out = new int[size];
+            for (int i = out.length - 1; i >= 0; i--) {
+                if (keysOut != null) keysOut[i] = keys[0];
+                out[i] = pop();
+            }
+            return out;
+        }
+
+        private boolean before(float a, float b) {
+            return max ? a > b : a < b;
+        }
+    }
+}
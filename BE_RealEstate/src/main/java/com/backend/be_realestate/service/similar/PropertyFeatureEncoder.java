@@ -0,0 +1,111 @@
+package com.backend.be_realestate.service.similar;
+
+import com.backend.be_realestate.enums.PropertyType;
+
+import java.util.*;
+
+/**
+ * Vector đặc trưng cho "tin tương tự", các khối nối tiếp nhau, mỗi khối nhân trọng số riêng rồi chuẩn hoá L2:
+ * [log giá, log diện tích (z-score, chặn ±3), phòng ngủ, phòng tắm] | one-hot loại | one-hot danh mục |
+ * one-hot tỉnh/thành | (tuỳ chọn) vector văn bản.
+ * Thống kê giá / diện tích và từ điển danh mục / city lấy lúc build ({@link #fit}); giá trị mới chưa gặp
+ * rơi vào ô "khác" của khối đó cho tới lần build sau.
+ */
+public final class PropertyFeatureEncoder {
+
+    public record Weights(double numeric, double type, double category, double city, double text) {}
+
+    public record Features(Double price, Float area, Integer bedrooms, Integer bathrooms,
+                           PropertyType type, Long categoryId, Long cityId) {}
+
+    private static final double ROOMS_SCALE = 5.0;
+
+    private final Weights w;
+    private final double priceMean, priceStd, areaMean, areaStd;
+    private final Map<Long, Integer> categoryIdx;
+    private final Map<Long, Integer> cityIdx;
+    private final int textDim;
+
+    private final int typeOff, categoryOff, cityOff, textOff, dim;
+
+    private PropertyFeatureEncoder(Weights w, double priceMean, double priceStd, double areaMean, double areaStd,
+                                   Map<Long, Integer> categoryIdx, Map<Long, Integer> cityIdx, int textDim) {
+        this.w = w;
+        this.priceMean = priceMean;
+        this.priceStd = priceStd;
+        this.areaMean = areaMean;
+        this.areaStd = areaStd;
+        this.categoryIdx = categoryIdx;
+        this.cityIdx = cityIdx;
+        this.textDim = w.text() > 0 ? textDim : 0;
+
+        this.typeOff = 4;
+        this.categoryOff = typeOff + PropertyType.values().length;
+        this.cityOff = categoryOff + categoryIdx.size() + 1;
+        this.textOff = cityOff + cityIdx.size() + 1;
+        this.dim = textOff + this.textDim;
+    }
+
+    public static PropertyFeatureEncoder fit(Collection<Features> rows, Weights w, int textDim) {
+        double[] price = meanStd(rows.stream().map(Features::price).filter(p -> p != null && p > 0)
+                .mapToDouble(Math::log).toArray());
+        double[] area = meanStd(rows.stream().map(Features::area).filter(a -> a != null && a > 0)
+                .mapToDouble(Math::log).toArray());
+
+        Map<Long, Integer> categories = new HashMap<>();
+        Map<Long, Integer> cities = new HashMap<>();
+        for (Features f : rows) {
+            if (f.categoryId() != null) categories.putIfAbsent(f.categoryId(), categories.size());
+            if (f.cityId() != null) cities.putIfAbsent(f.cityId(), cities.size());
+        }
+        return new PropertyFeatureEncoder(w, price[0], price[1], area[0], area[1], categories, cities, textDim);
+    }
+
+    public int dim() {
+        return dim;
+    }
+
+    public boolean usesText() {
+        return textDim > 0;
+    }
+
+    /** @param text vector văn bản đã chuẩn hoá (bỏ qua nếu không dùng khối text hoặc null) */
+    public float[] encode(Features f, float[] text) {
+        float[] v = new float[dim];
+        float wn = (float) w.numeric();
+        v[0] = wn * z(f.price() == null ? null : f.price().doubleValue(), priceMean, priceStd);
+        v[1] = wn * z(f.area() == null ? null : f.area().doubleValue(), areaMean, areaStd);
+        v[2] = wn * (float) (Math.min(f.bedrooms() == null ? 0 : f.bedrooms(), 10) / ROOMS_SCALE);
+        v[3] = wn * (float) (Math.min(f.bathrooms() == null ? 0 : f.bathrooms(), 10) / ROOMS_SCALE);
+
+        if (f.type() != null) v[typeOff + f.type().ordinal()] = (float) w.type();
+        v[categoryOff + categoryIdx.getOrDefault(f.categoryId(), categoryIdx.size())] = (float) w.category();
+        v[cityOff + cityIdx.getOrDefault(f.cityId(), cityIdx.size())] = (float) w.city();
+
+        if (textDim > 0 && text != null) {
+            float wt = (float) w.text();
+            for (int i = 0; i < textDim; i++) v[textOff + i] = wt * text[i];
+        }
+
+        double norm = 0;
+        for (float x : v) norm += x * x;
+        if (norm > 0) {
+            float inv = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dim; i++) v[i] *= inv;
+        }
+        return v;
+    }
+
+    private static float z(Double value, double mean, double std) {
+        if (value == null || value <= 0) return 0f;
+        double z = (Math.log(value) - mean) / std;
+        return (float) Math.max(-3, Math.min(3, z));
+    }
+
+    private static double[] meanStd(double[] xs) {
+        if (xs.length == 0) return new double[]{0, 1};
+        double mean = Arrays.stream(xs).average().orElse(0);
+        double var = Arrays.stream(xs).map(x -> (x - mean) * (x - mean)).average().orElse(1);
+        return new double[]{mean, Math.max(1e-6, Math.sqrt(var))};
+    }
+}
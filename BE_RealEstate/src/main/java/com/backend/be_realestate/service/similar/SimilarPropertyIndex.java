@@ -0,0 +1,172 @@
+package com.backend.be_realestate.service.similar;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.repository.PropertyRepository;
+import com.backend.be_realestate.repository.PropertyRepository.SimilarFeatureRow;
+import com.backend.be_realestate.service.embedding.PropertyEmbeddingStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Chỉ mục ANN (HNSW) cho "tin tương tự" trên các tin PUBLISHED: vector đặc trưng từ giá, diện tích,
+ * phòng, loại, danh mục, tỉnh/thành (+ vector văn bản nếu similar.weight.text > 0), xem {@link PropertyFeatureEncoder}.
+ * Build lúc khởi động, cập nhật từng tin qua PropertyChangedEvent; build lại định kỳ
+ * hoặc khi tỉ lệ node đã xoá vượt rebuild-deleted-ratio.
+ */
+@Slf4j
+@Component
+public class SimilarPropertyIndex {
+
+    private final PropertyRepository propertyRepository;
+    private final PropertyEmbeddingStore embeddingStore;
+    private final PropertyFeatureEncoder.Weights weights;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double rebuildDeletedRatio;
+
+    // Encoder (thống kê + từ điển) và đồ thị đi cùng nhau, thay 1 lần khi build lại
+    private record State(PropertyFeatureEncoder encoder, HnswIndex index) {}
+
+    private final Object buildLock = new Object();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private volatile State state;
+    private volatile Set<Long> changedDuringBuild;
+
+    public SimilarPropertyIndex(PropertyRepository propertyRepository,
+                                PropertyEmbeddingStore embeddingStore,
+                                @Value("${similar.hnsw.m:16}") int m,
+                                @Value("${similar.hnsw.ef-construction:100}") int efConstruction,
+                                @Value("${similar.hnsw.ef-search:64}") int efSearch,
+                                @Value("${similar.weight.numeric:1.0}") double wNumeric,
+                                @Value("${similar.weight.type:0.6}") double wType,
+                                @Value("${similar.weight.category:0.8}") double wCategory,
+                                @Value("${similar.weight.city:1.0}") double wCity,
+                                @Value("${similar.weight.text:0}") double wText,
+                                @Value("${similar.rebuild-deleted-ratio:0.2}") double rebuildDeletedRatio) {
+        this.propertyRepository = propertyRepository;
+        this.embeddingStore = embeddingStore;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.weights = new PropertyFeatureEncoder.Weights(wNumeric, wType, wCategory, wCity, wText);
+        this.rebuildDeletedRatio = rebuildDeletedRatio;
+    }
+
+    public boolean isReady() {
+        return state != null;
+    }
+
+    // Build HNSW tốn ~0.5ms / tin => chạy nền, không giữ app khởi động; chưa xong thì /similar trả rỗng
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuildAsync();
+    }
+
+    @Scheduled(initialDelayString = "${similar.rebuild-ms:21600000}", fixedDelayString = "${similar.rebuild-ms:21600000}")
+    public void scheduledRebuild() {
+        rebuildAsync(); // không giữ thread của scheduler (dùng chung với các job khác)
+    }
+
+    /**
+     * Build chỉ mục mới rồi thay 1 lần. Trong lúc build, tin thay đổi vẫn được cập nhật vào chỉ mục cũ
+     * và ghi lại id để áp lên chỉ mục mới ngay sau khi thay.
+     */
+    public void rebuild() {
+        synchronized (buildLock) {
+            changedDuringBuild = ConcurrentHashMap.newKeySet();
+            try {
+                long t0 = System.currentTimeMillis();
+                List<SimilarFeatureRow> rows = propertyRepository.findSimilarFeaturesByStatus(PropertyStatus.PUBLISHED);
+                PropertyFeatureEncoder enc = PropertyFeatureEncoder.fit(
+                        rows.stream().map(SimilarPropertyIndex::features).toList(), weights, embeddingStore.dim());
+                HnswIndex idx = new HnswIndex(enc.dim(), m, efConstruction, rows.size(), 42L);
+                for (SimilarFeatureRow r : rows) {
+                    idx.add(r.getId(), enc.encode(features(r), enc.usesText() ? embeddingStore.get(r.getId()) : null));
+                }
+                this.state = new State(enc, idx);
+                Set<Long> replay = changedDuringBuild;
+                changedDuringBuild = null;
+                if (!replay.isEmpty()) refresh(replay);
+                log.info("[SimilarIndex] built size={} dim={} in {}ms", idx.size(), enc.dim(), System.currentTimeMillis() - t0);
+            } finally {
+                changedDuringBuild = null;
+            }
+        }
+    }
+
+    // Chạy sau PropertyEmbeddingStore (@Order) để dùng vector văn bản mới
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onPropertyChanged(PropertyChangedEvent event) {
+        if (event.getIds() == null || event.getIds().isEmpty()) return;
+        Set<Long> pending = changedDuringBuild;
+        if (pending != null) pending.addAll(event.getIds());
+        if (state == null) return;
+        try {
+            refresh(event.getIds());
+        } catch (Exception e) {
+            log.error("[SimilarIndex] refresh {} failed: {}", event.getIds(), e.getMessage(), e);
+        }
+    }
+
+    public void refresh(Collection<Long> ids) {
+        State st = this.state;
+        Set<Long> gone = new HashSet<>(ids);
+        for (SimilarFeatureRow r : propertyRepository.findSimilarFeaturesByIdIn(ids)) {
+            if (r.getStatus() != PropertyStatus.PUBLISHED) continue;
+            st.index().add(r.getId(), st.encoder().encode(features(r),
+                    st.encoder().usesText() ? embeddingStore.get(r.getId()) : null));
+            gone.remove(r.getId());
+        }
+        gone.forEach(st.index()::remove);
+        if (st.index().deletedRatio() > rebuildDeletedRatio && changedDuringBuild == null) rebuildAsync();
+    }
+
+    private void rebuildAsync() {
+        if (!building.compareAndSet(false, true)) return;
+        Thread t = new Thread(() -> {
+            try {
+                rebuild();
+            } catch (Exception e) {
+                log.error("[SimilarIndex] build failed: {}", e.getMessage(), e);
+            } finally {
+                building.set(false);
+            }
+        }, "similar-index-build");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Tối đa k id tin PUBLISHED giống tin id nhất (không gồm chính nó). Tin không còn PUBLISHED vẫn tìm được
+     * (vector tính tại chỗ); rỗng nếu chỉ mục chưa sẵn sàng hoặc tin không tồn tại.
+     */
+    public List<Long> similar(Long id, int k) {
+        State st = this.state;
+        if (st == null) return List.of();
+        float[] q = st.index().vectorOf(id);
+        if (q == null) {
+            List<SimilarFeatureRow> rows = propertyRepository.findSimilarFeaturesByIdIn(List.of(id));
+            if (rows.isEmpty()) return List.of();
+            float[] text = st.encoder().usesText() ? embeddingStore.getOrCompute(List.of(id)).get(id) : null;
+            q = st.encoder().encode(features(rows.get(0)), text);
+        }
+        return st.index().search(q, k, Math.max(efSearch, k), id);
+    }
+
+    private static PropertyFeatureEncoder.Features features(SimilarFeatureRow r) {
+        return new PropertyFeatureEncoder.Features(r.getPrice(), r.getArea(), r.getBedrooms(), r.getBathrooms(),
+                r.getPropertyType(), r.getCategoryId(), r.getCityId());
+    }
+}
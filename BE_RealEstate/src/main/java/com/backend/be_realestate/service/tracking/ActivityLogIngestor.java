@@ -0,0 +1,197 @@
+package com.backend.be_realestate.service.tracking;
+
+import com.backend.be_realestate.enums.ActivityType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi property_activity_logs bất đồng bộ: request chỉ đẩy sự kiện vào hàng đợi có giới hạn,
+ * 1 worker gom thành lô (batch-size dòng hoặc sau linger-ms) và INSERT bằng JDBC batch trong 1 transaction
+ * (lô lỗi rollback hết rồi mới ghi lại từng dòng, không sinh dòng trùng).
+ * Hàng đợi đầy: DROP (bỏ + đếm metric) hoặc BLOCK (chờ tối đa block-ms rồi mới bỏ).
+ * Khi tắt ứng dụng worker ghi hết phần còn lại trong hàng đợi.
+ */
+@Slf4j
+@Component
+public class ActivityLogIngestor {
+
+    public enum FullPolicy { DROP, BLOCK }
+
+    public record ActivityLogEntry(Long propertyId, Long userId, ActivityType activityType,
+                                   String ipAddress, String userAgent, Timestamp createdAt) {}
+
+    private static final String INSERT_SQL = """
+            INSERT INTO property_activity_logs (property_id, user_id, activity_type, created_at, ip_address, user_agent)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+    private static final int USER_AGENT_MAX = 512;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate batchTx;
+    private final BlockingQueue<ActivityLogEntry> queue;
+    private final int batchSize;
+    private final long lingerMs;
+    private final FullPolicy fullPolicy;
+    private final long blockMs;
+    private final long shutdownTimeoutMs;
+
+    private final Counter written;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private Thread worker;
+
+    public ActivityLogIngestor(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${tracking.ingest.queue-capacity:50000}") int capacity,
+                               @Value("${tracking.ingest.batch-size:500}") int batchSize,
+                               @Value("${tracking.ingest.linger-ms:200}") long lingerMs,
+                               @Value("${tracking.ingest.full-policy:DROP}") String fullPolicy,
+                               @Value("${tracking.ingest.block-ms:50}") long blockMs,
+                               @Value("${tracking.ingest.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchTx = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = lingerMs;
+        this.fullPolicy = FullPolicy.valueOf(fullPolicy.trim().toUpperCase(Locale.ROOT));
+        this.blockMs = blockMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        this.written = Counter.builder("tracking.ingest.written")
+                .description("Số dòng activity log đã INSERT")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("tracking.ingest.dropped")
+                .description("Số activity log bị bỏ (hàng đợi đầy hoặc INSERT lỗi)")
+                .register(meterRegistry);
+        Gauge.builder("tracking.ingest.queue.depth", queue, BlockingQueue::size)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        worker = new Thread(this::runLoop, "activity-log-ingest");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Đẩy 1 sự kiện vào hàng đợi; không chạm DB. Trả về false nếu bị bỏ do đầy. */
+    public boolean submit(Long propertyId, Long userId, ActivityType type, String ipAddress, String userAgent) {
+        if (userAgent != null && userAgent.length() > USER_AGENT_MAX) {
+            userAgent = userAgent.substring(0, USER_AGENT_MAX);
+        }
+        ActivityLogEntry entry = new ActivityLogEntry(propertyId, userId, type, ipAddress, userAgent,
+                new Timestamp(System.currentTimeMillis()));
+
+        boolean accepted;
+        if (fullPolicy == FullPolicy.BLOCK) {
+            try {
+                accepted = queue.offer(entry, blockMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            accepted = queue.offer(entry);
+        }
+        if (!accepted) dropped.increment();
+        return accepted;
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        worker.interrupt(); // thoát ngay khỏi poll / linger rồi drain phần còn lại
+        try {
+            worker.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty()) {
+            dropped.increment(queue.size());
+            log.error("Tắt ứng dụng khi còn {} activity log chưa ghi", queue.size());
+        }
+    }
+
+    private void runLoop() {
+        List<ActivityLogEntry> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                ActivityLogEntry first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                // Chờ thêm tối đa linger-ms để gom đủ lô
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+                while (batch.size() < batchSize) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    ActivityLogEntry next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                break; // chỉ stop() interrupt worker; không giữ cờ để phần drain bên dưới còn ghi được DB
+            }
+            write(batch);
+            batch.clear();
+        }
+        // Graceful drain
+        write(batch);
+        batch.clear();
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<ActivityLogEntry> batch) {
+        if (batch.isEmpty()) return;
+        try {
+            // Không có transaction thì driver (autocommit) có thể đã ghi các dòng trước dòng lỗi
+            batchTx.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, e) -> {
+                        ps.setLong(1, e.propertyId());
+                        if (e.userId() != null) ps.setLong(2, e.userId()); else ps.setNull(2, Types.BIGINT);
+                        ps.setString(3, e.activityType().name());
+                        ps.setTimestamp(4, e.createdAt());
+                        ps.setString(5, e.ipAddress());
+                        ps.setString(6, e.userAgent());
+                    }));
+            written.increment(batch.size());
+        } catch (Exception ex) {
+            // Một dòng hỏng (vd. tin vừa bị xoá => lỗi FK) không được kéo cả lô: ghi lại từng dòng
+            log.warn("Batch activity log lỗi ({} dòng), ghi lại từng dòng: {}", batch.size(), ex.getMessage());
+            for (ActivityLogEntry e : batch) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, e.propertyId(), e.userId(), e.activityType().name(),
+                            e.createdAt(), e.ipAddress(), e.userAgent());
+                    written.increment();
+                } catch (Exception rowEx) {
+                    dropped.increment();
+                    log.debug("Bỏ activity log property={} type={}: {}", e.propertyId(), e.activityType(), rowEx.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.backend.be_realestate.service.tracking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Cửa sổ lọc trùng lượt xem / tương tác / lead trong RAM, key = (propertyId, user hoặc IP, loại sự kiện),
+ * mỗi loại có TTL riêng (Caffeine expire theo từng entry, giới hạn số entry).
+ * Chỉ hỏi DB khi cửa sổ chưa "đủ dữ liệu": vừa khởi động chưa qua 1 TTL, hoặc vừa bị evict do đầy.
+ * Key chỉ được giữ khi bản ghi đã ghi thành công: ghi lỗi / bị từ chối / transaction rollback thì nhả key,
+ * lần sau vẫn được ghi.
+ */
+@Component
+public class TrackingDedupWindow {
+
+    record DedupKey(Long propertyId, Long userId, String ip, String type) {}
+
+    // value = TTL (nano) của entry
+    private final Cache<DedupKey, Long> seen;
+    // Lần gần nhất cửa sổ bị mất dữ liệu (khởi động / evict do đầy), tính theo System.nanoTime()
+    private final AtomicLong lastLossAt = new AtomicLong(System.nanoTime());
+
+    private final Counter duplicates;
+    private final Counter dbChecks;
+
+    public TrackingDedupWindow(MeterRegistry meterRegistry,
+                               @Value("${tracking.dedup.max-entries:200000}") long maxEntries) {
+        this.seen = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfter(new Expiry<DedupKey, Long>() {
+                    @Override
+                    public long expireAfterCreate(DedupKey key, Long ttl, long currentTime) {
+                        return ttl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(DedupKey key, Long ttl, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(DedupKey key, Long ttl, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((DedupKey key, Long ttl, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) lastLossAt.set(System.nanoTime());
+                })
+                .build();
+
+        this.duplicates = Counter.builder("tracking.dedup.duplicates")
+                .description("Số sự kiện bị lọc trùng")
+                .register(meterRegistry);
+        this.dbChecks = Counter.builder("tracking.dedup.db_checks")
+                .description("Số lần phải hỏi DB vì cửa sổ trong RAM chưa đầy đủ")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ghi sự kiện nếu chưa có trong ttl. Key được giữ chỗ trước (request trùng chạy song song bị chặn),
+     * insert lỗi / trả false hoặc transaction hiện tại rollback thì nhả ra.
+     *
+     * @param dbCheck truy vấn "đã có bản ghi trong khoảng ttl chưa", chỉ chạy khi cửa sổ chưa đủ dữ liệu
+     * @param insert  ghi bản ghi, true nếu đã ghi / đã nhận vào hàng đợi
+     * @return true nếu đã ghi sự kiện mới, false nếu trùng hoặc không ghi được
+     */
+    public boolean recordIfFirst(Long propertyId, Long userId, String ip, Enum<?> type, Duration ttl,
+                                 BooleanSupplier dbCheck, BooleanSupplier insert) {
+        // Có userId thì lọc theo user, không thì theo IP (giống truy vấn cũ)
+        DedupKey key = new DedupKey(propertyId, userId, userId != null ? null : ip, type.name());
+        long ttlNanos = ttl.toNanos();
+
+        if (seen.asMap().putIfAbsent(key, ttlNanos) != null) {
+            duplicates.increment();
+            return false;
+        }
+        boolean keep = false;
+        try {
+            if (System.nanoTime() - lastLossAt.get() < ttlNanos) {
+                dbChecks.increment();
+                if (dbCheck.getAsBoolean()) {
+                    duplicates.increment();
+                    keep = true; // đã có trong DB
+                    return false;
+                }
+            }
+            keep = insert.getAsBoolean();
+            if (!keep) return false;
+        } finally {
+            if (!keep) seen.invalidate(key);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) seen.invalidate(key);
+                }
+            });
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+package com.backend.be_realestate.service.tracking;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm lượt xem ghi trễ (write-behind): request chỉ cộng vào bộ đếm trong RAM,
+ * job định kỳ gom lại và ghi xuống DB bằng batch "view_count = view_count + ?".
+ * Một tin hot không còn tranh khoá dòng trên mỗi lượt xem; view_count trên DB trễ tối đa 1 chu kỳ flush.
+ * Bộ đếm của tin không còn ai xem được niêm phong (giá trị âm) rồi mới gỡ khỏi map: thread nào còn giữ
+ * bộ đếm cũ sẽ thấy niêm phong và cộng lại vào bộ đếm mới, nên không lượt xem nào bị mất.
+ */
+@Slf4j
+@Component
+public class ViewCountBuffer {
+
+    private static final String FLUSH_SQL = "UPDATE properties SET view_count = view_count + ? WHERE id = ?";
+    // Đủ âm để cộng thêm bao nhiêu lần vẫn còn âm
+    private static final long SEALED = Long.MIN_VALUE / 2;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxKeys;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<Long, AtomicLong> pending = new ConcurrentHashMap<>();
+    // Thời điểm có lượt xem cũ nhất chưa được ghi (0 = không có gì chờ)
+    private final AtomicLong oldestPendingAt = new AtomicLong();
+
+    private final Counter flushed;
+    private final Counter dropped;
+
+    public ViewCountBuffer(JdbcTemplate jdbcTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${view.buffer.max-keys:100000}") int maxKeys,
+                           @Value("${view.buffer.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxKeys = maxKeys;
+        this.batchSize = Math.max(1, batchSize);
+
+        this.flushed = Counter.builder("view_count.flush.increments")
+                .description("Số lượt xem đã ghi xuống DB")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("view_count.dropped.increments")
+                .description("Số lượt xem bị bỏ do buffer đầy hoặc flush lỗi khi tắt ứng dụng")
+                .register(meterRegistry);
+        Gauge.builder("view_count.flush.lag.ms", this, ViewCountBuffer::flushLagMs)
+                .description("Tuổi của lượt xem cũ nhất chưa được ghi xuống DB")
+                .register(meterRegistry);
+        Gauge.builder("view_count.pending.keys", pending, Map::size)
+                .register(meterRegistry);
+    }
+
+    /** Ghi nhận 1 lượt xem; không chạm DB. */
+    public void increment(Long propertyId) {
+        if (!add(propertyId, 1, true)) dropped.increment();
+    }
+
+    // Cộng n vào bộ đếm của tin; gặp bộ đếm đã niêm phong thì cộng lại vào bộ đếm mới.
+    // false = buffer đầy (chỉ khi enforceLimit)
+    private boolean add(Long propertyId, long n, boolean enforceLimit) {
+        while (true) {
+            AtomicLong counter = pending.get(propertyId);
+            if (counter == null) {
+                if (enforceLimit && pending.size() >= maxKeys) return false;
+                counter = pending.computeIfAbsent(propertyId, k -> new AtomicLong());
+            }
+            if (counter.getAndAdd(n) >= 0) break;
+            pending.remove(propertyId, counter); // đã niêm phong: drain đang / đã gỡ, thử lại
+        }
+        oldestPendingAt.compareAndSet(0, System.currentTimeMillis());
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${view.buffer.flush-interval-ms:5000}")
+    public void flush() {
+        long since = oldestPendingAt.getAndSet(0);
+        List<Object[]> rest = write(drain());
+        if (!rest.isEmpty()) {
+            // Trả phần chưa ghi lại buffer, lần flush sau thử lại
+            for (Object[] row : rest) add((Long) row[1], (Long) row[0], false);
+            oldestPendingAt.compareAndSet(0, since == 0 ? System.currentTimeMillis() : since);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        List<Object[]> rest = write(drain());
+        if (!rest.isEmpty()) {
+            long lost = rest.stream().mapToLong(row -> (Long) row[0]).sum();
+            dropped.increment(lost);
+            log.error("Không flush được view_count khi tắt, mất {} lượt xem", lost);
+        }
+    }
+
+    // Lấy ra và reset delta của từng tin; sắp theo id để các batch luôn khoá dòng cùng thứ tự.
+    // synchronized: flush định kỳ và shutdown không cùng niêm phong / gỡ một bộ đếm
+    private synchronized Map<Long, Long> drain() {
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (Map.Entry<Long, AtomicLong> e : pending.entrySet()) {
+            AtomicLong counter = e.getValue();
+            long n = counter.get();
+            if (n < 0) continue; // đã niêm phong, writer sẽ gỡ
+            if (n == 0) {
+                // Tin không còn ai xem: niêm phong rồi mới gỡ, lượt cộng sau đó tự chuyển sang bộ đếm mới
+                if (counter.compareAndSet(0, SEALED)) pending.remove(e.getKey(), counter);
+                continue;
+            }
+            deltas.merge(e.getKey(), counter.getAndSet(0), Long::sum); // phần cộng chen vào sau đó để lần sau
+        }
+        return deltas;
+    }
+
+    // Ghi theo từng batch; trả về các dòng [delta, id] chưa ghi được nếu có batch lỗi
+    private List<Object[]> write(Map<Long, Long> deltas) {
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        deltas.forEach((id, n) -> args.add(new Object[]{n, id}));
+        for (int from = 0; from < args.size(); from += batchSize) {
+            List<Object[]> batch = args.subList(from, Math.min(args.size(), from + batchSize));
+            try {
+                jdbcTemplate.batchUpdate(FLUSH_SQL, batch);
+            } catch (Exception e) {
+                log.error("Flush view_count lỗi ({} tin chưa ghi): {}", args.size() - from, e.getMessage());
+                return args.subList(from, args.size());
+            }
+            flushed.increment(batch.stream().mapToLong(row -> (Long) row[0]).sum());
+        }
+        return List.of();
+    }
+
+    private double flushLagMs() {
+        long since = oldestPendingAt.get();
+        return since == 0 ? 0 : System.currentTimeMillis() - since;
+    }
+}
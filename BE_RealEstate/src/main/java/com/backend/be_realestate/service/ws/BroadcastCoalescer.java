@@ -0,0 +1,122 @@
+package com.backend.be_realestate.service.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gộp các tín hiệu "refresh" trên cùng topic (ws.coalesce.topics, vd. /topic/admin/properties):
+ * sự kiện đầu tiên mở cửa sổ window-ms, hết cửa sổ gửi 1 message {@link Coalesced} gồm tập id tin + loại thay đổi.
+ * FE nhận 1 message / cửa sổ thay vì 1 message / sự kiện (tránh refetch dồn dập); truncated = quá max-ids,
+ * nên tải lại toàn bộ. Metric ws.coalesce.events.in / ws.coalesce.messages.out theo topic.
+ */
+@Slf4j
+@Component
+public class BroadcastCoalescer {
+
+    /** Payload gửi vào topic được gộp: loại thay đổi + id tin (có thể null). */
+    public record Change(String type, Long propertyId) {}
+
+    /** Message thực sự gửi ra sau mỗi cửa sổ. */
+    public record Coalesced(String type, Set<String> changes, Set<Long> propertyIds, int events, boolean truncated) {}
+
+    private final WsDispatcher dispatcher;
+    private final Set<String> topics;
+    private final long windowMs;
+    private final int maxIds;
+    private final Map<String, Counter> eventsIn = new HashMap<>();
+    private final Map<String, Counter> messagesOut = new HashMap<>();
+
+    private final Map<String, Pending> pending = new HashMap<>(); // guarded by this
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ws-coalesce");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BroadcastCoalescer(WsDispatcher dispatcher,
+                              MeterRegistry meterRegistry,
+                              @Value("${ws.coalesce.topics:/topic/admin/properties}") List<String> topics,
+                              @Value("${ws.coalesce.window-ms:500}") long windowMs,
+                              @Value("${ws.coalesce.max-ids:500}") int maxIds) {
+        this.dispatcher = dispatcher;
+        this.topics = Set.copyOf(topics);
+        this.windowMs = windowMs;
+        this.maxIds = maxIds;
+        for (String topic : this.topics) {
+            eventsIn.put(topic, Counter.builder("ws.coalesce.events.in").tag("topic", topic).register(meterRegistry));
+            messagesOut.put(topic, Counter.builder("ws.coalesce.messages.out").tag("topic", topic).register(meterRegistry));
+        }
+    }
+
+    public boolean handles(String destination) {
+        return windowMs > 0 && topics.contains(destination);
+    }
+
+    /** Ghi nhận 1 sự kiện (đã commit); payload là {@link Change} hoặc tên loại thay đổi. */
+    public void add(String topic, Object payload) {
+        synchronized (this) {
+            Pending p = pending.get(topic);
+            if (p == null) {
+                p = new Pending();
+                pending.put(topic, p);
+                timer.schedule(() -> flush(topic), windowMs, TimeUnit.MILLISECONDS);
+            }
+            p.add(payload);
+        }
+        eventsIn.get(topic).increment();
+    }
+
+    @PreDestroy
+    void stop() {
+        timer.shutdownNow();
+        List<String> open;
+        synchronized (this) {
+            open = new ArrayList<>(pending.keySet());
+        }
+        open.forEach(this::flush);
+    }
+
+    private void flush(String topic) {
+        Pending p;
+        synchronized (this) {
+            p = pending.remove(topic);
+        }
+        if (p == null) return;
+        try {
+            dispatcher.dispatch(WsMessage.toTopic(topic,
+                    new Coalesced("batch", p.changes, p.ids, p.events, p.truncated)));
+            messagesOut.get(topic).increment();
+        } catch (Exception e) {
+            log.error("[WsCoalesce] flush {} failed: {}", topic, e.getMessage());
+        }
+    }
+
+    private final class Pending {
+        final Set<String> changes = new LinkedHashSet<>();
+        final Set<Long> ids = new LinkedHashSet<>();
+        int events;
+        boolean truncated;
+
+        void add(Object payload) {
+            events++;
+            if (payload instanceof Change c) {
+                changes.add(c.type());
+                if (c.propertyId() != null) {
+                    if (ids.size() < maxIds) ids.add(c.propertyId());
+                    else if (!ids.contains(c.propertyId())) truncated = true;
+                }
+            } else {
+                changes.add(String.valueOf(payload));
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.backend.be_realestate.service.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ws.broker.mode=bridge: mỗi lô message WsDispatcher vừa gửi cho session ở node này được POST sang từng peer
+ * (ws.broker.bridge.peers) tại /internal/ws-bridge; peer gửi lại cho session của nó (topic: mọi subscriber,
+ * /user/**: chỉ node đang giữ session của user đó nhận được). Lane của dispatcher chỉ đẩy lô vào hàng đợi
+ * có giới hạn của từng peer (không chờ HTTP); mỗi peer 1 worker gửi lần lượt (gộp các lô đang chờ vào 1 POST)
+ * => thứ tự theo user được giữ nguyên, peer chậm không làm chậm lane hay peer khác.
+ * Hàng đợi peer đầy, peer lỗi / quá timeout: bỏ lô đó cho peer đó + đếm metric.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ws.broker.mode", havingValue = "bridge")
+public class WsBridge {
+
+    public static final String PATH = "/internal/ws-bridge";
+    public static final String TOKEN_HEADER = "X-WS-Bridge-Token";
+
+    /** Dạng truyền giữa các node; payload là JSON đã parse ở phía nhận. */
+    public record BridgedMessage(String user, String destination, Object payload) {}
+
+    private final WebClient webClient;
+    private final byte[] token;
+    private final Duration timeout;
+    private final long shutdownTimeoutMs;
+    private final List<PeerLink> links;
+    private final Counter published;
+    private final Counter failed;
+
+    private volatile boolean running;
+
+    public WsBridge(WebClient.Builder webClientBuilder,
+                    MeterRegistry meterRegistry,
+                    @Value("${ws.broker.bridge.peers:}") List<String> peers,
+                    @Value("${ws.broker.bridge.token:}") String token,
+                    @Value("${ws.broker.bridge.timeout-ms:2000}") long timeoutMs,
+                    @Value("${ws.broker.bridge.queue-capacity:1000}") int queueCapacity,
+                    @Value("${ws.outbox.shutdown-timeout-ms:5000}") long shutdownTimeoutMs) {
+        this.webClient = webClientBuilder.build();
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.links = peers.stream().map(String::trim).filter(p -> !p.isEmpty())
+                .map(p -> new PeerLink(p, Math.max(1, queueCapacity)))
+                .toList();
+        for (PeerLink link : links) {
+            Gauge.builder("ws.bridge.queue.depth", link.queue, BlockingQueue::size)
+                    .tag("peer", link.peer)
+                    .register(meterRegistry);
+        }
+        this.published = Counter.builder("ws.bridge.published").register(meterRegistry);
+        this.failed = Counter.builder("ws.bridge.failed")
+                .description("Message không chuyển được sang peer (lỗi / timeout)")
+                .register(meterRegistry);
+        if (this.token.length == 0) log.warn("[WsBridge] ws.broker.bridge.token rỗng: mọi request bridge sẽ bị từ chối");
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        links.forEach(PeerLink::start);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false; // worker gửi nốt phần còn trong hàng đợi rồi thoát
+        for (PeerLink link : links) {
+            try {
+                link.worker.join(shutdownTimeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Không chặn: đưa lô vào hàng đợi của từng peer. */
+    public void publish(List<WsMessage> batch) {
+        List<BridgedMessage> body = batch.stream()
+                .filter(m -> !m.bridged())
+                .map(m -> new BridgedMessage(m.user(), m.destination(), m.payload()))
+                .toList();
+        if (body.isEmpty()) return;
+        for (PeerLink link : links) {
+            if (!link.queue.offer(body)) {
+                failed.increment(body.size());
+                log.warn("[WsBridge] queue to {} full, drop {} messages", link.peer, body.size());
+            }
+        }
+    }
+
+    // Hàng đợi + worker riêng của 1 peer
+    private final class PeerLink {
+        private static final int MAX_MERGED_BATCHES = 16;
+
+        final String peer;
+        final BlockingQueue<List<BridgedMessage>> queue;
+        Thread worker;
+
+        PeerLink(String peer, int capacity) {
+            this.peer = peer;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void start() {
+            worker = new Thread(this::runLoop, "ws-bridge-" + peer.replaceFirst("^https?://", ""));
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        private void runLoop() {
+            List<List<BridgedMessage>> pending = new ArrayList<>(MAX_MERGED_BATCHES);
+            while (running || !queue.isEmpty()) {
+                try {
+                    List<BridgedMessage> first = queue.poll(500, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    pending.add(first);
+                    queue.drainTo(pending, MAX_MERGED_BATCHES - 1);
+                    List<BridgedMessage> body = new ArrayList<>();
+                    pending.forEach(body::addAll);
+                    post(body);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    pending.clear();
+                }
+            }
+        }
+
+        private void post(List<BridgedMessage> body) {
+            try {
+                webClient.post()
+                        .uri(peer + PATH)
+                        .header(TOKEN_HEADER, new String(token, StandardCharsets.UTF_8))
+                        .bodyValue(body)
+                        .retrieve()
+                        .toBodilessEntity()
+                        .block(timeout);
+                published.increment(body.size());
+            } catch (Exception e) {
+                failed.increment(body.size());
+                log.warn("[WsBridge] publish {} messages to {} failed: {}", body.size(), peer, e.getMessage());
+            }
+        }
+    }
+
+    public boolean accepts(String presentedToken) {
+        return token.length > 0 && presentedToken != null
+                && MessageDigest.isEqual(token, presentedToken.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,246 @@
+package com.backend.be_realestate.service.ws;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gửi message STOMP ngoài thread nghiệp vụ: lanes thread riêng, mỗi lane 1 hàng đợi có giới hạn.
+ * Message chia lane theo user / topic => giữ thứ tự theo user. Worker lấy tối đa max-batch message mỗi lượt.
+ * Gửi lỗi: message được hoãn (retry-backoff-ms * lần thử) và thử lại sau, tối đa max-attempts; worker không ngủ
+ * mà tiếp tục gửi cho user / topic khác. Message sau của cùng user / topic xếp sau message đang hoãn để không đảo thứ tự.
+ * Hàng đợi đầy hoặc hết lượt thử: bỏ message + đếm metric (client tự refetch khi kết nối lại).
+ * ws.broker.mode=bridge: sau mỗi lô, đưa lô đó vào hàng đợi gửi sang các node peer ({@link WsBridge}, không chặn lane).
+ */
+@Slf4j
+@Component
+public class WsDispatcher {
+
+    private final SimpMessagingTemplate ws;
+    private final WsBridge bridge;
+    private final BlockingQueue<WsMessage>[] lanes;
+    private final int queueCapacity;
+    private final int maxBatch;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long shutdownTimeoutMs;
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dropped;
+    private final DistributionSummary batchSize;
+
+    private volatile boolean running;
+    private Thread[] workers;
+
+    @SuppressWarnings("unchecked")
+    public WsDispatcher(SimpMessagingTemplate ws,
+                        ObjectProvider<WsBridge> bridge,
+                        MeterRegistry meterRegistry,
+                        @Value("${ws.outbox.lanes:4}") int lanes,
+                        @Value("${ws.outbox.queue-capacity:10000}") int queueCapacity,
+                        @Value("${ws.outbox.max-batch:100}") int maxBatch,
+                        @Value("${ws.outbox.max-attempts:3}") int maxAttempts,
+                        @Value("${ws.outbox.retry-backoff-ms:50}") long retryBackoffMs,
+                        @Value("${ws.outbox.shutdown-timeout-ms:5000}") long shutdownTimeoutMs) {
+        this.ws = ws;
+        this.bridge = bridge.getIfAvailable();
+        this.lanes = new BlockingQueue[Math.max(1, lanes)];
+        for (int i = 0; i < this.lanes.length; i++) this.lanes[i] = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMs = retryBackoffMs;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+
+        this.sent = Counter.builder("ws.outbox.sent").register(meterRegistry);
+        this.retried = Counter.builder("ws.outbox.retried").register(meterRegistry);
+        this.dropped = Counter.builder("ws.outbox.dropped")
+                .description("Message WS bị bỏ (hàng đợi đầy hoặc gửi lỗi quá số lần thử)")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("ws.outbox.batch.size").register(meterRegistry);
+        Gauge.builder("ws.outbox.queue.depth", this, WsDispatcher::depth).register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        workers = new Thread[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            BlockingQueue<WsMessage> lane = lanes[i];
+            workers[i] = new Thread(() -> runLoop(lane), "ws-outbox-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false; // worker thoát sau tối đa 1 lần poll rồi gửi nốt phần còn lại
+        for (Thread t : workers) {
+            try {
+                t.join(shutdownTimeoutMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void dispatch(WsMessage message) {
+        BlockingQueue<WsMessage> lane = lanes[Math.floorMod(message.orderingKey().hashCode(), lanes.length)];
+        if (!lane.offer(message)) {
+            dropped.increment();
+            log.warn("[WsOutbox] queue full, drop message to {}", message.destination());
+        }
+    }
+
+    public void dispatchAll(Collection<WsMessage> messages) {
+        for (WsMessage m : messages) dispatch(m);
+    }
+
+    public int depth() {
+        return Arrays.stream(lanes).mapToInt(BlockingQueue::size).sum();
+    }
+
+    private void runLoop(BlockingQueue<WsMessage> lane) {
+        Retries retries = new Retries();
+        List<WsMessage> batch = new ArrayList<>(maxBatch);
+        while (running || !lane.isEmpty() || !retries.isEmpty()) {
+            try {
+                WsMessage first = lane.poll(retries.pollTimeoutNanos(), TimeUnit.NANOSECONDS);
+                retries.runDue();
+                if (first == null) continue;
+                batch.add(first);
+                lane.drainTo(batch, maxBatch - 1);
+                batchSize.record(batch.size());
+                for (WsMessage m : batch) {
+                    // Cùng key đang chờ thử lại => xếp sau, không gửi vượt
+                    if (!retries.enqueueBehind(m) && !trySend(m, 1)) retries.defer(m);
+                }
+                if (bridge != null) bridge.publish(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Message chờ thử lại của 1 lane, theo ordering key: phần tử đầu là message gửi lỗi, sau nó là
+     * message tới sau cùng key. Chỉ worker của lane dùng => không cần đồng bộ.
+     */
+    private final class Retries {
+
+        private final class Deferred {
+            final ArrayDeque<WsMessage> messages = new ArrayDeque<>();
+            int attempts; // số lần đã thử message đầu
+            long dueAt;   // System.nanoTime() được thử lại
+        }
+
+        private final Map<String, Deferred> byKey = new HashMap<>();
+        private int parked;
+
+        boolean isEmpty() {
+            return byKey.isEmpty();
+        }
+
+        long pollTimeoutNanos() {
+            long timeout = TimeUnit.MILLISECONDS.toNanos(500);
+            long now = System.nanoTime();
+            for (Deferred d : byKey.values()) timeout = Math.min(timeout, Math.max(0, d.dueAt - now));
+            return timeout;
+        }
+
+        /** true nếu key của m đang chờ thử lại (m đã được xếp sau hoặc bị bỏ vì backlog đầy). */
+        boolean enqueueBehind(WsMessage m) {
+            Deferred d = byKey.get(m.orderingKey());
+            if (d == null) return false;
+            if (parked >= queueCapacity) {
+                dropped.increment();
+                log.warn("[WsOutbox] retry backlog full, drop message to {}", m.destination());
+            } else {
+                d.messages.add(m);
+                parked++;
+            }
+            return true;
+        }
+
+        /** m vừa gửi lỗi lần 1. */
+        void defer(WsMessage m) {
+            if (maxAttempts <= 1) {
+                dropFailed(m, 1);
+                return;
+            }
+            Deferred d = new Deferred();
+            d.messages.add(m);
+            d.attempts = 1;
+            d.dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryBackoffMs);
+            byKey.put(m.orderingKey(), d);
+            parked++;
+        }
+
+        /** Thử lại các key đến hạn, gửi tiếp message xếp sau cho tới khi hết hoặc lại lỗi. */
+        void runDue() {
+            long now = System.nanoTime();
+            for (Iterator<Deferred> it = byKey.values().iterator(); it.hasNext(); ) {
+                Deferred d = it.next();
+                if (d.dueAt - now > 0) continue;
+                while (!d.messages.isEmpty()) {
+                    WsMessage head = d.messages.peek();
+                    int attempt = d.attempts + 1;
+                    boolean ok = trySend(head, attempt);
+                    if (!ok && attempt < maxAttempts) {
+                        d.attempts = attempt;
+                        d.dueAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryBackoffMs * attempt);
+                        break;
+                    }
+                    if (!ok) dropFailed(head, attempt);
+                    d.messages.poll();
+                    d.attempts = 0;
+                    parked--;
+                }
+                if (d.messages.isEmpty()) it.remove();
+            }
+        }
+    }
+
+    private boolean trySend(WsMessage m, int attempt) {
+        if (attempt > 1) retried.increment();
+        try {
+            if (m.user() != null) ws.convertAndSendToUser(m.user(), m.destination(), m.payload());
+            else ws.convertAndSend(m.destination(), m.payload());
+            sent.increment();
+            return true;
+        } catch (Exception e) {
+            log.debug("[WsOutbox] send to {} failed (attempt {}): {}", m.destination(), attempt, e.getMessage());
+            return false;
+        }
+    }
+
+    private void dropFailed(WsMessage m, int attempts) {
+        dropped.increment();
+        log.error("[WsOutbox] send to {} failed after {} attempts", m.destination(), attempts);
+    }
+}
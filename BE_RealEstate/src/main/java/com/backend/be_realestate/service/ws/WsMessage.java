@@ -0,0 +1,21 @@
+package com.backend.be_realestate.service.ws;
+
+/**
+ * 1 message STOMP chờ gửi: user != null => /user/{user}{destination}, ngược lại gửi thẳng destination.
+ * bridged = nhận từ node khác qua WsBridge (chỉ gửi cho session ở node này, không chuyển tiếp lại).
+ */
+public record WsMessage(String user, String destination, Object payload, boolean bridged) {
+
+    public static WsMessage toTopic(String destination, Object payload) {
+        return new WsMessage(null, destination, payload, false);
+    }
+
+    public static WsMessage toUser(String user, String destination, Object payload) {
+        return new WsMessage(user, destination, payload, false);
+    }
+
+    /** Khoá giữ thứ tự: cùng user (hoặc cùng topic) luôn đi qua cùng 1 lane. */
+    String orderingKey() {
+        return user != null ? "u:" + user : "t:" + destination;
+    }
+}
@@ -0,0 +1,80 @@
+package com.backend.be_realestate.service.ws;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Điểm gửi WS duy nhất cho code nghiệp vụ (thay cho SimpMessagingTemplate).
+ * Trong transaction: message gom vào buffer của transaction, chỉ chuyển cho {@link WsDispatcher} sau commit
+ * (rollback => bỏ hết). Ngoài transaction: chuyển ngay. Không serialize / gửi broker trên thread nghiệp vụ.
+ * Topic được gộp (ws.coalesce.topics) đi qua {@link BroadcastCoalescer} thay vì gửi từng message.
+ * Listener AFTER_COMMIT dùng {@link #sendNow}: synchronization đăng ký trong lúc afterCommit không bao giờ chạy.
+ */
+@Component
+@RequiredArgsConstructor
+public class WsOutbox {
+
+    private final WsDispatcher dispatcher;
+    private final BroadcastCoalescer coalescer;
+
+    public void toTopic(String destination, Object payload) {
+        send(List.of(WsMessage.toTopic(destination, payload)));
+    }
+
+    public void toUser(String user, String destination, Object payload) {
+        send(List.of(WsMessage.toUser(user, destination, payload)));
+    }
+
+    public void send(Collection<WsMessage> messages) {
+        if (messages.isEmpty()) return;
+        TxBuffer buffer = currentBuffer();
+        if (buffer == null) sendNow(messages);
+        else buffer.messages.addAll(messages);
+    }
+
+    /** Chuyển ngay, bỏ qua transaction (chỉ dùng khi đã sau commit). */
+    public void sendNow(Collection<WsMessage> messages) {
+        for (WsMessage m : messages) {
+            if (m.user() == null && coalescer.handles(m.destination())) coalescer.add(m.destination(), m.payload());
+            else dispatcher.dispatch(m);
+        }
+    }
+
+    // Buffer của transaction hiện tại; null nếu không có transaction hoặc transaction đã commit
+    private TxBuffer currentBuffer() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        TxBuffer buffer = (TxBuffer) TransactionSynchronizationManager.getResource(this);
+        if (buffer == null) {
+            buffer = new TxBuffer();
+            TransactionSynchronizationManager.bindResource(this, buffer);
+            TransactionSynchronizationManager.registerSynchronization(buffer);
+        }
+        return buffer.flushed ? null : buffer;
+    }
+
+    private final class TxBuffer implements TransactionSynchronization {
+        final List<WsMessage> messages = new ArrayList<>();
+        boolean flushed;
+
+        @Override
+        public void afterCommit() {
+            flushed = true; // message phát sinh sau thời điểm này (listener AFTER_COMMIT) gửi thẳng
+            sendNow(messages);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            flushed = true;
+            TransactionSynchronizationManager.unbindResourceIfPossible(WsOutbox.this);
+        }
+    }
+}
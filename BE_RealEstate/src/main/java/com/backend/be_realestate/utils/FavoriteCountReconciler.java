@@ -0,0 +1,53 @@
+package com.backend.be_realestate.utils;
+
+import com.backend.be_realestate.repository.PropertyRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đối soát định kỳ cột properties.favorite_count với bảng saved_properties.
+ * Quét theo từng khoảng id (mỗi khoảng 1 câu UPDATE ... JOIN, 1 transaction) nên không khoá cả bảng;
+ * số dòng bị lệch được đếm vào metric favorite_count.reconcile.corrections.
+ */
+@Slf4j
+@Component
+public class FavoriteCountReconciler {
+
+    private final PropertyRepository propertyRepository;
+    private final int batchSize;
+    private final Counter corrections;
+
+    public FavoriteCountReconciler(PropertyRepository propertyRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${favorite.reconcile.batch-size:1000}") int batchSize) {
+        this.propertyRepository = propertyRepository;
+        this.batchSize = Math.max(1, batchSize);
+        this.corrections = Counter.builder("favorite_count.reconcile.corrections")
+                .description("Số tin có favorite_count lệch so với saved_properties và đã được sửa")
+                .register(meterRegistry);
+    }
+
+    // Chạy ngay sau khi khởi động (điền giá trị cho cột mới) rồi lặp lại theo chu kỳ
+    @Scheduled(initialDelayString = "${favorite.reconcile.initial-delay-ms:30000}",
+               fixedDelayString = "${favorite.reconcile.interval-ms:3600000}")
+    public void reconcile() {
+        long maxId = propertyRepository.findMaxId();
+        long fixed = 0;
+        for (long from = 1; from <= maxId; from += batchSize) {
+            long to = from + batchSize - 1;
+            try {
+                fixed += propertyRepository.reconcileFavoriteCounts(from, to);
+            } catch (Exception e) {
+                log.error("Đối soát favorite_count lỗi ở khoảng id [{}, {}]: {}", from, to, e.getMessage());
+            }
+        }
+        if (fixed > 0) {
+            corrections.increment(fixed);
+            log.warn("Đối soát favorite_count: đã sửa {} tin", fixed);
+        }
+    }
+}
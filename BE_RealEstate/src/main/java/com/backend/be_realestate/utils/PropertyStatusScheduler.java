@@ -4,17 +4,20 @@ import com.backend.be_realestate.entity.PropertyEntity;
 import com.backend.be_realestate.entity.UserInventoryEntity;
 import com.backend.be_realestate.enums.NotificationType;
 import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
 import com.backend.be_realestate.repository.PropertyRepository;
 import com.backend.be_realestate.repository.UserInventoryRepository;
 import com.backend.be_realestate.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -26,6 +29,7 @@ public class PropertyStatusScheduler {
     private final NotificationService notificationService;
     // [NEW] Inject kho để trừ gói tin
     private final UserInventoryRepository inventoryRepo;
+    private final ApplicationEventPublisher publisher;
 
     // @Scheduled(cron = "0 0 2 * * *")
     @Scheduled(fixedRate = 600000) // Chạy mỗi 10 phút (khuyên dùng thay vì 10s để đỡ nặng DB)
@@ -77,9 +81,19 @@ public class PropertyStatusScheduler {
         // 3. UPDATE STATUS (ExpiringSoon & Expired)
         // ==================================================================
         // Lưu ý: Những tin đã gia hạn ở bước 1 có expiresAt mới > nowTs nên sẽ KHÔNG bị quét thành expired ở đây.
+        // Gom id bị đổi trạng thái để các chỉ mục in-memory cập nhật sau commit
+        List<Long> changedIds = new ArrayList<>();
+        renewalCandidates.forEach(p -> changedIds.add(p.getId()));
+        changedIds.addAll(propertyRepository.findIdsForExpiringSoon(nowTs, soonTs));
+        changedIds.addAll(propertyRepository.findIdsForExpiredPosts(nowTs));
+
         int expiring = propertyRepository.updateStatusForExpiringSoon(nowTs, soonTs);
         int expired  = propertyRepository.updateStatusForExpiredPosts(nowTs);
 
+        if (!changedIds.isEmpty()) {
+            publisher.publishEvent(PropertyChangedEvent.of(changedIds));
+        }
+
         log.info("Scheduler Report: AutoRenewed={} | MarkExpiringSoon={} | MarkExpired={}", renewalCandidates.size(), expiring, expired);
     }
 
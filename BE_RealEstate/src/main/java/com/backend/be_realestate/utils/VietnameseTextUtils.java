@@ -0,0 +1,35 @@
+package com.backend.be_realestate.utils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Bỏ dấu tiếng Việt + lowercase để so khớp "Hà Nội" ~ "ha noi" (giống collation *_ai_ci của MySQL).
+ */
+public final class VietnameseTextUtils {
+    private VietnameseTextUtils() {}
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /** "Quận 1, TP. Hồ Chí Minh" -> "quan 1, tp. ho chi minh" */
+    public static String fold(String s) {
+        if (s == null || s.isEmpty()) return "";
+        String nfd = Normalizer.normalize(s, Normalizer.Form.NFD);
+        String noMarks = COMBINING_MARKS.matcher(nfd).replaceAll("");
+        return SPACES.matcher(noMarks.replace('đ', 'd').replace('Đ', 'D').toLowerCase().trim()).replaceAll(" ");
+    }
+
+    /** Tách từ trên chuỗi đã fold, bỏ dấu câu. */
+    public static List<String> tokenize(String folded) {
+        List<String> out = new ArrayList<>();
+        if (folded == null || folded.isEmpty()) return out;
+        for (String t : NON_WORD.split(folded)) {
+            if (!t.isEmpty()) out.add(t);
+        }
+        return out;
+    }
+}
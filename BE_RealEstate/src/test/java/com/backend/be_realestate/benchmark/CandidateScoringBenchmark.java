@@ -0,0 +1,66 @@
+package com.backend.be_realestate.benchmark;
+
+import com.backend.be_realestate.enums.ListingType;
+import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.service.reco.CandidateBatch;
+import com.backend.be_realestate.service.reco.CandidateScorer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thông lượng chấm điểm base cho ứng viên gợi ý bằng CandidateScorer trên lô dạng cột,
+ * ở 1k / 10k / 100k ứng viên (kết quả tính theo lô; nhân size để ra ứng viên/giây).
+ * Chạy: main() trong IDE, hoặc
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...CandidateScoringBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class CandidateScoringBenchmark {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private CandidateBatch batch;
+    private CandidateScorer scorer;
+    private long now;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(42);
+        now = System.currentTimeMillis();
+        batch = new CandidateBatch(size);
+        for (int i = 0; i < size; i++) {
+            batch.set(i,
+                    1e8 + rnd.nextDouble() * 9e9,
+                    20 + rnd.nextFloat() * 180,
+                    rnd.nextInt(PropertyType.values().length),
+                    rnd.nextInt(ListingType.values().length),
+                    1 + rnd.nextInt(63),
+                    now - (long) (rnd.nextDouble() * 60 * DAY_MS));
+        }
+        scorer = new CandidateScorer(2.4, 1.2, 0.6, 0.8, 1.0, 0.2, 1.1, 30, 0.25);
+    }
+
+    @Benchmark
+    public double[] scoreBatch() {
+        return scorer.score(batch, List.of(PropertyType.sell), Set.of(1L, 2L, 48L),
+                3.5e9, 80, now);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CandidateScoringBenchmark.class.getSimpleName()).build()).run();
+    }
+}
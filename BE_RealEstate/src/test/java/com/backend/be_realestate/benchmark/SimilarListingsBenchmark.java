@@ -0,0 +1,128 @@
+package com.backend.be_realestate.benchmark;
+
+import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.service.similar.HnswIndex;
+import com.backend.be_realestate.service.similar.PropertyFeatureEncoder;
+import com.backend.be_realestate.service.similar.PropertyFeatureEncoder.Features;
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Tin tương tự": top-10 qua HnswIndex so với quét toàn bộ (brute force) trên dữ liệu giả lập
+ * (63 tỉnh/thành, 12 danh mục, giá / diện tích log-normal). Thời gian build và recall@10 so với brute force
+ * được ghi log lúc setup (tính theo khoảng cách, tin đồng hạng với phần tử thứ 10 vẫn tính là đúng).
+ * Heap: đo được ~1GB còn sống sau build ở size=1M (vector + đồ thị HNSW); đỉnh lúc build cao hơn
+ * (ước ~1.4GB), nên fork chạy với -Xmx4g.
+ * Chạy: main() trong IDE, hoặc
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...SimilarListingsBenchmark
+ */
+@Slf4j
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class SimilarListingsBenchmark {
+
+    private static final int K = 10;
+    private static final int RECALL_QUERIES = 200;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"64", "128"})
+    public int ef;
+
+    private float[][] vectors;
+    private HnswIndex index;
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(7);
+        List<Features> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PropertyType type = rnd.nextInt(4) == 0 ? PropertyType.rent : PropertyType.sell;
+            double price = type == PropertyType.rent ? Math.exp(16 + rnd.nextGaussian()) : Math.exp(21.5 + rnd.nextGaussian());
+            rows.add(new Features(price, (float) Math.exp(4.2 + 0.6 * rnd.nextGaussian()),
+                    rnd.nextInt(6), rnd.nextInt(4), type, (long) 1 + rnd.nextInt(12), (long) 1 + rnd.nextInt(63)));
+        }
+        PropertyFeatureEncoder enc = PropertyFeatureEncoder.fit(rows,
+                new PropertyFeatureEncoder.Weights(1.0, 0.6, 0.8, 1.0, 0), 0);
+
+        vectors = new float[size][];
+        index = new HnswIndex(enc.dim(), 16, 100, size, 42L);
+        long t0 = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            vectors[i] = enc.encode(rows.get(i), null);
+            index.add(i, vectors[i]);
+        }
+        long buildMs = System.currentTimeMillis() - t0;
+        rows = null;
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        log.info("build size={} dim={} in {}ms, heap used ~{}MB", size, enc.dim(), buildMs,
+                (rt.totalMemory() - rt.freeMemory()) >> 20);
+
+        double hit = 0;
+        for (int qi = 0; qi < RECALL_QUERIES; qi++) {
+            int id = rnd.nextInt(size);
+            float[] q = vectors[id];
+            double kth = kthDistance(q, id);
+            for (long r : index.search(q, K, ef, id)) {
+                if (distance(q, vectors[(int) r]) <= kth + 1e-6) hit++;
+            }
+        }
+        log.info("recall@{} (size={}, ef={}) = {}", K, size, ef, String.format("%.4f", hit / (RECALL_QUERIES * K)));
+    }
+
+    @Benchmark
+    public List<Long> hnswTop10() {
+        int id = ThreadLocalRandom.current().nextInt(size);
+        return index.search(vectors[id], K, ef, id);
+    }
+
+    @Benchmark
+    public double bruteForceTop10() {
+        int id = ThreadLocalRandom.current().nextInt(size);
+        return kthDistance(vectors[id], id);
+    }
+
+    // Khoảng cách của phần tử gần thứ K (quét toàn bộ, giữ K nhỏ nhất)
+    private double kthDistance(float[] q, int exclude) {
+        double[] best = new double[K];
+        java.util.Arrays.fill(best, Double.MAX_VALUE);
+        for (int i = 0; i < vectors.length; i++) {
+            if (i == exclude) continue;
+            double d = distance(q, vectors[i]);
+            if (d < best[K - 1]) {
+                int j = K - 1;
+                while (j > 0 && best[j - 1] > d) {
+                    best[j] = best[j - 1];
+                    j--;
+                }
+                best[j] = d;
+            }
+        }
+        return best[K - 1];
+    }
+
+    private static double distance(float[] a, float[] b) {
+        float dot = 0;
+        for (int i = 0; i < a.length; i++) dot += a[i] * b[i];
+        return 1 - dot;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SimilarListingsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.backend.be_realestate.benchmark;
+
+import com.backend.be_realestate.enums.ActivityType;
+import com.backend.be_realestate.service.tracking.TrackingDedupWindow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * So sánh lọc trùng lượt xem: truy vấn EXISTS trên property_activity_logs (cách cũ, H2 in-memory có index)
+ * với TrackingDedupWindow trong RAM. Tỉ lệ xem lại (repeatRate) lấy trên WARM cặp (tin, user) đã có,
+ * WARM nhỏ hơn max-entries như thực tế (số cặp khác nhau trong 1 giờ); phần còn lại là cặp mới.
+ * Chạy: main() trong IDE, hoặc
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=...TrackingDedupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class TrackingDedupBenchmark {
+
+    private static final int PROPERTIES = 5_000;
+    private static final int MAX_ENTRIES = 200_000;
+    // Cặp (tin, user) đã xem trong cửa sổ: vừa trong max-entries
+    private static final int WARM = 150_000;
+    private static final Duration WINDOW = Duration.ofHours(1);
+
+    @Param({"0.3", "0.7"})
+    public double repeatRate;
+
+    private final AtomicLong nextFresh = new AtomicLong(WARM);
+
+    private Connection connection;
+    private PreparedStatement existsQuery;
+    private TrackingDedupWindow window;
+
+    @Setup
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:dedup;DB_CLOSE_DELAY=-1");
+        try (Statement st = connection.createStatement()) {
+            st.execute("""
+                    CREATE TABLE property_activity_logs (
+                        id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        property_id BIGINT NOT NULL,
+                        user_id BIGINT,
+                        ip_address VARCHAR(64),
+                        activity_type VARCHAR(32) NOT NULL,
+                        created_at TIMESTAMP NOT NULL)""");
+            st.execute("CREATE INDEX idx_log_dedup ON property_activity_logs (property_id, user_id, activity_type, created_at)");
+        }
+        Timestamp now = Timestamp.from(Instant.now());
+        try (PreparedStatement ins = connection.prepareStatement(
+                "INSERT INTO property_activity_logs (property_id, user_id, activity_type, created_at) VALUES (?, ?, ?, ?)")) {
+            for (int k = 0; k < WARM; k++) {
+                ins.setLong(1, propertyOf(k));
+                ins.setLong(2, userOf(k));
+                ins.setString(3, ActivityType.VIEW.name());
+                ins.setTimestamp(4, now);
+                ins.addBatch();
+                if (k % 1000 == 999) ins.executeBatch();
+            }
+            ins.executeBatch();
+        }
+        existsQuery = connection.prepareStatement("""
+                SELECT 1 FROM property_activity_logs
+                WHERE property_id = ? AND user_id = ? AND activity_type = ? AND created_at > ?
+                FETCH FIRST 1 ROWS ONLY""");
+
+        window = new TrackingDedupWindow(new SimpleMeterRegistry(), MAX_ENTRIES);
+        // Làm ấm cửa sổ bằng chính các cặp (tin, user) trong log
+        for (int k = 0; k < WARM; k++) {
+            window.recordIfFirst(propertyOf(k), userOf(k), null, ActivityType.VIEW, WINDOW, () -> false, () -> true);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public boolean dbExistsQuery() throws SQLException {
+        long k = nextPair();
+        existsQuery.setLong(1, propertyOf(k));
+        existsQuery.setLong(2, userOf(k));
+        existsQuery.setString(3, ActivityType.VIEW.name());
+        existsQuery.setTimestamp(4, Timestamp.from(Instant.now().minus(WINDOW)));
+        try (ResultSet rs = existsQuery.executeQuery()) {
+            return rs.next();
+        }
+    }
+
+    @Benchmark
+    public boolean inMemoryWindow() {
+        long k = nextPair();
+        return window.recordIfFirst(propertyOf(k), userOf(k), null, ActivityType.VIEW, WINDOW, () -> false, () -> true);
+    }
+
+    // Xem lại 1 cặp đã có với xác suất repeatRate, còn lại là cặp mới chưa từng xem
+    private long nextPair() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        return rnd.nextDouble() < repeatRate ? rnd.nextInt(WARM) : nextFresh.getAndIncrement();
+    }
+
+    private static long propertyOf(long pair) {
+        return pair % PROPERTIES;
+    }
+
+    private static long userOf(long pair) {
+        return pair / PROPERTIES;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TrackingDedupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
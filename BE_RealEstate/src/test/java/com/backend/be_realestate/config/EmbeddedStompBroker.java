@@ -0,0 +1,223 @@
+package com.backend.be_realestate.config;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broker STOMP 1.2 tối giản cho test (thay RabbitMQ / ActiveMQ): CONNECT, SUBSCRIBE, UNSUBSCRIBE, SEND,
+ * DISCONNECT, RECEIPT; khớp destination chính xác, không heart-beat. Đủ cho StompBrokerRelay của Spring.
+ */
+class EmbeddedStompBroker implements Closeable {
+
+    private record Subscription(Connection conn, String id) {}
+
+    private final ServerSocket server;
+    private final Map<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    EmbeddedStompBroker() throws IOException {
+        server = new ServerSocket(0);
+        Thread acceptor = new Thread(this::acceptLoop, "stomp-broker-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    /** Số subscription hiện có trên các destination bắt đầu bằng prefix. */
+    int subscriptionCount(String prefix) {
+        return subscriptions.entrySet().stream()
+                .filter(e -> e.getKey().startsWith(prefix))
+                .mapToInt(e -> e.getValue().size())
+                .sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Connection c : connections) c.close();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Connection c = new Connection(server.accept());
+                connections.add(c);
+                Thread t = new Thread(c::readLoop, "stomp-broker-conn");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void deliver(String destination, Map<String, String> sendHeaders, byte[] body) {
+        for (Subscription s : subscriptions.getOrDefault(destination, List.of())) {
+            Map<String, String> h = new LinkedHashMap<>();
+            sendHeaders.forEach((k, v) -> {
+                if (!k.equals("receipt") && !k.equals("content-length") && !k.equals("transaction")) h.put(k, v);
+            });
+            h.put("destination", destination);
+            h.put("subscription", s.id());
+            h.put("message-id", String.valueOf(messageIds.incrementAndGet()));
+            s.conn().write("MESSAGE", h, body);
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Map<String, String> subs = new ConcurrentHashMap<>(); // id -> destination
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void readLoop() {
+            try {
+                while (true) {
+                    String command = readCommand();
+                    if (command == null) break;
+                    Map<String, String> headers = new LinkedHashMap<>();
+                    for (String line; !(line = readLine()).isEmpty(); ) {
+                        int i = line.indexOf(':');
+                        String key = unescape(line.substring(0, i));
+                        headers.putIfAbsent(key, command.equals("CONNECT") ? line.substring(i + 1) : unescape(line.substring(i + 1)));
+                    }
+                    byte[] body = readBody(headers.get("content-length"));
+                    handle(command, headers, body);
+                    if (command.equals("DISCONNECT")) break;
+                }
+            } catch (IOException ignored) {
+                // kết nối đóng
+            } finally {
+                close();
+            }
+        }
+
+        private void handle(String command, Map<String, String> headers, byte[] body) {
+            switch (command) {
+                case "CONNECT", "STOMP" -> write("CONNECTED", Map.of("version", "1.2", "heart-beat", "0,0"), new byte[0]);
+                case "SUBSCRIBE" -> {
+                    subs.put(headers.get("id"), headers.get("destination"));
+                    subscriptions.computeIfAbsent(headers.get("destination"), d -> new CopyOnWriteArrayList<>())
+                            .add(new Subscription(this, headers.get("id")));
+                }
+                case "UNSUBSCRIBE" -> unsubscribe(headers.get("id"));
+                case "SEND" -> deliver(headers.get("destination"), headers, body);
+                default -> { }
+            }
+            if (headers.containsKey("receipt")) {
+                write("RECEIPT", Map.of("receipt-id", headers.get("receipt")), new byte[0]);
+            }
+        }
+
+        private void unsubscribe(String id) {
+            String destination = subs.remove(id);
+            if (destination != null) {
+                subscriptions.getOrDefault(destination, List.of()).removeIf(s -> s.conn() == this && s.id().equals(id));
+            }
+        }
+
+        synchronized void write(String command, Map<String, String> headers, byte[] body) {
+            try {
+                StringBuilder sb = new StringBuilder(command).append('\n');
+                headers.forEach((k, v) -> sb.append(escape(k)).append(':').append(escape(v)).append('\n'));
+                sb.append("content-length:").append(body.length).append("\n\n");
+                out.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+                out.write(body);
+                out.write(0);
+                out.flush();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void close() {
+            new ArrayList<>(subs.keySet()).forEach(this::unsubscribe);
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        // Bỏ qua các dòng trống (heart-beat) trước command
+        private String readCommand() throws IOException {
+            String line;
+            do {
+                line = readLineOrNull();
+                if (line == null) return null;
+            } while (line.isEmpty());
+            return line;
+        }
+
+        private String readLine() throws IOException {
+            String line = readLineOrNull();
+            if (line == null) throw new EOFException();
+            return line;
+        }
+
+        private String readLineOrNull() throws IOException {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b == -1) return null;
+                buf.write(b);
+            }
+            String s = buf.toString(StandardCharsets.UTF_8);
+            return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+        }
+
+        private byte[] readBody(String contentLength) throws IOException {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            if (contentLength != null) {
+                byte[] body = in.readNBytes(Integer.parseInt(contentLength));
+                in.read(); // NULL kết thúc frame
+                return body;
+            }
+            int b;
+            while ((b = in.read()) != 0) {
+                if (b == -1) throw new EOFException();
+                buf.write(b);
+            }
+            return buf.toByteArray();
+        }
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n").replace(":", "\\c");
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == s.length()) {
+                sb.append(c);
+                continue;
+            }
+            char n = s.charAt(++i);
+            sb.append(switch (n) {
+                case 'n' -> '\n';
+                case 'r' -> '\r';
+                case 'c' -> ':';
+                default -> n;
+            });
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,139 @@
+package com.backend.be_realestate.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Client chậm: lần gửi đầu bị treo trong socket, các frame sau nằm chờ trong buffer (giới hạn 100 byte).
+ */
+class SlowConsumerWebSocketHandlerTest {
+
+    private static final TextMessage FRAME = new TextMessage("MESSAGE\ndestination:/user/queue/notifications\n\n" + "x".repeat(10));
+    private static final TextMessage RECEIPT = new TextMessage("RECEIPT\nreceipt-id:1\n\n" + "x".repeat(40));
+
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExecutorService pool;
+    private WebSocketSession socket;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool = Executors.newSingleThreadExecutor();
+        meterRegistry = new SimpleMeterRegistry();
+        socket = mock(WebSocketSession.class);
+        when(socket.getId()).thenReturn("s1");
+        when(socket.isOpen()).thenReturn(true);
+        doAnswer(inv -> {
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(socket).sendMessage(any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void dropPolicySkipsMessageFramesWhileBufferIsFull() throws Exception {
+        SlowConsumerWebSocketHandler handler = handler(SlowConsumerWebSocketHandler.Policy.DROP);
+        WebSocketSession session = handler.decorateSession(socket);
+        Future<?> stuck = startStuckSend(session);
+
+        session.sendMessage(FRAME);                        // vào buffer
+        assertEquals(FRAME.getPayloadLength(), handler.bufferedBytes());
+        session.sendMessage(FRAME);                        // buffer đầy => bỏ
+        session.sendMessage(FRAME);
+        assertEquals(2, meterRegistry.get("ws.session.dropped").counter().count());
+        assertEquals(FRAME.getPayloadLength(), handler.maxBufferedBytes());
+
+        // Frame điều khiển không bị bỏ: vượt giới hạn thì đóng session như disconnect
+        assertThrows(SessionLimitExceededException.class, () -> session.sendMessage(RECEIPT));
+
+        release.countDown();
+        stuck.get(5, TimeUnit.SECONDS);
+        handler.afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(0, meterRegistry.get("ws.session.open").gauge().value());
+    }
+
+    @Test
+    void dropPolicyAlsoSkipsBinaryMessageFrames() throws Exception {
+        SlowConsumerWebSocketHandler handler = handler(SlowConsumerWebSocketHandler.Policy.DROP);
+        WebSocketSession session = handler.decorateSession(socket);
+        startStuckSend(session);
+
+        BinaryMessage binary = new BinaryMessage(FRAME.asBytes());
+        session.sendMessage(binary);                       // vào buffer
+        session.sendMessage(binary);                       // buffer đầy => bỏ, không đóng session
+        assertEquals(1, meterRegistry.get("ws.session.dropped").counter().count());
+        assertEquals(0, meterRegistry.get("ws.session.terminated").counter().count());
+
+        // Binary không phải MESSAGE (vd. RECEIPT) vẫn bị giới hạn như frame điều khiển
+        assertThrows(SessionLimitExceededException.class, () -> session.sendMessage(new BinaryMessage(RECEIPT.asBytes())));
+    }
+
+    @Test
+    void disconnectPolicyTerminatesSessionWhenBufferOverflows() throws Exception {
+        SlowConsumerWebSocketHandler handler = handler(SlowConsumerWebSocketHandler.Policy.DISCONNECT);
+        WebSocketSession session = handler.decorateSession(socket);
+        startStuckSend(session);
+
+        session.sendMessage(FRAME);
+        assertThrows(SessionLimitExceededException.class, () -> session.sendMessage(FRAME));
+        assertEquals(1, meterRegistry.get("ws.session.terminated").counter().count());
+        assertEquals(0, meterRegistry.get("ws.session.dropped").counter().count());
+    }
+
+    @Test
+    void dropPolicySendsDirectlyWhenNothingIsInFlight() throws Exception {
+        SlowConsumerWebSocketHandler handler = handler(SlowConsumerWebSocketHandler.Policy.DROP);
+        WebSocketSession session = handler.decorateSession(socket);
+        release.countDown();
+
+        TextMessage big = new TextMessage("MESSAGE\n\n" + "x".repeat(500)); // lớn hơn buffer nhưng gửi thẳng
+        session.sendMessage(big);
+        verify(socket).sendMessage(big);
+        assertEquals(0, meterRegistry.get("ws.session.dropped").counter().count());
+    }
+
+    private SlowConsumerWebSocketHandler handler(SlowConsumerWebSocketHandler.Policy policy) {
+        SlowConsumerWebSocketHandler handler = new SlowConsumerWebSocketHandler(mock(MessageChannel.class),
+                mock(SubscribableChannel.class), policy, meterRegistry);
+        handler.setDefaultProtocolHandler(new StompSubProtocolHandler());
+        handler.setSendTimeLimit(60_000);
+        handler.setSendBufferSizeLimit(100);
+        return handler;
+    }
+
+    private Future<?> startStuckSend(WebSocketSession session) throws InterruptedException {
+        Future<?> f = pool.submit(() -> {
+            session.sendMessage(FRAME);
+            return null;
+        });
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        return f;
+    }
+}
@@ -0,0 +1,240 @@
+package com.backend.be_realestate.config;
+
+import com.backend.be_realestate.controller.WsBridgeController;
+import com.backend.be_realestate.service.ws.WsBridge;
+import com.backend.be_realestate.service.ws.WsDispatcher;
+import com.backend.be_realestate.service.ws.WsMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.context.PropertyPlaceholderAutoConfiguration;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketMessagingAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 2 node thật (Tomcat + STOMP) cùng chạy: client kết nối node A, message gửi từ node B phải tới được client
+ * (topic admin và /user/queue/notifications), ở chế độ relay (qua {@link EmbeddedStompBroker}) và bridge (HTTP).
+ */
+class WsBrokerMultiNodeTest {
+
+    private final List<StompSession> sessions = new ArrayList<>();
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private EmbeddedStompBroker broker;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        sessions.forEach(StompSession::disconnect);
+        nodes.forEach(ConfigurableApplicationContext::close);
+        if (broker != null) broker.close();
+    }
+
+    @Test
+    void relayDeliversAcrossNodes() throws Exception {
+        broker = new EmbeddedStompBroker();
+        String relayPort = "ws.broker.relay.port=" + broker.port();
+        ConfigurableApplicationContext a = startNode(0, "ws.broker.mode=relay", relayPort);
+        ConfigurableApplicationContext b = startNode(0, "ws.broker.mode=relay", relayPort);
+        // system session của cả 2 node đã subscribe kênh broadcast user destination
+        await(() -> broker.subscriptionCount(WsBrokerSettings.UNRESOLVED_USER_DESTINATION) == 2);
+
+        Client alice = connect(a, "alice");
+        await(() -> broker.subscriptionCount("/topic/admin/properties") == 1
+                && broker.subscriptionCount("/queue/notifications-user") == 1);
+
+        assertDeliveredFrom(b, alice);
+    }
+
+    @Test
+    void bridgeDeliversAcrossNodes() throws Exception {
+        int portA = freePort();
+        int portB = freePort();
+        ConfigurableApplicationContext a = startNode(portA, "ws.broker.mode=bridge",
+                "ws.broker.bridge.peers=http://localhost:" + portB, "ws.broker.bridge.token=secret");
+        ConfigurableApplicationContext b = startNode(portB, "ws.broker.mode=bridge",
+                "ws.broker.bridge.peers=http://localhost:" + portA, "ws.broker.bridge.token=secret");
+
+        Client alice = connect(a, "alice");
+        // SUBSCRIBE đã tới broker trong RAM của node A
+        await(() -> subscribed(a, "/topic/admin/properties")
+                && subscribed(a, "/queue/notifications-user" + sessionIdOf(a, "alice")));
+
+        assertDeliveredFrom(b, alice);
+    }
+
+    private void assertDeliveredFrom(ConfigurableApplicationContext sender, Client client) throws InterruptedException {
+        WsDispatcher dispatcher = sender.getBean(WsDispatcher.class);
+        dispatcher.dispatch(WsMessage.toTopic("/topic/admin/properties", Map.of("type", "batch", "propertyIds", List.of(7))));
+        dispatcher.dispatch(WsMessage.toUser("alice", "/queue/notifications", Map.of("message", "hello")));
+
+        Map<?, ?> topic = client.topic.poll(10, TimeUnit.SECONDS);
+        Map<?, ?> user = client.user.poll(10, TimeUnit.SECONDS);
+        assertNotNull(topic, "topic message did not reach the other node");
+        assertEquals(List.of(7), topic.get("propertyIds"));
+        assertNotNull(user, "user message did not reach the other node");
+        assertEquals("hello", user.get("message"));
+    }
+
+    private ConfigurableApplicationContext startNode(int port, String... props) {
+        List<String> all = new ArrayList<>(List.of(props));
+        all.add("server.port=" + port);
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(NodeConfig.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(all.toArray(String[]::new))
+                .run();
+        nodes.add(ctx);
+        return ctx;
+    }
+
+    private record Client(StompSession session, BlockingQueue<Map<?, ?>> topic, BlockingQueue<Map<?, ?>> user) {}
+
+    private Client connect(ConfigurableApplicationContext node, String user) throws Exception {
+        int port = ((WebServerApplicationContext) node).getWebServer().getPort();
+        WebSocketStompClient stomp = new WebSocketStompClient(new StandardWebSocketClient());
+        stomp.setMessageConverter(new MappingJackson2MessageConverter());
+        StompSession session = stomp.connectAsync("ws://localhost:" + port + "/ws?user=" + user,
+                new StompSessionHandlerAdapter() {}).get(10, TimeUnit.SECONDS);
+        sessions.add(session);
+        Client client = new Client(session, new LinkedBlockingQueue<>(), new LinkedBlockingQueue<>());
+        session.subscribe("/topic/admin/properties", collectInto(client.topic()));
+        session.subscribe("/user/queue/notifications", collectInto(client.user()));
+        return client;
+    }
+
+    private static StompFrameHandler collectInto(BlockingQueue<Map<?, ?>> queue) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders headers, Object payload) {
+                queue.add((Map<?, ?>) payload);
+            }
+        };
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) fail("timed out waiting for broker state");
+            Thread.sleep(50);
+        }
+    }
+
+    // Simple broker của node đã có subscription cho destination này chưa
+    private static boolean subscribed(ConfigurableApplicationContext node, String destination) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setDestination(destination);
+        Message<byte[]> probe = MessageBuilder.createMessage(new byte[0], headers.getMessageHeaders());
+        return !node.getBean(SimpleBrokerMessageHandler.class).getSubscriptionRegistry().findSubscriptions(probe).isEmpty();
+    }
+
+    private static String sessionIdOf(ConfigurableApplicationContext node, String user) {
+        SimpUser simpUser = node.getBean(SimpUserRegistry.class).getUser(user);
+        return simpUser == null || simpUser.getSessions().isEmpty() ? "?" : simpUser.getSessions().iterator().next().getId();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    /**
+     * 1 node tối thiểu: web + STOMP với cấu hình broker thật (WsBrokerSettings) và WsDispatcher / WsBridge.
+     * Không gắn @Configuration để component scan của app (BeRealEstateApplicationTests) không nhặt vào.
+     */
+    @EnableWebSocketMessageBroker
+    @ImportAutoConfiguration({
+            PropertyPlaceholderAutoConfiguration.class, JacksonAutoConfiguration.class,
+            ServletWebServerFactoryAutoConfiguration.class, DispatcherServletAutoConfiguration.class,
+            HttpMessageConvertersAutoConfiguration.class, WebMvcAutoConfiguration.class,
+            WebSocketServletAutoConfiguration.class, WebSocketMessagingAutoConfiguration.class})
+    @Import({WsDispatcher.class, WsBridge.class, WsBridgeController.class})
+    static class NodeConfig implements WebSocketMessageBrokerConfigurer {
+
+        @Value("${ws.broker.mode}")
+        private String mode;
+        @Value("${ws.broker.relay.port:61613}")
+        private int relayPort;
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        WebClient.Builder webClientBuilder() {
+            return WebClient.builder();
+        }
+
+        @Override
+        public void configureMessageBroker(MessageBrokerRegistry config) {
+            new WsBrokerSettings(WsBrokerSettings.parseMode(mode), "127.0.0.1", relayPort,
+                    "guest", "guest", "guest", "guest", null).apply(config);
+        }
+
+        @Override
+        public void registerStompEndpoints(StompEndpointRegistry registry) {
+            registry.addEndpoint("/ws").setHandshakeHandler(new DefaultHandshakeHandler() {
+                @Override
+                protected Principal determineUser(ServerHttpRequest request, WebSocketHandler handler,
+                                                  Map<String, Object> attributes) {
+                    String user = request.getURI().getQuery().replace("user=", "");
+                    return () -> user;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.backend.be_realestate.converter;
+
+import com.backend.be_realestate.entity.*;
+import com.backend.be_realestate.enums.ListingType;
+import com.backend.be_realestate.enums.PriceType;
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.enums.PropertyType;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Đếm câu SQL thật (Hibernate Statistics, H2): số câu cho 1 trang phải cố định, không phụ thuộc số tin trong trang.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({PropertyCardHydrator.class, PropertyMapper.class, PropertyConverter.class, PropertyCardHydratorTest.Beans.class})
+class PropertyCardHydratorTest {
+
+    static class Beans {
+        @Bean
+        ModelMapper modelMapper() {
+            return new ModelMapper();
+        }
+    }
+
+    private static final int MAX_PAGE = 100;
+
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private EntityManagerFactory emf;
+    @Autowired
+    private PropertyCardHydrator hydrator;
+
+    private final List<Long> ids = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        UserEntity agent = UserEntity.builder().email("agent@test.vn").passwordHash("x").isActive(true)
+                .firstName("Môi").lastName("Giới").phone("0900000000")
+                .deleteRequested(false).lockRequested(false).build();
+        em.persist(agent);
+        ListingTypePolicy policy = ListingTypePolicy.builder().listingType(ListingType.NORMAL).price(0L)
+                .isActive(1L).durationDays(10).verifySlaMinutes(240).boostFactor(1).showOnList(true).build();
+        em.persist(policy);
+        CategoryEntity category = CategoryEntity.builder().name("Bán nhà").slug("ban-nha").build();
+        em.persist(category);
+        CityEntity city = CityEntity.builder().name("Hà Nội").slug("ha-noi").build();
+        em.persist(city);
+        DistrictEntity district = DistrictEntity.builder().name("Ba Đình").slug("ba-dinh").city(city).build();
+        em.persist(district);
+
+        for (int i = 1; i <= MAX_PAGE; i++) {
+            PropertyEntity p = PropertyEntity.builder()
+                    .title("Tin " + i).price(2_500_000_000d).area(80f).bedrooms(3).bathrooms(2)
+                    .propertyType(PropertyType.values()[0]).priceType(PriceType.values()[0])
+                    .status(PropertyStatus.PUBLISHED).listingType(ListingType.NORMAL).listingTypePolicy(policy)
+                    .user(agent).category(category).city(city).district(district)
+                    .displayAddress("Ba Đình, Hà Nội").viewCount(0L).isOwner(true)
+                    .build();
+            p.replaceImages(List.of("https://img/" + i + "/0", "https://img/" + i + "/1", "https://img/" + i + "/2"));
+            p.replaceConstructionImages(List.of("https://img/" + i + "/c"));
+            em.persist(p);
+            ids.add(p.getId());
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void hydrateCards_usesTwoStatementsPerPage(int pageSize) {
+        statistics.clear();
+
+        var cards = hydrator.hydrateCards(ids.subList(0, pageSize));
+
+        assertEquals(pageSize, cards.size());
+        cards.values().forEach(c -> assertEquals(3, c.card().getImages().size()));
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100})
+    void hydrateDtos_usesConstantStatementsPerPage(int pageSize) {
+        statistics.clear();
+
+        var dtos = hydrator.hydrateDtos(ids.subList(0, pageSize));
+
+        assertEquals(pageSize, dtos.size());
+        assertEquals(1, dtos.get(0).getConstructionImages().size());
+        assertEquals(7, statistics.getPrepareStatementCount());
+    }
+}
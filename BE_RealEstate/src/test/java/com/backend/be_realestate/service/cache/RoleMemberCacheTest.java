@@ -0,0 +1,48 @@
+package com.backend.be_realestate.service.cache;
+
+import com.backend.be_realestate.modals.dto.userEvent.RoleMembersChangedEvent;
+import com.backend.be_realestate.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cache theo role chỉ query 1 lần; RoleMembersChangedEvent bỏ đúng các role được nêu.
+ */
+class RoleMemberCacheTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final RoleMemberCache cache = new RoleMemberCache(userRepository, 300);
+
+    @Test
+    void invalidatedOnlyForChangedRoles() {
+        when(userRepository.findRoleMembers("ADMIN"))
+                .thenReturn(List.of(row(1L, "a@x.vn", null)))
+                .thenReturn(List.of(row(1L, "a@x.vn", null), row(2L, null, "0901")));
+        when(userRepository.findRoleMembers("USER")).thenReturn(List.of(row(3L, null, null)));
+
+        assertEquals(List.of(new RoleMemberCache.Member(1L, "a@x.vn")), cache.get("ADMIN"));
+        assertEquals(List.of(new RoleMemberCache.Member(3L, "3")), cache.get("USER"));
+        cache.get("ADMIN");
+        verify(userRepository, times(1)).findRoleMembers("ADMIN");
+
+        cache.onRoleMembersChanged(RoleMembersChangedEvent.of("ADMIN"));
+
+        assertEquals(List.of(new RoleMemberCache.Member(1L, "a@x.vn"), new RoleMemberCache.Member(2L, "0901")),
+                cache.get("ADMIN"));
+        cache.get("USER");
+        verify(userRepository, times(2)).findRoleMembers("ADMIN");
+        verify(userRepository, times(1)).findRoleMembers("USER");
+    }
+
+    private static UserRepository.RoleMemberRow row(Long userId, String email, String phone) {
+        return new UserRepository.RoleMemberRow() {
+            public Long getUserId() { return userId; }
+            public String getEmail() { return email; }
+            public String getPhone() { return phone; }
+        };
+    }
+}
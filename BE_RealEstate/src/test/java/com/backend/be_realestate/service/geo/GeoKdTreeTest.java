@@ -0,0 +1,74 @@
+package com.backend.be_realestate.service.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * nearest() phải trả đúng thứ tự như sắp xếp toàn bộ theo khoảng cách haversine (cách SQL cũ làm).
+ */
+class GeoKdTreeTest {
+
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    @Test
+    void nearestMatchesHaversineSortOnVietnamBox() {
+        // Điểm dày đặc trong khung VN: nhiều điểm gần nhau, dễ lộ lỗi cắt nhánh
+        assertMatchesBruteForce(randomPoints(new Random(42), 3000, 8.0, 23.5, 102.0, 110.0), new int[]{1, 5, 20, 64});
+    }
+
+    @Test
+    void nearestMatchesHaversineSortAcrossGlobe() {
+        // Cả 2 bán cầu và quanh kinh tuyến 180
+        assertMatchesBruteForce(randomPoints(new Random(7), 2000, -85.0, 85.0, -180.0, 180.0), new int[]{1, 10, 50});
+    }
+
+    @Test
+    void unknownIdOrTinyTree() {
+        List<Object[]> rows = List.of(new Object[]{1L, 21.0, 105.8}, new Object[]{2L, 10.8, 106.6});
+        GeoKdTree tree = GeoKdTree.build(rows);
+        assertTrue(tree.nearest(99L, 5).isEmpty());
+        assertEquals(List.of(2L), tree.nearest(1L, 5));
+    }
+
+    private static void assertMatchesBruteForce(List<Object[]> rows, int[] ks) {
+        GeoKdTree tree = GeoKdTree.build(rows);
+        assertEquals(rows.size(), tree.size());
+        Random rnd = new Random(1);
+        for (int q = 0; q < 200; q++) {
+            Object[] query = rows.get(rnd.nextInt(rows.size()));
+            long qid = (Long) query[0];
+            List<Object[]> others = new ArrayList<>(rows);
+            others.removeIf(r -> (Long) r[0] == qid);
+            others.sort(Comparator.comparingDouble(r -> haversineKm(query, r)));
+            for (int k : ks) {
+                List<Long> expected = others.subList(0, k).stream().map(r -> (Long) r[0]).toList();
+                assertEquals(expected, tree.nearest(qid, k), "id=" + qid + " k=" + k);
+            }
+        }
+    }
+
+    private static List<Object[]> randomPoints(Random rnd, int n, double minLat, double maxLat,
+                                               double minLng, double maxLng) {
+        List<Object[]> rows = new ArrayList<>(n);
+        for (long id = 1; id <= n; id++) {
+            rows.add(new Object[]{id, minLat + rnd.nextDouble() * (maxLat - minLat),
+                    minLng + rnd.nextDouble() * (maxLng - minLng)});
+        }
+        return rows;
+    }
+
+    private static double haversineKm(Object[] a, Object[] b) {
+        double lat1 = Math.toRadians((Double) a[1]), lat2 = Math.toRadians((Double) b[1]);
+        double dLat = lat2 - lat1, dLng = Math.toRadians((Double) b[2] - (Double) a[2]);
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(h));
+    }
+}
@@ -0,0 +1,145 @@
+package com.backend.be_realestate.service.impl;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import com.backend.be_realestate.repository.PropertyRepository;
+import com.backend.be_realestate.service.embedding.PropertyEmbeddingStore;
+import com.backend.be_realestate.service.embedding.TextEmbedder;
+import com.backend.be_realestate.service.reco.RerankScoring;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Rerank bằng embedding cục bộ: không mạng, kết quả xác định.
+ */
+class AIServiceLocalEmbeddingImplTest {
+
+    private PropertyEmbeddingStore store;
+    private TextEmbedder embedder;
+    private AIServiceLocalEmbeddingImpl service;
+
+    @BeforeEach
+    void setUp() {
+        embedder = new TextEmbedder(256);
+        store = new PropertyEmbeddingStore(mock(PropertyRepository.class), embedder, new SimpleMeterRegistry());
+        service = new AIServiceLocalEmbeddingImpl(store, embedder, 2, 10);
+
+        store.put(1L, embedder.embed("Căn hộ chung cư view sông Quận 2", "Căn hộ 2 phòng ngủ, ban công, gần Thảo Điền"));
+        store.put(2L, embedder.embed("Chung cư cao cấp Quận 2", "Căn hộ view sông, nội thất đầy đủ"));
+        store.put(3L, embedder.embed("Đất nền nông nghiệp Bình Phước", "Đất vườn trồng cao su, sổ sẵn"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void ranksCandidateSimilarToSavedListingsFirst() {
+        UserPreference pref = UserPreference.builder().userId(7L).savedIds(List.of(1L)).build();
+
+        List<ScoredProperty> ranked = service.rerank(pref, List.of(candidate(3L), candidate(2L)), 2);
+
+        assertEquals(List.of(2L, 3L), ranked.stream().map(ScoredProperty::getId).toList());
+        assertTrue(ranked.get(0).getAiScore() > ranked.get(1).getAiScore());
+        assertEquals(RerankScoring.W_AI * ranked.get(0).getAiScore(), ranked.get(0).getFinalScore(), 1e-9);
+    }
+
+    @Test
+    void embedsCandidatesMissingFromStore() {
+        UserPreference pref = UserPreference.builder().userId(7L).keywords(List.of("dat nen", "cao su")).build();
+        ScoredProperty notStored = candidate(9L).toBuilder()
+                .title("Bán đất nền trồng cao su").description("Đất nông nghiệp").build();
+
+        List<ScoredProperty> ranked = service.rerank(pref, List.of(candidate(1L), notStored), 1);
+
+        assertEquals(9L, ranked.get(0).getId());
+    }
+
+    @Test
+    void withoutPreferenceKeepsBaseOrder() {
+        UserPreference pref = UserPreference.builder().userId(7L).build();
+        ScoredProperty low = candidate(1L).toBuilder().baseScore(0.1).build();
+        ScoredProperty high = candidate(3L).toBuilder().baseScore(2.0).build();
+
+        List<ScoredProperty> ranked = service.rerank(pref, List.of(low, high), 2);
+
+        assertEquals(List.of(3L, 1L), ranked.stream().map(ScoredProperty::getId).toList());
+    }
+
+    @Test
+    void rerankAsyncScoresEveryCandidateOffCallerThread() throws Exception {
+        String[] scoredOn = new String[1];
+        TextEmbedder recording = new TextEmbedder(256) {
+            @Override
+            public float[] embed(String text) {
+                scoredOn[0] = Thread.currentThread().getName();
+                return super.embed(text);
+            }
+        };
+        AIServiceLocalEmbeddingImpl async = new AIServiceLocalEmbeddingImpl(store, recording, 2, 10);
+        try {
+            UserPreference pref = UserPreference.builder().userId(7L).keywords(List.of("chung cu", "quan 2")).build();
+
+            List<ScoredProperty> ranked = async.rerankAsync(pref, List.of(candidate(3L), candidate(2L), candidate(1L)), 1)
+                    .get(2, TimeUnit.SECONDS);
+
+            assertEquals(3, ranked.size());
+            assertEquals("rerank-local", scoredOn[0]);
+        } finally {
+            async.shutdown();
+        }
+    }
+
+    @Test
+    void rerankAsyncRejectsWhenPoolIsFull() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TextEmbedder blocking = new TextEmbedder(256) {
+            @Override
+            public float[] embed(String text) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.embed(text);
+            }
+        };
+        AIServiceLocalEmbeddingImpl small = new AIServiceLocalEmbeddingImpl(store, blocking, 1, 1);
+        try {
+            UserPreference pref = UserPreference.builder().userId(7L).keywords(List.of("chung cu")).build();
+            List<ScoredProperty> candidates = List.of(candidate(1L));
+
+            CompletableFuture<List<ScoredProperty>> running = small.rerankAsync(pref, candidates, 1);
+            assertTrue(entered.await(2, TimeUnit.SECONDS));
+            CompletableFuture<List<ScoredProperty>> queued = small.rerankAsync(pref, candidates, 1);
+            CompletableFuture<List<ScoredProperty>> rejected = small.rerankAsync(pref, candidates, 1);
+
+            ExecutionException ex = assertThrows(ExecutionException.class, rejected::get);
+            assertInstanceOf(RejectedExecutionException.class, ex.getCause());
+            release.countDown();
+            assertEquals(1, running.get(2, TimeUnit.SECONDS).size());
+            assertEquals(1, queued.get(2, TimeUnit.SECONDS).size());
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    private static ScoredProperty candidate(long id) {
+        return ScoredProperty.builder().id(id).baseScore(0.0).build();
+    }
+}
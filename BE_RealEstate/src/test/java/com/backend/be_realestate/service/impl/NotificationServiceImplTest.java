@@ -0,0 +1,95 @@
+package com.backend.be_realestate.service.impl;
+
+import com.backend.be_realestate.converter.NotificationConverter;
+import com.backend.be_realestate.enums.NotificationType;
+import com.backend.be_realestate.modals.dto.NotificationDTO;
+import com.backend.be_realestate.repository.NotificationRepository;
+import com.backend.be_realestate.service.cache.RoleMemberCache;
+import com.backend.be_realestate.service.ws.WsMessage;
+import com.backend.be_realestate.service.ws.WsOutbox;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * notifyRole trên H2: INSERT nhiều VALUES (nhiều chunk) phải gán đúng id sinh ra cho từng người nhận.
+ */
+class NotificationServiceImplTest {
+
+    private final RoleMemberCache roleMemberCache = mock(RoleMemberCache.class);
+    private final WsOutbox wsOutbox = mock(WsOutbox.class);
+    private EmbeddedDatabase db;
+    private JdbcTemplate jdbc;
+    private NotificationServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("""
+                CREATE TABLE notifications (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY, user_id BIGINT, message VARCHAR(255), link VARCHAR(255),
+                    is_read BOOLEAN NOT NULL, type VARCHAR(50) NOT NULL, created_at TIMESTAMP)
+                """);
+        // Bảng đã có dữ liệu => id sinh ra không trùng với userId
+        for (int i = 0; i < 7; i++) {
+            jdbc.update("INSERT INTO notifications (user_id, is_read, type) VALUES (0, FALSE, 'OTHER')");
+        }
+        service = new NotificationServiceImpl(mock(NotificationRepository.class), wsOutbox,
+                mock(NotificationConverter.class), roleMemberCache, jdbc);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void generatedIdsMapBackToRecipientsAcrossChunks() {
+        // 1200 người nhận => 3 câu INSERT (500 + 500 + 200); userId đảo ngược để thứ tự id != thứ tự userId
+        List<RoleMemberCache.Member> members = new ArrayList<>();
+        for (long u = 1200; u >= 1; u--) members.add(new RoleMemberCache.Member(u, "admin" + u + "@x.vn"));
+        when(roleMemberCache.get("ADMIN")).thenReturn(members);
+        NotificationType type = NotificationType.values()[0];
+
+        assertEquals(1200, service.notifyRole("ADMIN", type, "Tin mới chờ duyệt", "/admin/posts"));
+
+        ArgumentCaptor<Collection<WsMessage>> sent = ArgumentCaptor.forClass(Collection.class);
+        verify(wsOutbox).send(sent.capture());
+        Map<Long, Long> userByRowId = jdbc.queryForList("SELECT id, user_id FROM notifications WHERE user_id > 0").stream()
+                .collect(Collectors.toMap(r -> ((Number) r.get("ID")).longValue(), r -> ((Number) r.get("USER_ID")).longValue()));
+        assertEquals(1200, userByRowId.size());
+
+        for (WsMessage m : sent.getValue()) {
+            NotificationDTO dto = (NotificationDTO) m.payload();
+            assertNotNull(dto.getId());
+            assertEquals(dto.getReceiverId(), userByRowId.get(dto.getId()), "id " + dto.getId());
+            assertEquals("admin" + dto.getReceiverId() + "@x.vn", m.user());
+            assertEquals(type.name(), dto.getType());
+        }
+        assertEquals(1200, sent.getValue().stream().map(m -> ((NotificationDTO) m.payload()).getId()).distinct().count());
+    }
+
+    @Test
+    void noMembersSendsNothing() {
+        when(roleMemberCache.get("ADMIN")).thenReturn(List.of());
+
+        assertEquals(0, service.notifyRole("ADMIN", NotificationType.values()[0], "x", null));
+        verifyNoInteractions(wsOutbox);
+    }
+}
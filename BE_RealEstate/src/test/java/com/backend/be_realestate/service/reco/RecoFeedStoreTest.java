@@ -0,0 +1,79 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.RecoResult;
+import com.backend.be_realestate.modals.dto.PropertyCardDTO;
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.modals.dto.propertyEvent.SavedPropertyToggledEvent;
+import com.backend.be_realestate.repository.SavedPropertyRepository;
+import com.backend.be_realestate.service.IPropertyService;
+import com.backend.be_realestate.service.cache.PropertyCardCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Yêu cầu tính lại tới trong lúc đang tính không bị mất; tin thay đổi chỉ kéo theo đúng các user có tin đó.
+ */
+class RecoFeedStoreTest {
+
+    private final IPropertyService propertyService = mock(IPropertyService.class);
+    private final RecoFeedStore store = new RecoFeedStore(propertyService, mock(PropertyCardCache.class),
+            mock(SavedPropertyRepository.class), 24, 50, 1, 30, 120, 1000);
+
+    @Test
+    void refreshDuringRecomputeRunsOnceMore() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(recommendations(1L)).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return feed(10L);
+        }).thenReturn(feed(11L));
+
+        store.onSavedToggled(SavedPropertyToggledEvent.removed(1L, 10L));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // 2 lần toggle trong lúc đang tính => gộp thành đúng 1 lượt tính thêm
+        store.onSavedToggled(SavedPropertyToggledEvent.removed(1L, 10L));
+        store.onSavedToggled(SavedPropertyToggledEvent.removed(1L, 11L));
+        release.countDown();
+
+        verify(propertyService, timeout(2000).times(2)).getRecommendations(eq(1L), anyInt(), any(), any(), any(), any(), any(), any());
+        verify(propertyService, after(200).times(2)).getRecommendations(eq(1L), anyInt(), any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void listingChangeRefreshesOnlyUsersHoldingIt() {
+        when(recommendations(1L)).thenReturn(feed(10L, 11L)).thenReturn(feed(13L));
+        when(recommendations(2L)).thenReturn(feed(12L));
+        store.get(1L, 24);
+        store.get(2L, 24);
+
+        store.onPropertyChanged(PropertyChangedEvent.of(11L));
+        verify(propertyService, timeout(2000).times(2)).getRecommendations(eq(1L), anyInt(), any(), any(), any(), any(), any(), any());
+        verify(propertyService, after(200).times(1)).getRecommendations(eq(2L), anyInt(), any(), any(), any(), any(), any(), any());
+
+        // Feed mới của user 1 không còn tin 11 => chỉ mục ngược đã gỡ
+        store.onPropertyChanged(PropertyChangedEvent.of(11L));
+        verify(propertyService, after(200).times(2)).getRecommendations(eq(1L), anyInt(), any(), any(), any(), any(), any(), any());
+    }
+
+    private RecoResult recommendations(Long userId) {
+        return propertyService.getRecommendations(eq(userId), anyInt(), any(), any(), any(), any(), any(), any());
+    }
+
+    private static RecoResult feed(Long... ids) {
+        List<PropertyCardDTO> items = Arrays.stream(ids).map(id -> {
+            PropertyCardDTO c = new PropertyCardDTO();
+            c.setId(id);
+            return c;
+        }).toList();
+        return RecoResult.builder().items(items).source("personalized").build();
+    }
+}
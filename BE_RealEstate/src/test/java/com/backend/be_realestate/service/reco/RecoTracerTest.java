@@ -0,0 +1,25 @@
+package com.backend.be_realestate.service.reco;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Khách chưa đăng nhập (userId null) không được làm hỏng request khi có danh sách user bị ép trace.
+ */
+class RecoTracerTest {
+
+    @Test
+    void anonymousUserFollowsSampleRateOnly() {
+        RecoTracer tracer = new RecoTracer(new SimpleMeterRegistry(), 0, 16, "7");
+        assertSame(RecoTrace.NOOP, tracer.start(null));
+        assertNotSame(RecoTrace.NOOP, tracer.start(7L));
+
+        tracer.setForcedUserIds(List.of(8L));
+        assertSame(RecoTrace.NOOP, tracer.start(null));
+        assertSame(RecoTrace.NOOP, tracer.start(7L));
+    }
+}
@@ -0,0 +1,54 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import com.backend.be_realestate.service.cache.PropertyCardCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Điểm trung tính cho tin mới = trung bình điểm AI của mọi tin đã chấm, không chỉ topK (vốn toàn điểm cao).
+ */
+class RerankCacheTest {
+
+    private final RerankCache cache = new RerankCache(mock(PropertyCardCache.class), new SimpleMeterRegistry(),
+            "test-model", 100, 30, 3);
+    private final UserPreference pref = UserPreference.builder().userId(1L).anchorCityId(2L).build();
+
+    @Test
+    void newCandidateGetsMeanOfAllScoredCandidates() {
+        List<ScoredProperty> candidates = LongStream.rangeClosed(1, 10)
+                .mapToObj(id -> ScoredProperty.builder().id(id).baseScore(0.5).build()).toList();
+        // Provider trả toàn bộ: 2 tin 0.9, 8 tin 0.1
+        List<ScoredProperty> scored = candidates.stream()
+                .map(sp -> sp.toBuilder().aiScore(sp.getId() <= 2 ? 0.9 : 0.1).build()).toList();
+        cache.put(pref, candidates, 2, scored);
+
+        List<ScoredProperty> next = new ArrayList<>(candidates.subList(1, 10));
+        next.add(ScoredProperty.builder().id(11L).baseScore(0.5).build());
+        List<ScoredProperty> out = cache.getPartial(pref, next, 2);
+
+        // Tin 2 giữ điểm cũ 0.9; tin 11 nhận 0.26 = (2 * 0.9 + 8 * 0.1) / 10, vẫn trên các tin 0.1 nhưng dưới tin 2
+        assertNotNull(out);
+        assertEquals(List.of(2L, 11L), out.stream().map(ScoredProperty::getId).toList());
+        assertEquals(0.9, out.get(0).getAiScore(), 1e-9);
+        assertEquals(0.26, out.get(1).getAiScore(), 1e-9);
+    }
+
+    @Test
+    void exactHitReturnsTopKOfFullOrder() {
+        List<ScoredProperty> candidates = LongStream.rangeClosed(1, 5)
+                .mapToObj(id -> ScoredProperty.builder().id(id).baseScore(0.5).build()).toList();
+        cache.put(pref, candidates, 2, List.of(candidates.get(4), candidates.get(2), candidates.get(0),
+                candidates.get(1), candidates.get(3)));
+
+        assertEquals(List.of(5L, 3L), cache.getExact(pref, candidates, 2).stream().map(ScoredProperty::getId).toList());
+    }
+}
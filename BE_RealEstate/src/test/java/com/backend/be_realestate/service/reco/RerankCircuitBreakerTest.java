@@ -0,0 +1,75 @@
+package com.backend.be_realestate.service.reco;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.backend.be_realestate.service.reco.RerankCircuitBreaker.State.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RerankCircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000);
+    private final RerankCircuitBreaker breaker = new RerankCircuitBreaker(3, 100, now::get);
+
+    @Test
+    void opensAfterConsecutiveFailuresOnly() {
+        breaker.onFailure();
+        breaker.onFailure();
+        breaker.onSuccess();            // chuỗi lỗi bị cắt
+        breaker.onFailure();
+        breaker.onFailure();
+        assertEquals(CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    void halfOpenLetsExactlyOneTrialThrough() {
+        open();
+        now.addAndGet(99);
+        assertFalse(breaker.tryAcquire());
+
+        now.addAndGet(1);
+        assertTrue(breaker.tryAcquire());
+        assertEquals(HALF_OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire()); // request thử đang chạy
+
+        breaker.onSuccess();
+        assertEquals(CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedTrialReopensForAnotherWindow() {
+        open();
+        now.addAndGet(100);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure();
+        assertEquals(OPEN, breaker.state());
+        now.addAndGet(99);
+        assertFalse(breaker.tryAcquire());
+        now.addAndGet(1);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void abandonedTrialIsRetriedImmediately() {
+        open();
+        now.addAndGet(100);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onAbandoned();
+        assertEquals(OPEN, breaker.state());
+        assertTrue(breaker.tryAcquire()); // openedAt giữ nguyên, không phải chờ thêm open-ms
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) breaker.onFailure();
+        assertEquals(OPEN, breaker.state());
+    }
+}
@@ -0,0 +1,140 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.RerankJob;
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import com.backend.be_realestate.service.IAIService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * Gom job trong window / max-batch, từ chối khi hàng đợi đầy, lỗi 1 batch trả về mọi job nhưng chỉ báo listener 1 lần.
+ */
+class RerankDispatcherTest {
+
+    private final IAIService aiService = mock(IAIService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Throwable> callOutcomes = new CopyOnWriteArrayList<>();
+    private RerankDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        if (dispatcher != null) dispatcher.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void batchesJobsWithinWindowUpToMaxBatch() throws Exception {
+        when(aiService.rerankBatchAsync(anyList())).thenAnswer(inv -> {
+            List<RerankJob> jobs = inv.getArgument(0);
+            return jobs.stream().map(j -> CompletableFuture.completedFuture(j.getCandidates())).toList();
+        });
+        start(200, 4, 100, 4);
+
+        List<CompletableFuture<List<ScoredProperty>>> futures = new ArrayList<>();
+        for (long i = 1; i <= 5; i++) futures.add(submit(i));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1L, futures.get(i).get(2, TimeUnit.SECONDS).get(0).getId());
+        }
+        ArgumentCaptor<List<RerankJob>> batches = ArgumentCaptor.forClass(List.class);
+        verify(aiService, times(2)).rerankBatchAsync(batches.capture());
+        assertEquals(List.of(4, 1), batches.getAllValues().stream().map(List::size).toList());
+        await(() -> callOutcomes.size() == 2);
+        assertEquals(Arrays.asList(null, null), callOutcomes);
+    }
+
+    @Test
+    void rejectsWhenQueueFullAndCancelsOnShutdown() {
+        CompletableFuture<List<ScoredProperty>> never = new CompletableFuture<>();
+        when(aiService.rerankBatchAsync(anyList())).thenReturn(List.of(never));
+        start(0, 1, 1, 1);
+
+        CompletableFuture<List<ScoredProperty>> inFlight = submit(1L);
+        verify(aiService, timeout(2000)).rerankBatchAsync(anyList());
+        // Job 2: worker lấy ra rồi đứng chờ slot provider; job 3 nằm trong hàng đợi (capacity 1); job 4 bị từ chối
+        CompletableFuture<List<ScoredProperty>> waitingForSlot = submit(2L);
+        await(() -> meterRegistry.get("reco.rerank.dispatch.queue.depth").gauge().value() == 0);
+        CompletableFuture<List<ScoredProperty>> queued = submit(3L);
+        CompletableFuture<List<ScoredProperty>> rejected = submit(4L);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> rejected.get(1, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, ex.getCause());
+
+        dispatcher.stop();
+        dispatcher = null;
+        assertThrows(CancellationException.class, () -> queued.get(1, TimeUnit.SECONDS));
+        assertThrows(CancellationException.class, () -> waitingForSlot.get(1, TimeUnit.SECONDS));
+        assertFalse(inFlight.isDone());
+        verify(aiService, times(1)).rerankBatchAsync(anyList());
+    }
+
+    @Test
+    void failedBatchFailsEveryJobButReportsOneCall() {
+        IllegalStateException error = new IllegalStateException("parse_error");
+        when(aiService.rerankBatchAsync(anyList())).thenAnswer(inv -> {
+            List<RerankJob> jobs = inv.getArgument(0);
+            return jobs.stream().map(j -> CompletableFuture.<List<ScoredProperty>>failedFuture(error)).toList();
+        });
+        start(200, 4, 100, 4);
+
+        List<CompletableFuture<List<ScoredProperty>>> futures = List.of(submit(1L), submit(2L), submit(3L));
+
+        for (CompletableFuture<List<ScoredProperty>> f : futures) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> f.get(2, TimeUnit.SECONDS));
+            assertSame(error, ex.getCause());
+        }
+        await(() -> !callOutcomes.isEmpty());
+        verify(aiService, times(1)).rerankBatchAsync(anyList());
+        assertEquals(List.of(error), callOutcomes);
+    }
+
+    @Test
+    void batchThatThrowsFailsEveryJobButReportsOneCall() {
+        IllegalStateException error = new IllegalStateException("http_500");
+        when(aiService.rerankBatchAsync(anyList())).thenThrow(error);
+        start(200, 4, 100, 4);
+
+        List<CompletableFuture<List<ScoredProperty>>> futures = List.of(submit(1L), submit(2L));
+
+        for (CompletableFuture<List<ScoredProperty>> f : futures) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> f.get(2, TimeUnit.SECONDS));
+            assertSame(error, ex.getCause());
+        }
+        assertEquals(List.of(error), callOutcomes);
+    }
+
+    private void start(long windowMs, int maxBatch, int capacity, int concurrency) {
+        when(aiService.providerName()).thenReturn("test");
+        dispatcher = new RerankDispatcher(aiService, meterRegistry, new MockEnvironment(),
+                windowMs, maxBatch, capacity, concurrency);
+        dispatcher.addCallListener(callOutcomes::add);
+        dispatcher.start();
+    }
+
+    private CompletableFuture<List<ScoredProperty>> submit(Long id) {
+        return dispatcher.submit(UserPreference.builder().userId(id).build(),
+                List.of(ScoredProperty.builder().id(id).baseScore(0.5).build()), 1);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timeout");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.modals.ai.ScoredProperty;
+import com.backend.be_realestate.modals.ai.UserPreference;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Provider chậm hơn budget: trả ngay thứ tự baseScore, kết quả AI về muộn vẫn vào cache.
+ */
+class RerankPipelineTest {
+
+    private final RerankDispatcher dispatcher = mock(RerankDispatcher.class);
+    private final RerankCache cache = mock(RerankCache.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RerankPipeline pipeline = new RerankPipeline(dispatcher, cache, meterRegistry, 50, 5, 30_000);
+
+    private final UserPreference pref = UserPreference.builder().userId(1L).build();
+    private final List<ScoredProperty> candidates = List.of(
+            ScoredProperty.builder().id(1L).baseScore(0.2).build(),
+            ScoredProperty.builder().id(2L).baseScore(0.9).build(),
+            ScoredProperty.builder().id(3L).baseScore(0.5).build());
+
+    // Call listener mà pipeline đăng ký với dispatcher (dispatcher gọi 1 lần / lượt gọi provider)
+    private Consumer<Throwable> callListener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ArgumentCaptor<Consumer<Throwable>> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(dispatcher).addCallListener(captor.capture());
+        callListener = captor.getValue();
+        // Mockito mặc định trả list rỗng => coi như cache hit
+        when(cache.getExact(any(), anyList(), anyInt())).thenReturn(null);
+        when(cache.getPartial(any(), anyList(), anyInt())).thenReturn(null);
+    }
+
+    @Test
+    void budgetExceededFallsBackToBaseOrderAndCachesLateResult() {
+        CompletableFuture<List<ScoredProperty>> slow = new CompletableFuture<>();
+        when(dispatcher.submit(any(), anyList(), anyInt())).thenReturn(slow);
+
+        long t0 = System.nanoTime();
+        List<ScoredProperty> out = pipeline.rerank(pref, candidates, 2);
+
+        assertTrue(System.nanoTime() - t0 < 1_000_000_000L);
+        assertEquals(List.of(2L, 3L), out.stream().map(ScoredProperty::getId).toList());
+        assertNull(out.get(0).getAiScore());
+        assertEquals(1, meterRegistry.get("reco.rerank.requests").tag("outcome", "budget_exceeded").counter().count());
+
+        List<ScoredProperty> late = List.of(candidates.get(0).toBuilder().aiScore(1.0).finalScore(0.72).build());
+        slow.complete(late);
+        verify(cache).put(pref, candidates, 2, late);
+    }
+
+    @Test
+    void partialHitRefreshesOncePerFeed() {
+        when(cache.getPartial(any(), anyList(), anyInt())).thenReturn(candidates.subList(0, 2));
+        when(cache.feedKey(any(), anyInt())).thenReturn("1|feed");
+        CompletableFuture<List<ScoredProperty>> running = new CompletableFuture<>();
+        when(dispatcher.submit(any(), anyList(), anyInt())).thenReturn(running);
+
+        pipeline.rerank(pref, candidates, 2);
+        pipeline.rerank(pref, candidates, 2);
+        verify(dispatcher, times(1)).submit(any(), anyList(), anyInt());
+        assertEquals(1, meterRegistry.get("reco.rerank.requests").tag("outcome", "refresh_skipped").counter().count());
+
+        running.complete(candidates);
+        pipeline.rerank(pref, candidates, 2);
+        verify(dispatcher, times(2)).submit(any(), anyList(), anyInt());
+    }
+
+    @Test
+    void providerErrorFallsBackAndCountsTowardsBreaker() {
+        IllegalStateException error = new IllegalStateException("parse_error");
+        when(dispatcher.submit(any(), anyList(), anyInt())).thenReturn(CompletableFuture.failedFuture(error));
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(List.of(2L), pipeline.rerank(pref, candidates, 1).stream().map(ScoredProperty::getId).toList());
+            callListener.accept(error); // mỗi job 1 lượt gọi provider riêng
+        }
+        assertEquals(5, meterRegistry.get("reco.rerank.requests").tag("outcome", "error").counter().count());
+
+        // Breaker mở: không gọi provider nữa
+        pipeline.rerank(pref, candidates, 1);
+        verify(dispatcher, times(5)).submit(any(), anyList(), anyInt());
+        assertEquals(1, meterRegistry.get("reco.rerank.requests").tag("outcome", "breaker_open").counter().count());
+        verify(cache, never()).put(any(), anyList(), anyInt(), anyList());
+    }
+
+    @Test
+    void rejectedJobIsCountedOnlyAsQueueFull() {
+        when(dispatcher.submit(any(), anyList(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new RejectedExecutionException("rerank_queue_full")));
+
+        assertEquals(List.of(2L), pipeline.rerank(pref, candidates, 1).stream().map(ScoredProperty::getId).toList());
+
+        assertEquals(1, meterRegistry.get("reco.rerank.requests").tag("outcome", "queue_full").counter().count());
+        assertNull(meterRegistry.find("reco.rerank.requests").tag("outcome", "error").counter());
+    }
+}
@@ -0,0 +1,93 @@
+package com.backend.be_realestate.service.reco;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.modals.dto.propertyEvent.SavedPropertyToggledEvent;
+import com.backend.be_realestate.repository.SavedPropertyRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cập nhật dần theo toggle phải cho cùng kết quả như nạp lại từ DB: đếm loại / city, max giá & diện tích.
+ */
+class UserPreferenceStoreTest {
+
+    private final SavedPropertyRepository repo = mock(SavedPropertyRepository.class);
+    private final UserPreferenceStore store = new UserPreferenceStore(repo, 100, 30);
+
+    @Test
+    void addRemoveReAddKeepsCountsAndOrder() {
+        when(repo.findPreferenceRowsByUser(1L)).thenReturn(rows(row(10L, PropertyType.sell, 1L, 2e9, 50f)));
+        store.get(1L);
+
+        store.onToggled(saved(1L, 11L, PropertyType.rent, 2L, 1e7, 30f));
+        assertEquals(List.of(11L, 10L), store.get(1L).savedIds());
+        store.onToggled(SavedPropertyToggledEvent.removed(1L, 11L));
+        assertEquals(List.of(10L), store.get(1L).savedIds());
+        assertEquals(List.of(PropertyType.sell), store.get(1L).topTypes(5));
+        assertEquals(List.of(1L), store.get(1L).topCityIds(5));
+
+        store.onToggled(saved(1L, 11L, PropertyType.rent, 2L, 1e7, 30f));
+        store.onToggled(saved(1L, 11L, PropertyType.rent, 2L, 1e7, 30f)); // lưu trùng: không đếm 2 lần
+        store.onToggled(saved(1L, 12L, PropertyType.rent, 2L, 2e7, 40f));
+        assertEquals(List.of(12L, 11L, 10L), store.get(1L).savedIds());
+        assertEquals(List.of(PropertyType.rent, PropertyType.sell), store.get(1L).topTypes(5));
+        assertEquals(List.of(2L, 1L), store.get(1L).topCityIds(5));
+        verify(repo, times(1)).findPreferenceRowsByUser(1L);
+    }
+
+    @Test
+    void removingCurrentMaxRecomputesFromRemainingItems() {
+        when(repo.findPreferenceRowsByUser(1L)).thenReturn(rows(
+                row(10L, PropertyType.sell, 1L, 5e9, 120f),
+                row(11L, PropertyType.sell, 1L, 3e9, 80f),
+                row(12L, PropertyType.sell, 1L, 9e9, 300f, PropertyStatus.EXPIRED)));   // không PUBLISHED: bỏ qua
+        assertEquals(5e9, store.get(1L).maxPrice());
+        assertEquals(120f, store.get(1L).maxArea());
+
+        store.onToggled(SavedPropertyToggledEvent.removed(1L, 10L));
+        assertEquals(3e9, store.get(1L).maxPrice());
+        assertEquals(80f, store.get(1L).maxArea());
+
+        store.onToggled(SavedPropertyToggledEvent.removed(1L, 11L));
+        assertNull(store.get(1L).maxPrice());
+        assertNull(store.get(1L).maxArea());
+    }
+
+    @Test
+    void toggleForUserNotLoadedIsSkipped() {
+        store.onToggled(saved(2L, 20L, PropertyType.sell, 1L, 1e9, 60f));
+        verify(repo, never()).findPreferenceRowsByUser(any());
+
+        // Lần đọc sau nạp từ DB (đã commit tin 20)
+        when(repo.findPreferenceRowsByUser(2L)).thenReturn(rows(row(20L, PropertyType.sell, 1L, 1e9, 60f)));
+        assertEquals(List.of(20L), store.get(2L).savedIds());
+        assertEquals(List.of(PropertyType.sell), store.get(2L).topTypes(5));
+    }
+
+    private static SavedPropertyToggledEvent saved(Long userId, Long propertyId, PropertyType type, Long cityId,
+                                                   Double price, Float area) {
+        return new SavedPropertyToggledEvent(userId, propertyId, true, type, cityId, price, area, PropertyStatus.PUBLISHED);
+    }
+
+    private static Object[] row(Long id, PropertyType type, Long cityId, Double price, Float area) {
+        return row(id, type, cityId, price, area, PropertyStatus.PUBLISHED);
+    }
+
+    private static Object[] row(Long id, PropertyType type, Long cityId, Double price, Float area, PropertyStatus status) {
+        return new Object[]{id, type, cityId, price, area, status};
+    }
+
+    // Query trả mới nhất trước => tham số truyền theo thứ tự cũ -> mới rồi đảo lại
+    private static List<Object[]> rows(Object[]... oldestFirst) {
+        List<Object[]> out = new ArrayList<>(List.of(oldestFirst));
+        Collections.reverse(out);
+        return out;
+    }
+}
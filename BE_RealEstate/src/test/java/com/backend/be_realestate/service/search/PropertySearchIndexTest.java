@@ -0,0 +1,191 @@
+package com.backend.be_realestate.service.search;
+
+import com.backend.be_realestate.enums.PropertyStatus;
+import com.backend.be_realestate.enums.PropertyType;
+import com.backend.be_realestate.modals.request.PageCursor;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
+import com.backend.be_realestate.repository.PropertyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * So kết quả chỉ mục (nhiều segment) với lọc + sắp xếp toàn bộ bằng stream trên cùng dữ liệu.
+ */
+class PropertySearchIndexTest {
+
+    private static final int N = PropertyColumns.SEGMENT_SIZE * 2 + 123;
+    private static final String[] STREETS = {"Hà Nội", "Hải Phòng", "Đà Nẵng", "Huế", "Hội An"};
+
+    private final Map<Long, Row> db = new LinkedHashMap<>();
+    private PropertyRepository repo;
+    private PropertySearchIndex index;
+
+    record Row(Long getId, String getTitle, String getDisplayAddress, PropertyStatus getStatus,
+               Timestamp getPostedAt, Timestamp getExpiresAt, Double getPrice, Float getArea,
+               Integer getBedrooms, Integer getBathrooms, Long getCityId, PropertyType getPropertyType,
+               String getCategorySlug, String getLegalStatus) implements PropertyRepository.SearchIndexRow {}
+
+    @BeforeEach
+    void setUp() {
+        Random rnd = new Random(7);
+        for (long id = 1; id <= N; id++) db.put(id, row(id, rnd.nextInt(1000) * 1e6, rnd.nextInt(5), PropertyStatus.PUBLISHED));
+
+        repo = mock(PropertyRepository.class);
+        when(repo.findSearchRowsByStatus(any())).thenAnswer(inv -> rows(db.keySet()));
+        when(repo.findSearchRowsByIdIn(anyCollection())).thenAnswer(inv -> rows(inv.getArgument(0)));
+        when(repo.findAmenityPairsByStatus(any())).thenReturn(List.of());
+        when(repo.findAmenityPairsByIdIn(anyCollection())).thenReturn(List.of());
+        index = new PropertySearchIndex(repo);
+        index.rebuild();
+    }
+
+    @Test
+    void pageMatchesFullSort() {
+        PropertySearchCriteria c = PropertySearchCriteria.builder().priceFrom(200e6).cityId(2L).build();
+        Sort sort = Sort.by(Sort.Direction.ASC, "price");
+
+        List<Long> expected = published().filter(r -> r.getPrice() >= 200e6 && r.getCityId() == 2L)
+                .sorted(Comparator.comparingDouble(Row::getPrice).thenComparing(Row::getId, Comparator.reverseOrder()))
+                .map(Row::getId).toList();
+
+        var page = index.search(c, sort, 40, 20);
+        assertEquals(expected.size(), page.total());
+        assertEquals(expected.subList(40, 60), page.ids());
+        assertEquals(List.of(), index.search(c, sort, expected.size() + 5, 20).ids());
+    }
+
+    @Test
+    void keywordRanksLikeHasKeyword() {
+        PropertySearchCriteria c = PropertySearchCriteria.builder().keyword("ha noi").matchAll(true).build();
+        var page = index.search(c, Sort.unsorted(), 0, N);
+
+        Set<Long> expected = published().filter(r -> r.getDisplayAddress().startsWith("Hà Nội"))
+                .map(Row::getId).collect(Collectors.toSet());
+        assertEquals(expected, new HashSet<>(page.ids()));
+        // Cùng điểm (cùng địa chỉ) => postedAt desc rồi id desc
+        List<Long> sorted = expected.stream().sorted(Comparator.comparing((Long id) -> db.get(id).getPostedAt()).reversed()
+                .thenComparing(Comparator.reverseOrder())).toList();
+        assertEquals(sorted, page.ids());
+    }
+
+    @Test
+    void scrollVisitsEveryMatchOnceInOrder() {
+        PropertySearchCriteria c = PropertySearchCriteria.builder().bedroomsFrom(3).build();
+        List<Long> seen = new ArrayList<>();
+        PageCursor cursor = null;
+        do {
+            var page = index.scroll(c, cursor, 500);
+            seen.addAll(page.ids());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        List<Long> expected = published().filter(r -> r.getBedrooms() >= 3)
+                .sorted(Comparator.comparing(Row::getPostedAt).reversed().thenComparing(Row::getId, Comparator.reverseOrder()))
+                .map(Row::getId).toList();
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void missingPostedAtSortsLastAndGivesNullCursorLikeDb() {
+        // Vài tin không có postedAt, rải khắp các segment
+        List<Long> undated = List.of(5L, 77L, (long) PropertyColumns.SEGMENT_SIZE + 9, (long) N - 1);
+        undated.forEach(id -> {
+            Row r = db.get(id);
+            db.put(id, new Row(r.getId(), r.getTitle(), r.getDisplayAddress(), r.getStatus(), null, r.getExpiresAt(),
+                    r.getPrice(), r.getArea(), 3, r.getBathrooms(), r.getCityId(), r.getPropertyType(),
+                    r.getCategorySlug(), r.getLegalStatus()));
+        });
+        index.rebuild();
+        PropertySearchCriteria c = PropertySearchCriteria.builder().bedroomsFrom(3).build();
+
+        // Trang nhỏ để cursor rơi vào giữa nhóm không có postedAt
+        List<Long> seen = new ArrayList<>();
+        List<PageCursor> cursors = new ArrayList<>();
+        PageCursor cursor = null;
+        do {
+            var page = index.scroll(c, cursor, 3);
+            seen.addAll(page.ids());
+            cursor = page.nextCursor();
+            if (cursor != null) cursors.add(cursor);
+        } while (cursor != null);
+
+        // postedAt desc NULLS LAST, id desc (như ORDER BY của nhánh DB)
+        List<Long> expected = published().filter(r -> r.getBedrooms() >= 3)
+                .sorted(Comparator.comparing(Row::getPostedAt, Comparator.nullsFirst(Comparator.<Timestamp>naturalOrder()))
+                        .reversed().thenComparing(Row::getId, Comparator.reverseOrder()))
+                .map(Row::getId).toList();
+        assertEquals(expected, seen);
+        assertEquals(undated.stream().sorted(Comparator.reverseOrder()).toList(), seen.subList(seen.size() - 4, seen.size()));
+        // Cursor của tin không có postedAt mang null (không phải 0) => nhánh DB hiểu cùng vị trí
+        cursors.stream().filter(k -> undated.contains(k.getId()))
+                .forEach(k -> assertNull(k.getPostedAt(), "cursor id=" + k.getId()));
+        assertTrue(cursors.stream().anyMatch(k -> undated.contains(k.getId())));
+
+        // ASC: tin không có postedAt lên đầu (NULL nhỏ nhất như MySQL)
+        var asc = index.search(c, Sort.by(Sort.Direction.ASC, "postedAt"), 0, 4);
+        assertEquals(Set.copyOf(undated), Set.copyOf(asc.ids()));
+    }
+
+    @Test
+    void refreshPublishesNewSnapshotWithoutTouchingOldOne() {
+        PropertySearchCriteria c = PropertySearchCriteria.builder().keyword("hai phong").matchAll(true).build();
+        var before = index.search(c, Sort.unsorted(), 0, N);
+        PropertyColumns old = columns();
+
+        long moved = before.ids().get(0);
+        long hidden = before.ids().get(1);
+        db.put(moved, row(moved, 1e6, 0, PropertyStatus.PUBLISHED));        // đổi sang "Hà Nội"
+        db.put(hidden, row(hidden, 1e6, 1, PropertyStatus.HIDDEN));
+        long added = N + 1;
+        db.put(added, row(added, 1e6, 1, PropertyStatus.PUBLISHED));
+        index.refresh(List.of(moved, hidden, added));
+
+        var after = index.search(c, Sort.unsorted(), 0, N);
+        assertFalse(after.ids().contains(moved));
+        assertFalse(after.ids().contains(hidden));
+        assertTrue(after.ids().contains(added));
+        assertEquals(before.total() - 1, after.total());
+
+        // Reader đang giữ snapshot cũ vẫn thấy đúng dữ liệu cũ
+        var stale = old.filter(c, new PropertyColumns.Keyword("hai phong", List.of("hai", "phong"), true), System.currentTimeMillis());
+        assertEquals(before.total(), stale.total());
+        assertEquals(N, old.count());
+    }
+
+    private PropertyColumns columns() {
+        try {
+            var f = PropertySearchIndex.class.getDeclaredField("columns");
+            f.setAccessible(true);
+            return (PropertyColumns) f.get(index);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private java.util.stream.Stream<Row> published() {
+        return db.values().stream().filter(r -> r.getStatus() == PropertyStatus.PUBLISHED);
+    }
+
+    private List<PropertyRepository.SearchIndexRow> rows(Collection<Long> ids) {
+        return ids.stream().map(db::get).filter(Objects::nonNull).map(r -> (PropertyRepository.SearchIndexRow) r).toList();
+    }
+
+    private static Row row(long id, double price, int street, PropertyStatus status) {
+        String addr = STREETS[street] + ", Việt Nam";
+        return new Row(id, "Nhà số " + id, addr, status,
+                new Timestamp(1_700_000_000_000L + (id % 997) * 60_000L), null,
+                price, (float) (30 + id % 200), (int) (id % 6), (int) (id % 4), (long) street,
+                PropertyType.values()[(int) (id % PropertyType.values().length)], "ban-nha", "Sổ hồng");
+    }
+}
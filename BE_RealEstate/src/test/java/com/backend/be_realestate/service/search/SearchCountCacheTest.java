@@ -0,0 +1,80 @@
+package com.backend.be_realestate.service.search;
+
+import com.backend.be_realestate.modals.dto.propertyEvent.PropertyChangedEvent;
+import com.backend.be_realestate.modals.request.PropertySearchCriteria;
+import com.backend.be_realestate.repository.PropertyRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tin chuyển từ (city 1, ban-nha) sang (city 2, cho-thue): cả key nhóm cũ lẫn nhóm mới bị đánh dấu cũ và
+ * được đếm lại ở lần đọc kế tiếp; không có COUNT nào chạy ngay lúc ghi, đọc dồn dập chỉ ra 1 lượt đếm.
+ */
+class SearchCountCacheTest {
+
+    private final PropertyRepository repo = mock(PropertyRepository.class);
+    private final SearchCountCache cache = new SearchCountCache(repo, 60_000, 600_000, 100, 1, 10);
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void refreshesOldAndNewScope() {
+        when(repo.count(any(Specification.class))).thenReturn(11L);
+        PropertyRepository.SearchIndexRow moved = mock(PropertyRepository.SearchIndexRow.class);
+        when(moved.getCityId()).thenReturn(2L);
+        when(moved.getCategorySlug()).thenReturn("cho-thue");
+        when(repo.findSearchRowsByIdIn(anyCollection())).thenReturn(List.of(moved));
+
+        PropertySearchCriteria oldScope = PropertySearchCriteria.builder().cityId(1L).categorySlug("ban-nha").build();
+        PropertySearchCriteria newScope = PropertySearchCriteria.builder().cityId(2L).categorySlug("cho-thue").build();
+        PropertySearchCriteria other = PropertySearchCriteria.builder().cityId(3L).categorySlug("ban-nha").build();
+        cache.putExact(oldScope, 10);
+        cache.putExact(newScope, 10);
+        cache.putExact(other, 10);
+
+        cache.onPropertyChanged(PropertyChangedEvent.of(7L, 1L, "ban-nha"));
+        verify(repo, after(200).never()).count(any(Specification.class));
+
+        // lần đọc đầu vẫn trả số cũ và đếm nền: đúng 2 lần COUNT (nhóm cũ + nhóm mới), key city 3 giữ nguyên
+        assertEquals(10, cache.estimate(oldScope, 0));
+        assertEquals(10, cache.estimate(newScope, 0));
+        assertEquals(10, cache.estimate(other, 0));
+        verify(repo, timeout(2000).times(2)).count(any(Specification.class));
+        verify(repo, after(200).times(2)).count(any(Specification.class));
+        assertEquals(11, cache.estimate(oldScope, 0));
+        assertEquals(11, cache.estimate(newScope, 0));
+        verify(repo, after(200).times(2)).count(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void concurrentReadsOfStaleKeyCountOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(repo.count(any(Specification.class))).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return 5L;
+        });
+        PropertySearchCriteria key = PropertySearchCriteria.builder().keyword("can ho").build();
+
+        for (int i = 0; i < 50; i++) assertEquals(3, cache.estimate(key, 3));
+        release.countDown();
+
+        verify(repo, timeout(2000).times(1)).count(any(Specification.class));
+        verify(repo, after(200).times(1)).count(any(Specification.class));
+        assertEquals(5, cache.estimate(key, 3));
+    }
+}
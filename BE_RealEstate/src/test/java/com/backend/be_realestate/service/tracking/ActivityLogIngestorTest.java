@@ -0,0 +1,118 @@
+package com.backend.be_realestate.service.tracking;
+
+import com.backend.be_realestate.enums.ActivityType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * H2 thật: worker gom lô theo batch-size, lô lỗi (FK) được ghi lại từng dòng không trùng, tắt ứng dụng thì ghi hết hàng đợi.
+ */
+class ActivityLogIngestorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmbeddedDatabase db;
+    private JdbcTemplate jdbc;
+    private ActivityLogIngestor ingestor;
+
+    @BeforeEach
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbc = spy(new JdbcTemplate(db));
+        jdbc.execute("CREATE TABLE properties (id BIGINT PRIMARY KEY)");
+        jdbc.execute("""
+                CREATE TABLE property_activity_logs (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    property_id BIGINT NOT NULL REFERENCES properties(id),
+                    user_id BIGINT, activity_type VARCHAR(32), created_at TIMESTAMP,
+                    ip_address VARCHAR(64), user_agent VARCHAR(512))
+                """);
+        for (long id = 1; id <= 5; id++) jdbc.update("INSERT INTO properties (id) VALUES (?)", id);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (ingestor != null) ingestor.stop();
+        db.shutdown();
+    }
+
+    @Test
+    void drainsQueueInBatchesOfBatchSize() {
+        ingestor = newIngestor(10);
+        // Worker chưa chạy: 25 sự kiện nằm sẵn trong hàng đợi => 3 lô 10 + 10 + 5
+        for (int i = 0; i < 25; i++) assertTrue(ingestor.submit((long) (i % 5) + 1, null, ActivityType.VIEW, "1.1.1.1", "ua"));
+        ingestor.start();
+
+        await(() -> rows() == 25);
+        verify(jdbc, timeout(2000).times(3)).batchUpdate(anyString(), anyCollection(), anyInt(), anyPreparedSetter());
+        assertEquals(25, meterRegistry.get("tracking.ingest.written").counter().count());
+        assertEquals(0, meterRegistry.get("tracking.ingest.dropped").counter().count());
+    }
+
+    @Test
+    void failedBatchFallsBackToRowByRowWithoutDuplicates() {
+        ingestor = newIngestor(10);
+        ingestor.submit(1L, 7L, ActivityType.VIEW, null, null);
+        ingestor.submit(2L, 7L, ActivityType.SHARE, null, null);
+        ingestor.submit(999L, 7L, ActivityType.VIEW, null, null);   // tin không tồn tại => lỗi FK
+        ingestor.submit(3L, null, ActivityType.FAVORITE, null, null);
+        ingestor.start();
+
+        await(() -> meterRegistry.get("tracking.ingest.written").counter().count()
+                + meterRegistry.get("tracking.ingest.dropped").counter().count() == 4);
+        assertEquals(List.of(1L, 2L, 3L),
+                jdbc.queryForList("SELECT property_id FROM property_activity_logs ORDER BY property_id", Long.class));
+        assertEquals(3, meterRegistry.get("tracking.ingest.written").counter().count());
+        assertEquals(1, meterRegistry.get("tracking.ingest.dropped").counter().count());
+    }
+
+    @Test
+    void stopFlushesWhatIsStillQueued() {
+        ingestor = new ActivityLogIngestor(jdbc, new DataSourceTransactionManager(db), meterRegistry, 1000, 10, 60_000, "DROP", 50, 10_000);
+        ingestor.start();
+        // linger dài: worker đang chờ gom lô cuối (5 dòng) khi stop() được gọi
+        for (int i = 0; i < 35; i++) ingestor.submit(1L, null, ActivityType.VIEW, null, null);
+        await(() -> rows() == 30);
+
+        ingestor.stop();
+        ingestor = null;
+
+        assertEquals(35, rows());
+        assertEquals(35, meterRegistry.get("tracking.ingest.written").counter().count());
+    }
+
+    private ActivityLogIngestor newIngestor(int batchSize) {
+        return new ActivityLogIngestor(jdbc, new DataSourceTransactionManager(db), meterRegistry, 1000, batchSize, 50, "DROP", 50, 10_000);
+    }
+
+    private int rows() {
+        return jdbc.queryForObject("SELECT COUNT(*) FROM property_activity_logs", Integer.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ParameterizedPreparedStatementSetter<Object> anyPreparedSetter() {
+        return any(ParameterizedPreparedStatementSetter.class);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timeout");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.backend.be_realestate.service.tracking;
+
+import com.backend.be_realestate.enums.ActivityType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Key chỉ được giữ khi bản ghi đã ghi thành công.
+ */
+class TrackingDedupWindowTest {
+
+    private static final Duration TTL = Duration.ofHours(1);
+
+    private final TrackingDedupWindow window = new TrackingDedupWindow(new SimpleMeterRegistry(), 1000);
+
+    @Test
+    void keepsKeyAfterSuccessfulInsert() {
+        assertTrue(record(() -> true));
+        assertFalse(record(() -> true));
+    }
+
+    @Test
+    void releasesKeyWhenInsertIsRejectedOrThrows() {
+        assertFalse(record(() -> false));
+        assertThrows(IllegalStateException.class, () -> record(() -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertTrue(record(() -> true));
+    }
+
+    @Test
+    void releasesKeyWhenTransactionRollsBack() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(record(() -> true));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        assertTrue(record(() -> true));
+    }
+
+    private boolean record(BooleanSupplier insert) {
+        // Vừa khởi động: cửa sổ chưa đủ dữ liệu nên dbCheck được hỏi, DB chưa có bản ghi
+        return window.recordIfFirst(1L, 7L, null, ActivityType.VIEW, TTL, () -> false, insert);
+    }
+}
@@ -0,0 +1,78 @@
+package com.backend.be_realestate.service.tracking;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Flush chạy liên tục trong lúc nhiều thread cùng cộng lượt xem (tin ít view bị niêm phong / gỡ liên tục):
+ * tổng đã ghi xuống DB phải bằng đúng tổng số lượt cộng.
+ */
+class ViewCountBufferTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final AtomicLong written = new AtomicLong();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flushWhileIncrementingLosesNothing() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(inv -> {
+            List<Object[]> rows = inv.getArgument(1);
+            rows.forEach(r -> written.addAndGet((Long) r[0]));
+            return new int[rows.size()];
+        });
+        ViewCountBuffer buffer = new ViewCountBuffer(jdbcTemplate, meterRegistry, 100_000, 50);
+
+        int threads = 4, perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        for (int t = 0; t < threads; t++) {
+            long offset = t;
+            pool.submit(() -> {
+                for (int i = 0; i < perThread; i++) buffer.increment((i + offset) % 8); // 8 tin, xen kẽ
+                done.countDown();
+            });
+        }
+        Thread flusher = new Thread(() -> {
+            while (running.get()) buffer.flush();
+        });
+        flusher.start();
+
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        running.set(false);
+        flusher.join();
+        buffer.flush();
+        pool.shutdown();
+
+        assertEquals((long) threads * perThread, written.get());
+        assertEquals(written.get(), meterRegistry.get("view_count.flush.increments").counter().count());
+        assertEquals(0, meterRegistry.get("view_count.dropped.increments").counter().count());
+    }
+
+    @Test
+    void dropsOnlyViewsForNewKeysWhenFull() {
+        ViewCountBuffer buffer = new ViewCountBuffer(jdbcTemplate, meterRegistry, 2, 50);
+        buffer.increment(1L);
+        buffer.increment(2L);
+        buffer.increment(3L);   // bỏ
+        buffer.increment(1L);   // tin đã có: vẫn đếm
+        assertEquals(1, meterRegistry.get("view_count.dropped.increments").counter().count());
+        assertEquals(2, meterRegistry.get("view_count.pending.keys").gauge().value());
+    }
+}
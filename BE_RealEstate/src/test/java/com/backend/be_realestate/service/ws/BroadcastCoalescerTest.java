@@ -0,0 +1,106 @@
+package com.backend.be_realestate.service.ws;
+
+import com.backend.be_realestate.service.ws.BroadcastCoalescer.Change;
+import com.backend.be_realestate.service.ws.BroadcastCoalescer.Coalesced;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Cửa sổ ngắn (100ms): nhiều sự kiện trong cửa sổ => 1 message; quá max-ids => truncated; đếm vào / ra theo topic.
+ */
+class BroadcastCoalescerTest {
+
+    private static final String TOPIC = "/topic/admin/properties";
+
+    private final WsDispatcher dispatcher = mock(WsDispatcher.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BroadcastCoalescer coalescer = new BroadcastCoalescer(dispatcher, meterRegistry, List.of(TOPIC), 100, 3);
+
+    @AfterEach
+    void tearDown() {
+        coalescer.stop();
+    }
+
+    @Test
+    void eventsInOneWindowBecomeOneMessage() {
+        assertTrue(coalescer.handles(TOPIC));
+        assertFalse(coalescer.handles("/topic/other"));
+
+        List<Long> dispatchedAt = new CopyOnWriteArrayList<>();
+        doAnswer(inv -> dispatchedAt.add(System.nanoTime())).when(dispatcher).dispatch(any());
+
+        long t0 = System.nanoTime();
+        coalescer.add(TOPIC, new Change("status", 1L));
+        coalescer.add(TOPIC, new Change("status", 2L));
+        coalescer.add(TOPIC, new Change("created", 1L));
+        coalescer.add(TOPIC, "refresh");
+
+        Coalesced first = awaitMessages(1).get(0);
+        // Gửi khi hết cửa sổ, không sớm hơn
+        assertTrue(dispatchedAt.get(0) - t0 >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(Set.of("status", "created", "refresh"), first.changes());
+        assertEquals(Set.of(1L, 2L), first.propertyIds());
+        assertEquals(4, first.events());
+        assertFalse(first.truncated());
+
+        // Sự kiện sau khi gửi mở cửa sổ mới
+        coalescer.add(TOPIC, new Change("deleted", 3L));
+        Coalesced second = awaitMessages(2).get(1);
+        assertEquals(Set.of(3L), second.propertyIds());
+        assertEquals(1, second.events());
+
+        assertEquals(5, meterRegistry.get("ws.coalesce.events.in").tag("topic", TOPIC).counter().count());
+        assertEquals(2, meterRegistry.get("ws.coalesce.messages.out").tag("topic", TOPIC).counter().count());
+    }
+
+    @Test
+    void truncatesAboveMaxIds() {
+        for (long id = 1; id <= 3; id++) coalescer.add(TOPIC, new Change("status", id));
+        coalescer.add(TOPIC, new Change("status", 2L)); // trùng id đã có: không tính là tràn
+        coalescer.add(TOPIC, new Change("status", 4L));
+        coalescer.add(TOPIC, new Change("status", 5L));
+
+        Coalesced msg = awaitMessages(1).get(0);
+        assertTrue(msg.truncated());
+        assertEquals(Set.of(1L, 2L, 3L), msg.propertyIds());
+        assertEquals(6, msg.events());
+        assertEquals(6, meterRegistry.get("ws.coalesce.events.in").tag("topic", TOPIC).counter().count());
+        assertEquals(1, meterRegistry.get("ws.coalesce.messages.out").tag("topic", TOPIC).counter().count());
+    }
+
+    @Test
+    void stopFlushesOpenWindow() {
+        BroadcastCoalescer longWindow = new BroadcastCoalescer(dispatcher, new SimpleMeterRegistry(), List.of(TOPIC), 60_000, 3);
+        longWindow.add(TOPIC, new Change("status", 1L));
+        longWindow.stop();
+        verify(dispatcher).dispatch(any());
+    }
+
+    @Test
+    void zeroWindowDisablesCoalescing() {
+        BroadcastCoalescer off = new BroadcastCoalescer(dispatcher, new SimpleMeterRegistry(), List.of(TOPIC), 0, 3);
+        assertFalse(off.handles(TOPIC));
+        off.stop();
+    }
+
+    private List<Coalesced> awaitMessages(int n) {
+        ArgumentCaptor<WsMessage> sent = ArgumentCaptor.forClass(WsMessage.class);
+        verify(dispatcher, timeout(2000).times(n)).dispatch(sent.capture());
+        return sent.getAllValues().stream().map(m -> {
+            assertEquals(TOPIC, m.destination());
+            assertNull(m.user());
+            return (Coalesced) m.payload();
+        }).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package com.backend.be_realestate.service.ws;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Peer chậm (200ms / request): publish trả về ngay, mọi message tới peer theo đúng thứ tự publish.
+ */
+class WsBridgeTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Object> received = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HttpServer peer;
+    private WsBridge bridge;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        peer.createContext(WsBridge.PATH, exchange -> {
+            try {
+                Thread.sleep(200);
+                List<Map<String, Object>> body = mapper.readValue(exchange.getRequestBody(), List.class);
+                body.forEach(m -> received.add(m.get("payload")));
+                exchange.sendResponseHeaders(200, -1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        peer.start();
+        bridge = new WsBridge(WebClient.builder(), meterRegistry,
+                List.of("http://localhost:" + peer.getAddress().getPort()), "secret", 2000, 100, 5000);
+        bridge.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        bridge.stop();
+        peer.stop(0);
+    }
+
+    @Test
+    void publishDoesNotWaitForPeerAndKeepsOrder() throws Exception {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            bridge.publish(List.of(WsMessage.toUser("alice", "/queue/notifications", i)));
+        }
+        assertTrue(System.nanoTime() - t0 < TimeUnit.MILLISECONDS.toNanos(200), "publish blocked on the peer");
+
+        await(() -> received.size() >= 20);
+        assertEquals(IntStream.range(0, 20).boxed().toList(), received);
+        // Counter tăng sau khi peer trả lời, còn received được ghi trước đó => chờ riêng
+        await(() -> meterRegistry.get("ws.bridge.published").counter().count() >= 20);
+        assertEquals(20, meterRegistry.get("ws.bridge.published").counter().count());
+    }
+
+    @Test
+    void skipsMessagesReceivedFromOtherNodes() throws Exception {
+        bridge.publish(List.of(new WsMessage("alice", "/queue/notifications", 1, true)));
+        bridge.publish(List.of(WsMessage.toUser("alice", "/queue/notifications", 2)));
+
+        await(() -> !received.isEmpty());
+        assertEquals(List.of(2), received);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+    }
+}
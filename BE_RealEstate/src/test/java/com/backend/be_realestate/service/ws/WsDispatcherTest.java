@@ -0,0 +1,85 @@
+package com.backend.be_realestate.service.ws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Gửi lỗi: message được hoãn và thử lại sau, lane vẫn gửi cho user khác; message sau của cùng user không vượt lên trước.
+ */
+class WsDispatcherTest {
+
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private WsDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.stop();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedMessageIsRetriedLaterWithoutBlockingOthers() {
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        doAnswer(inv -> {
+            String user = inv.getArgument(0);
+            Object payload = inv.getArgument(2);
+            if (user.equals("a") && payload.equals(1) && failuresLeft.getAndDecrement() > 0) {
+                throw new MessagingException("broker busy");
+            }
+            delivered.add(user + payload);
+            return null;
+        }).when(template).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        // 1 lane: a và b dùng chung worker; backoff dài để thấy b không phải chờ
+        dispatcher = new WsDispatcher(template, mock(ObjectProvider.class), meterRegistry, 1, 100, 1, 3, 1000, 2000);
+        dispatcher.start();
+
+        dispatcher.dispatch(WsMessage.toUser("a", "/queue/n", 1));
+        dispatcher.dispatch(WsMessage.toUser("a", "/queue/n", 2));
+        dispatcher.dispatch(WsMessage.toUser("b", "/queue/n", 1));
+
+        // b đi ngay trong lúc a1 đang chờ thử lại; a2 xếp sau a1
+        verify(template, timeout(800)).convertAndSendToUser("b", "/queue/n", 1);
+        assertEquals(List.of("b1"), delivered);
+
+        verify(template, timeout(6000)).convertAndSendToUser("a", "/queue/n", 2);
+        assertEquals(List.of("b1", "a1", "a2"), delivered);
+        assertEquals(2, meterRegistry.get("ws.outbox.retried").counter().count());
+        assertEquals(0, meterRegistry.get("ws.outbox.dropped").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void dropsAfterMaxAttemptsAndContinuesWithNextMessage() {
+        doAnswer(inv -> {
+            Object payload = inv.getArgument(2);
+            if (payload.equals(1)) throw new MessagingException("always");
+            delivered.add("a" + payload);
+            return null;
+        }).when(template).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        dispatcher = new WsDispatcher(template, mock(ObjectProvider.class), meterRegistry, 1, 100, 10, 3, 20, 2000);
+        dispatcher.start();
+
+        dispatcher.dispatch(WsMessage.toUser("a", "/queue/n", 1));
+        dispatcher.dispatch(WsMessage.toUser("a", "/queue/n", 2));
+
+        verify(template, timeout(2000)).convertAndSendToUser("a", "/queue/n", 2);
+        verify(template, times(3)).convertAndSendToUser("a", "/queue/n", 1);
+        assertEquals(List.of("a2"), delivered);
+        assertEquals(1, meterRegistry.get("ws.outbox.dropped").counter().count());
+    }
+}
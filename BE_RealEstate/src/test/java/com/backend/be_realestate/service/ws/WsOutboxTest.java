@@ -0,0 +1,107 @@
+package com.backend.be_realestate.service.ws;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Transaction thật trên H2: message chỉ được gửi sau commit, rollback bỏ hết, thứ tự theo từng user được giữ.
+ */
+class WsOutboxTest {
+
+    private static final int PER_USER = 50;
+
+    private final SimpMessagingTemplate template = mock(SimpMessagingTemplate.class);
+    private final Map<String, List<Object>> received = new ConcurrentHashMap<>();
+    private EmbeddedDatabase db;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private WsDispatcher dispatcher;
+    private BroadcastCoalescer coalescer;
+    private WsOutbox outbox;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+        jdbc = new JdbcTemplate(db);
+        jdbc.execute("CREATE TABLE notifications (id BIGINT AUTO_INCREMENT PRIMARY KEY, user_key VARCHAR(32), seq INT)");
+        tx = new TransactionTemplate(new DataSourceTransactionManager(db));
+
+        doAnswer(inv -> received.computeIfAbsent(inv.getArgument(0), k -> new CopyOnWriteArrayList<>())
+                .add(inv.getArgument(2)))
+                .when(template).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new WsDispatcher(template, mock(ObjectProvider.class), meterRegistry, 4, 1000, 10, 3, 20, 1000);
+        dispatcher.start();
+        coalescer = new BroadcastCoalescer(dispatcher, meterRegistry, List.of(), 0, 500);
+        outbox = new WsOutbox(dispatcher, coalescer);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.stop();
+        dispatcher.stop();
+        db.shutdown();
+    }
+
+    @Test
+    void sendsOnlyAfterCommitInPerUserOrder() {
+        tx.executeWithoutResult(status -> {
+            for (int i = 0; i < PER_USER; i++) {
+                for (String user : List.of("a", "b", "c")) {
+                    jdbc.update("INSERT INTO notifications (user_key, seq) VALUES (?, ?)", user, i);
+                    outbox.toUser(user, "/queue/notifications", i);
+                }
+            }
+            // Chưa commit: chưa có gì vào hàng đợi dispatcher, chưa gửi gì
+            assertEquals(0, dispatcher.depth());
+            verifyNoInteractions(template);
+        });
+
+        assertEquals(3 * PER_USER, jdbc.queryForObject("SELECT COUNT(*) FROM notifications", Integer.class));
+        verify(template, timeout(5000).times(3 * PER_USER)).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        List<Object> expected = IntStream.range(0, PER_USER).boxed().map(Object.class::cast).toList();
+        for (String user : List.of("a", "b", "c")) assertEquals(expected, received.get(user), user);
+    }
+
+    @Test
+    void rollbackDropsMessages() {
+        tx.executeWithoutResult(status -> {
+            jdbc.update("INSERT INTO notifications (user_key, seq) VALUES (?, ?)", "a", 0);
+            outbox.toUser("a", "/queue/notifications", 0);
+            outbox.toTopic("/topic/properties", "changed");
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM notifications", Integer.class));
+        verify(template, after(300).never()).convertAndSendToUser(anyString(), anyString(), any(Object.class));
+        verify(template, never()).convertAndSend(anyString(), any(Object.class));
+        assertEquals(0, dispatcher.depth());
+
+        // Buffer của transaction đã huỷ không rò sang lần gửi sau
+        outbox.toUser("a", "/queue/notifications", 1);
+        verify(template, timeout(2000)).convertAndSendToUser("a", "/queue/notifications", 1);
+        assertEquals(List.of(1), received.get("a"));
+    }
+}
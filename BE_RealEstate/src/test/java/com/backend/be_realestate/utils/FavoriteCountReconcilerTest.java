@@ -0,0 +1,45 @@
+package com.backend.be_realestate.utils;
+
+import com.backend.be_realestate.repository.PropertyRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Quét đủ mọi khoảng id tới max id; 1 khoảng lỗi không dừng cả lượt, số dòng đã sửa được cộng vào metric.
+ */
+class FavoriteCountReconcilerTest {
+
+    private final PropertyRepository repo = mock(PropertyRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FavoriteCountReconciler reconciler = new FavoriteCountReconciler(repo, meterRegistry, 1000);
+
+    @Test
+    void scansAllRangesAndSkipsFailedOne() {
+        when(repo.findMaxId()).thenReturn(2500L);
+        when(repo.reconcileFavoriteCounts(1, 1000)).thenReturn(3);
+        when(repo.reconcileFavoriteCounts(1001, 2000)).thenThrow(new IllegalStateException("lock wait timeout"));
+        when(repo.reconcileFavoriteCounts(2001, 3000)).thenReturn(2);
+
+        reconciler.reconcile();
+
+        verify(repo).reconcileFavoriteCounts(1, 1000);
+        verify(repo).reconcileFavoriteCounts(1001, 2000);
+        verify(repo).reconcileFavoriteCounts(2001, 3000);
+        verify(repo, times(3)).reconcileFavoriteCounts(anyLong(), anyLong());
+        assertEquals(5, meterRegistry.get("favorite_count.reconcile.corrections").counter().count());
+    }
+
+    @Test
+    void emptyTableDoesNothing() {
+        when(repo.findMaxId()).thenReturn(0L);
+
+        reconciler.reconcile();
+
+        verify(repo, never()).reconcileFavoriteCounts(anyLong(), anyLong());
+        assertEquals(0, meterRegistry.get("favorite_count.reconcile.corrections").counter().count());
+    }
+}